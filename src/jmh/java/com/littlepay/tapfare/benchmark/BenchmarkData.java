@@ -0,0 +1,111 @@
+package com.littlepay.tapfare.benchmark;
+
+import com.littlepay.tapfare.config.TripsFareConfig;
+import com.littlepay.tapfare.constant.TapType;
+import com.littlepay.tapfare.model.Tap;
+import com.littlepay.tapfare.utils.FareMatrixUtils;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+
+/**
+ * Generates deterministic benchmark inputs: taps over a fixed number of stops and PANs, where the PAN of every
+ * tap is drawn from a Zipf distribution with the given skew (0 is uniform, larger values concentrate taps on
+ * fewer heavy cardholders), and a symmetric fare matrix over the same stops.
+ */
+final class BenchmarkData {
+
+    static final String DATE_PATTERN = "dd-MM-yyyy HH:mm:ss";
+    static final DateTimeFormatter formatter = DateTimeFormatter.ofPattern(DATE_PATTERN);
+    static final String TAP_CSV_HEADER = "ID,DateTimeUTC,TapType,StopId,CompanyId,BusID,PAN";
+    static final int STOP_COUNT = 50;
+
+    private static final LocalDateTime START = LocalDateTime.of(2023, 1, 22, 5, 0);
+
+    private BenchmarkData() {
+    }
+
+    /**
+     * @return {@code tapCount} taps sorted by time, spread over {@code panCount} PANs with the given Zipf skew
+     */
+    static List<Tap> generateTaps(final int tapCount, final int panCount, final double panSkew, final long seed) {
+        final SplittableRandom random = new SplittableRandom(seed);
+        final double[] panCdf = zipfCdf(panCount, panSkew);
+        final boolean[] onBoard = new boolean[panCount];
+        final List<Tap> taps = new ArrayList<>(tapCount);
+        LocalDateTime dateTime = START;
+        for (int i = 0; i < tapCount; i++) {
+            dateTime = dateTime.plusSeconds(random.nextInt(3));
+            final int pan = sample(panCdf, random.nextDouble());
+            final TapType tapType = onBoard[pan] ? TapType.OFF : TapType.ON;
+            onBoard[pan] = !onBoard[pan];
+            taps.add(new Tap(i + 1, dateTime, tapType, stopId(random.nextInt(STOP_COUNT)), "Company1",
+                    "Bus" + random.nextInt(200), String.valueOf(4_000_000_000_000_000L + pan)));
+        }
+        return taps;
+    }
+
+    static Path writeTapsCsv(final List<Tap> taps) throws IOException {
+        final Path file = Files.createTempFile("benchmark-taps-", ".csv");
+        file.toFile().deleteOnExit();
+        try (final BufferedWriter writer = Files.newBufferedWriter(file)) {
+            writer.write(TAP_CSV_HEADER);
+            writer.newLine();
+            for (final Tap tap : taps) {
+                writer.write(tap.getId() + "," + tap.getLocalDateTime().format(formatter) + "," + tap.getTapType() + ","
+                        + tap.getStopId() + "," + tap.getCompanyId() + "," + tap.getBusId() + "," + tap.getPan());
+                writer.newLine();
+            }
+        }
+        return file;
+    }
+
+    /**
+     * Populates the static fare matrix with a fare for every pair of benchmark stops.
+     */
+    static void initFareMatrix() {
+        final Map<String, Map<String, Double>> fares = new HashMap<>();
+        for (int from = 0; from < STOP_COUNT; from++) {
+            final Map<String, Double> toFares = new HashMap<>();
+            for (int to = from + 1; to < STOP_COUNT; to++) {
+                toFares.put(stopId(to), 1.0 + (to - from) * 0.25);
+            }
+            fares.put(stopId(from), toFares);
+        }
+        final TripsFareConfig tripsFareConfig = new TripsFareConfig();
+        tripsFareConfig.setFare(fares);
+        new FareMatrixUtils(tripsFareConfig);
+    }
+
+    static String stopId(final int stop) {
+        return "Stop" + (stop + 1);
+    }
+
+    static double[] zipfCdf(final int count, final double skew) {
+        final double[] cdf = new double[count];
+        double total = 0;
+        for (int rank = 0; rank < count; rank++) {
+            total += 1.0 / Math.pow(rank + 1, skew);
+            cdf[rank] = total;
+        }
+        for (int rank = 0; rank < count; rank++) {
+            cdf[rank] /= total;
+        }
+        return cdf;
+    }
+
+    static int sample(final double[] cdf, final double uniform) {
+        final int index = Arrays.binarySearch(cdf, uniform);
+        return Math.min(index >= 0 ? index : -index - 1, cdf.length - 1);
+    }
+}
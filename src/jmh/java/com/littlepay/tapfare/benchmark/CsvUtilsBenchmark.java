@@ -0,0 +1,96 @@
+package com.littlepay.tapfare.benchmark;
+
+import com.littlepay.tapfare.config.TripsMatchingConfig;
+import com.littlepay.tapfare.model.Tap;
+import com.littlepay.tapfare.model.TapBatch;
+import com.littlepay.tapfare.model.Trip;
+import com.littlepay.tapfare.service.DefaultFareCalculator;
+import com.littlepay.tapfare.service.TripsCreationService;
+import com.littlepay.tapfare.utils.CsvUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of reading tap CSV files and writing trip CSV files, per generated input size and PAN skew.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+public class CsvUtilsBenchmark {
+
+    @Param({"100000"})
+    public int tapCount;
+
+    @Param({"10000"})
+    public int panCount;
+
+    @Param({"0.0", "1.1"})
+    public double panSkew;
+
+    private final CsvUtils csvUtils = new CsvUtils();
+    private Path tapsCsv;
+    private Path tripsCsv;
+    private List<Trip> trips;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        BenchmarkData.initFareMatrix();
+        final List<Tap> taps = BenchmarkData.generateTaps(tapCount, panCount, panSkew, 42);
+        tapsCsv = BenchmarkData.writeTapsCsv(taps);
+        tripsCsv = Files.createTempFile("benchmark-trips-", ".csv");
+        final TripsMatchingConfig tripsMatchingConfig = new TripsMatchingConfig();
+        tripsMatchingConfig.setShards(1);
+        trips = new TripsCreationService(new DefaultFareCalculator(), tripsMatchingConfig).createTrips(taps);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(tapsCsv);
+        Files.deleteIfExists(tripsCsv);
+    }
+
+    @Benchmark
+    public List<Tap> readTapsFromCsv() {
+        return csvUtils.readTapsFromCsv(tapsCsv.toString());
+    }
+
+    @Benchmark
+    public List<Tap> readTapsFromCsvFast() {
+        return csvUtils.readTapsFromCsvFast(tapsCsv.toString());
+    }
+
+    @Benchmark
+    public TapBatch readTapBatchFromCsv() {
+        return csvUtils.readTapBatchFromCsv(tapsCsv.toString());
+    }
+
+    @Benchmark
+    public void writeTripsToCsv() {
+        csvUtils.writeTripsToCsv(trips, tripsCsv.toString());
+    }
+
+    @Benchmark
+    public void writeTripsToCsvFast() {
+        csvUtils.writeTripsToCsvFast(trips, tripsCsv.toString());
+    }
+}
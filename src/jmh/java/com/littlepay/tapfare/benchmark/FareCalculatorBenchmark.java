@@ -0,0 +1,84 @@
+package com.littlepay.tapfare.benchmark;
+
+import com.littlepay.tapfare.service.DefaultFareCalculator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of a single fare lookup, by stop ID and by precompiled stop index, including unknown stops.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FareCalculatorBenchmark {
+
+    private static final int LOOKUPS = 1024;
+
+    private final DefaultFareCalculator fareCalculator = new DefaultFareCalculator();
+    private final String[] fromStops = new String[LOOKUPS];
+    private final String[] toStops = new String[LOOKUPS];
+    private final int[] fromStopIndexes = new int[LOOKUPS];
+    private final int[] toStopIndexes = new int[LOOKUPS];
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        BenchmarkData.initFareMatrix();
+        final SplittableRandom random = new SplittableRandom(42);
+        for (int i = 0; i < LOOKUPS; i++) {
+            // one stop in ten is outside the fare matrix
+            fromStops[i] = BenchmarkData.stopId(random.nextInt(BenchmarkData.STOP_COUNT + BenchmarkData.STOP_COUNT / 10));
+            toStops[i] = BenchmarkData.stopId(random.nextInt(BenchmarkData.STOP_COUNT));
+            fromStopIndexes[i] = fareCalculator.stopIndex(fromStops[i]);
+            toStopIndexes[i] = fareCalculator.stopIndex(toStops[i]);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(LOOKUPS)
+    public void calculateFare(final Blackhole blackhole) {
+        for (int i = 0; i < LOOKUPS; i++) {
+            blackhole.consume(fareCalculator.calculateFare(fromStops[i], toStops[i]));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(LOOKUPS)
+    public void calculateMaxFare(final Blackhole blackhole) {
+        for (int i = 0; i < LOOKUPS; i++) {
+            blackhole.consume(fareCalculator.calculateMaxFare(fromStops[i]));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(LOOKUPS)
+    public void calculateFareByStopIndex(final Blackhole blackhole) {
+        for (int i = 0; i < LOOKUPS; i++) {
+            blackhole.consume(fareCalculator.calculateFare(fromStopIndexes[i], toStopIndexes[i]));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(LOOKUPS)
+    public void calculateMaxFareByStopIndex(final Blackhole blackhole) {
+        for (int i = 0; i < LOOKUPS; i++) {
+            blackhole.consume(fareCalculator.calculateMaxFare(fromStopIndexes[i]));
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package com.littlepay.tapfare.benchmark;
+
+import com.littlepay.tapfare.constant.TapSortStrategy;
+import com.littlepay.tapfare.model.Tap;
+import com.littlepay.tapfare.utils.TapSorter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time to put a shuffled list of taps in date time order, per sort strategy.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+public class TapSortBenchmark {
+
+    @Param({"1000000", "10000000"})
+    public int tapCount;
+
+    @Param({"COMPARISON", "RADIX"})
+    public TapSortStrategy strategy;
+
+    private List<Tap> shuffledTaps;
+    private List<Tap> taps;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        shuffledTaps = BenchmarkData.generateTaps(tapCount, 100_000, 0.0, 42);
+        Collections.shuffle(shuffledTaps, new Random(42));
+    }
+
+    @Setup(Level.Invocation)
+    public void copyTaps() {
+        taps = new ArrayList<>(shuffledTaps);
+    }
+
+    @Benchmark
+    public List<Tap> sortByDateTime() {
+        TapSorter.sortByDateTime(taps, strategy);
+        return taps;
+    }
+}
@@ -0,0 +1,262 @@
+package com.littlepay.tapfare.benchmark;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.ZoneOffset;
+import java.util.PriorityQueue;
+import java.util.SplittableRandom;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Writes synthetic tap files in the input format of {@code CsvUtils}, {@code ID,DateTimeUTC,TapType,StopId,CompanyId,
+ * BusID,PAN}, sorted by date time and identical for identical settings.
+ * Taps come from journeys spread evenly over the service hours of the covered days. A journey boards a bus at one stop
+ * and alights two to sixty minutes later at another; a cancelled journey alights at the boarding stop within a few
+ * minutes, and an orphan journey has only its "Tap On" or only its "Tap Off". The PAN of every journey is drawn from a
+ * Zipf distribution with the given skew (0 is uniform, larger values concentrate journeys on fewer heavy cardholders),
+ * redrawn a few times while the drawn PAN is still riding. Taps are streamed to the file with only the "Tap Off" events
+ * of journeys in progress held in memory, so files of hundreds of millions of taps can be written. A file name ending
+ * in {@code .gz} is gzip-compressed.
+ * Run with {@code --key=value} arguments named after the {@link Settings} components, for example
+ * {@code --taps=10000000 --pans=500000 --days=7 --panSkew=1.1 --output=taps.csv}.
+ */
+public final class TapWorkloadGenerator {
+
+    private static final int SERVICE_START_SECOND = 5 * 3600;
+    private static final int SERVICE_SECONDS = 18 * 3600;
+    private static final int MIN_JOURNEY_SECONDS = 120;
+    private static final int MAX_JOURNEY_SECONDS = 3600;
+    private static final int MAX_CANCEL_SECONDS = 300;
+    private static final int PAN_REDRAWS = 8;
+
+    private TapWorkloadGenerator() {
+    }
+
+    public static void main(final String[] args) throws IOException {
+        final Settings settings = Settings.parse(args);
+        final long start = System.nanoTime();
+        write(Path.of(settings.output()), settings);
+        System.out.printf("Wrote %d taps to %s in %.1f s%n", settings.taps(), settings.output(), (System.nanoTime() - start) / 1e9);
+    }
+
+    /**
+     * Writes the taps described by the settings to the given file.
+     *
+     * @param file     the tap file to write, gzip-compressed if its name ends in {@code .gz}
+     * @param settings the shape of the workload
+     */
+    public static void write(final Path file, final Settings settings) throws IOException {
+        try (final OutputStream output = file.getFileName().toString().endsWith(".gz")
+                ? new GZIPOutputStream(Files.newOutputStream(file), 1 << 16) : Files.newOutputStream(file);
+             final BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(output, StandardCharsets.UTF_8), 1 << 16)) {
+            writer.write(BenchmarkData.TAP_CSV_HEADER);
+            writer.newLine();
+            new Generation(settings, writer).run();
+        }
+    }
+
+    /**
+     * The shape of a generated workload.
+     *
+     * @param taps            the number of taps written
+     * @param pans            the number of distinct PANs
+     * @param stops           the number of distinct stops, at least two
+     * @param companies       the number of companies
+     * @param busesPerCompany the number of buses of every company
+     * @param days            the number of consecutive service days covered, starting on {@code startDate}
+     * @param startDate       the first service day
+     * @param orphanRatio     the share of journeys with only a "Tap On" or only a "Tap Off"
+     * @param cancelRatio     the share of journeys alighting at their boarding stop
+     * @param panSkew         the Zipf exponent of the PAN distribution
+     * @param seed            the seed of the random choices
+     * @param output          the file written when run from the command line
+     */
+    public record Settings(long taps, int pans, int stops, int companies, int busesPerCompany, int days,
+                           LocalDate startDate, double orphanRatio, double cancelRatio, double panSkew, long seed,
+                           String output) {
+
+        public static final Settings DEFAULT = new Settings(1_000_000, 100_000, BenchmarkData.STOP_COUNT, 4, 50, 7,
+                LocalDate.of(2023, 1, 22), 0.05, 0.02, 1.1, 42, "taps.csv");
+
+        public Settings {
+            if (taps < 0 || pans < 1 || stops < 2 || companies < 1 || busesPerCompany < 1 || days < 1) {
+                throw new IllegalArgumentException("Expected at least one PAN, company, bus and day and two stops");
+            }
+            if (orphanRatio < 0 || cancelRatio < 0 || orphanRatio + cancelRatio > 1 || panSkew < 0) {
+                throw new IllegalArgumentException("Expected non-negative ratios adding up to at most 1 and a non-negative skew");
+            }
+        }
+
+        public Settings withTaps(final long taps) {
+            return new Settings(taps, pans, stops, companies, busesPerCompany, days, startDate, orphanRatio,
+                    cancelRatio, panSkew, seed, output);
+        }
+
+        /**
+         * @return the default settings overridden by {@code --key=value} arguments
+         */
+        static Settings parse(final String[] args) {
+            Settings settings = DEFAULT;
+            for (final String arg : args) {
+                final int separator = arg.indexOf('=');
+                if (!arg.startsWith("--") || separator < 0) {
+                    throw new IllegalArgumentException("Expected --key=value, got: %s".formatted(arg));
+                }
+                settings = settings.with(arg.substring(2, separator), arg.substring(separator + 1));
+            }
+            return settings;
+        }
+
+        private Settings with(final String key, final String value) {
+            return switch (key) {
+                case "taps" -> withTaps(Long.parseLong(value));
+                case "pans" -> new Settings(taps, Integer.parseInt(value), stops, companies, busesPerCompany, days,
+                        startDate, orphanRatio, cancelRatio, panSkew, seed, output);
+                case "stops" -> new Settings(taps, pans, Integer.parseInt(value), companies, busesPerCompany, days,
+                        startDate, orphanRatio, cancelRatio, panSkew, seed, output);
+                case "companies" -> new Settings(taps, pans, stops, Integer.parseInt(value), busesPerCompany, days,
+                        startDate, orphanRatio, cancelRatio, panSkew, seed, output);
+                case "busesPerCompany" -> new Settings(taps, pans, stops, companies, Integer.parseInt(value), days,
+                        startDate, orphanRatio, cancelRatio, panSkew, seed, output);
+                case "days" -> new Settings(taps, pans, stops, companies, busesPerCompany, Integer.parseInt(value),
+                        startDate, orphanRatio, cancelRatio, panSkew, seed, output);
+                case "startDate" -> new Settings(taps, pans, stops, companies, busesPerCompany, days,
+                        LocalDate.parse(value), orphanRatio, cancelRatio, panSkew, seed, output);
+                case "orphanRatio" -> new Settings(taps, pans, stops, companies, busesPerCompany, days, startDate,
+                        Double.parseDouble(value), cancelRatio, panSkew, seed, output);
+                case "cancelRatio" -> new Settings(taps, pans, stops, companies, busesPerCompany, days, startDate,
+                        orphanRatio, Double.parseDouble(value), panSkew, seed, output);
+                case "panSkew" -> new Settings(taps, pans, stops, companies, busesPerCompany, days, startDate,
+                        orphanRatio, cancelRatio, Double.parseDouble(value), seed, output);
+                case "seed" -> new Settings(taps, pans, stops, companies, busesPerCompany, days, startDate,
+                        orphanRatio, cancelRatio, panSkew, Long.parseLong(value), output);
+                case "output" -> new Settings(taps, pans, stops, companies, busesPerCompany, days, startDate,
+                        orphanRatio, cancelRatio, panSkew, seed, value);
+                default -> throw new IllegalArgumentException("Unknown workload setting: %s".formatted(key));
+            };
+        }
+    }
+
+    /**
+     * The state of writing one file: the journeys started so far and the "Tap Off" events still to be written.
+     */
+    private static final class Generation {
+
+        private final Settings settings;
+        private final BufferedWriter writer;
+        private final SplittableRandom random;
+        private final double[] panCdf;
+        private final long[] ridingUntil;
+        private final PriorityQueue<GeneratedTap> pendingTapOffs = new PriorityQueue<>();
+        private final double secondsPerJourney;
+        private final long firstEpochSecond;
+        private final StringBuilder row = new StringBuilder(96);
+        private long written;
+        private long cachedDateTimeSecond = Long.MIN_VALUE;
+        private String cachedDateTime;
+
+        private Generation(final Settings settings, final BufferedWriter writer) {
+            this.settings = settings;
+            this.writer = writer;
+            this.random = new SplittableRandom(settings.seed());
+            this.panCdf = BenchmarkData.zipfCdf(settings.pans(), settings.panSkew());
+            this.ridingUntil = new long[settings.pans()];
+            // every journey but the orphan ones writes two taps
+            final double journeys = Math.max(1, settings.taps() / (2 - settings.orphanRatio()));
+            this.secondsPerJourney = (double) settings.days() * SERVICE_SECONDS / journeys;
+            this.firstEpochSecond = settings.startDate().toEpochSecond(LocalTime.MIN, ZoneOffset.UTC);
+        }
+
+        private void run() throws IOException {
+            for (long journey = 0; written + pendingTapOffs.size() < settings.taps(); journey++) {
+                final long boardingSecond = boardingSecond(journey);
+                while (!pendingTapOffs.isEmpty() && pendingTapOffs.peek().epochSecond() <= boardingSecond) {
+                    writeTap(pendingTapOffs.poll());
+                }
+                startJourney(boardingSecond, settings.taps() - written - pendingTapOffs.size());
+            }
+            while (!pendingTapOffs.isEmpty()) {
+                writeTap(pendingTapOffs.poll());
+            }
+        }
+
+        /**
+         * @return the epoch second of the given journey, spreading journeys evenly over the service hours of every day
+         */
+        private long boardingSecond(final long journey) {
+            final long serviceSecond = Math.min((long) (journey * secondsPerJourney), (long) settings.days() * SERVICE_SECONDS - 1);
+            return firstEpochSecond + serviceSecond / SERVICE_SECONDS * 86_400 + SERVICE_START_SECOND + serviceSecond % SERVICE_SECONDS;
+        }
+
+        private void startJourney(final long boardingSecond, final long remainingTaps) throws IOException {
+            final int pan = drawPan(boardingSecond);
+            final int bus = random.nextInt(settings.companies() * settings.busesPerCompany());
+            final int fromStop = random.nextInt(settings.stops());
+            final double kind = random.nextDouble();
+            if (remainingTaps == 1 || kind < settings.orphanRatio()) {
+                // half the orphans miss their "Tap Off", the other half their "Tap On"
+                if (random.nextBoolean()) {
+                    writeTap(new GeneratedTap(boardingSecond, "ON", fromStop, bus, pan));
+                } else {
+                    writeTap(new GeneratedTap(boardingSecond, "OFF", fromStop, bus, pan));
+                }
+                return;
+            }
+            final boolean cancelled = kind < settings.orphanRatio() + settings.cancelRatio();
+            final long alightingSecond = boardingSecond + (cancelled
+                    ? 1 + random.nextInt(MAX_CANCEL_SECONDS)
+                    : MIN_JOURNEY_SECONDS + random.nextInt(MAX_JOURNEY_SECONDS - MIN_JOURNEY_SECONDS + 1));
+            final int toStop = cancelled ? fromStop : (fromStop + 1 + random.nextInt(settings.stops() - 1)) % settings.stops();
+            ridingUntil[pan] = alightingSecond;
+            writeTap(new GeneratedTap(boardingSecond, "ON", fromStop, bus, pan));
+            pendingTapOffs.add(new GeneratedTap(alightingSecond, "OFF", toStop, bus, pan));
+        }
+
+        private int drawPan(final long boardingSecond) {
+            int pan = BenchmarkData.sample(panCdf, random.nextDouble());
+            for (int redraw = 0; redraw < PAN_REDRAWS && ridingUntil[pan] >= boardingSecond; redraw++) {
+                pan = BenchmarkData.sample(panCdf, random.nextDouble());
+            }
+            return pan;
+        }
+
+        private void writeTap(final GeneratedTap tap) throws IOException {
+            row.setLength(0);
+            row.append(++written).append(',').append(dateTime(tap.epochSecond())).append(',').append(tap.tapType())
+                    .append(',').append(BenchmarkData.stopId(tap.stop()))
+                    .append(",Company").append(tap.bus() % settings.companies() + 1)
+                    .append(",Bus").append(tap.bus() + 1)
+                    .append(',').append(4_000_000_000_000_000L + tap.pan())
+                    .append('\n');
+            writer.append(row);
+        }
+
+        private String dateTime(final long epochSecond) {
+            if (epochSecond != cachedDateTimeSecond) {
+                cachedDateTimeSecond = epochSecond;
+                cachedDateTime = LocalDateTime.ofEpochSecond(epochSecond, 0, ZoneOffset.UTC).format(BenchmarkData.formatter);
+            }
+            return cachedDateTime;
+        }
+    }
+
+    /**
+     * A tap to write, ordered by date time and then by PAN so that equal date times keep a stable order.
+     */
+    private record GeneratedTap(long epochSecond, String tapType, int stop, int bus, int pan) implements Comparable<GeneratedTap> {
+
+        @Override
+        public int compareTo(final GeneratedTap other) {
+            final int bySecond = Long.compare(epochSecond, other.epochSecond);
+            return bySecond != 0 ? bySecond : Integer.compare(pan, other.pan);
+        }
+    }
+}
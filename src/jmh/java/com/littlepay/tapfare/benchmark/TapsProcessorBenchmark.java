@@ -0,0 +1,131 @@
+package com.littlepay.tapfare.benchmark;
+
+import com.littlepay.tapfare.config.TripsCsvConfig;
+import com.littlepay.tapfare.config.TripsMatchingConfig;
+import com.littlepay.tapfare.config.TripsPipelineConfig;
+import com.littlepay.tapfare.config.TripsStoreConfig;
+import com.littlepay.tapfare.constant.CsvCompression;
+import com.littlepay.tapfare.constant.TapSortStrategy;
+import com.littlepay.tapfare.metrics.TapsProcessingMetrics;
+import com.littlepay.tapfare.model.TapsProcessingJob;
+import com.littlepay.tapfare.service.DefaultFareCalculator;
+import com.littlepay.tapfare.service.ProcessStateHandler;
+import com.littlepay.tapfare.service.TapsProcessor;
+import com.littlepay.tapfare.service.TripStore;
+import com.littlepay.tapfare.service.TripsCreationService;
+import com.littlepay.tapfare.utils.CsvUtils;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * End-to-end time of {@link TapsProcessor#processTaps(TapsProcessingJob)}: reading a tap file written by the
+ * {@link TapWorkloadGenerator}, matching it into trips and writing the trip file, with the default configuration of
+ * {@code application.yml}. Inputs above the streaming threshold, 256 MB or about 5M rows, go through the external
+ * sort. Every run is a single shot, and after it the rows processed per second and the peak heap of the run are
+ * printed; the peak heap is the sum of the peaks of the heap memory pools, an upper bound of the heap in use at once.
+ * The 100M rows input takes about 5.5 GB of disk and needs the pipelined run, which does not hold the trips in
+ * memory, and a larger heap than the default fork's, for example {@code -jvmArgsAppend -Xmx8g}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 3)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+public class TapsProcessorBenchmark {
+
+    @Param({"1000000", "10000000", "100000000"})
+    public long rows;
+
+    @Param({"100000"})
+    public int panCount;
+
+    @Param({"1.1"})
+    public double panSkew;
+
+    @Param({"false", "true"})
+    public boolean pipelined;
+
+    private Path directory;
+    private TapsProcessor tapsProcessor;
+    private TripsCreationService tripsCreationService;
+    private long runStart;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        BenchmarkData.initFareMatrix();
+        directory = Files.createTempDirectory("benchmark-processing-");
+        final Path input = directory.resolve("taps.csv");
+        TapWorkloadGenerator.write(input, new TapWorkloadGenerator.Settings(rows, panCount, BenchmarkData.STOP_COUNT,
+                4, 50, 7, TapWorkloadGenerator.Settings.DEFAULT.startDate(), 0.05, 0.02, panSkew, 42, input.toString()));
+
+        final TripsCsvConfig tripsCsvConfig = new TripsCsvConfig(input.toString(), directory.resolve("trips.csv").toString(),
+                CsvCompression.AUTO, 256L << 20, 500_000, TapSortStrategy.RADIX, true, 4, true, false, null, null, 1_000_000);
+        final TripsPipelineConfig tripsPipelineConfig = new TripsPipelineConfig();
+        tripsPipelineConfig.setEnabled(pipelined);
+        // stays disabled whatever the default: trips stored after a run would count towards the peak heap of the next one
+        final TripsStoreConfig tripsStoreConfig = new TripsStoreConfig();
+        tripsStoreConfig.setEnabled(false);
+        tripsCreationService = new TripsCreationService(new DefaultFareCalculator(), new TripsMatchingConfig());
+        tapsProcessor = new TapsProcessor(new CsvUtils(tripsCsvConfig), tripsCsvConfig, new ProcessStateHandler(),
+                tripsCreationService, new TapsProcessingMetrics(new SimpleMeterRegistry()), tripsPipelineConfig,
+                new TripStore(tripsStoreConfig));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        tripsCreationService.shutdown();
+        try (final Stream<Path> files = Files.walk(directory)) {
+            for (final Path file : files.sorted(Comparator.reverseOrder()).toList()) {
+                Files.delete(file);
+            }
+        }
+    }
+
+    @Setup(Level.Iteration)
+    public void startRun() {
+        System.gc();
+        heapPools().forEach(MemoryPoolMXBean::resetPeakUsage);
+        runStart = System.nanoTime();
+    }
+
+    @TearDown(Level.Iteration)
+    public void reportRun() {
+        final double seconds = (System.nanoTime() - runStart) / 1e9;
+        final long peakHeapBytes = heapPools().stream().mapToLong(pool -> pool.getPeakUsage().getUsed()).sum();
+        System.out.printf("%n%,d rows in %.1f s: %,.0f rows/s, peak heap %,d MB%n",
+                rows, seconds, rows / seconds, peakHeapBytes >> 20);
+    }
+
+    @Benchmark
+    public String processTaps() {
+        return tapsProcessor.processTaps(new TapsProcessingJob());
+    }
+
+    private static List<MemoryPoolMXBean> heapPools() {
+        return ManagementFactory.getMemoryPoolMXBeans().stream().filter(pool -> pool.getType() == MemoryType.HEAP).toList();
+    }
+}
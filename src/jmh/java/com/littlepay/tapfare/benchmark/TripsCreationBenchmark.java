@@ -0,0 +1,72 @@
+package com.littlepay.tapfare.benchmark;
+
+import com.littlepay.tapfare.config.TripsMatchingConfig;
+import com.littlepay.tapfare.model.Tap;
+import com.littlepay.tapfare.model.Trip;
+import com.littlepay.tapfare.service.DefaultFareCalculator;
+import com.littlepay.tapfare.service.TripsCreationService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of matching taps into trips, sequentially and across PAN shards, per generated input size and PAN skew.
+ * High skew concentrates taps on a few heavy PANs, which stresses both per-PAN matching and shard balance.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+public class TripsCreationBenchmark {
+
+    @Param({"100000"})
+    public int tapCount;
+
+    @Param({"10000"})
+    public int panCount;
+
+    @Param({"0.0", "1.1"})
+    public double panSkew;
+
+    private List<Tap> taps;
+    private TripsCreationService tripsCreationService;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        BenchmarkData.initFareMatrix();
+        taps = BenchmarkData.generateTaps(tapCount, panCount, panSkew, 42);
+        final TripsMatchingConfig tripsMatchingConfig = new TripsMatchingConfig();
+        tripsMatchingConfig.setShards(1);
+        tripsCreationService = new TripsCreationService(new DefaultFareCalculator(), tripsMatchingConfig);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        tripsCreationService.shutdown();
+    }
+
+    @Benchmark
+    public List<Trip> createTrips() {
+        return tripsCreationService.createTrips(taps);
+    }
+
+    @Benchmark
+    public List<Trip> createTripsInParallel() {
+        return tripsCreationService.createTripsInParallel(taps, Runtime.getRuntime().availableProcessors());
+    }
+}
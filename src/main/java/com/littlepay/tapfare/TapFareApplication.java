@@ -2,12 +2,20 @@ package com.littlepay.tapfare;
 
 import com.littlepay.tapfare.config.TripsCsvConfig;
 import com.littlepay.tapfare.config.TripsFareConfig;
+import com.littlepay.tapfare.config.TripsFilesConfig;
+import com.littlepay.tapfare.config.TripsMatchingConfig;
+import com.littlepay.tapfare.config.TripsOnlineConfig;
+import com.littlepay.tapfare.config.TripsPipelineConfig;
+import com.littlepay.tapfare.config.TripsStoreConfig;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 @SpringBootApplication
-@EnableConfigurationProperties({TripsCsvConfig.class, TripsFareConfig.class})
+@EnableConfigurationProperties({TripsCsvConfig.class, TripsFareConfig.class, TripsFilesConfig.class, TripsMatchingConfig.class, TripsOnlineConfig.class,
+        TripsPipelineConfig.class, TripsStoreConfig.class})
+@EnableScheduling
 public class TapFareApplication {
 
     public static void main(final String[] args) {
@@ -0,0 +1,37 @@
+package com.littlepay.tapfare.config;
+
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+@Configuration
+public class TapsJobExecutorConfig {
+
+    /**
+     * Executor running submitted tap processing jobs off the HTTP threads.
+     * Admission already guarantees a single running job, so one worker is enough.
+     */
+    @Bean
+    public ThreadPoolTaskExecutor tapsJobExecutor() {
+        final ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(1);
+        executor.setMaxPoolSize(1);
+        executor.setQueueCapacity(1);
+        executor.setThreadNamePrefix("taps-job-");
+        executor.setWaitForTasksToCompleteOnShutdown(false);
+        return executor;
+    }
+
+    /**
+     * Executor processing the tap files of a directory, bounded by {@link TripsFilesConfig#getWorkers()}.
+     */
+    @Bean
+    public ThreadPoolTaskExecutor tapFilesExecutor(final TripsFilesConfig tripsFilesConfig) {
+        final ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(Math.max(1, tripsFilesConfig.getWorkers()));
+        executor.setMaxPoolSize(Math.max(1, tripsFilesConfig.getWorkers()));
+        executor.setThreadNamePrefix("tap-files-");
+        executor.setWaitForTasksToCompleteOnShutdown(false);
+        return executor;
+    }
+}
@@ -1,5 +1,7 @@
 package com.littlepay.tapfare.config;
 
+import com.littlepay.tapfare.constant.CsvCompression;
+import com.littlepay.tapfare.constant.TapSortStrategy;
 import lombok.Data;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 
@@ -8,4 +10,57 @@ import org.springframework.boot.context.properties.ConfigurationProperties;
 public class TripsCsvConfig {
     private final String inputFilePath;
     private final String outputFilePath;
+    /**
+     * Compression of the tap and trip CSV files; by default files whose name ends with {@code .gz} are read and
+     * written gzip-compressed.
+     */
+    private final CsvCompression compression;
+    /**
+     * Input files larger than this many bytes are streamed through an external merge sort instead of being
+     * loaded and sorted in memory. Zero or a negative value disables streaming.
+     */
+    private final long streamingThresholdBytes;
+    /**
+     * Maximum number of taps sorted in memory at once when streaming; bounds the heap used by the external sort.
+     */
+    private final int sortChunkSize;
+    /**
+     * How taps read into memory, or into a chunk of the external sort, are put in date time order.
+     */
+    private final TapSortStrategy sortStrategy;
+    /**
+     * Reads in-memory inputs with the byte-level {@code FastTapCsvParser} instead of opencsv. Files with lines it
+     * does not support, such as quoted fields, are still read with opencsv.
+     */
+    private final boolean fastParserEnabled;
+    /**
+     * Number of line-aligned byte ranges the fast parser splits in-memory inputs into, each parsed on its own thread.
+     * One or less parses the whole file on the calling thread.
+     */
+    private final int parseParallelism;
+    /**
+     * Writes trips with the byte-level {@code FastTripCsvWriter} instead of opencsv.
+     */
+    private final boolean fastWriterEnabled;
+    /**
+     * Reads in-memory inputs into a columnar {@code TapBatch} with dictionary-encoded fields instead of a list of
+     * taps, trading some matching time for a much smaller heap footprint. Takes precedence over the fast parser.
+     */
+    private final boolean columnarEnabled;
+    /**
+     * Binary snapshot of the input taps. When set, in-memory inputs are read into a columnar batch: from the snapshot
+     * if it is at least as recent as the input file, otherwise from the input file, which is then snapshotted so that
+     * reprocessing the same taps skips CSV parsing.
+     */
+    private final String snapshotFilePath;
+    /**
+     * Checkpoint file of the processing run. When set, trips are written as they are matched and the progress of the
+     * run is checkpointed every {@link #checkpointIntervalTaps} taps, so that a run that failed or was cancelled
+     * resumes from its last checkpoint when processing the same, unchanged input again.
+     */
+    private final String checkpointFilePath;
+    /**
+     * Number of sorted input taps between two checkpoints.
+     */
+    private final int checkpointIntervalTaps;
 }
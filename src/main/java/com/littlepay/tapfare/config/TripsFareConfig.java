@@ -3,6 +3,7 @@ package com.littlepay.tapfare.config;
 import lombok.Data;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 
+import java.time.Duration;
 import java.util.Map;
 
 @Data
@@ -11,4 +12,14 @@ public class TripsFareConfig {
 
     private Map<String, Map<String, Double>> fare;
 
+    /**
+     * Optional CSV file of fares ({@code FromStopId,ToStopId,Fare}) replacing the configured fares when present.
+     */
+    private String fareFilePath;
+
+    /**
+     * How often the fare file is checked for changes and reloaded.
+     */
+    private Duration fareReloadInterval = Duration.ofSeconds(30);
+
 }
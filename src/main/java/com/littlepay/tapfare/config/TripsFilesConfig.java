@@ -0,0 +1,31 @@
+package com.littlepay.tapfare.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+@Data
+@ConfigurationProperties("trips.files")
+public class TripsFilesConfig {
+
+    /**
+     * Directory of tap CSV files, one or more per company, named {@code <companyId>.csv} or
+     * {@code <companyId>_<suffix>.csv}.
+     */
+    private String inputDirectory;
+
+    /**
+     * Directory the trip CSV of every input file is written to, as {@code <input file name>-trips.csv}.
+     */
+    private String outputDirectory;
+
+    /**
+     * Number of files processed concurrently across all companies.
+     */
+    private int workers = Runtime.getRuntime().availableProcessors();
+
+    /**
+     * Maximum number of files of the same company processed concurrently.
+     */
+    private int perCompanyConcurrency = 1;
+
+}
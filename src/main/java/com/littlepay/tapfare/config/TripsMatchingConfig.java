@@ -0,0 +1,33 @@
+package com.littlepay.tapfare.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+@Data
+@ConfigurationProperties("trips.matching")
+public class TripsMatchingConfig {
+
+    /**
+     * Number of PAN shards matched concurrently; one or less keeps matching on the calling thread.
+     */
+    private int shards = Runtime.getRuntime().availableProcessors();
+
+    /**
+     * Minimum number of taps before matching is spread across shards.
+     */
+    private int parallelThreshold = 100_000;
+
+    /**
+     * Finalises the open taps of a day into incomplete trips as soon as the sorted input reaches a later day,
+     * instead of holding every open tap until the end of the input. Only applies to the streaming and checkpointed
+     * runs, whose taps are sorted by date time.
+     */
+    private boolean evictClosedDays = true;
+
+    /**
+     * Drops taps repeating the ID of an earlier tap of the same run, such as taps resent by a validator, before
+     * they are matched into spurious trips.
+     */
+    private boolean dropDuplicateTaps = true;
+
+}
@@ -0,0 +1,27 @@
+package com.littlepay.tapfare.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+@Data
+@ConfigurationProperties("trips.online")
+public class TripsOnlineConfig {
+
+    /**
+     * Number of independently locked matchers taps are spread across by PAN; bounds contention between requests.
+     */
+    private int stripes = 64;
+
+    /**
+     * Time after midnight UTC a service day is still accepting late taps before its open taps become incomplete trips.
+     */
+    private Duration serviceDayGrace = Duration.ofHours(2);
+
+    /**
+     * Time between the end of one sweep closing the service days past their grace period and the start of the next.
+     */
+    private Duration sweepInterval = Duration.ofMinutes(1);
+
+}
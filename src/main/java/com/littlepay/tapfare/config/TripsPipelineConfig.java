@@ -0,0 +1,26 @@
+package com.littlepay.tapfare.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+@Data
+@ConfigurationProperties("trips.pipeline")
+public class TripsPipelineConfig {
+
+    /**
+     * Runs reading, matching and writing as concurrent stages connected by bounded queues, so trips are written while
+     * later taps are still being read, instead of running the stages one after the other.
+     */
+    private boolean enabled = false;
+
+    /**
+     * Number of taps or trips handed from one stage to the next at once.
+     */
+    private int batchSize = 4096;
+
+    /**
+     * Number of batches a queue between two stages holds before the stage feeding it blocks.
+     */
+    private int queueCapacity = 16;
+
+}
@@ -0,0 +1,37 @@
+package com.littlepay.tapfare.config;
+
+import com.littlepay.tapfare.service.OnlineTripsService;
+import com.littlepay.tapfare.utils.FareMatrixUtils;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.SchedulingConfigurer;
+import org.springframework.scheduling.config.ScheduledTaskRegistrar;
+
+/**
+ * Registers the periodic tasks of the application, each at the interval of its configuration properties.
+ */
+@Configuration
+public class TripsSchedulingConfig implements SchedulingConfigurer {
+
+    private final FareMatrixUtils fareMatrixUtils;
+    private final OnlineTripsService onlineTripsService;
+    private final TripsFareConfig tripsFareConfig;
+    private final TripsOnlineConfig tripsOnlineConfig;
+
+    public TripsSchedulingConfig(final FareMatrixUtils fareMatrixUtils, final OnlineTripsService onlineTripsService,
+                                 final TripsFareConfig tripsFareConfig, final TripsOnlineConfig tripsOnlineConfig) {
+        this.fareMatrixUtils = fareMatrixUtils;
+        this.onlineTripsService = onlineTripsService;
+        this.tripsFareConfig = tripsFareConfig;
+        this.tripsOnlineConfig = tripsOnlineConfig;
+    }
+
+    /**
+     * Reloads the fare file every {@link TripsFareConfig#getFareReloadInterval()} and closes the service days of
+     * online matching every {@link TripsOnlineConfig#getSweepInterval()}.
+     */
+    @Override
+    public void configureTasks(final ScheduledTaskRegistrar taskRegistrar) {
+        taskRegistrar.addFixedDelayTask(fareMatrixUtils::reloadIfChanged, tripsFareConfig.getFareReloadInterval());
+        taskRegistrar.addFixedDelayTask(onlineTripsService::sweepClosedServiceDays, tripsOnlineConfig.getSweepInterval());
+    }
+}
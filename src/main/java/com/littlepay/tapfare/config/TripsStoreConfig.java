@@ -0,0 +1,27 @@
+package com.littlepay.tapfare.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+@Data
+@ConfigurationProperties("trips.store")
+public class TripsStoreConfig {
+
+    /**
+     * Keeps the trips of the latest successful processing run in memory, indexed for the {@code /trips} queries.
+     * Disabled by default: the stored trips live on the heap, so enabling the store gives up the bounded memory of
+     * streamed runs, which then grows with the trips of the run up to {@link #maxTrips}.
+     */
+    private boolean enabled = false;
+
+    /**
+     * Maximum number of trips kept from a run; a run producing more keeps the first ones and is marked incomplete.
+     */
+    private int maxTrips = 1_000_000;
+
+    /**
+     * Maximum number of trips returned by a single query page.
+     */
+    private int maxPageSize = 1_000;
+
+}
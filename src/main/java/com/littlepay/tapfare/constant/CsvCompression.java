@@ -0,0 +1,29 @@
+package com.littlepay.tapfare.constant;
+
+import java.nio.file.Path;
+
+/**
+ * Compression of tap and trip CSV files.
+ */
+public enum CsvCompression {
+    /**
+     * Files whose name ends with {@code .gz} are gzip-compressed, others are not.
+     */
+    AUTO,
+    NONE,
+    GZIP;
+
+    private static final String GZIP_EXTENSION = ".gz";
+
+    /**
+     * @param file a tap or trip CSV file
+     * @return whether the file is read or written gzip-compressed under this setting
+     */
+    public boolean isGzip(final Path file) {
+        return switch (this) {
+            case AUTO -> file.getFileName().toString().endsWith(GZIP_EXTENSION);
+            case NONE -> false;
+            case GZIP -> true;
+        };
+    }
+}
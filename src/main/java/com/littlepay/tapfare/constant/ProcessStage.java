@@ -0,0 +1,5 @@
+package com.littlepay.tapfare.constant;
+
+public enum ProcessStage {
+    QUEUED, READING, MATCHING, WRITING, DONE
+}
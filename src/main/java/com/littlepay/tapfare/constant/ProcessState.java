@@ -1,5 +1,5 @@
 package com.littlepay.tapfare.constant;
 
 public enum ProcessState {
-    NOT_STARTED, STARTED, COMPLETED, FAILED
+    NOT_STARTED, STARTED, COMPLETED, FAILED, CANCELLED
 }
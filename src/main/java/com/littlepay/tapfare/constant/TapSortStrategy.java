@@ -0,0 +1,17 @@
+package com.littlepay.tapfare.constant;
+
+/**
+ * How taps read into memory are put in date time order. Both strategies are stable and produce the same order.
+ */
+public enum TapSortStrategy {
+    /**
+     * Sorts the taps by comparing their date times.
+     */
+    COMPARISON,
+    /**
+     * Sorts the taps with an LSD radix sort over their epoch seconds packed with their position into primitive keys,
+     * in linear time and without comparing date time objects. Falls back to {@link #COMPARISON} for small inputs and
+     * for taps whose date times cannot be packed.
+     */
+    RADIX
+}
@@ -0,0 +1,53 @@
+package com.littlepay.tapfare.controller;
+
+import com.littlepay.tapfare.utils.FareMatrixUtils;
+import com.littlepay.tapfare.utils.FareSnapshot;
+import lombok.RequiredArgsConstructor;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.PutMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.Map;
+
+@RestController
+@RequestMapping("/fares")
+@RequiredArgsConstructor
+public class FaresController {
+
+    private final FareMatrixUtils fareMatrixUtils;
+
+
+    /**
+     * Returns the current fare snapshot.
+     *
+     * @return the version, origin and fares of the snapshot used by new processing runs.
+     */
+    @GetMapping
+    public FareSnapshot getFares() {
+        return FareMatrixUtils.getSnapshot();
+    }
+
+    /**
+     * Replaces the fares. Runs already started keep the fares they started with.
+     *
+     * @param fares the fares keyed by starting stop and then by destination stop, each applying in both directions.
+     * @return the published snapshot.
+     */
+    @PutMapping
+    public FareSnapshot replaceFares(@RequestBody final Map<String, Map<String, Double>> fares) {
+        return fareMatrixUtils.publish(fares, "api");
+    }
+
+    /**
+     * Reloads the fares from the configured fare file.
+     *
+     * @return the published snapshot.
+     */
+    @PostMapping("reload")
+    public FareSnapshot reloadFares() {
+        return fareMatrixUtils.reloadFromFile();
+    }
+}
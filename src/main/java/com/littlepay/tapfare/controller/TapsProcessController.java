@@ -1,31 +1,90 @@
 package com.littlepay.tapfare.controller;
 
-import com.littlepay.tapfare.service.TapsProcessor;
+import com.littlepay.tapfare.model.TapsIngestRequest;
+import com.littlepay.tapfare.model.TapsJobStatus;
+import com.littlepay.tapfare.model.Trip;
+import com.littlepay.tapfare.service.OnlineTripsService;
+import com.littlepay.tapfare.service.TapsJobService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.ResponseStatus;
 import org.springframework.web.bind.annotation.RestController;
 
+import java.util.List;
+
 @RestController
 @RequestMapping("/taps")
 @RequiredArgsConstructor
 @Slf4j
 public class TapsProcessController {
 
-    private final TapsProcessor tapsProcessor;
+    private final TapsJobService tapsJobService;
+    private final OnlineTripsService onlineTripsService;
 
 
     /**
-     * Initiates the processing of tap data and returns a message indicating the outcome.
+     * Submits the processing of tap data as a background job and returns without waiting for it.
      *
-     * @return A string message indicating the output file path where the results were saved.
+     * @return the status of the submitted job, whose ID can be polled at {@code /taps/jobs/{id}}.
      */
-    @ResponseStatus(HttpStatus.CREATED)
+    @ResponseStatus(HttpStatus.ACCEPTED)
     @PostMapping("process")
-    public String processTaps() {
-        return tapsProcessor.processTaps();
+    public TapsJobStatus processTaps() {
+        return tapsJobService.submit();
+    }
+
+    /**
+     * Submits the processing of every tap file of the configured input directory, one trip file per tap file, as a
+     * background job and returns without waiting for it.
+     *
+     * @return the status of the submitted job, whose ID can be polled at {@code /taps/jobs/{id}} for the result of
+     * every file.
+     */
+    @ResponseStatus(HttpStatus.ACCEPTED)
+    @PostMapping("process/files")
+    public TapsJobStatus processTapFiles() {
+        return tapsJobService.submitFiles();
+    }
+
+    /**
+     * Returns the state, stage and progress of a tap processing job.
+     *
+     * @param jobId the ID returned on submission.
+     * @return the current status of the job.
+     */
+    @GetMapping("jobs/{jobId}")
+    public TapsJobStatus getJobStatus(@PathVariable final String jobId) {
+        return tapsJobService.getStatus(jobId);
+    }
+
+    /**
+     * Requests cancellation of a running tap processing job; the job stops at its next cancellation check.
+     *
+     * @param jobId the ID returned on submission.
+     * @return the status of the job after the cancellation request.
+     */
+    @ResponseStatus(HttpStatus.ACCEPTED)
+    @DeleteMapping("jobs/{jobId}")
+    public TapsJobStatus cancelJob(@PathVariable final String jobId) {
+        return tapsJobService.cancel(jobId);
+    }
+
+    /**
+     * Ingests taps sent by validators and matches them straight away against the open taps of their PANs.
+     * Accepts a single tap or an array of taps.
+     *
+     * @param request the taps to ingest, with {@code localDateTime} formatted as {@code dd-MM-yyyy HH:mm:ss}.
+     * @return the completed and cancelled trips closed by these taps.
+     */
+    @PostMapping
+    public List<Trip> ingestTaps(@RequestBody final TapsIngestRequest request) {
+        return onlineTripsService.ingest(request.taps());
     }
 }
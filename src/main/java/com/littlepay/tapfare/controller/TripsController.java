@@ -0,0 +1,67 @@
+package com.littlepay.tapfare.controller;
+
+import com.littlepay.tapfare.model.TripStoreStats;
+import com.littlepay.tapfare.model.TripsPage;
+import com.littlepay.tapfare.model.TripsReport;
+import com.littlepay.tapfare.service.TripStore;
+import com.littlepay.tapfare.service.TripsCreationService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.time.LocalDate;
+
+@RestController
+@RequestMapping("/trips")
+@RequiredArgsConstructor
+public class TripsController {
+
+    private final TripStore tripStore;
+    private final TripsCreationService tripsCreationService;
+
+
+    /**
+     * Finds the trips of the latest processing run matching every given criterion.
+     *
+     * @param pan       the PAN of the trips.
+     * @param busId     the bus of the trips.
+     * @param companyId the company of the trips.
+     * @param date      the service date of the trips, formatted as {@code yyyy-MM-dd}.
+     * @param page      the zero-based page to return.
+     * @param size      the number of trips per page.
+     * @return the requested page of matching trips, in output order.
+     */
+    @GetMapping
+    public TripsPage findTrips(@RequestParam(required = false) final String pan,
+                               @RequestParam(required = false) final String busId,
+                               @RequestParam(required = false) final String companyId,
+                               @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) final LocalDate date,
+                               @RequestParam(defaultValue = "0") final int page,
+                               @RequestParam(defaultValue = "100") final int size) {
+        return tripStore.findTrips(pan, busId, companyId, date, page, size);
+    }
+
+    /**
+     * Returns how many trips of the latest processing run are kept and the memory they retain.
+     *
+     * @return the statistics of the kept trips.
+     */
+    @GetMapping("stats")
+    public TripStoreStats getStats() {
+        return tripStore.getStats();
+    }
+
+    /**
+     * Returns the ridership and revenue of the latest matching run, per trip status overall and per company, bus,
+     * boarding stop and service date.
+     *
+     * @return the report of the latest run, empty before any run completed.
+     */
+    @GetMapping("report")
+    public TripsReport getReport() {
+        return tripsCreationService.getLatestReport();
+    }
+}
@@ -0,0 +1,11 @@
+package com.littlepay.tapfare.exceptions;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+@ResponseStatus(HttpStatus.BAD_REQUEST)
+public class InvalidTapException extends RuntimeException {
+    public InvalidTapException(final String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,11 @@
+package com.littlepay.tapfare.exceptions;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+@ResponseStatus(HttpStatus.NOT_FOUND)
+public class JobNotFoundException extends RuntimeException {
+    public JobNotFoundException(final String message) {
+        super(message);
+    }
+}
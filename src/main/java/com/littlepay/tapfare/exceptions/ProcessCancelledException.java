@@ -0,0 +1,7 @@
+package com.littlepay.tapfare.exceptions;
+
+public class ProcessCancelledException extends RuntimeException {
+    public ProcessCancelledException(final String message) {
+        super(message);
+    }
+}
@@ -1,5 +1,9 @@
 package com.littlepay.tapfare.exceptions;
 
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+@ResponseStatus(HttpStatus.CONFLICT)
 public class ProcessStartedException extends RuntimeException {
     public ProcessStartedException(final String message) {
         super(message);
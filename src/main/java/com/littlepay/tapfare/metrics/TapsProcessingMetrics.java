@@ -0,0 +1,96 @@
+package com.littlepay.tapfare.metrics;
+
+import com.littlepay.tapfare.constant.ProcessStage;
+import com.littlepay.tapfare.constant.ProcessState;
+import com.littlepay.tapfare.constant.TripStatus;
+import com.littlepay.tapfare.model.Trip;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Component;
+
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Micrometer meters for the tap processing pipeline, exposed through the Actuator metrics and Prometheus endpoints.
+ * <ul>
+ *     <li>{@code tapfare.processing.stage} timer, tagged by {@code stage} (reading, matching, writing)</li>
+ *     <li>{@code tapfare.processing.run} timer, tagged by the final {@code state} of the run</li>
+ *     <li>{@code tapfare.taps.read} counter</li>
+ *     <li>{@code tapfare.taps.ingested} counter, for taps received through the online ingestion endpoint</li>
+ *     <li>{@code tapfare.trips.created} counter, tagged by trip {@code status}</li>
+ * </ul>
+ * Meters are created once up front so that recording on the processing path is a plain lookup.
+ */
+@Component
+public class TapsProcessingMetrics {
+
+    private final MeterRegistry meterRegistry;
+    private final Map<ProcessStage, Timer> stageTimers = new EnumMap<>(ProcessStage.class);
+    private final Map<TripStatus, Counter> tripCounters = new EnumMap<>(TripStatus.class);
+    private final Counter tapsReadCounter;
+    private final Counter tapsIngestedCounter;
+
+    public TapsProcessingMetrics(final MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+        for (final ProcessStage stage : List.of(ProcessStage.READING, ProcessStage.MATCHING, ProcessStage.WRITING)) {
+            stageTimers.put(stage, Timer.builder("tapfare.processing.stage")
+                    .description("Time spent in each stage of tap processing")
+                    .tag("stage", stage.name().toLowerCase(Locale.ROOT))
+                    .register(meterRegistry));
+        }
+        for (final TripStatus status : TripStatus.values()) {
+            tripCounters.put(status, Counter.builder("tapfare.trips.created")
+                    .description("Trips created from taps")
+                    .tag("status", status.name())
+                    .register(meterRegistry));
+        }
+        this.tapsReadCounter = Counter.builder("tapfare.taps.read")
+                .description("Taps read from input files")
+                .register(meterRegistry);
+        this.tapsIngestedCounter = Counter.builder("tapfare.taps.ingested")
+                .description("Taps received through online ingestion")
+                .register(meterRegistry);
+    }
+
+    public void recordStage(final ProcessStage stage, final long durationNanos) {
+        final Timer timer = stageTimers.get(stage);
+        if (timer != null) {
+            timer.record(durationNanos, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    public void recordRun(final ProcessState state, final long durationNanos) {
+        Timer.builder("tapfare.processing.run")
+                .description("Time spent in a whole tap processing run")
+                .tag("state", state.name())
+                .register(meterRegistry)
+                .record(durationNanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void recordTapsRead(final long taps) {
+        tapsReadCounter.increment(taps);
+    }
+
+    public void recordTapsIngested(final long taps) {
+        tapsIngestedCounter.increment(taps);
+    }
+
+    public void recordTrip(final Trip trip) {
+        tripCounters.get(trip.getStatus()).increment();
+    }
+
+    public void recordTrips(final List<Trip> trips) {
+        final long[] countsByStatus = new long[TripStatus.values().length];
+        for (final Trip trip : trips) {
+            countsByStatus[trip.getStatus().ordinal()]++;
+        }
+        for (final TripStatus status : TripStatus.values()) {
+            tripCounters.get(status).increment(countsByStatus[status.ordinal()]);
+        }
+    }
+}
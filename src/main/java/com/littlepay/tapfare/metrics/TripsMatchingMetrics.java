@@ -0,0 +1,47 @@
+package com.littlepay.tapfare.metrics;
+
+import com.littlepay.tapfare.service.OnlineTripsService;
+import com.littlepay.tapfare.service.TripsCreationService;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+
+/**
+ * Gauges on the open matching state of {@link TripsCreationService} and {@link OnlineTripsService}:
+ * {@code tapfare.matcher.open.taps} and {@code tapfare.online.open.taps}, tagged by tap {@code type}, report how
+ * many taps are currently waiting for their counterpart in running matches and in online matching respectively.
+ * The {@code tapfare.taps.duplicates} counter reports how many taps were dropped for repeating the ID of an earlier tap.
+ */
+@Component
+@RequiredArgsConstructor
+public class TripsMatchingMetrics implements MeterBinder {
+
+    private final TripsCreationService tripsCreationService;
+    private final OnlineTripsService onlineTripsService;
+
+    @Override
+    public void bindTo(final MeterRegistry registry) {
+        Gauge.builder("tapfare.matcher.open.taps", tripsCreationService, TripsCreationService::getOpenTapOnCount)
+                .description("Taps waiting for their counterpart in running matches")
+                .tag("type", "ON")
+                .register(registry);
+        Gauge.builder("tapfare.matcher.open.taps", tripsCreationService, TripsCreationService::getOpenTapOffCount)
+                .description("Taps waiting for their counterpart in running matches")
+                .tag("type", "OFF")
+                .register(registry);
+        Gauge.builder("tapfare.online.open.taps", onlineTripsService, OnlineTripsService::getOpenTapOnCount)
+                .description("Taps waiting for their counterpart in online matching")
+                .tag("type", "ON")
+                .register(registry);
+        Gauge.builder("tapfare.online.open.taps", onlineTripsService, OnlineTripsService::getOpenTapOffCount)
+                .description("Taps waiting for their counterpart in online matching")
+                .tag("type", "OFF")
+                .register(registry);
+        FunctionCounter.builder("tapfare.taps.duplicates", tripsCreationService, TripsCreationService::getDuplicateTapsSkipped)
+                .description("Taps dropped before matching for repeating the ID of an earlier tap")
+                .register(registry);
+    }
+}
@@ -1,15 +1,19 @@
 package com.littlepay.tapfare.model;
 
 import com.littlepay.tapfare.constant.TapType;
+import com.fasterxml.jackson.annotation.JsonFormat;
 import lombok.AllArgsConstructor;
 import lombok.Data;
+import lombok.NoArgsConstructor;
 
 import java.time.LocalDateTime;
 
 @Data
 @AllArgsConstructor
+@NoArgsConstructor
 public class Tap {
     private long id;
+    @JsonFormat(pattern = "dd-MM-yyyy HH:mm:ss")
     private LocalDateTime localDateTime;
     private TapType tapType;
     private String stopId;
@@ -0,0 +1,366 @@
+package com.littlepay.tapfare.model;
+
+import com.littlepay.tapfare.constant.TapType;
+import com.littlepay.tapfare.utils.PanCodec;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+/**
+ * Columnar, struct-of-arrays store of taps. Every tap takes a row across primitive columns instead of a
+ * {@link Tap} object with its own date time and strings:
+ * <ul>
+ *     <li>{@code long[]} tap IDs and UTC epoch seconds (date times are kept to the second)</li>
+ *     <li>{@code byte[]} tap types</li>
+ *     <li>{@code int[]} dictionary codes for stop, company and bus IDs, each value stored once per batch</li>
+ *     <li>{@code long[]} PAN keys: PANs packed by {@link PanCodec}, or a negative dictionary code otherwise</li>
+ * </ul>
+ * That is 37 bytes per tap plus the dictionaries, against several hundred for a list of {@code Tap}s.
+ * {@link #iterator()} hands rows out as transient {@code Tap} views for matching.
+ * A batch is not thread-safe.
+ */
+public class TapBatch implements Iterable<Tap> {
+
+    public static final int NULL_CODE = -1;
+    private static final long NULL_PAN = Long.MIN_VALUE;
+    private static final long NULL_DATE_TIME = Long.MIN_VALUE;
+    private static final byte NULL_TAP_TYPE = -1;
+    private static final TapType[] TAP_TYPES = TapType.values();
+
+    private final StringDictionary stops = new StringDictionary();
+    private final StringDictionary companies = new StringDictionary();
+    private final StringDictionary buses = new StringDictionary();
+    private final StringDictionary unpackablePans = new StringDictionary();
+    private long[] ids;
+    private long[] epochSeconds;
+    private byte[] tapTypes;
+    private int[] stopCodes;
+    private int[] companyCodes;
+    private int[] busCodes;
+    private long[] panKeys;
+    private int size;
+
+    public TapBatch() {
+        this(1024);
+    }
+
+    public TapBatch(final int initialCapacity) {
+        final int capacity = Math.max(16, initialCapacity);
+        ids = new long[capacity];
+        epochSeconds = new long[capacity];
+        tapTypes = new byte[capacity];
+        stopCodes = new int[capacity];
+        companyCodes = new int[capacity];
+        busCodes = new int[capacity];
+        panKeys = new long[capacity];
+    }
+
+    /**
+     * Appends a tap, encoding its fields into the columns.
+     *
+     * @param tap the tap to append
+     */
+    public void add(final Tap tap) {
+        add(tap.getId(),
+                tap.getLocalDateTime() != null ? tap.getLocalDateTime().toEpochSecond(ZoneOffset.UTC) : NULL_DATE_TIME,
+                tap.getTapType(),
+                stopCode(tap.getStopId()),
+                companyCode(tap.getCompanyId()),
+                busCode(tap.getBusId()),
+                panKey(tap.getPan()));
+    }
+
+    /**
+     * Appends a tap whose fields are already encoded, as done by parsers filling the batch straight from bytes.
+     *
+     * @param id          the tap ID
+     * @param epochSecond the UTC epoch second of the tap
+     * @param tapType     the tap type
+     * @param stopCode    the code of the stop ID, from {@link #stopCode(String)}
+     * @param companyCode the code of the company ID, from {@link #companyCode(String)}
+     * @param busCode     the code of the bus ID, from {@link #busCode(String)}
+     * @param panKey      the PAN key, from {@link PanCodec#pack} or {@link #panKey(String)}
+     */
+    public void add(final long id, final long epochSecond, final TapType tapType, final int stopCode,
+                    final int companyCode, final int busCode, final long panKey) {
+        if (size == ids.length) {
+            grow();
+        }
+        ids[size] = id;
+        epochSeconds[size] = epochSecond;
+        tapTypes[size] = tapType != null ? (byte) tapType.ordinal() : NULL_TAP_TYPE;
+        stopCodes[size] = stopCode;
+        companyCodes[size] = companyCode;
+        busCodes[size] = busCode;
+        panKeys[size] = panKey;
+        size++;
+    }
+
+    public int stopCode(final String stopId) {
+        return stops.encode(stopId);
+    }
+
+    public int companyCode(final String companyId) {
+        return companies.encode(companyId);
+    }
+
+    public int busCode(final String busId) {
+        return buses.encode(busId);
+    }
+
+    /**
+     * @param pan the PAN to encode
+     * @return the packed PAN, or a negative dictionary code for PANs {@link PanCodec} cannot pack
+     */
+    public long panKey(final String pan) {
+        if (pan == null) {
+            return NULL_PAN;
+        }
+        final long packed = PanCodec.pack(pan);
+        return packed != PanCodec.NOT_PACKABLE ? packed : ~(long) unpackablePans.encode(pan);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public long getId(final int row) {
+        return ids[row];
+    }
+
+    public long getEpochSecond(final int row) {
+        return epochSeconds[row];
+    }
+
+    public TapType getTapType(final int row) {
+        return tapTypes[row] != NULL_TAP_TYPE ? TAP_TYPES[tapTypes[row]] : null;
+    }
+
+    public int getStopCode(final int row) {
+        return stopCodes[row];
+    }
+
+    public int getCompanyCode(final int row) {
+        return companyCodes[row];
+    }
+
+    public int getBusCode(final int row) {
+        return busCodes[row];
+    }
+
+    public String getStopId(final int row) {
+        return stops.decode(stopCodes[row]);
+    }
+
+    public String getCompanyId(final int row) {
+        return companies.decode(companyCodes[row]);
+    }
+
+    public String getBusId(final int row) {
+        return buses.decode(busCodes[row]);
+    }
+
+    /**
+     * @return the distinct stop IDs of the batch, indexed by their code
+     */
+    public List<String> getStopDictionary() {
+        return stops.values();
+    }
+
+    /**
+     * @return the distinct company IDs of the batch, indexed by their code
+     */
+    public List<String> getCompanyDictionary() {
+        return companies.values();
+    }
+
+    /**
+     * @return the distinct bus IDs of the batch, indexed by their code
+     */
+    public List<String> getBusDictionary() {
+        return buses.values();
+    }
+
+    /**
+     * @return the distinct PANs that could not be packed, indexed by the complement of their negative PAN key
+     */
+    public List<String> getUnpackablePanDictionary() {
+        return unpackablePans.values();
+    }
+
+    public long getPanKey(final int row) {
+        return panKeys[row];
+    }
+
+    public String getPan(final int row) {
+        final long key = panKeys[row];
+        if (key == NULL_PAN) {
+            return null;
+        }
+        return PanCodec.isPacked(key) ? PanCodec.unpack(key) : unpackablePans.decode((int) ~key);
+    }
+
+    public LocalDateTime getLocalDateTime(final int row) {
+        final long epochSecond = epochSeconds[row];
+        return epochSecond != NULL_DATE_TIME ? LocalDateTime.ofEpochSecond(epochSecond, 0, ZoneOffset.UTC) : null;
+    }
+
+    /**
+     * @param row the row of the tap
+     * @return a new {@link Tap} holding the decoded fields of the row
+     */
+    public Tap toTap(final int row) {
+        return new Tap(ids[row], getLocalDateTime(row), getTapType(row), getStopId(row), getCompanyId(row), getBusId(row), getPan(row));
+    }
+
+    /**
+     * Stably sorts the rows by date time, keeping rows with equal date times in insertion order, exactly like
+     * sorting the equivalent list of taps by {@link Tap#getLocalDateTime()}.
+     */
+    public void sortByDateTime() {
+        if (isSortedByDateTime()) {
+            return;
+        }
+        final int[] order = sortedOrder();
+        ids = permute(ids, order);
+        epochSeconds = permute(epochSeconds, order);
+        panKeys = permute(panKeys, order);
+        stopCodes = permute(stopCodes, order);
+        companyCodes = permute(companyCodes, order);
+        busCodes = permute(busCodes, order);
+        final byte[] sortedTapTypes = new byte[tapTypes.length];
+        for (int i = 0; i < size; i++) {
+            sortedTapTypes[i] = tapTypes[order[i]];
+        }
+        tapTypes = sortedTapTypes;
+    }
+
+    @Override
+    public Iterator<Tap> iterator() {
+        return new Iterator<>() {
+            private int row;
+
+            @Override
+            public boolean hasNext() {
+                return row < size;
+            }
+
+            @Override
+            public Tap next() {
+                if (row >= size) {
+                    throw new NoSuchElementException("No more taps in batch");
+                }
+                return toTap(row++);
+            }
+        };
+    }
+
+    /**
+     * @return whether the rows are in date time order
+     */
+    public boolean isSortedByDateTime() {
+        for (int i = 1; i < size; i++) {
+            if (epochSeconds[i] < epochSeconds[i - 1]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Computes the stable sorted order of the rows. The epoch second offset and the row are combined into a single
+     * {@code long} key when they fit, so the sort runs over primitives; otherwise rows are sorted as boxed indexes.
+     */
+    private int[] sortedOrder() {
+        long min = Long.MAX_VALUE;
+        long max = Long.MIN_VALUE;
+        for (int i = 0; i < size; i++) {
+            min = Math.min(min, epochSeconds[i]);
+            max = Math.max(max, epochSeconds[i]);
+        }
+        final int[] order = new int[size];
+        final long range = max - min;
+        if (min != NULL_DATE_TIME && range >= 0 && range < Long.MAX_VALUE / size - 1) {
+            final long[] keys = new long[size];
+            for (int i = 0; i < size; i++) {
+                keys[i] = (epochSeconds[i] - min) * size + i;
+            }
+            Arrays.sort(keys);
+            for (int i = 0; i < size; i++) {
+                order[i] = (int) (keys[i] % size);
+            }
+        } else {
+            final Integer[] rows = new Integer[size];
+            Arrays.setAll(rows, i -> i);
+            Arrays.sort(rows, Comparator.comparingLong(row -> epochSeconds[row]));
+            Arrays.setAll(order, i -> rows[i]);
+        }
+        return order;
+    }
+
+    private long[] permute(final long[] column, final int[] order) {
+        final long[] sorted = new long[column.length];
+        for (int i = 0; i < size; i++) {
+            sorted[i] = column[order[i]];
+        }
+        return sorted;
+    }
+
+    private int[] permute(final int[] column, final int[] order) {
+        final int[] sorted = new int[column.length];
+        for (int i = 0; i < size; i++) {
+            sorted[i] = column[order[i]];
+        }
+        return sorted;
+    }
+
+    private void grow() {
+        final int capacity = ids.length + (ids.length >> 1);
+        ids = Arrays.copyOf(ids, capacity);
+        epochSeconds = Arrays.copyOf(epochSeconds, capacity);
+        tapTypes = Arrays.copyOf(tapTypes, capacity);
+        stopCodes = Arrays.copyOf(stopCodes, capacity);
+        companyCodes = Arrays.copyOf(companyCodes, capacity);
+        busCodes = Arrays.copyOf(busCodes, capacity);
+        panKeys = Arrays.copyOf(panKeys, capacity);
+    }
+
+    /**
+     * Assigns dense codes to distinct strings in order of first appearance.
+     */
+    private static final class StringDictionary {
+
+        private final Map<String, Integer> codes = new HashMap<>();
+        private final List<String> values = new ArrayList<>();
+
+        private int encode(final String value) {
+            if (value == null) {
+                return NULL_CODE;
+            }
+            final Integer code = codes.get(value);
+            if (code != null) {
+                return code;
+            }
+            codes.put(value, values.size());
+            values.add(value);
+            return values.size() - 1;
+        }
+
+        private String decode(final int code) {
+            return code != NULL_CODE ? values.get(code) : null;
+        }
+
+        private List<String> values() {
+            return Collections.unmodifiableList(values);
+        }
+    }
+}
@@ -0,0 +1,17 @@
+package com.littlepay.tapfare.model;
+
+import com.littlepay.tapfare.constant.ProcessState;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+@Data
+@AllArgsConstructor
+public class TapFileResult {
+    private String companyId;
+    private String inputFile;
+    private String outputFile;
+    private ProcessState state;
+    private long tapsRead;
+    private long tripsEmitted;
+    private String message;
+}
@@ -0,0 +1,23 @@
+package com.littlepay.tapfare.model;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+
+import java.util.List;
+
+/**
+ * Taps sent by validators to be ingested, in the order they were sent. The request body is either a JSON array of
+ * taps or a single tap, which is read as an array of one.
+ *
+ * @param taps the taps to ingest
+ */
+public record TapsIngestRequest(List<Tap> taps) {
+
+    @JsonCreator(mode = JsonCreator.Mode.DELEGATING)
+    public TapsIngestRequest {
+    }
+
+    @JsonCreator(mode = JsonCreator.Mode.DELEGATING)
+    public static TapsIngestRequest of(final Tap tap) {
+        return new TapsIngestRequest(List.of(tap));
+    }
+}
@@ -0,0 +1,24 @@
+package com.littlepay.tapfare.model;
+
+import com.littlepay.tapfare.constant.ProcessStage;
+import com.littlepay.tapfare.constant.ProcessState;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.time.Instant;
+import java.util.List;
+
+@Data
+@AllArgsConstructor
+public class TapsJobStatus {
+    private String jobId;
+    private ProcessState state;
+    private ProcessStage stage;
+    private long tapsRead;
+    private long tripsEmitted;
+    private boolean cancelRequested;
+    private String message;
+    private Instant submittedAt;
+    private Instant finishedAt;
+    private List<TapFileResult> files;
+}
@@ -0,0 +1,70 @@
+package com.littlepay.tapfare.model;
+
+import com.littlepay.tapfare.constant.ProcessStage;
+import com.littlepay.tapfare.constant.ProcessState;
+import com.littlepay.tapfare.exceptions.ProcessCancelledException;
+import lombok.Getter;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A single run of tap processing, tracking its state, current stage and progress counters.
+ * The job is updated by the processing thread and read concurrently by status requests;
+ * cancellation is cooperative: {@link #cancel()} only raises a flag that the processing thread
+ * checks through {@link #throwIfCancelled()} between units of work. A job processing several tap files also
+ * reports the result of each of them once they are all done.
+ */
+@Getter
+public class TapsProcessingJob {
+
+    private final String id = UUID.randomUUID().toString();
+    private final Instant submittedAt = Instant.now();
+    private final AtomicLong tapsRead = new AtomicLong();
+    private final AtomicLong tripsEmitted = new AtomicLong();
+    private volatile ProcessState state = ProcessState.STARTED;
+    private volatile ProcessStage stage = ProcessStage.QUEUED;
+    private volatile boolean cancelRequested;
+    private volatile String message;
+    private volatile Instant finishedAt;
+    private volatile List<TapFileResult> fileResults = List.of();
+
+    public void moveToStage(final ProcessStage newStage) {
+        this.stage = newStage;
+    }
+
+    public void cancel() {
+        this.cancelRequested = true;
+    }
+
+    /**
+     * @throws ProcessCancelledException if cancellation of this job was requested
+     */
+    public void throwIfCancelled() {
+        if (cancelRequested) {
+            throw new ProcessCancelledException("Taps processing job %s was cancelled.".formatted(id));
+        }
+    }
+
+    public void recordFileResults(final List<TapFileResult> results) {
+        this.fileResults = List.copyOf(results);
+    }
+
+    public void finish(final ProcessState finalState, final String finalMessage) {
+        this.message = finalMessage;
+        this.finishedAt = Instant.now();
+        this.stage = ProcessStage.DONE;
+        this.state = finalState;
+    }
+
+    public boolean isFinished() {
+        return state != ProcessState.STARTED;
+    }
+
+    public TapsJobStatus toStatus() {
+        return new TapsJobStatus(id, state, stage, tapsRead.get(), tripsEmitted.get(), cancelRequested, message,
+                submittedAt, finishedAt, fileResults);
+    }
+}
@@ -0,0 +1,20 @@
+package com.littlepay.tapfare.model;
+
+import java.time.Instant;
+
+/**
+ * Size of the trips kept from the latest processing run.
+ *
+ * @param jobId          the ID of the job that produced the trips, null before any run completed
+ * @param loadedAt       when the trips were published
+ * @param complete       false if the run produced trips that were not kept
+ * @param trips          the number of trips kept
+ * @param pans           the number of distinct PANs
+ * @param buses          the number of distinct buses
+ * @param companies      the number of distinct companies
+ * @param dates          the number of distinct service dates
+ * @param estimatedBytes the approximate heap retained by the trips and their indexes
+ */
+public record TripStoreStats(String jobId, Instant loadedAt, boolean complete, long trips, int pans, int buses,
+                             int companies, int dates, long estimatedBytes) {
+}
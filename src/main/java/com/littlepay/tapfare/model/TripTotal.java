@@ -0,0 +1,12 @@
+package com.littlepay.tapfare.model;
+
+import java.math.BigDecimal;
+
+/**
+ * Ridership and revenue of a group of trips.
+ *
+ * @param trips   the number of trips
+ * @param revenue the sum of their charge amounts
+ */
+public record TripTotal(long trips, BigDecimal revenue) {
+}
@@ -0,0 +1,12 @@
+package com.littlepay.tapfare.model;
+
+import java.util.List;
+
+/**
+ * Application event published whenever online matching emits trips, either because taps paired up or because
+ * the open taps of a closed service day were turned into incomplete trips.
+ *
+ * @param trips the emitted trips
+ */
+public record TripsEmittedEvent(List<Trip> trips) {
+}
@@ -0,0 +1,16 @@
+package com.littlepay.tapfare.model;
+
+import java.util.List;
+
+/**
+ * A page of the trips of the latest processing run matching a query.
+ *
+ * @param trips      the trips of the page, in output order
+ * @param page       the zero-based number of the page
+ * @param size       the maximum number of trips per page
+ * @param totalTrips the number of trips matching the query across all pages
+ * @param jobId      the ID of the job that produced the trips, null before any run completed
+ * @param complete   false if the run produced trips that were not kept, in which case matches may be missing
+ */
+public record TripsPage(List<Trip> trips, int page, int size, long totalTrips, String jobId, boolean complete) {
+}
@@ -0,0 +1,25 @@
+package com.littlepay.tapfare.model;
+
+import com.littlepay.tapfare.constant.TripStatus;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.Map;
+
+/**
+ * Ridership and revenue of the trips of a matching run, broken down by trip status overall and per company, bus,
+ * boarding stop and service date. The boarding stop of a trip without a "Tap On" is the stop it finished at, and its
+ * service date the date it finished.
+ *
+ * @param generatedAt when the run completed
+ * @param complete    false if trips of the run were matched before it resumed from a checkpoint and are not counted
+ * @param total       the totals of all trips
+ * @param byCompany   the totals per company
+ * @param byBus       the totals per bus
+ * @param byStop      the totals per boarding stop
+ * @param byDate      the totals per service date
+ */
+public record TripsReport(Instant generatedAt, boolean complete, Map<TripStatus, TripTotal> total,
+                          Map<String, Map<TripStatus, TripTotal>> byCompany, Map<String, Map<TripStatus, TripTotal>> byBus,
+                          Map<String, Map<TripStatus, TripTotal>> byStop, Map<LocalDate, Map<TripStatus, TripTotal>> byDate) {
+}
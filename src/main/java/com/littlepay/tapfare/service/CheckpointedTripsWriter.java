@@ -0,0 +1,184 @@
+package com.littlepay.tapfare.service;
+
+import com.littlepay.tapfare.exceptions.CsvProcessingException;
+import com.littlepay.tapfare.model.Trip;
+import com.littlepay.tapfare.utils.FastTripCsvWriter;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Consumer;
+
+/**
+ * Writes the trip CSV file of a checkpointed processing run.
+ * Completed and cancelled trips are written to the output file as soon as they are matched, while incomplete trips,
+ * which come after them in the output, are written to two header-less fragments next to it and appended once
+ * matching is done. {@link #checkpoint} syncs the three files and records their sizes along with the matching state;
+ * a writer created later for the same, unchanged input and the same run settings truncates them back to that
+ * checkpoint and carries on from it.
+ * The checkpoint and the fragments are deleted when the run {@link #complete() completes}, and kept otherwise.
+ */
+@Slf4j
+final class CheckpointedTripsWriter implements AutoCloseable {
+
+    private final Path outputFile;
+    private final Path orphanOnFile;
+    private final Path orphanOffFile;
+    private final Path checkpointFile;
+    private final String inputFingerprint;
+    private final String runSettings;
+    private final TripsCheckpoint resumeCheckpoint;
+    private final Consumer<Trip> tripListener;
+    private final FastTripCsvWriter tripsWriter;
+    private final FastTripCsvWriter orphanOnWriter;
+    private final FastTripCsvWriter orphanOffWriter;
+
+    /**
+     * Opens the output file and the fragments, resuming from the checkpoint file if it was taken from the same input
+     * with the same run settings.
+     *
+     * @param inputFile      the tap CSV file being processed
+     * @param runSettings    the fares and matching settings of the run, from
+     *                       {@link TripsCreationService#checkpointSettings(FareCalculator)}
+     * @param outputFile     the trip CSV file to write
+     * @param checkpointFile the checkpoint file
+     * @param tripListener   called with every trip written
+     * @throws CsvProcessingException if the input cannot be fingerprinted or the files cannot be opened
+     */
+    CheckpointedTripsWriter(final Path inputFile, final String runSettings, final Path outputFile, final Path checkpointFile,
+                            final Consumer<Trip> tripListener) {
+        this.outputFile = outputFile;
+        this.orphanOnFile = outputFile.resolveSibling(outputFile.getFileName() + ".orphan-on");
+        this.orphanOffFile = outputFile.resolveSibling(outputFile.getFileName() + ".orphan-off");
+        this.checkpointFile = checkpointFile;
+        this.inputFingerprint = fingerprint(inputFile);
+        this.runSettings = runSettings;
+        this.resumeCheckpoint = readResumeCheckpoint();
+        this.tripListener = tripListener;
+        if (resumeCheckpoint != null) {
+            log.info("Resuming taps processing from checkpoint after {} taps.", resumeCheckpoint.tapsConsumed());
+            this.tripsWriter = FastTripCsvWriter.resumeAt(outputFile, resumeCheckpoint.tripsBytes());
+            this.orphanOnWriter = FastTripCsvWriter.resumeAt(orphanOnFile, resumeCheckpoint.orphanOnBytes());
+            this.orphanOffWriter = FastTripCsvWriter.resumeAt(orphanOffFile, resumeCheckpoint.orphanOffBytes());
+        } else {
+            this.tripsWriter = new FastTripCsvWriter(outputFile);
+            this.orphanOnWriter = FastTripCsvWriter.resumeAt(orphanOnFile, 0);
+            this.orphanOffWriter = FastTripCsvWriter.resumeAt(orphanOffFile, 0);
+        }
+    }
+
+    /**
+     * @return the checkpoint this writer resumed from, if any
+     */
+    Optional<TripsCheckpoint> getResumeCheckpoint() {
+        return Optional.ofNullable(resumeCheckpoint);
+    }
+
+    void writeTrip(final Trip trip) {
+        tripsWriter.write(trip);
+        tripListener.accept(trip);
+    }
+
+    void writeOrphanOnTrip(final Trip trip) {
+        orphanOnWriter.write(trip);
+        tripListener.accept(trip);
+    }
+
+    void writeOrphanOffTrip(final Trip trip) {
+        orphanOffWriter.write(trip);
+        tripListener.accept(trip);
+    }
+
+    /**
+     * Syncs everything written so far and records it, along with the given progress, as the new checkpoint.
+     * All trips final after the given number of taps must have been written.
+     *
+     * @param tapsConsumed the number of sorted input taps consumed
+     * @param matcherState the open matching state after those taps
+     * @throws CsvProcessingException if the files cannot be synced or the checkpoint cannot be written
+     */
+    void checkpoint(final long tapsConsumed, final TripMatcher.State matcherState) {
+        tripsWriter.sync();
+        orphanOnWriter.sync();
+        orphanOffWriter.sync();
+        TripsCheckpointFormat.write(new TripsCheckpoint(inputFingerprint, runSettings, tapsConsumed, tripsWriter.size(),
+                orphanOnWriter.size(), orphanOffWriter.size(), matcherState), checkpointFile);
+        log.debug("Checkpointed taps processing after {} taps.", tapsConsumed);
+    }
+
+    /**
+     * Appends the incomplete trips to the output file, then deletes the fragments and the checkpoint.
+     *
+     * @throws CsvProcessingException if the output file cannot be completed
+     */
+    void complete() {
+        close();
+        try (final FileChannel output = FileChannel.open(outputFile, StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+            for (final Path fragment : List.of(orphanOnFile, orphanOffFile)) {
+                try (final FileChannel input = FileChannel.open(fragment, StandardOpenOption.READ)) {
+                    final long size = input.size();
+                    for (long transferred = 0; transferred < size; ) {
+                        transferred += input.transferTo(transferred, size - transferred, output);
+                    }
+                }
+            }
+            Files.deleteIfExists(orphanOnFile);
+            Files.deleteIfExists(orphanOffFile);
+            Files.deleteIfExists(checkpointFile);
+        } catch (final IOException e) {
+            throw new CsvProcessingException("Error writing to CSV file: %s".formatted(outputFile), e);
+        }
+    }
+
+    /**
+     * Drains and closes the output file and the fragments, keeping the checkpoint.
+     */
+    @Override
+    public void close() {
+        try {
+            tripsWriter.close();
+        } finally {
+            try {
+                orphanOnWriter.close();
+            } finally {
+                orphanOffWriter.close();
+            }
+        }
+    }
+
+    private TripsCheckpoint readResumeCheckpoint() {
+        try {
+            final Optional<TripsCheckpoint> checkpoint = TripsCheckpointFormat.read(checkpointFile);
+            if (checkpoint.isPresent() && !checkpoint.get().inputFingerprint().equals(inputFingerprint)) {
+                log.info("Ignoring checkpoint {} taken from a different input.", checkpointFile);
+                return null;
+            }
+            if (checkpoint.isPresent() && !checkpoint.get().runSettings().equals(runSettings)) {
+                log.info("Ignoring checkpoint {} taken with different fares or matching settings.", checkpointFile);
+                return null;
+            }
+            return checkpoint.orElse(null);
+        } catch (final CsvProcessingException e) {
+            log.warn("Ignoring unreadable checkpoint {}.", checkpointFile, e);
+            return null;
+        }
+    }
+
+    /**
+     * Identifies the input by its path, size and modification time, so that a checkpoint is only resumed if the
+     * input has not changed since.
+     */
+    private static String fingerprint(final Path inputFile) {
+        try {
+            return "%s|%d|%d".formatted(inputFile.toAbsolutePath().normalize(), Files.size(inputFile),
+                    Files.getLastModifiedTime(inputFile).toMillis());
+        } catch (final IOException e) {
+            throw new CsvProcessingException("Error reading from CSV file: %s".formatted(inputFile), e);
+        }
+    }
+}
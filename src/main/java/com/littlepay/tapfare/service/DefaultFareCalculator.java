@@ -1,19 +1,32 @@
 package com.littlepay.tapfare.service;
 
+import com.littlepay.tapfare.utils.CompiledFareMatrix;
 import com.littlepay.tapfare.utils.FareMatrixUtils;
-import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Component;
 
-import java.util.HashMap;
-
 
 /**
  * DefaultFareCalculator is a component responsible for calculating fares between stops using a fare matrix.
+ * Lookups go through the {@link CompiledFareMatrix}, so pricing a trip costs at most one hash lookup per stop
+ * and none at all when the caller already holds stop indexes.
+ * The component prices with the current fare snapshot of {@link FareMatrixUtils}, while {@link #pin()} returns a
+ * calculator bound to a single snapshot.
  */
 @Component
-@RequiredArgsConstructor
 public class DefaultFareCalculator implements FareCalculator {
 
+    /**
+     * The snapshot this calculator is pinned to, or null to follow the current snapshot.
+     */
+    private final CompiledFareMatrix pinnedFareMatrix;
+
+    public DefaultFareCalculator() {
+        this(null);
+    }
+
+    private DefaultFareCalculator(final CompiledFareMatrix pinnedFareMatrix) {
+        this.pinnedFareMatrix = pinnedFareMatrix;
+    }
 
     /**
      * Calculates the fare between two specified stops using the fare matrix.
@@ -24,7 +37,8 @@ public class DefaultFareCalculator implements FareCalculator {
      */
     @Override
     public double calculateFare(final String fromStop, final String toStop) {
-        return FareMatrixUtils.getFareMatrix().getOrDefault(fromStop, new HashMap<>()).getOrDefault(toStop, 0.0);
+        final CompiledFareMatrix fareMatrix = fareMatrix();
+        return fareMatrix.fare(fareMatrix.indexOf(fromStop), fareMatrix.indexOf(toStop));
     }
 
     /**
@@ -35,11 +49,52 @@ public class DefaultFareCalculator implements FareCalculator {
      */
     @Override
     public double calculateMaxFare(final String stopId) {
-        return FareMatrixUtils.getFareMatrix().getOrDefault(stopId, new HashMap<>())
-                .values()
-                .stream()
-                .max(Double::compare)
-                .orElse(0.0);
+        final CompiledFareMatrix fareMatrix = fareMatrix();
+        return fareMatrix.maxFare(fareMatrix.indexOf(stopId));
+    }
+
+    @Override
+    public int stopIndex(final String stopId) {
+        return fareMatrix().indexOf(stopId);
     }
-}
 
+    /**
+     * Calculates the fare between two stops already resolved through {@link #stopIndex(String)}.
+     *
+     * @return the fare amount between the two stops; returns 0.0 if either stop is unknown
+     */
+    @Override
+    public double calculateFare(final int fromStopIndex, final int toStopIndex) {
+        return fareMatrix().fare(fromStopIndex, toStopIndex);
+    }
+
+    /**
+     * Returns the precomputed maximum fare of a stop already resolved through {@link #stopIndex(String)}.
+     *
+     * @return the maximum fare from the stop; returns 0.0 if the stop is unknown
+     */
+    @Override
+    public double calculateMaxFare(final int stopIndex) {
+        return fareMatrix().maxFare(stopIndex);
+    }
+
+    /**
+     * @return a calculator bound to the current fare snapshot, or this calculator if it is already pinned
+     */
+    @Override
+    public FareCalculator pin() {
+        return pinnedFareMatrix != null ? this : new DefaultFareCalculator(FareMatrixUtils.getCompiledFareMatrix());
+    }
+
+    /**
+     * @return the fingerprint of the fare snapshot this calculator prices with
+     */
+    @Override
+    public String faresFingerprint() {
+        return fareMatrix().fingerprint();
+    }
+
+    private CompiledFareMatrix fareMatrix() {
+        return pinnedFareMatrix != null ? pinnedFareMatrix : FareMatrixUtils.getCompiledFareMatrix();
+    }
+}
@@ -4,4 +4,36 @@ public interface FareCalculator {
     double calculateFare(String fromStop, String toStop);
 
     double calculateMaxFare(String stopId);
+
+    /**
+     * Resolves a stop ID to the dense index accepted by the int-keyed overloads.
+     *
+     * @return the stop index, or a negative value if the stop is unknown
+     */
+    int stopIndex(String stopId);
+
+    double calculateFare(int fromStopIndex, int toStopIndex);
+
+    double calculateMaxFare(int stopIndex);
+
+    /**
+     * Returns a calculator pricing every trip with the fares current at the time of the call, unaffected by later
+     * fare reloads. A processing run pins the fares once when it starts, so all its trips are priced consistently
+     * and stop indexes stay valid for the whole run.
+     *
+     * @return the pinned calculator, this calculator if its fares never change
+     */
+    default FareCalculator pin() {
+        return this;
+    }
+
+    /**
+     * Identifies the fares this calculator prices with, so that trips priced by an earlier run are only reused by a
+     * run pricing with the same fares.
+     *
+     * @return a fingerprint equal for equal fares, or null if the fares cannot be identified
+     */
+    default String faresFingerprint() {
+        return null;
+    }
 }
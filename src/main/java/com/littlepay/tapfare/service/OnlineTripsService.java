@@ -0,0 +1,152 @@
+package com.littlepay.tapfare.service;
+
+import com.littlepay.tapfare.config.TripsOnlineConfig;
+import com.littlepay.tapfare.exceptions.InvalidTapException;
+import com.littlepay.tapfare.metrics.TapsProcessingMetrics;
+import com.littlepay.tapfare.model.Tap;
+import com.littlepay.tapfare.model.Trip;
+import com.littlepay.tapfare.model.TripsEmittedEvent;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Matches taps arriving continuously from validators, as opposed to the batch files handled by {@link TapsProcessor}.
+ * Open taps are kept in long-lived {@link TripMatcher}s, one per stripe of PANs, each guarded by its own lock, so
+ * concurrent requests only contend when their PANs fall into the same stripe. Completed and cancelled trips are
+ * emitted as soon as their taps pair up; open taps of a service day are emitted as incomplete trips once the day
+ * is closed by {@link #sweepClosedServiceDays()}. Emitted trips are published as {@link TripsEmittedEvent}s.
+ * Having no end, online matching does not pin the fares: every trip is priced by stop ID with the fares current when
+ * it closes, so open taps stay valid across fare reloads.
+ */
+@Service
+@Slf4j
+public class OnlineTripsService {
+
+    private final TripMatcher[] stripes;
+    private final AtomicLong sequence = new AtomicLong();
+    private final TripsOnlineConfig tripsOnlineConfig;
+    private final TapsProcessingMetrics tapsProcessingMetrics;
+    private final ApplicationEventPublisher eventPublisher;
+
+    public OnlineTripsService(final FareCalculator fareCalculator, final TripsOnlineConfig tripsOnlineConfig,
+                              final TapsProcessingMetrics tapsProcessingMetrics, final ApplicationEventPublisher eventPublisher) {
+        this.tripsOnlineConfig = tripsOnlineConfig;
+        this.tapsProcessingMetrics = tapsProcessingMetrics;
+        this.eventPublisher = eventPublisher;
+        this.stripes = new TripMatcher[Math.max(1, tripsOnlineConfig.getStripes())];
+        for (int i = 0; i < stripes.length; i++) {
+            stripes[i] = TripMatcher.longLived(fareCalculator);
+        }
+    }
+
+    /**
+     * Matches the given taps, in order, against the open taps of their PANs.
+     * The whole batch is validated before any tap is matched, so an invalid tap rejects the batch.
+     *
+     * @param taps the taps to ingest
+     * @return the completed and cancelled trips closed by these taps, in the order of the taps that closed them
+     * @throws InvalidTapException if any tap is missing its date time, type, stop or PAN
+     */
+    public List<Trip> ingest(final List<Tap> taps) {
+        taps.forEach(OnlineTripsService::validate);
+
+        final List<Trip> trips = new ArrayList<>();
+        for (final Tap tap : taps) {
+            final TripMatcher matcher = stripeFor(tap.getPan());
+            synchronized (matcher) {
+                matcher.accept(tap, sequence.getAndIncrement());
+                for (final TripMatcher.SequencedTrip closedTrip : matcher.drainClosedTrips()) {
+                    trips.add(closedTrip.trip());
+                }
+            }
+        }
+        tapsProcessingMetrics.recordTapsIngested(taps.size());
+        emit(trips);
+        return trips;
+    }
+
+    /**
+     * Closes every service day that ended more than the configured grace period ago. Scheduled every
+     * {@link TripsOnlineConfig#getSweepInterval()} by {@code TripsSchedulingConfig}.
+     */
+    public void sweepClosedServiceDays() {
+        sweepServiceDaysBefore(LocalDateTime.now(ZoneOffset.UTC).minus(tripsOnlineConfig.getServiceDayGrace()).toLocalDate());
+    }
+
+    /**
+     * Turns the open taps of every service day before the given one into incomplete trips.
+     *
+     * @param day the first service day still open
+     * @return the incomplete trips created
+     */
+    public List<Trip> sweepServiceDaysBefore(final LocalDate day) {
+        final List<Trip> trips = new ArrayList<>();
+        for (final TripMatcher matcher : stripes) {
+            synchronized (matcher) {
+                for (final TripMatcher.SequencedTrip orphanTrip : matcher.closeDaysBefore(day)) {
+                    trips.add(orphanTrip.trip());
+                }
+            }
+        }
+        if (!trips.isEmpty()) {
+            log.info("Closed service days before {} with {} incomplete trips.", day, trips.size());
+        }
+        emit(trips);
+        return trips;
+    }
+
+    /**
+     * @return the number of "Tap On" events currently waiting for a "Tap Off"
+     */
+    public long getOpenTapOnCount() {
+        long count = 0;
+        for (final TripMatcher matcher : stripes) {
+            synchronized (matcher) {
+                count += matcher.getOpenTapOnCount();
+            }
+        }
+        return count;
+    }
+
+    /**
+     * @return the number of "Tap Off" events currently waiting for a "Tap On"
+     */
+    public long getOpenTapOffCount() {
+        long count = 0;
+        for (final TripMatcher matcher : stripes) {
+            synchronized (matcher) {
+                count += matcher.getOpenTapOffCount();
+            }
+        }
+        return count;
+    }
+
+    private void emit(final List<Trip> trips) {
+        if (trips.isEmpty()) {
+            return;
+        }
+        tapsProcessingMetrics.recordTrips(trips);
+        eventPublisher.publishEvent(new TripsEmittedEvent(trips));
+    }
+
+    private TripMatcher stripeFor(final String pan) {
+        // spread the high bits of the hash, as the PAN partitioner of batch matching does
+        final int hash = pan.hashCode();
+        return stripes[Math.floorMod(hash ^ (hash >>> 16), stripes.length)];
+    }
+
+    private static void validate(final Tap tap) {
+        if (tap == null || tap.getLocalDateTime() == null || tap.getTapType() == null || tap.getStopId() == null
+                || tap.getPan() == null) {
+            throw new InvalidTapException("Invalid tap: %s".formatted(tap));
+        }
+    }
+}
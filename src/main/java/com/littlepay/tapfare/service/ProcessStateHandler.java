@@ -1,21 +1,46 @@
 package com.littlepay.tapfare.service;
 
 import com.littlepay.tapfare.constant.ProcessState;
-import lombok.Data;
 import org.springframework.stereotype.Component;
 
+import java.util.concurrent.atomic.AtomicReference;
+
 
 /**
  * Handler for managing the current process state of an operation.
- * This class provides methods to check if a process is already running.
+ * This class provides methods to check if a process is already running and to atomically
+ * admit a new run, so that two concurrent requests can never both start processing.
  */
 @Component
-@Data
 public class ProcessStateHandler {
 
-    private ProcessState processState = ProcessState.NOT_STARTED;
+    private final AtomicReference<ProcessState> processState = new AtomicReference<>(ProcessState.NOT_STARTED);
+
+    public ProcessState getProcessState() {
+        return processState.get();
+    }
+
+    public void setProcessState(final ProcessState newState) {
+        processState.set(newState);
+    }
 
     public boolean isProcessingAlreadyRunning() {
-        return processState.equals(ProcessState.STARTED);
+        return processState.get().equals(ProcessState.STARTED);
+    }
+
+    /**
+     * Atomically moves the process to {@link ProcessState#STARTED} unless it is already running.
+     *
+     * @return true if the caller was admitted and now owns the run, false if processing is already running
+     */
+    public boolean tryStart() {
+        ProcessState current = processState.get();
+        while (current != ProcessState.STARTED) {
+            if (processState.compareAndSet(current, ProcessState.STARTED)) {
+                return true;
+            }
+            current = processState.get();
+        }
+        return false;
     }
 }
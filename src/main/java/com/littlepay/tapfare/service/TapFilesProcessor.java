@@ -0,0 +1,236 @@
+package com.littlepay.tapfare.service;
+
+import com.littlepay.tapfare.config.TripsFilesConfig;
+import com.littlepay.tapfare.constant.ProcessStage;
+import com.littlepay.tapfare.constant.ProcessState;
+import com.littlepay.tapfare.exceptions.ProcessCancelledException;
+import com.littlepay.tapfare.exceptions.ProcessFailedException;
+import com.littlepay.tapfare.metrics.TapsProcessingMetrics;
+import com.littlepay.tapfare.model.TapFileResult;
+import com.littlepay.tapfare.model.TapsProcessingJob;
+import com.littlepay.tapfare.utils.TripIndex;
+import com.littlepay.tapfare.utils.TripTotals;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/**
+ * Service processing a directory of tap CSV files, one or more per company, into one trip CSV per file.
+ * Gzip-compressed {@code .csv.gz} files are read as they are and produce a compressed {@code -trips.csv.gz} file.
+ * Files are processed concurrently on the {@code tapFilesExecutor}, bounded by {@link TripsFilesConfig#getWorkers()}.
+ * The files of a company are spread over at most {@link TripsFilesConfig#getPerCompanyConcurrency()} lanes, each
+ * processing its files one after the other, so a company with many files cannot take over the pool and no worker
+ * ever waits for a permit. Every file is streamed into its trip file by {@link TapsProcessor#streamTapFile}, as a
+ * streamed single-file run is, with matching state private to that file, so memory stays bounded by the sort chunk
+ * size of each worker however large the files are. The fares are pinned once for the whole run, so every file is
+ * priced with the same fares. A failing file does not stop the others. The trips of the files are stored for queries
+ * and their totals merged into a single report once every file is done, both marked incomplete if any file failed.
+ */
+@Service
+@Slf4j
+public class TapFilesProcessor {
+
+    private static final String CSV_EXTENSION = ".csv";
+    private static final String GZIP_CSV_EXTENSION = ".csv.gz";
+    private static final String OUTPUT_SUFFIX = "-trips.csv";
+
+    private final TapsProcessor tapsProcessor;
+    private final TripsFilesConfig tripsFilesConfig;
+    private final ProcessStateHandler processStateHandler;
+    private final TripsCreationService tripsCreationService;
+    private final TripStore tripStore;
+    private final TapsProcessingMetrics tapsProcessingMetrics;
+    private final TaskExecutor tapFilesExecutor;
+
+    public TapFilesProcessor(final TapsProcessor tapsProcessor, final TripsFilesConfig tripsFilesConfig,
+                             final ProcessStateHandler processStateHandler, final TripsCreationService tripsCreationService,
+                             final TripStore tripStore, final TapsProcessingMetrics tapsProcessingMetrics,
+                             @Qualifier("tapFilesExecutor") final TaskExecutor tapFilesExecutor) {
+        this.tapsProcessor = tapsProcessor;
+        this.tripsFilesConfig = tripsFilesConfig;
+        this.processStateHandler = processStateHandler;
+        this.tripsCreationService = tripsCreationService;
+        this.tripStore = tripStore;
+        this.tapsProcessingMetrics = tapsProcessingMetrics;
+        this.tapFilesExecutor = tapFilesExecutor;
+    }
+
+    /**
+     * Runs an already admitted job processing every tap CSV file of the input directory, adding the taps and trips of
+     * every file to the progress of the job and recording the result of every file on it. The caller must have moved
+     * the process to {@link ProcessState#STARTED} through {@link ProcessStateHandler#tryStart()}. Cancellation is
+     * checked before every file, and the files not started by then are reported cancelled.
+     * The trips of the completed files are published to the {@link TripStore} and their totals as the report of the
+     * run, both marked incomplete if any file failed; a cancelled run publishes neither.
+     *
+     * @param job the job to run and report progress to.
+     * @return the result of every file, in file name order.
+     * @throws ProcessCancelledException if the job was cancelled before every file was processed.
+     * @throws ProcessFailedException    if the input directory cannot be listed.
+     */
+    public List<TapFileResult> processFiles(final TapsProcessingJob job) {
+        final long runStart = System.nanoTime();
+        try {
+            job.throwIfCancelled();
+            final List<Path> inputFiles = listInputFiles();
+            final Path outputDirectory = Path.of(tripsFilesConfig.getOutputDirectory());
+            Files.createDirectories(outputDirectory);
+            job.moveToStage(ProcessStage.MATCHING);
+
+            final TapFileResult[] results = new TapFileResult[inputFiles.size()];
+            final TripTotals[] fileTotals = new TripTotals[inputFiles.size()];
+            final TripIndex.Builder storedTrips = tripStore.newRun();
+            final FareCalculator runFareCalculator = tripsCreationService.pinFares();
+            final Map<String, List<Integer>> filesByCompany = new LinkedHashMap<>();
+            for (int i = 0; i < inputFiles.size(); i++) {
+                filesByCompany.computeIfAbsent(companyId(inputFiles.get(i)), k -> new ArrayList<>()).add(i);
+            }
+            final List<CompletableFuture<Void>> lanes = new ArrayList<>();
+            filesByCompany.forEach((companyId, files) -> {
+                final int laneCount = Math.min(files.size(), Math.max(1, tripsFilesConfig.getPerCompanyConcurrency()));
+                for (int lane = 0; lane < laneCount; lane++) {
+                    CompletableFuture<Void> laneTail = CompletableFuture.completedFuture(null);
+                    for (int file = lane; file < files.size(); file += laneCount) {
+                        final int index = files.get(file);
+                        laneTail = laneTail.thenRunAsync(() -> {
+                            fileTotals[index] = new TripTotals();
+                            results[index] = processFile(job, companyId, inputFiles.get(index), outputDirectory,
+                                    runFareCalculator, fileTotals[index], storedTrips);
+                        }, tapFilesExecutor);
+                    }
+                    lanes.add(laneTail);
+                }
+            });
+            CompletableFuture.allOf(lanes.toArray(CompletableFuture[]::new)).join();
+
+            final List<TapFileResult> fileResults = List.of(results);
+            job.recordFileResults(fileResults);
+            job.throwIfCancelled();
+            final boolean failed = fileResults.stream().anyMatch(result -> result.getState() != ProcessState.COMPLETED);
+            if (failed) {
+                storedTrips.markIncomplete();
+            }
+            tripStore.publish(storedTrips, job.getId());
+            tripsCreationService.publishReport(mergeTotals(fileResults, fileTotals));
+            final ProcessState state = failed ? ProcessState.FAILED : ProcessState.COMPLETED;
+            processStateHandler.setProcessState(state);
+            final String message = "Processed %d tap files from %d companies, output saved to %s"
+                    .formatted(inputFiles.size(), filesByCompany.size(), outputDirectory);
+            log.info(message);
+            finishJob(job, state, message, runStart);
+            return fileResults;
+        } catch (final ProcessCancelledException e) {
+            log.warn("Tap files processing job {} cancelled.", job.getId());
+            processStateHandler.setProcessState(ProcessState.CANCELLED);
+            finishJob(job, ProcessState.CANCELLED, e.getMessage(), runStart);
+            throw e;
+        } catch (final Exception e) {
+            log.error("Tap files processing failed due to unexpected error.", e);
+            processStateHandler.setProcessState(ProcessState.FAILED);
+            final String message = "Tap files processing failed due to unexpected error: %s".formatted(e.getMessage());
+            finishJob(job, ProcessState.FAILED, message, runStart);
+            throw new ProcessFailedException(message, e);
+        }
+    }
+
+    private void finishJob(final TapsProcessingJob job, final ProcessState state, final String message, final long runStart) {
+        job.finish(state, message);
+        tapsProcessingMetrics.recordRun(state, System.nanoTime() - runStart);
+    }
+
+    private List<Path> listInputFiles() throws IOException {
+        try (final Stream<Path> files = Files.list(Path.of(tripsFilesConfig.getInputDirectory()))) {
+            return files.filter(Files::isRegularFile)
+                    .filter(file -> extension(file) != null)
+                    .sorted()
+                    .toList();
+        }
+    }
+
+    /**
+     * Merges the totals of the completed files into the totals of the run, leaving out those of failed files whose
+     * trips were not all written.
+     */
+    private static TripTotals mergeTotals(final List<TapFileResult> fileResults, final TripTotals[] fileTotals) {
+        final TripTotals runTotals = new TripTotals();
+        for (int i = 0; i < fileTotals.length; i++) {
+            if (fileResults.get(i).getState() == ProcessState.COMPLETED) {
+                runTotals.addAll(fileTotals[i]);
+            } else {
+                runTotals.markIncomplete();
+            }
+        }
+        return runTotals;
+    }
+
+    private TapFileResult processFile(final TapsProcessingJob job, final String companyId, final Path inputFile,
+                                      final Path outputDirectory, final FareCalculator runFareCalculator,
+                                      final TripTotals fileTotals, final TripIndex.Builder storedTrips) {
+        final String extension = extension(inputFile);
+        final Path outputFile = outputDirectory.resolve(stem(inputFile) + OUTPUT_SUFFIX
+                + extension.substring(CSV_EXTENSION.length()));
+        if (job.isCancelRequested()) {
+            return new TapFileResult(companyId, inputFile.toString(), outputFile.toString(), ProcessState.CANCELLED, 0, 0,
+                    "Tap file processing cancelled");
+        }
+        try {
+            log.info("Processing tap file {} of company {}.", inputFile, companyId);
+            final AtomicLong tripsWritten = new AtomicLong();
+            final long tapsRead = tapsProcessor.streamTapFile(inputFile, outputFile, job, runFareCalculator, fileTotals, trip -> {
+                tripsWritten.incrementAndGet();
+                // the trips of files processed concurrently are stored interleaved
+                synchronized (storedTrips) {
+                    storedTrips.add(trip);
+                }
+            });
+            return new TapFileResult(companyId, inputFile.toString(), outputFile.toString(), ProcessState.COMPLETED,
+                    tapsRead, tripsWritten.get(), "Processing completed, output saved to %s".formatted(outputFile));
+        } catch (final ProcessCancelledException e) {
+            log.warn("Tap file {} cancelled while processing.", inputFile);
+            return new TapFileResult(companyId, inputFile.toString(), outputFile.toString(), ProcessState.CANCELLED, 0, 0,
+                    "Tap file processing cancelled");
+        } catch (final Exception e) {
+            log.error("Error processing tap file {}.", inputFile, e);
+            return new TapFileResult(companyId, inputFile.toString(), outputFile.toString(), ProcessState.FAILED, 0, 0,
+                    "Tap file processing failed: %s".formatted(e.getMessage()));
+        }
+    }
+
+    /**
+     * Takes the company of a tap file from its name: everything before the first underscore, or the whole name
+     * without its extension.
+     */
+    static String companyId(final Path inputFile) {
+        final String stem = stem(inputFile);
+        final int separator = stem.indexOf('_');
+        return separator > 0 ? stem.substring(0, separator) : stem;
+    }
+
+    private static String stem(final Path inputFile) {
+        final String fileName = inputFile.getFileName().toString();
+        return fileName.substring(0, fileName.length() - extension(inputFile).length());
+    }
+
+    /**
+     * @return the extension of a tap CSV file, or null if the file is not one
+     */
+    private static String extension(final Path file) {
+        final String fileName = file.getFileName().toString();
+        if (fileName.endsWith(CSV_EXTENSION)) {
+            return CSV_EXTENSION;
+        }
+        return fileName.endsWith(GZIP_CSV_EXTENSION) ? GZIP_CSV_EXTENSION : null;
+    }
+}
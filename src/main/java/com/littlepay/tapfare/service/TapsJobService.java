@@ -0,0 +1,137 @@
+package com.littlepay.tapfare.service;
+
+import com.littlepay.tapfare.constant.ProcessState;
+import com.littlepay.tapfare.exceptions.JobNotFoundException;
+import com.littlepay.tapfare.exceptions.ProcessStartedException;
+import com.littlepay.tapfare.model.TapsJobStatus;
+import com.littlepay.tapfare.model.TapsProcessingJob;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.stereotype.Service;
+
+import java.util.Comparator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+/**
+ * Service submitting tap processing runs, of the configured tap file or of a directory of tap files, as asynchronous
+ * jobs and tracking them by ID. Admission goes through {@link ProcessStateHandler#tryStart()}, so at most one job runs at a time
+ * even when submissions race. Jobs run on the {@code tapsJobExecutor} and can be polled and cancelled
+ * while they run; the most recent finished jobs are kept for status queries.
+ */
+@Service
+@Slf4j
+public class TapsJobService {
+
+    private static final int MAX_RETAINED_JOBS = 100;
+
+    private final TapsProcessor tapsProcessor;
+    private final TapFilesProcessor tapFilesProcessor;
+    private final ProcessStateHandler processStateHandler;
+    private final TaskExecutor tapsJobExecutor;
+    private final Map<String, TapsProcessingJob> jobs = new ConcurrentHashMap<>();
+
+    public TapsJobService(final TapsProcessor tapsProcessor, final TapFilesProcessor tapFilesProcessor,
+                          final ProcessStateHandler processStateHandler,
+                          @Qualifier("tapsJobExecutor") final TaskExecutor tapsJobExecutor) {
+        this.tapsProcessor = tapsProcessor;
+        this.tapFilesProcessor = tapFilesProcessor;
+        this.processStateHandler = processStateHandler;
+        this.tapsJobExecutor = tapsJobExecutor;
+    }
+
+    /**
+     * Submits a new tap processing job and returns immediately.
+     *
+     * @return the status of the submitted job, including its ID.
+     * @throws ProcessStartedException if a job is already running.
+     */
+    public TapsJobStatus submit() {
+        return submit(tapsProcessor::processTaps);
+    }
+
+    /**
+     * Submits a new job processing every tap file of the input directory and returns immediately. The result of
+     * every file is reported on the job once all of them are done.
+     *
+     * @return the status of the submitted job, including its ID.
+     * @throws ProcessStartedException if a job is already running.
+     */
+    public TapsJobStatus submitFiles() {
+        return submit(tapFilesProcessor::processFiles);
+    }
+
+    private TapsJobStatus submit(final Consumer<TapsProcessingJob> processing) {
+        if (!processStateHandler.tryStart()) {
+            throw new ProcessStartedException("Taps processing is already running.");
+        }
+        final TapsProcessingJob job = new TapsProcessingJob();
+        evictFinishedJobs();
+        jobs.put(job.getId(), job);
+        try {
+            tapsJobExecutor.execute(() -> run(job, processing));
+        } catch (final RuntimeException e) {
+            log.error("Unable to schedule taps processing job {}.", job.getId(), e);
+            processStateHandler.setProcessState(ProcessState.FAILED);
+            job.finish(ProcessState.FAILED, "Unable to schedule taps processing: %s".formatted(e.getMessage()));
+            throw e;
+        }
+        log.info("Submitted taps processing job {}.", job.getId());
+        return job.toStatus();
+    }
+
+    /**
+     * @param jobId the ID returned on submission.
+     * @return the current status and progress of the job.
+     * @throws JobNotFoundException if no job with this ID is known.
+     */
+    public TapsJobStatus getStatus(final String jobId) {
+        return findJob(jobId).toStatus();
+    }
+
+    /**
+     * Requests cooperative cancellation of a job. A running job stops at its next cancellation check;
+     * cancelling a finished job has no effect.
+     *
+     * @param jobId the ID returned on submission.
+     * @return the status of the job after the cancellation request.
+     * @throws JobNotFoundException if no job with this ID is known.
+     */
+    public TapsJobStatus cancel(final String jobId) {
+        final TapsProcessingJob job = findJob(jobId);
+        if (!job.isFinished()) {
+            log.info("Cancellation requested for taps processing job {}.", jobId);
+            job.cancel();
+        }
+        return job.toStatus();
+    }
+
+    private void run(final TapsProcessingJob job, final Consumer<TapsProcessingJob> processing) {
+        try {
+            processing.accept(job);
+        } catch (final RuntimeException e) {
+            log.info("Taps processing job {} ended in state {}.", job.getId(), job.getState());
+        }
+    }
+
+    private TapsProcessingJob findJob(final String jobId) {
+        final TapsProcessingJob job = jobs.get(jobId);
+        if (job == null) {
+            throw new JobNotFoundException("Taps processing job %s not found.".formatted(jobId));
+        }
+        return job;
+    }
+
+    private void evictFinishedJobs() {
+        if (jobs.size() < MAX_RETAINED_JOBS) {
+            return;
+        }
+        jobs.values().stream()
+                .filter(TapsProcessingJob::isFinished)
+                .sorted(Comparator.comparing(TapsProcessingJob::getSubmittedAt))
+                .limit(jobs.size() - MAX_RETAINED_JOBS + 1L)
+                .forEach(job -> jobs.remove(job.getId()));
+    }
+}
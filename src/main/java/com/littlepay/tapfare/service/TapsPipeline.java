@@ -0,0 +1,185 @@
+package com.littlepay.tapfare.service;
+
+import com.littlepay.tapfare.constant.ProcessStage;
+import com.littlepay.tapfare.model.Tap;
+import com.littlepay.tapfare.model.Trip;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.function.ObjLongConsumer;
+
+/**
+ * Runs a processing run as three concurrent stages, each on its own thread: a reader stage pulling the sorted taps,
+ * a matching stage turning them into trips and a writer stage writing the trips as they come. Stages hand their
+ * output to the next one in batches through bounded queues, and a stage feeding a full queue waits for the next
+ * stage to catch up, so the memory held between stages stays bounded whatever their relative speed and the run
+ * takes about as long as its slowest stage. The first stage to fail interrupts the others, and its failure is
+ * rethrown by {@link #run}. A pipeline runs once.
+ */
+@Slf4j
+final class TapsPipeline {
+
+    private final int batchSize;
+    private final int queueCapacity;
+    private final AtomicReference<Throwable> failure = new AtomicReference<>();
+    private final List<Thread> stages = new ArrayList<>(3);
+
+    /**
+     * @param batchSize     the number of taps or trips handed from one stage to the next at once
+     * @param queueCapacity the number of batches held between two stages
+     */
+    TapsPipeline(final int batchSize, final int queueCapacity) {
+        this.batchSize = Math.max(1, batchSize);
+        this.queueCapacity = Math.max(1, queueCapacity);
+    }
+
+    /**
+     * Runs the three stages and waits for all of them.
+     *
+     * @param reader        the reader stage, handing every sorted tap to the given consumer
+     * @param matcher       the matching stage, consuming the taps of the given iterator and handing every trip to the
+     *                      given consumer in output order
+     * @param writer        the writer stage, called with every trip in output order
+     * @param stageListener called from the stage thread with the stage and its duration when a stage completes
+     * @throws RuntimeException the failure of the first stage that failed
+     */
+    void run(final Consumer<Consumer<Tap>> reader, final BiConsumer<Iterator<Tap>, Consumer<Trip>> matcher,
+             final Consumer<Trip> writer, final ObjLongConsumer<ProcessStage> stageListener) {
+        final BatchQueue<Tap> taps = new BatchQueue<>(batchSize, queueCapacity);
+        final BatchQueue<Trip> trips = new BatchQueue<>(batchSize, queueCapacity);
+        stages.add(stage(ProcessStage.READING, stageListener, () -> {
+            reader.accept(taps);
+            taps.close();
+        }));
+        stages.add(stage(ProcessStage.MATCHING, stageListener, () -> {
+            matcher.accept(taps, trips);
+            trips.close();
+        }));
+        stages.add(stage(ProcessStage.WRITING, stageListener, () -> trips.forEachRemaining(writer)));
+        stages.forEach(Thread::start);
+        try {
+            for (final Thread stage : stages) {
+                stage.join();
+            }
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            fail(e);
+        }
+
+        final Throwable stageFailure = failure.get();
+        if (stageFailure instanceof final RuntimeException runtimeException) {
+            throw runtimeException;
+        }
+        if (stageFailure instanceof final Error error) {
+            throw error;
+        }
+        if (stageFailure != null) {
+            throw new IllegalStateException("Taps pipeline interrupted", stageFailure);
+        }
+    }
+
+    private Thread stage(final ProcessStage stage, final ObjLongConsumer<ProcessStage> stageListener, final Runnable body) {
+        final Thread thread = new Thread(() -> {
+            final long stageStart = System.nanoTime();
+            try {
+                body.run();
+                stageListener.accept(stage, System.nanoTime() - stageStart);
+            } catch (final Throwable e) {
+                fail(e);
+            }
+        }, "taps-pipeline-" + stage.name().toLowerCase(Locale.ROOT));
+        thread.setDaemon(true);
+        return thread;
+    }
+
+    /**
+     * Records the failure unless another stage failed first, and interrupts the stages still waiting on a queue.
+     */
+    private void fail(final Throwable e) {
+        if (failure.compareAndSet(null, e)) {
+            log.debug("Taps pipeline failed, stopping all stages.", e);
+            stages.forEach(Thread::interrupt);
+        }
+    }
+
+    /**
+     * Bounded queue of batches between two stages: the feeding stage adds items one at a time and closes the queue,
+     * the next stage iterates over them. An empty batch marks the end of the items.
+     */
+    private static final class BatchQueue<T> implements Consumer<T>, Iterator<T> {
+
+        private final int batchSize;
+        private final BlockingQueue<List<T>> batches;
+        private List<T> filling;
+        private List<T> draining = List.of();
+        private int drained;
+        private boolean ended;
+
+        private BatchQueue(final int batchSize, final int queueCapacity) {
+            this.batchSize = batchSize;
+            this.batches = new ArrayBlockingQueue<>(queueCapacity);
+            this.filling = new ArrayList<>(batchSize);
+        }
+
+        @Override
+        public void accept(final T item) {
+            filling.add(item);
+            if (filling.size() == batchSize) {
+                put(filling);
+                filling = new ArrayList<>(batchSize);
+            }
+        }
+
+        void close() {
+            if (!filling.isEmpty()) {
+                put(filling);
+            }
+            put(List.of());
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (drained == draining.size() && !ended) {
+                draining = take();
+                drained = 0;
+                ended = draining.isEmpty();
+            }
+            return drained < draining.size();
+        }
+
+        @Override
+        public T next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            return draining.get(drained++);
+        }
+
+        private void put(final List<T> batch) {
+            try {
+                batches.put(batch);
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Taps pipeline stage interrupted", e);
+            }
+        }
+
+        private List<T> take() {
+            try {
+                return batches.take();
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Taps pipeline stage interrupted", e);
+            }
+        }
+    }
+}
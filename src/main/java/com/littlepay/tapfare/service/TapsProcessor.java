@@ -1,32 +1,58 @@
 package com.littlepay.tapfare.service;
 
 import com.littlepay.tapfare.config.TripsCsvConfig;
+import com.littlepay.tapfare.config.TripsPipelineConfig;
+import com.littlepay.tapfare.constant.ProcessStage;
 import com.littlepay.tapfare.constant.ProcessState;
+import com.littlepay.tapfare.exceptions.ProcessCancelledException;
 import com.littlepay.tapfare.exceptions.ProcessFailedException;
 import com.littlepay.tapfare.exceptions.ProcessStartedException;
+import com.littlepay.tapfare.metrics.TapsProcessingMetrics;
 import com.littlepay.tapfare.model.Tap;
+import com.littlepay.tapfare.model.TapBatch;
+import com.littlepay.tapfare.model.TapsProcessingJob;
 import com.littlepay.tapfare.model.Trip;
 import com.littlepay.tapfare.utils.CsvUtils;
+import com.littlepay.tapfare.utils.FastTripCsvWriter;
+import com.littlepay.tapfare.utils.SortedTapIterator;
+import com.littlepay.tapfare.utils.TripIndex;
+import com.littlepay.tapfare.utils.TripTotals;
 import lombok.AllArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Iterator;
 import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
 
 /**
  * Service class responsible for processing tap data and generating corresponding trip data.
  * This class orchestrates the entire flow from reading the tap data from a CSV file,
  * creating trip data based on the taps, and writing the trip data back to a CSV file.
+ * The trips of every successful run are also published to the {@link TripStore} for queries.
  */
 @Service
 @AllArgsConstructor
 @Slf4j
 public class TapsProcessor {
 
+    /**
+     * Assumed ratio of the decompressed to the compressed size of a gzip-compressed tap file. Tap files compress
+     * five to ten times; the upper end errs on the side of streaming.
+     */
+    private static final int GZIP_EXPANSION_RATIO = 8;
+
     private final CsvUtils csvUtils;
     private final TripsCsvConfig tripsCsvConfig;
     private final ProcessStateHandler processStateHandler;
     private final TripsCreationService tripsCreationService;
+    private final TapsProcessingMetrics tapsProcessingMetrics;
+    private final TripsPipelineConfig tripsPipelineConfig;
+    private final TripStore tripStore;
 
 
     /**
@@ -40,19 +66,208 @@ public class TapsProcessor {
      */
     public String processTaps() {
         validateProcessState();
+        return processTaps(new TapsProcessingJob());
+    }
+
+    /**
+     * Runs an already admitted processing job, recording its stage and progress as it goes.
+     * The caller must have moved the process to {@link ProcessState#STARTED} through
+     * {@link ProcessStateHandler#tryStart()}. Cancellation is checked between stages and,
+     * when streaming, between taps.
+     *
+     * @param job the job to run and report progress to.
+     * @return A string message indicating the output file path where the results were saved.
+     * @throws ProcessCancelledException if the job was cancelled before it completed.
+     * @throws ProcessFailedException    if any error occurs during processing.
+     */
+    public String processTaps(final TapsProcessingJob job) {
+        final long runStart = System.nanoTime();
         try {
-            final List<Tap> taps = readTapsFromCsv();
-            final List<Trip> trips = createTrips(taps);
-            return generateOutputTripsCsv(trips);
+            job.throwIfCancelled();
+            final TripIndex.Builder storedTrips = tripStore.newRun();
+            final FareCalculator runFareCalculator = tripsCreationService.pinFares();
+            final TripTotals runTotals = new TripTotals();
+            final String message;
+            if (isCheckpointConfigured()) {
+                message = processTapsWithCheckpoints(job, storedTrips, runFareCalculator, runTotals);
+            } else if (tripsPipelineConfig.isEnabled()) {
+                message = processTapsPipelined(job, storedTrips, runFareCalculator, runTotals);
+            } else {
+                message = processTapsInStages(job, storedTrips, runFareCalculator, runTotals);
+            }
+            tripStore.publish(storedTrips, job.getId());
+            tripsCreationService.publishReport(runTotals);
+            // the process completes once its trips and report are published, so a failure to publish fails the run
+            updateProcessState(ProcessState.COMPLETED);
+            finishJob(job, ProcessState.COMPLETED, message, runStart);
+            return message;
+        } catch (final ProcessCancelledException e) {
+            log.warn("Taps processing job {} cancelled.", job.getId());
+            updateProcessState(ProcessState.CANCELLED);
+            finishJob(job, ProcessState.CANCELLED, e.getMessage(), runStart);
+            throw e;
         } catch (final Exception e) {
             log.error("Taps processing failed due to unexpected error.", e);
             updateProcessState(ProcessState.FAILED);
-            throw new ProcessFailedException("Taps processing failed due to unexpected error: %s".formatted(e.getMessage()), e);
+            final String message = "Taps processing failed due to unexpected error: %s".formatted(e.getMessage());
+            finishJob(job, ProcessState.FAILED, message, runStart);
+            throw new ProcessFailedException(message, e);
         }
     }
 
+    private String processTapsInStages(final TapsProcessingJob job, final TripIndex.Builder storedTrips,
+                                       final FareCalculator runFareCalculator, final TripTotals runTotals) {
+        if (isStreamingInput()) {
+            return processStreamedTaps(job, storedTrips, runFareCalculator, runTotals);
+        }
+        final List<Trip> trips;
+        if (tripsCsvConfig.isColumnarEnabled() || isSnapshotConfigured()) {
+            final TapBatch batch = readTapBatchFromCsv(job);
+            trips = createTrips(job, () -> tripsCreationService.createTrips(batch, runFareCalculator, runTotals));
+        } else {
+            final List<Tap> taps = readTapsFromCsv(job);
+            trips = createTrips(job, () -> tripsCreationService.createTrips(taps, runFareCalculator, runTotals));
+        }
+        job.throwIfCancelled();
+        storedTrips.addAll(trips);
+        return generateOutputTripsCsv(trips, job);
+    }
+
+    /**
+     * Matches the sorted taps sequentially, writing trips as they are matched and checkpointing every
+     * {@link TripsCsvConfig#getCheckpointIntervalTaps()} taps. A run of the same input with the same fares and
+     * matching settings after a failure or cancellation resumes from the last checkpoint and writes the same output
+     * as an uninterrupted run.
+     * Trips are always written with the {@code FastTripCsvWriter}, whose output is identical to opencsv, and
+     * uncompressed, since a compressed file cannot be truncated back to a checkpoint. The trips written before the
+     * checkpoint of a resumed run are not read back, so the trips stored for queries are marked incomplete.
+     */
+    private String processTapsWithCheckpoints(final TapsProcessingJob job, final TripIndex.Builder storedTrips,
+                                              final FareCalculator runFareCalculator, final TripTotals runTotals) {
+        if (csvUtils.isGzip(tripsCsvConfig.getOutputFilePath())) {
+            throw new ProcessFailedException("Checkpointed processing cannot write compressed output: %s"
+                    .formatted(tripsCsvConfig.getOutputFilePath()), null);
+        }
+        final boolean streaming = isStreamingInput();
+        final Iterator<Tap> inMemoryTaps = streaming ? null : readSortedTapsInMemory(job);
+        if (streaming) {
+            log.info("Starting streaming taps processing.");
+        }
+        try (final SortedTapIterator stream = streaming
+                ? csvUtils.streamTapsFromCsv(tripsCsvConfig.getInputFilePath(), tripsCsvConfig.getSortChunkSize()) : null;
+             final CheckpointedTripsWriter writer = new CheckpointedTripsWriter(Path.of(tripsCsvConfig.getInputFilePath()),
+                     tripsCreationService.checkpointSettings(runFareCalculator), Path.of(tripsCsvConfig.getOutputFilePath()),
+                     Path.of(tripsCsvConfig.getCheckpointFilePath()),
+                     trip -> {
+                         tapsProcessingMetrics.recordTrip(trip);
+                         job.getTripsEmitted().incrementAndGet();
+                         storedTrips.add(trip);
+                     })) {
+            if (writer.getResumeCheckpoint().isPresent()) {
+                storedTrips.markIncomplete();
+            }
+            job.throwIfCancelled();
+            job.moveToStage(ProcessStage.MATCHING);
+            final long matchingStart = System.nanoTime();
+            final Iterator<Tap> taps = new ProgressTrackingIterator(streaming ? stream : inMemoryTaps, job, streaming);
+            tripsCreationService.createTrips(taps, writer, Math.max(1, tripsCsvConfig.getCheckpointIntervalTaps()),
+                    runFareCalculator, runTotals);
+            tapsProcessingMetrics.recordStage(ProcessStage.MATCHING, System.nanoTime() - matchingStart);
+
+            job.moveToStage(ProcessStage.WRITING);
+            final long writingStart = System.nanoTime();
+            writer.complete();
+            tapsProcessingMetrics.recordStage(ProcessStage.WRITING, System.nanoTime() - writingStart);
+        } catch (final ProcessCancelledException e) {
+            throw e;
+        } catch (final Exception e) {
+            log.error("Error creating trips from taps with checkpoints.", e);
+            throw new ProcessFailedException("Error creating trips from taps with checkpoints: %s".formatted(e.getCause()), e);
+        }
+        if (streaming) {
+            tapsProcessingMetrics.recordTapsRead(job.getTapsRead().get());
+        }
+        final String message = "Processing completed, output saved to %s".formatted(tripsCsvConfig.getOutputFilePath());
+        log.info(message);
+        return message;
+    }
+
+    /**
+     * Runs reading, matching and writing as the concurrent stages of a {@link TapsPipeline}, so trips are written
+     * while later taps are still being read and matched. Matching is sequential, and in-memory inputs are read and
+     * sorted before the pipeline starts since no tap can be matched before all of them are sorted; streamed inputs
+     * merge their sorted runs in the reader stage. Trips are always written with the {@code FastTripCsvWriter}.
+     */
+    private String processTapsPipelined(final TapsProcessingJob job, final TripIndex.Builder storedTrips,
+                                        final FareCalculator runFareCalculator, final TripTotals runTotals) {
+        final boolean streaming = isStreamingInput();
+        final Iterator<Tap> inMemoryTaps = streaming ? null : readSortedTapsInMemory(job);
+        log.info("Starting pipelined taps processing.");
+        try (final FastTripCsvWriter writer = new FastTripCsvWriter(Path.of(tripsCsvConfig.getOutputFilePath()),
+                csvUtils.isGzip(tripsCsvConfig.getOutputFilePath()))) {
+            job.throwIfCancelled();
+            if (streaming) {
+                job.moveToStage(ProcessStage.READING);
+            }
+            new TapsPipeline(tripsPipelineConfig.getBatchSize(), tripsPipelineConfig.getQueueCapacity()).run(
+                    tapConsumer -> {
+                        if (!streaming) {
+                            new ProgressTrackingIterator(inMemoryTaps, job, false).forEachRemaining(tapConsumer);
+                            return;
+                        }
+                        try (final SortedTapIterator stream = csvUtils.streamTapsFromCsv(tripsCsvConfig.getInputFilePath(),
+                                tripsCsvConfig.getSortChunkSize())) {
+                            new ProgressTrackingIterator(stream, job, true).forEachRemaining(tapConsumer);
+                        }
+                    },
+                    (taps, tripConsumer) -> tripsCreationService.createTrips(taps, tripConsumer, runFareCalculator, runTotals),
+                    trip -> {
+                        writer.write(trip);
+                        tapsProcessingMetrics.recordTrip(trip);
+                        job.getTripsEmitted().incrementAndGet();
+                        storedTrips.add(trip);
+                    },
+                    (stage, durationNanos) -> {
+                        // the reading of in-memory inputs was recorded before the pipeline started
+                        if (streaming || stage != ProcessStage.READING) {
+                            tapsProcessingMetrics.recordStage(stage, durationNanos);
+                        }
+                        if (stage != ProcessStage.WRITING) {
+                            job.moveToStage(stage == ProcessStage.READING ? ProcessStage.MATCHING : ProcessStage.WRITING);
+                        }
+                    });
+        } catch (final ProcessCancelledException e) {
+            throw e;
+        } catch (final Exception e) {
+            log.error("Error processing taps in pipeline.", e);
+            throw new ProcessFailedException("Error processing taps in pipeline: %s".formatted(e.getMessage()), e);
+        }
+        if (streaming) {
+            tapsProcessingMetrics.recordTapsRead(job.getTapsRead().get());
+        }
+        final String message = "Processing completed, output saved to %s".formatted(tripsCsvConfig.getOutputFilePath());
+        log.info(message);
+        return message;
+    }
+
+    private Iterator<Tap> readSortedTapsInMemory(final TapsProcessingJob job) {
+        if (tripsCsvConfig.isColumnarEnabled() || isSnapshotConfigured()) {
+            return readTapBatchFromCsv(job).iterator();
+        }
+        return readTapsFromCsv(job).iterator();
+    }
+
+    private boolean isCheckpointConfigured() {
+        return tripsCsvConfig.getCheckpointFilePath() != null && !tripsCsvConfig.getCheckpointFilePath().isBlank();
+    }
+
+    private void finishJob(final TapsProcessingJob job, final ProcessState state, final String message, final long runStart) {
+        job.finish(state, message);
+        tapsProcessingMetrics.recordRun(state, System.nanoTime() - runStart);
+    }
+
     private void validateProcessState() {
-        if (processStateHandler.isProcessingAlreadyRunning()) {
+        if (!processStateHandler.tryStart()) {
             throw new ProcessStartedException("Taps processing is already running.");
         }
     }
@@ -61,30 +276,169 @@ public class TapsProcessor {
         processStateHandler.setProcessState(newState);
     }
 
-    private List<Tap> readTapsFromCsv() {
+    private List<Tap> readTapsFromCsv(final TapsProcessingJob job) {
         try {
             log.info("Starting taps processing.");
-            updateProcessState(ProcessState.STARTED);
-            return csvUtils.readTapsFromCsv(tripsCsvConfig.getInputFilePath());
+            job.moveToStage(ProcessStage.READING);
+            final long stageStart = System.nanoTime();
+            final List<Tap> taps;
+            if (!tripsCsvConfig.isFastParserEnabled()) {
+                taps = csvUtils.readTapsFromCsv(tripsCsvConfig.getInputFilePath());
+            } else if (tripsCsvConfig.getParseParallelism() > 1) {
+                taps = csvUtils.readTapsFromCsvParallel(tripsCsvConfig.getInputFilePath(), tripsCsvConfig.getParseParallelism());
+            } else {
+                taps = csvUtils.readTapsFromCsvFast(tripsCsvConfig.getInputFilePath());
+            }
+            tapsProcessingMetrics.recordStage(ProcessStage.READING, System.nanoTime() - stageStart);
+            tapsProcessingMetrics.recordTapsRead(taps.size());
+            job.getTapsRead().set(taps.size());
+            return taps;
+        } catch (final Exception e) {
+            log.error("Error reading taps from CSV.", e);
+            throw new ProcessFailedException("Error reading read taps from CSV: %s".formatted(e.getCause()), e);
+        }
+    }
+
+    /**
+     * Decides whether the input file is large enough to be streamed through the external merge sort
+     * rather than loaded into memory as a whole. The size of a compressed input is scaled by
+     * {@link #GZIP_EXPANSION_RATIO} to the size it takes once decompressed.
+     */
+    private boolean isStreamingInput() {
+        final long threshold = tripsCsvConfig.getStreamingThresholdBytes();
+        if (threshold <= 0) {
+            return false;
+        }
+        try {
+            final long fileSize = Files.size(Path.of(tripsCsvConfig.getInputFilePath()));
+            final long inputSize = csvUtils.isGzip(tripsCsvConfig.getInputFilePath()) ? fileSize * GZIP_EXPANSION_RATIO : fileSize;
+            return inputSize > threshold;
+        } catch (final IOException e) {
+            log.warn("Unable to determine size of input file {}, reading it in memory.", tripsCsvConfig.getInputFilePath(), e);
+            return false;
+        }
+    }
+
+    /**
+     * Matches the taps merged from the sorted runs of the external sort and writes every trip as soon as it is final,
+     * so neither the taps nor the trips of the input are ever held in memory as a whole. Trips are always written
+     * with the {@code FastTripCsvWriter}, whose output is identical to opencsv, and their writing is part of the
+     * matching stage.
+     */
+    private String processStreamedTaps(final TapsProcessingJob job, final TripIndex.Builder storedTrips,
+                                       final FareCalculator runFareCalculator, final TripTotals runTotals) {
+        log.info("Starting streaming taps processing.");
+        try {
+            job.moveToStage(ProcessStage.MATCHING);
+            final long matchingStart = System.nanoTime();
+            streamTapFile(Path.of(tripsCsvConfig.getInputFilePath()), Path.of(tripsCsvConfig.getOutputFilePath()), job,
+                    runFareCalculator, runTotals, storedTrips::add);
+            tapsProcessingMetrics.recordStage(ProcessStage.MATCHING, System.nanoTime() - matchingStart);
+        } catch (final ProcessCancelledException e) {
+            throw e;
+        } catch (final Exception e) {
+            log.error("Error creating trips from streamed taps.", e);
+            throw new ProcessFailedException("Error creating trips from streamed taps: %s".formatted(e.getCause()), e);
+        }
+        final String message = "Processing completed, output saved to %s".formatted(tripsCsvConfig.getOutputFilePath());
+        log.info(message);
+        return message;
+    }
+
+    /**
+     * Streams one tap file into its trip file: the taps are merged from the sorted runs of the external sort, so at
+     * most {@link TripsCsvConfig#getSortChunkSize()} of them are held in memory, and every trip is written with the
+     * {@code FastTripCsvWriter} as soon as it is final. The output is compressed when its name ends with {@code .gz}.
+     * Taps and trips are counted on the job and recorded in the metrics, and cancellation is checked between taps.
+     * Used for streamed runs and for every file of a {@link TapFilesProcessor} run.
+     *
+     * @param inputFile         the tap file to read
+     * @param outputFile        the trip file to write
+     * @param job               the job to report progress to
+     * @param runFareCalculator the fares pinned by the run through {@link TripsCreationService#pinFares()}
+     * @param totals            the totals to add the trips to
+     * @param tripConsumer      receives every trip once it is written
+     * @return the number of taps read from the tap file
+     * @throws ProcessCancelledException if the job is cancelled while the file is streamed
+     */
+    long streamTapFile(final Path inputFile, final Path outputFile, final TapsProcessingJob job,
+                       final FareCalculator runFareCalculator, final TripTotals totals, final Consumer<Trip> tripConsumer)
+            throws IOException {
+        try (final SortedTapIterator stream = csvUtils.streamTapsFromCsv(inputFile.toString(), tripsCsvConfig.getSortChunkSize());
+             final FastTripCsvWriter writer = new FastTripCsvWriter(outputFile, csvUtils.isGzip(outputFile.toString()))) {
+            final ProgressTrackingIterator taps = new ProgressTrackingIterator(stream, job, true);
+            tripsCreationService.createTrips(taps, trip -> {
+                writer.write(trip);
+                tapsProcessingMetrics.recordTrip(trip);
+                job.getTripsEmitted().incrementAndGet();
+                tripConsumer.accept(trip);
+            }, runFareCalculator, totals);
+            tapsProcessingMetrics.recordTapsRead(taps.getTapsRead());
+            return taps.getTapsRead();
+        }
+    }
+
+    private TapBatch readTapBatchFromCsv(final TapsProcessingJob job) {
+        try {
+            log.info("Starting columnar taps processing.");
+            job.moveToStage(ProcessStage.READING);
+            final long stageStart = System.nanoTime();
+            final TapBatch batch = readTapBatch();
+            tapsProcessingMetrics.recordStage(ProcessStage.READING, System.nanoTime() - stageStart);
+            tapsProcessingMetrics.recordTapsRead(batch.size());
+            job.getTapsRead().set(batch.size());
+            return batch;
         } catch (final Exception e) {
             log.error("Error reading taps from CSV.", e);
             throw new ProcessFailedException("Error reading read taps from CSV: %s".formatted(e.getCause()), e);
         }
     }
 
-    private List<Trip> createTrips(final List<Tap> taps) {
+    private TapBatch readTapBatch() throws IOException {
+        final String inputFilePath = tripsCsvConfig.getInputFilePath();
+        if (!isSnapshotConfigured()) {
+            return csvUtils.readTapBatchFromCsv(inputFilePath);
+        }
+        final Path snapshotFile = Path.of(tripsCsvConfig.getSnapshotFilePath());
+        if (Files.exists(snapshotFile)
+                && Files.getLastModifiedTime(snapshotFile).compareTo(Files.getLastModifiedTime(Path.of(inputFilePath))) >= 0) {
+            return csvUtils.readTapBatchFromSnapshot(snapshotFile.toString());
+        }
+        return csvUtils.convertCsvToSnapshot(inputFilePath, snapshotFile.toString());
+    }
+
+    private boolean isSnapshotConfigured() {
+        return tripsCsvConfig.getSnapshotFilePath() != null && !tripsCsvConfig.getSnapshotFilePath().isBlank();
+    }
+
+    private List<Trip> createTrips(final TapsProcessingJob job, final Supplier<List<Trip>> matching) {
         try {
-            return tripsCreationService.createTrips(taps);
+            job.throwIfCancelled();
+            job.moveToStage(ProcessStage.MATCHING);
+            final long stageStart = System.nanoTime();
+            final List<Trip> trips = matching.get();
+            tapsProcessingMetrics.recordStage(ProcessStage.MATCHING, System.nanoTime() - stageStart);
+            tapsProcessingMetrics.recordTrips(trips);
+            job.getTripsEmitted().set(trips.size());
+            return trips;
+        } catch (final ProcessCancelledException e) {
+            throw e;
         } catch (final Exception e) {
             log.error("Error creating trips from taps.", e);
             throw new ProcessFailedException("Error creating create trips from taps: %s".formatted(e.getCause()), e);
         }
     }
 
-    private String generateOutputTripsCsv(final List<Trip> trips) {
+    private String generateOutputTripsCsv(final List<Trip> trips, final TapsProcessingJob job) {
         try {
-            csvUtils.writeTripsToCsv(trips, tripsCsvConfig.getOutputFilePath());
-            updateProcessState(ProcessState.COMPLETED);
+            job.moveToStage(ProcessStage.WRITING);
+            final long stageStart = System.nanoTime();
+            if (tripsCsvConfig.isFastWriterEnabled()) {
+                csvUtils.writeTripsToCsvFast(trips, tripsCsvConfig.getOutputFilePath());
+            } else {
+                csvUtils.writeTripsToCsv(trips, tripsCsvConfig.getOutputFilePath());
+            }
+            tapsProcessingMetrics.recordStage(ProcessStage.WRITING, System.nanoTime() - stageStart);
             final String message = "Processing completed, output saved to %s".formatted(tripsCsvConfig.getOutputFilePath());
             log.info(message);
             return message;
@@ -94,4 +448,45 @@ public class TapsProcessor {
         }
     }
 
+    /**
+     * Counts streamed taps on the job, unless they were already counted when read, and stops the stream as soon as
+     * the job is cancelled.
+     */
+    private static final class ProgressTrackingIterator implements Iterator<Tap> {
+
+        private final Iterator<Tap> taps;
+        private final TapsProcessingJob job;
+        private final boolean countTaps;
+        private long tapsRead;
+
+        private ProgressTrackingIterator(final Iterator<Tap> taps, final TapsProcessingJob job, final boolean countTaps) {
+            this.taps = taps;
+            this.job = job;
+            this.countTaps = countTaps;
+        }
+
+        @Override
+        public boolean hasNext() {
+            job.throwIfCancelled();
+            return taps.hasNext();
+        }
+
+        @Override
+        public Tap next() {
+            final Tap tap = taps.next();
+            tapsRead++;
+            if (countTaps) {
+                job.getTapsRead().incrementAndGet();
+            }
+            return tap;
+        }
+
+        /**
+         * @return the number of taps returned so far
+         */
+        private long getTapsRead() {
+            return tapsRead;
+        }
+    }
+
 }
@@ -0,0 +1,754 @@
+package com.littlepay.tapfare.service;
+
+import com.littlepay.tapfare.constant.TapType;
+import com.littlepay.tapfare.constant.TripStatus;
+import com.littlepay.tapfare.model.Tap;
+import com.littlepay.tapfare.model.Trip;
+import com.littlepay.tapfare.utils.CompiledFareMatrix;
+import com.littlepay.tapfare.utils.LongObjectHashMap;
+import com.littlepay.tapfare.utils.PanCodec;
+import com.littlepay.tapfare.utils.TripTotals;
+import lombok.extern.slf4j.Slf4j;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Matching state for a single run of trip creation.
+ * A matcher pairs "Tap On" and "Tap Off" events of the same PAN happening on the same day into completed or
+ * cancelled trips, keeping unmatched taps open until {@link #createOrphanOnTrips()} and
+ * {@link #createOrphanOffTrips()} turn them into incomplete trips.
+ * Every tap is accepted together with its position in the input, and every trip is returned with the position
+ * of the tap that produced it, so that trips matched by independent matchers can be merged back into input order.
+ * When closed days are evicted, the matcher tracks a watermark on the event time of the accepted taps: as soon as a
+ * tap of a later day arrives, the open taps of the earlier days, which can no longer match, are finalised into
+ * incomplete trips and released, so the open state only ever holds the taps of the current day. This requires the
+ * taps to be accepted in date time order; a tap dated before the watermark day is rejected.
+ * Open taps are indexed by PAN and then by service day, each day holding its open "Tap On" and "Tap Off" events in
+ * arrival order. The PAN index is a primitive {@link LongObjectHashMap} keyed by the PAN packed by {@link PanCodec}
+ * (PANs that cannot be packed get a negative key of their own), holding the open days of every PAN inline as a
+ * chain, most recently opened day first. As long as the taps of a day arrive in date time order, the tap a new one
+ * matches is always at an end of its queue, so matching and removal take constant time however many taps a PAN has
+ * open. Taps arriving out of order, which only happens with unsorted input, fall back to scanning the queue of their
+ * day.
+ * The stop of every tap is resolved to its fare matrix index once, when the tap is accepted, and kept with the open
+ * tap, so trips are priced through the index overloads of the {@link FareCalculator} without hashing stop IDs again.
+ * This requires the fares of the matcher to be pinned; a {@link #longLived(FareCalculator) long-lived} matcher,
+ * whose open taps outlive fare reloads, prices trips by stop ID instead.
+ * Every trip created is also added to the ridership and revenue totals of the matcher, unless the matcher is
+ * long-lived and would accumulate totals forever.
+ * A matcher is not thread-safe; each run or shard owns its own instance.
+ */
+@Slf4j
+class TripMatcher {
+
+    private static final Comparator<SequencedTrip> POSITION_ORDER = Comparator.comparingLong(SequencedTrip::position);
+
+    private final FareCalculator fareCalculator;
+    private final LongObjectHashMap<DayTaps> openTaps = new LongObjectHashMap<>();
+    private final Map<String, Long> unpackablePanKeys = new HashMap<>();
+    private final List<SequencedTrip> closedTrips = new ArrayList<>();
+    private final List<SequencedTrip> evictedOnTrips = new ArrayList<>();
+    private final List<SequencedTrip> evictedOffTrips = new ArrayList<>();
+    private final boolean evictClosedDays;
+    private final boolean pricedByStopId;
+    private final TripTotals totals;
+    private LocalDate watermarkDay;
+    private long nextUnpackablePanKey = -1L;
+    private int openTapOnCount;
+    private int openTapOffCount;
+
+    TripMatcher(final FareCalculator fareCalculator) {
+        this(fareCalculator, false);
+    }
+
+    /**
+     * @param fareCalculator  the calculator used to price trips
+     * @param evictClosedDays whether open taps are finalised as soon as a tap of a later day is accepted;
+     *                        requires taps to be accepted in date time order
+     */
+    TripMatcher(final FareCalculator fareCalculator, final boolean evictClosedDays) {
+        this(fareCalculator, evictClosedDays, false);
+    }
+
+    private TripMatcher(final FareCalculator fareCalculator, final boolean evictClosedDays, final boolean pricedByStopId) {
+        this.fareCalculator = fareCalculator;
+        this.evictClosedDays = evictClosedDays;
+        this.pricedByStopId = pricedByStopId;
+        this.totals = pricedByStopId ? null : new TripTotals();
+    }
+
+    /**
+     * Creates a matcher that is never finished, such as those of online matching. Its fares are not pinned and may be
+     * reloaded while taps are open, so the stops of its taps are not resolved to fare matrix indexes, which a reload
+     * would invalidate, and every trip is priced by stop ID with the fares current when it is created. Having no run
+     * to report on, it keeps no totals, whose company and bus dimensions would otherwise grow for as long as it lives.
+     *
+     * @param fareCalculator the calculator used to price trips, following fare reloads
+     * @return the long-lived matcher
+     */
+    static TripMatcher longLived(final FareCalculator fareCalculator) {
+        return new TripMatcher(fareCalculator, false, true);
+    }
+
+    /**
+     * Matches the given tap against the open taps of its PAN.
+     *
+     * @param tap      the tap to match
+     * @param position the position of the tap in the input, used to order the resulting trips
+     */
+    void accept(final Tap tap, final long position) {
+        accept(tap, position, stopIndex(tap));
+    }
+
+    /**
+     * Matches the given tap, whose stop was already resolved through {@link #stopIndexes(List)}, against the open
+     * taps of its PAN.
+     *
+     * @param tap       the tap to match
+     * @param position  the position of the tap in the input, used to order the resulting trips
+     * @param stopIndex the fare matrix index of the stop of the tap
+     */
+    void accept(final Tap tap, final long position, final int stopIndex) {
+        log.debug("Processing tap: {}", tap);
+        if (evictClosedDays) {
+            advanceWatermark(tap);
+        }
+
+        if (tap.getTapType() == TapType.ON) {
+            handleTapOn(new OpenTap(tap, position, stopIndex));
+        } else if (tap.getTapType() == TapType.OFF) {
+            handleTapOff(new OpenTap(tap, position, stopIndex));
+        } else {
+            log.warn("Unknown tap type: {}", tap.getTapType());
+        }
+    }
+
+    /**
+     * Resolves a dictionary of stop IDs, such as the stop dictionary of a {@code TapBatch}, to the fare matrix indexes
+     * of this matcher, so that the taps of a batch are accepted without resolving the same stop once per tap.
+     *
+     * @param stopIds the stop IDs to resolve
+     * @return the fare matrix index of every stop ID, in the same order
+     */
+    int[] stopIndexes(final List<String> stopIds) {
+        final int[] stopIndexes = new int[stopIds.size()];
+        for (int i = 0; i < stopIndexes.length; i++) {
+            stopIndexes[i] = fareCalculator.stopIndex(stopIds.get(i));
+        }
+        return stopIndexes;
+    }
+
+    /**
+     * @return the number of "Tap On" events currently waiting for a "Tap Off"; may be stale when read from another thread
+     */
+    int getOpenTapOnCount() {
+        return openTapOnCount;
+    }
+
+    /**
+     * @return the number of "Tap Off" events currently waiting for a "Tap On"; may be stale when read from another thread
+     */
+    int getOpenTapOffCount() {
+        return openTapOffCount;
+    }
+
+    /**
+     * @return the number of PANs that cannot be packed and currently have open taps
+     */
+    int getUnpackablePanCount() {
+        return unpackablePanKeys.size();
+    }
+
+    /**
+     * @return the totals of every trip created so far; always empty for a {@link #longLived(FareCalculator) long-lived}
+     * matcher
+     */
+    TripTotals getTotals() {
+        return totals != null ? totals : new TripTotals();
+    }
+
+    /**
+     * @return the completed and cancelled trips matched so far, in the order of the taps that closed them
+     */
+    List<SequencedTrip> getClosedTrips() {
+        return closedTrips;
+    }
+
+    /**
+     * Returns the completed and cancelled trips matched since the previous call and forgets them, so that a
+     * long-lived matcher does not accumulate trips that were already handed out.
+     *
+     * @return the trips matched since the previous call, in the order of the taps that closed them
+     */
+    List<SequencedTrip> drainClosedTrips() {
+        return drain(closedTrips);
+    }
+
+    /**
+     * Returns the incomplete trips for orphan "Tap On" events evicted by the watermark since the previous call and
+     * forgets them, so that a long-running match can write them out as it goes.
+     *
+     * @return the evicted trips, in the input order of their taps
+     */
+    List<SequencedTrip> drainEvictedOnTrips() {
+        final List<SequencedTrip> drained = drain(evictedOnTrips);
+        if (!drained.isEmpty()) {
+            drained.sort(POSITION_ORDER);
+        }
+        return drained;
+    }
+
+    /**
+     * Returns the incomplete trips for orphan "Tap Off" events evicted by the watermark since the previous call and
+     * forgets them, so that a long-running match can write them out as it goes.
+     *
+     * @return the evicted trips, in the input order of their taps
+     */
+    List<SequencedTrip> drainEvictedOffTrips() {
+        final List<SequencedTrip> drained = drain(evictedOffTrips);
+        if (!drained.isEmpty()) {
+            drained.sort(POSITION_ORDER);
+        }
+        return drained;
+    }
+
+    private static List<SequencedTrip> drain(final List<SequencedTrip> trips) {
+        if (trips.isEmpty()) {
+            return List.of();
+        }
+        final List<SequencedTrip> drained = new ArrayList<>(trips);
+        trips.clear();
+        return drained;
+    }
+
+    /**
+     * Captures the open taps and the watermark, so that matching can later be resumed from this point with
+     * {@link #restore(State)}. Closed and evicted trips are not part of the state and must be drained beforehand.
+     *
+     * @return the open matching state
+     */
+    State snapshot() {
+        final List<OpenTap> openTapOns = new ArrayList<>(openTapOnCount);
+        final List<OpenTap> openTapOffs = new ArrayList<>(openTapOffCount);
+        openTaps.forEachValue(panDays -> {
+            for (DayTaps dayTaps = panDays; dayTaps != null; dayTaps = dayTaps.next) {
+                dayTaps.tapOns.addTo(openTapOns);
+                dayTaps.tapOffs.addTo(openTapOffs);
+            }
+        });
+        openTapOns.sort(Comparator.comparingLong(OpenTap::position));
+        openTapOffs.sort(Comparator.comparingLong(OpenTap::position));
+        return new State(openTapOns, openTapOffs, watermarkDay);
+    }
+
+    /**
+     * Restores the open taps and the watermark captured by {@link #snapshot()} into this new matcher.
+     * Open taps are re-added in input order, which rebuilds the per-PAN queues exactly as they were, and their stops
+     * are resolved again since the fares of this matcher may differ from those of the matcher that was captured.
+     *
+     * @param state the state to restore
+     */
+    void restore(final State state) {
+        for (final OpenTap tapOn : state.openTapOns()) {
+            dayTapsOf(panKey(tapOn.tap().getPan()), tapOn.tap()).tapOns.add(resolved(tapOn));
+        }
+        for (final OpenTap tapOff : state.openTapOffs()) {
+            dayTapsOf(panKey(tapOff.tap().getPan()), tapOff.tap()).tapOffs.add(resolved(tapOff));
+        }
+        openTapOnCount += state.openTapOns().size();
+        openTapOffCount += state.openTapOffs().size();
+        watermarkDay = state.watermarkDay();
+    }
+
+    private OpenTap resolved(final OpenTap openTap) {
+        return new OpenTap(openTap.tap(), openTap.position(), stopIndex(openTap.tap()));
+    }
+
+    private int stopIndex(final Tap tap) {
+        return pricedByStopId ? CompiledFareMatrix.UNKNOWN_STOP : fareCalculator.stopIndex(tap.getStopId());
+    }
+
+    /**
+     * Creates incomplete trips for the open taps of every day before the given one and clears them.
+     * Taps only match within the same day, so once a day is over its open taps can no longer be completed.
+     *
+     * @param day the first day whose open taps are kept
+     * @return the incomplete trips for orphan "Tap On" events followed by those for orphan "Tap Off" events,
+     * each in the input order of their taps
+     */
+    List<SequencedTrip> closeDaysBefore(final LocalDate day) {
+        final List<SequencedTrip> orphanOnTrips = new ArrayList<>();
+        final List<SequencedTrip> orphanOffTrips = new ArrayList<>();
+        closeDaysBefore(day, orphanOnTrips, orphanOffTrips);
+        orphanOnTrips.sort(POSITION_ORDER);
+        orphanOffTrips.sort(POSITION_ORDER);
+        orphanOnTrips.addAll(orphanOffTrips);
+        return orphanOnTrips;
+    }
+
+    private void closeDaysBefore(final LocalDate day, final List<SequencedTrip> orphanOnTrips, final List<SequencedTrip> orphanOffTrips) {
+        openTaps.replaceAll(panDays -> {
+            for (DayTaps dayTaps = panDays; dayTaps != null; dayTaps = dayTaps.next) {
+                if (dayTaps.day.isBefore(day)) {
+                    openTapOnCount -= addOrphanOnTrips(dayTaps, orphanOnTrips);
+                    openTapOffCount -= addOrphanOffTrips(dayTaps, orphanOffTrips);
+                }
+            }
+            return withoutEmptyDays(panDays);
+        });
+        releaseUnpackablePanKeys();
+    }
+
+    /**
+     * Moves the watermark to the day of the given tap, finalising the open taps of the days it passes.
+     */
+    private void advanceWatermark(final Tap tap) {
+        final LocalDate day = tap.getLocalDateTime().toLocalDate();
+        if (watermarkDay == null || day.isAfter(watermarkDay)) {
+            if (watermarkDay != null) {
+                final int evictedBefore = evictedOnTrips.size() + evictedOffTrips.size();
+                closeDaysBefore(day, evictedOnTrips, evictedOffTrips);
+                log.debug("Watermark passed {}, evicted {} open taps.", watermarkDay, evictedOnTrips.size() + evictedOffTrips.size() - evictedBefore);
+            }
+            watermarkDay = day;
+        } else if (day.isBefore(watermarkDay)) {
+            throw new IllegalArgumentException("Tap ID %d dated %s arrived after day %s was closed; taps must be sorted by date time"
+                    .formatted(tap.getId(), tap.getLocalDateTime(), watermarkDay));
+        }
+    }
+
+    /**
+     * Adds incomplete trips for the open "Tap On" events of the given day and clears them.
+     *
+     * @return the number of taps cleared
+     */
+    private int addOrphanOnTrips(final DayTaps dayTaps, final List<SequencedTrip> orphanTrips) {
+        final int orphans = dayTaps.tapOns.size();
+        for (OpenTap tapOn = dayTaps.tapOns.pollFirst(); tapOn != null; tapOn = dayTaps.tapOns.pollFirst()) {
+            orphanTrips.add(sequenced(tapOn.position(), createIncompleteTrip(tapOn)));
+            log.debug("Incomplete trip created for orphan ON tap at stop {}", tapOn.tap().getStopId());
+        }
+        return orphans;
+    }
+
+    /**
+     * Adds incomplete trips for the open "Tap Off" events of the given day and clears them.
+     *
+     * @return the number of taps cleared
+     */
+    private int addOrphanOffTrips(final DayTaps dayTaps, final List<SequencedTrip> orphanTrips) {
+        final int orphans = dayTaps.tapOffs.size();
+        for (OpenTap tapOff = dayTaps.tapOffs.pollFirst(); tapOff != null; tapOff = dayTaps.tapOffs.pollFirst()) {
+            orphanTrips.add(sequenced(tapOff.position(), handleOrphanTapOff(tapOff)));
+            log.debug("Incomplete trip created for orphan OFF tap at stop {}", tapOff.tap().getStopId());
+        }
+        return orphans;
+    }
+
+    /**
+     * Creates incomplete trips for every "Tap On" event left without a matching "Tap Off", including those already
+     * evicted by the watermark, and clears them.
+     *
+     * @return the incomplete trips in the input order of their taps
+     */
+    List<SequencedTrip> createOrphanOnTrips() {
+        final List<SequencedTrip> orphanTrips = new ArrayList<>(evictedOnTrips);
+        evictedOnTrips.clear();
+        openTaps.replaceAll(panDays -> {
+            for (DayTaps dayTaps = panDays; dayTaps != null; dayTaps = dayTaps.next) {
+                addOrphanOnTrips(dayTaps, orphanTrips);
+            }
+            return withoutEmptyDays(panDays);
+        });
+        releaseUnpackablePanKeys();
+        openTapOnCount = 0;
+        orphanTrips.sort(POSITION_ORDER);
+        return orphanTrips;
+    }
+
+    /**
+     * Creates incomplete trips for every "Tap Off" event left without a matching "Tap On", including those already
+     * evicted by the watermark, and clears them.
+     *
+     * @return the incomplete trips in the input order of their taps
+     */
+    List<SequencedTrip> createOrphanOffTrips() {
+        final List<SequencedTrip> orphanTrips = new ArrayList<>(evictedOffTrips);
+        evictedOffTrips.clear();
+        openTaps.replaceAll(panDays -> {
+            for (DayTaps dayTaps = panDays; dayTaps != null; dayTaps = dayTaps.next) {
+                addOrphanOffTrips(dayTaps, orphanTrips);
+            }
+            return withoutEmptyDays(panDays);
+        });
+        releaseUnpackablePanKeys();
+        openTapOffCount = 0;
+        orphanTrips.sort(POSITION_ORDER);
+        return orphanTrips;
+    }
+
+    /**
+     * Handles the "Tap On" event by attempting to match it with an existing "Tap Off" event to create a completed trip.
+     * If a matching "Tap Off" event is found, a trip is created and logged; otherwise, the "Tap On" event is stored
+     * for future processing. The matching "Tap Off" is the first one stored for the same PAN and day with a later
+     * date time.
+     *
+     * @param tapOn the tap on event to be handled. This event will be used to find a corresponding "Tap Off" event
+     *              to complete the trip.
+     */
+    private void handleTapOn(final OpenTap tapOn) {
+        final Tap tap = tapOn.tap();
+        final long panKey = panKey(tap.getPan());
+        final DayTaps dayTaps = findDayTaps(panKey, tap);
+        final OpenTap matchingTapOff = dayTaps != null ? dayTaps.tapOffs.pollFirstAfter(tap.getLocalDateTime()) : null;
+
+        if (matchingTapOff != null) {
+            closedTrips.add(sequenced(tapOn.position(), createTrip(tapOn, matchingTapOff)));
+            openTapOffCount--;
+            removeIfEmpty(panKey, tap.getPan(), dayTaps);
+            log.debug("Completed trip created for PAN: {} from {} to {}", tap.getPan(), tap.getStopId(), matchingTapOff.tap().getStopId());
+        } else {
+            (dayTaps != null ? dayTaps : addDayTaps(panKey, tap)).tapOns.add(tapOn);
+            openTapOnCount++;
+            log.debug("No matching OFF tap found for ON tap at stop {}, storing for later.", tap.getStopId());
+        }
+    }
+
+    /**
+     * Handles a "Tap Off" event by attempting to find a matching "Tap On" event.
+     * If a matching "Tap On" event is found, a trip is created and logged.
+     * Otherwise, the "Tap Off" event is stored for future processing. The matching "Tap On" is the first one stored
+     * for the same PAN and day with an earlier date time.
+     *
+     * @param tapOff the tap off event to be handled. This event will be used
+     *               to find a corresponding "Tap On" event to complete the trip.
+     */
+    private void handleTapOff(final OpenTap tapOff) {
+        final Tap tap = tapOff.tap();
+        final long panKey = panKey(tap.getPan());
+        final DayTaps dayTaps = findDayTaps(panKey, tap);
+        final OpenTap matchingTapOn = dayTaps != null ? dayTaps.tapOns.pollFirstBefore(tap.getLocalDateTime()) : null;
+
+        if (matchingTapOn != null) {
+            closedTrips.add(sequenced(tapOff.position(), createTrip(matchingTapOn, tapOff)));
+            openTapOnCount--;
+            removeIfEmpty(panKey, tap.getPan(), dayTaps);
+            log.debug("Completed trip created for PAN: {} from {} to {}", tap.getPan(), matchingTapOn.tap().getStopId(), tap.getStopId());
+        } else {
+            (dayTaps != null ? dayTaps : addDayTaps(panKey, tap)).tapOffs.add(tapOff);
+            openTapOffCount++;
+            log.debug("No matching ON tap found for OFF tap at stop {}, storing for later.", tap.getStopId());
+        }
+    }
+
+    /**
+     * @return the key of the PAN in the open tap index: the packed PAN, or a negative key for a PAN that cannot be
+     * packed, held until the PAN has no open taps left
+     */
+    private long panKey(final String pan) {
+        final long packed = pan != null ? PanCodec.pack(pan) : PanCodec.NOT_PACKABLE;
+        if (packed != PanCodec.NOT_PACKABLE) {
+            return packed;
+        }
+        Long key = unpackablePanKeys.get(pan);
+        if (key == null) {
+            key = nextUnpackablePanKey--;
+            unpackablePanKeys.put(pan, key);
+        }
+        return key;
+    }
+
+    /**
+     * @return the open taps of the PAN and day of the given tap, or null if there are none
+     */
+    private DayTaps findDayTaps(final long panKey, final Tap tap) {
+        final LocalDate day = tap.getLocalDateTime().toLocalDate();
+        for (DayTaps dayTaps = openTaps.get(panKey); dayTaps != null; dayTaps = dayTaps.next) {
+            if (dayTaps.day.isEqual(day)) {
+                return dayTaps;
+            }
+        }
+        return null;
+    }
+
+    private DayTaps addDayTaps(final long panKey, final Tap tap) {
+        final DayTaps dayTaps = new DayTaps(tap.getLocalDateTime().toLocalDate());
+        dayTaps.next = openTaps.get(panKey);
+        openTaps.put(panKey, dayTaps);
+        return dayTaps;
+    }
+
+    private DayTaps dayTapsOf(final long panKey, final Tap tap) {
+        final DayTaps dayTaps = findDayTaps(panKey, tap);
+        return dayTaps != null ? dayTaps : addDayTaps(panKey, tap);
+    }
+
+    private void removeIfEmpty(final long panKey, final String pan, final DayTaps dayTaps) {
+        if (dayTaps.isEmpty()) {
+            final DayTaps panDays = withoutEmptyDays(openTaps.get(panKey));
+            if (panDays == null) {
+                openTaps.remove(panKey);
+                if (panKey < 0) {
+                    unpackablePanKeys.remove(pan);
+                }
+            } else {
+                openTaps.put(panKey, panDays);
+            }
+        }
+    }
+
+    /**
+     * Forgets the keys of the unpackable PANs left without open taps, so a long-lived matcher does not keep every
+     * unpackable PAN it has seen.
+     */
+    private void releaseUnpackablePanKeys() {
+        if (!unpackablePanKeys.isEmpty()) {
+            unpackablePanKeys.values().removeIf(panKey -> openTaps.get(panKey) == null);
+        }
+    }
+
+    /**
+     * Unlinks the empty days from a chain of open days.
+     *
+     * @return the first day of the chain left, or null if every day was empty
+     */
+    private static DayTaps withoutEmptyDays(final DayTaps panDays) {
+        DayTaps first = panDays;
+        while (first != null && first.isEmpty()) {
+            first = first.next;
+        }
+        for (DayTaps dayTaps = first; dayTaps != null; dayTaps = dayTaps.next) {
+            while (dayTaps.next != null && dayTaps.next.isEmpty()) {
+                dayTaps.next = dayTaps.next.next;
+            }
+        }
+        return first;
+    }
+
+    private SequencedTrip sequenced(final long position, final Trip trip) {
+        if (totals != null) {
+            totals.add(trip);
+        }
+        return new SequencedTrip(position, trip);
+    }
+
+    private Trip createTrip(final OpenTap tapOn, final OpenTap tapOff) {
+        if (tapOff == null) {
+            return createIncompleteTrip(tapOn);
+        }
+        if (tapOn.tap().getStopId().equals(tapOff.tap().getStopId())) {
+            return createCancelledTrip(tapOn.tap(), tapOff.tap());
+        }
+        return createCompletedTrip(tapOn, tapOff);
+    }
+
+    private Trip handleOrphanTapOff(final OpenTap tapOff) {
+        final double maxFare = maxFare(tapOff);
+        return createTripWithoutOn(tapOff.tap(), maxFare);
+    }
+
+    private Trip createIncompleteTrip(final OpenTap tapOn) {
+        final double maxFare = maxFare(tapOn);
+        return createTripWithoutOff(tapOn.tap(), maxFare);
+    }
+
+    private double maxFare(final OpenTap openTap) {
+        return pricedByStopId
+                ? fareCalculator.calculateMaxFare(openTap.tap().getStopId())
+                : fareCalculator.calculateMaxFare(openTap.stopIndex());
+    }
+
+    private double fare(final OpenTap tapOn, final OpenTap tapOff) {
+        return pricedByStopId
+                ? fareCalculator.calculateFare(tapOn.tap().getStopId(), tapOff.tap().getStopId())
+                : fareCalculator.calculateFare(tapOn.stopIndex(), tapOff.stopIndex());
+    }
+
+    private Trip createCancelledTrip(final Tap tapOn, final Tap tapOff) {
+        return createTripWithDetails(tapOn, tapOff, 0, 0.0, TripStatus.CANCELLED);
+    }
+
+    private Trip createCompletedTrip(final OpenTap tapOn, final OpenTap tapOff) {
+        final long durationSecs = Duration.between(tapOn.tap().getLocalDateTime(), tapOff.tap().getLocalDateTime()).getSeconds();
+        final double fare = fare(tapOn, tapOff);
+        return createTripWithDetails(tapOn.tap(), tapOff.tap(), durationSecs, fare, TripStatus.COMPLETED);
+    }
+
+    private Trip createTripWithDetails(final Tap tapOn, final Tap tapOff, final long durationSecs, final double fare, final TripStatus status) {
+        return new Trip(
+                tapOn.getLocalDateTime(),
+                tapOff != null ? tapOff.getLocalDateTime() : null,
+                durationSecs,
+                tapOn.getStopId(),
+                tapOff != null ? tapOff.getStopId() : null,
+                fare,
+                tapOn.getCompanyId(),
+                tapOn.getBusId(),
+                tapOn.getPan(),
+                status
+        );
+    }
+
+    private Trip createTripWithoutOff(final Tap tapOn, final double fare) {
+        return new Trip(
+                tapOn.getLocalDateTime(),
+                null,
+                0,
+                tapOn.getStopId(),
+                null,
+                fare,
+                tapOn.getCompanyId(),
+                tapOn.getBusId(),
+                tapOn.getPan(),
+                TripStatus.INCOMPLETE
+        );
+    }
+
+    private Trip createTripWithoutOn(final Tap tapOff, final double fare) {
+        return new Trip(
+                null,
+                tapOff.getLocalDateTime(),
+                0,
+                null,
+                tapOff.getStopId(),
+                fare,
+                tapOff.getCompanyId(),
+                tapOff.getBusId(),
+                tapOff.getPan(),
+                TripStatus.INCOMPLETE
+        );
+    }
+
+    /**
+     * A tap waiting for its counterpart, along with its position in the input and the fare matrix index of its stop.
+     */
+    record OpenTap(Tap tap, long position, int stopIndex) {
+
+        /**
+         * An open tap whose stop is resolved when it is restored into a matcher.
+         */
+        OpenTap(final Tap tap, final long position) {
+            this(tap, position, CompiledFareMatrix.UNKNOWN_STOP);
+        }
+    }
+
+    /**
+     * The open taps of one PAN on one service day, linked to the open taps of the PAN on an earlier day.
+     */
+    private static final class DayTaps {
+
+        private final LocalDate day;
+        private final OpenTapQueue tapOns = new OpenTapQueue();
+        private final OpenTapQueue tapOffs = new OpenTapQueue();
+        private DayTaps next;
+
+        private DayTaps(final LocalDate day) {
+            this.day = day;
+        }
+
+        private boolean isEmpty() {
+            return tapOns.size() == 0 && tapOffs.size() == 0;
+        }
+    }
+
+    /**
+     * Open taps in arrival order, remembering whether they also are in date time order. While they are, the first
+     * tap dated before a given time can only be the head of the queue, and there is no tap dated after a given time
+     * unless the tail is, so the matches of in-order taps are found and removed in constant time.
+     */
+    private static final class OpenTapQueue {
+
+        private ArrayDeque<OpenTap> taps;
+        private boolean timeOrdered = true;
+
+        private void add(final OpenTap openTap) {
+            if (taps == null) {
+                taps = new ArrayDeque<>(2);
+            } else if (!taps.isEmpty() && openTap.tap().getLocalDateTime().isBefore(taps.peekLast().tap().getLocalDateTime())) {
+                timeOrdered = false;
+            }
+            taps.addLast(openTap);
+        }
+
+        private int size() {
+            return taps == null ? 0 : taps.size();
+        }
+
+        private OpenTap pollFirst() {
+            if (size() == 0) {
+                return null;
+            }
+            final OpenTap first = taps.pollFirst();
+            if (taps.isEmpty()) {
+                timeOrdered = true;
+            }
+            return first;
+        }
+
+        /**
+         * Removes and returns the first tap, in arrival order, dated strictly before the given date time.
+         */
+        private OpenTap pollFirstBefore(final LocalDateTime dateTime) {
+            if (size() == 0) {
+                return null;
+            }
+            if (timeOrdered) {
+                return taps.peekFirst().tap().getLocalDateTime().isBefore(dateTime) ? pollFirst() : null;
+            }
+            return removeFirst(dateTime, true);
+        }
+
+        /**
+         * Removes and returns the first tap, in arrival order, dated strictly after the given date time.
+         */
+        private OpenTap pollFirstAfter(final LocalDateTime dateTime) {
+            if (size() == 0 || timeOrdered && !taps.peekLast().tap().getLocalDateTime().isAfter(dateTime)) {
+                return null;
+            }
+            return removeFirst(dateTime, false);
+        }
+
+        private OpenTap removeFirst(final LocalDateTime dateTime, final boolean before) {
+            final Iterator<OpenTap> iterator = taps.iterator();
+            while (iterator.hasNext()) {
+                final OpenTap openTap = iterator.next();
+                final LocalDateTime tapDateTime = openTap.tap().getLocalDateTime();
+                if (before ? tapDateTime.isBefore(dateTime) : tapDateTime.isAfter(dateTime)) {
+                    iterator.remove();
+                    if (taps.isEmpty()) {
+                        timeOrdered = true;
+                    }
+                    return openTap;
+                }
+            }
+            return null;
+        }
+
+        private void addTo(final List<OpenTap> openTaps) {
+            if (taps != null) {
+                openTaps.addAll(taps);
+            }
+        }
+    }
+
+    /**
+     * The open taps, in input order, and the watermark day of a matcher.
+     */
+    record State(List<OpenTap> openTapOns, List<OpenTap> openTapOffs, LocalDate watermarkDay) {
+    }
+
+    /**
+     * A trip along with the input position of the tap that produced it.
+     */
+    record SequencedTrip(long position, Trip trip) {
+    }
+}
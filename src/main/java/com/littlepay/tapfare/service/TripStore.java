@@ -0,0 +1,73 @@
+package com.littlepay.tapfare.service;
+
+import com.littlepay.tapfare.config.TripsStoreConfig;
+import com.littlepay.tapfare.exceptions.InvalidTripQueryException;
+import com.littlepay.tapfare.model.TripStoreStats;
+import com.littlepay.tapfare.model.TripsPage;
+import com.littlepay.tapfare.utils.TripIndex;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDate;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Keeps the trips of the latest successful processing run in memory for queries by PAN, bus, company and service
+ * date. A run collects its trips into a {@link TripIndex.Builder} as they are produced, and the built index replaces
+ * the previous one atomically once the run completes, so queries never see the trips of a run in progress or failed.
+ */
+@Service
+@Slf4j
+@RequiredArgsConstructor
+public class TripStore {
+
+    private final TripsStoreConfig tripsStoreConfig;
+    private final AtomicReference<TripIndex> index = new AtomicReference<>(TripIndex.EMPTY);
+
+    /**
+     * @return a builder collecting the trips of a new run, keeping none if the store is disabled
+     */
+    public TripIndex.Builder newRun() {
+        return new TripIndex.Builder(tripsStoreConfig.isEnabled() ? tripsStoreConfig.getMaxTrips() : 0);
+    }
+
+    /**
+     * Indexes the trips of a completed run and makes them the trips queried from now on.
+     *
+     * @param run   the builder the run collected its trips into
+     * @param jobId the ID of the job of the run
+     */
+    public void publish(final TripIndex.Builder run, final String jobId) {
+        if (!tripsStoreConfig.isEnabled()) {
+            return;
+        }
+        final long start = System.nanoTime();
+        final TripIndex runIndex = run.build(jobId);
+        index.set(runIndex);
+        final TripStoreStats stats = runIndex.getStats();
+        log.info("Indexed {} trips of job {} in {} ms, about {} MB.", stats.trips(), jobId,
+                (System.nanoTime() - start) / 1_000_000, stats.estimatedBytes() >> 20);
+    }
+
+    /**
+     * Finds the trips of the latest run matching every given criterion.
+     *
+     * @throws InvalidTripQueryException if the page is negative or the size is not between one and the maximum page size
+     * @see TripIndex#find(String, String, String, LocalDate, int, int)
+     */
+    public TripsPage findTrips(final String pan, final String busId, final String companyId, final LocalDate date,
+                               final int page, final int size) {
+        if (page < 0) {
+            throw new InvalidTripQueryException("Page must not be negative: %d".formatted(page));
+        }
+        if (size < 1 || size > tripsStoreConfig.getMaxPageSize()) {
+            throw new InvalidTripQueryException("Size must be between 1 and %d: %d".formatted(tripsStoreConfig.getMaxPageSize(), size));
+        }
+        return index.get().find(pan, busId, companyId, date, page, size);
+    }
+
+    public TripStoreStats getStats() {
+        return index.get().getStats();
+    }
+}
@@ -0,0 +1,11 @@
+package com.littlepay.tapfare.service;
+
+/**
+ * Progress of a checkpointed processing run: how many of the sorted input taps were consumed, how many bytes of the
+ * trip CSV file and of the orphan trip fragments were written by then, and the open matching state at that point.
+ * The input fingerprint ties the checkpoint to the input file it was taken from, and the run settings to the fares and
+ * matching settings the trips written by then were created with.
+ */
+record TripsCheckpoint(String inputFingerprint, String runSettings, long tapsConsumed, long tripsBytes, long orphanOnBytes,
+                       long orphanOffBytes, TripMatcher.State matcherState) {
+}
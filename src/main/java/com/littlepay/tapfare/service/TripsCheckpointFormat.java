@@ -0,0 +1,164 @@
+package com.littlepay.tapfare.service;
+
+import com.littlepay.tapfare.constant.TapType;
+import com.littlepay.tapfare.exceptions.CsvProcessingException;
+import com.littlepay.tapfare.model.Tap;
+import com.littlepay.tapfare.service.TripMatcher.OpenTap;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Versioned binary file holding the {@link TripsCheckpoint} of a checkpointed processing run.
+ * <pre>
+ * header      magic "TCKP" (int), version (short)
+ * progress    input fingerprint (UTF), run settings (UTF), taps consumed (long), trips bytes (long), orphan "Tap On" bytes (long),
+ *             orphan "Tap Off" bytes (long), watermark epoch day (long, {@link Long#MIN_VALUE} if none)
+ * open taps   open "Tap On" then open "Tap Off" events, each as a count (int) followed by the position (long), id
+ *             (long), epoch second (long), nano (int), tap type ordinal (byte, -1 if none) and the stop, company, bus
+ *             and PAN of every tap as nullable UTF strings, in input order
+ * </pre>
+ * Checkpoints are written to a sibling temporary file, forced to the storage device and atomically moved over the
+ * previous one, so a crash while checkpointing leaves the previous checkpoint intact.
+ */
+final class TripsCheckpointFormat {
+
+    static final int MAGIC = 0x54434B50;
+    static final short VERSION = 2;
+
+    private static final long NO_WATERMARK = Long.MIN_VALUE;
+    private static final byte NULL_TAP_TYPE = -1;
+    private static final TapType[] TAP_TYPES = TapType.values();
+
+    private TripsCheckpointFormat() {
+    }
+
+    /**
+     * Atomically replaces the checkpoint file with the given checkpoint.
+     *
+     * @param checkpoint     the checkpoint to write
+     * @param checkpointFile the checkpoint file
+     * @throws CsvProcessingException if the checkpoint cannot be written
+     */
+    static void write(final TripsCheckpoint checkpoint, final Path checkpointFile) {
+        final Path temporaryFile = checkpointFile.resolveSibling(checkpointFile.getFileName() + ".tmp");
+        try {
+            try (final FileChannel channel = FileChannel.open(temporaryFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING)) {
+                final DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel)));
+                out.writeInt(MAGIC);
+                out.writeShort(VERSION);
+                out.writeUTF(checkpoint.inputFingerprint());
+                out.writeUTF(checkpoint.runSettings());
+                out.writeLong(checkpoint.tapsConsumed());
+                out.writeLong(checkpoint.tripsBytes());
+                out.writeLong(checkpoint.orphanOnBytes());
+                out.writeLong(checkpoint.orphanOffBytes());
+                final LocalDate watermarkDay = checkpoint.matcherState().watermarkDay();
+                out.writeLong(watermarkDay != null ? watermarkDay.toEpochDay() : NO_WATERMARK);
+                writeOpenTaps(out, checkpoint.matcherState().openTapOns());
+                writeOpenTaps(out, checkpoint.matcherState().openTapOffs());
+                out.flush();
+                channel.force(true);
+            }
+            Files.move(temporaryFile, checkpointFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (final IOException e) {
+            throw new CsvProcessingException("Error writing trips checkpoint: %s".formatted(checkpointFile), e);
+        }
+    }
+
+    /**
+     * Reads the checkpoint file, if there is one.
+     *
+     * @param checkpointFile the checkpoint file
+     * @return the checkpoint, or empty if the file does not exist
+     * @throws CsvProcessingException if the file cannot be read or is not a supported checkpoint
+     */
+    static Optional<TripsCheckpoint> read(final Path checkpointFile) {
+        if (!Files.exists(checkpointFile)) {
+            return Optional.empty();
+        }
+        try (final DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(checkpointFile)))) {
+            if (in.readInt() != MAGIC) {
+                throw new CsvProcessingException("Not a trips checkpoint: %s".formatted(checkpointFile), null);
+            }
+            final short version = in.readShort();
+            if (version != VERSION) {
+                throw new CsvProcessingException("Unsupported trips checkpoint version %d: %s".formatted(version, checkpointFile), null);
+            }
+            final String inputFingerprint = in.readUTF();
+            final String runSettings = in.readUTF();
+            final long tapsConsumed = in.readLong();
+            final long tripsBytes = in.readLong();
+            final long orphanOnBytes = in.readLong();
+            final long orphanOffBytes = in.readLong();
+            final long watermarkEpochDay = in.readLong();
+            final List<OpenTap> openTapOns = readOpenTaps(in);
+            final List<OpenTap> openTapOffs = readOpenTaps(in);
+            final LocalDate watermarkDay = watermarkEpochDay != NO_WATERMARK ? LocalDate.ofEpochDay(watermarkEpochDay) : null;
+            return Optional.of(new TripsCheckpoint(inputFingerprint, runSettings, tapsConsumed, tripsBytes, orphanOnBytes, orphanOffBytes,
+                    new TripMatcher.State(openTapOns, openTapOffs, watermarkDay)));
+        } catch (final IOException | RuntimeException e) {
+            if (e instanceof final CsvProcessingException csvProcessingException) {
+                throw csvProcessingException;
+            }
+            throw new CsvProcessingException("Error reading trips checkpoint: %s".formatted(checkpointFile), e);
+        }
+    }
+
+    private static void writeOpenTaps(final DataOutputStream out, final List<OpenTap> openTaps) throws IOException {
+        out.writeInt(openTaps.size());
+        for (final OpenTap openTap : openTaps) {
+            final Tap tap = openTap.tap();
+            out.writeLong(openTap.position());
+            out.writeLong(tap.getId());
+            out.writeLong(tap.getLocalDateTime().toEpochSecond(ZoneOffset.UTC));
+            out.writeInt(tap.getLocalDateTime().getNano());
+            out.writeByte(tap.getTapType() != null ? tap.getTapType().ordinal() : NULL_TAP_TYPE);
+            writeNullableUtf(out, tap.getStopId());
+            writeNullableUtf(out, tap.getCompanyId());
+            writeNullableUtf(out, tap.getBusId());
+            writeNullableUtf(out, tap.getPan());
+        }
+    }
+
+    private static List<OpenTap> readOpenTaps(final DataInputStream in) throws IOException {
+        final int count = in.readInt();
+        final List<OpenTap> openTaps = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            final long position = in.readLong();
+            final long id = in.readLong();
+            final LocalDateTime localDateTime = LocalDateTime.ofEpochSecond(in.readLong(), in.readInt(), ZoneOffset.UTC);
+            final byte tapType = in.readByte();
+            openTaps.add(new OpenTap(new Tap(id, localDateTime, tapType != NULL_TAP_TYPE ? TAP_TYPES[tapType] : null,
+                    readNullableUtf(in), readNullableUtf(in), readNullableUtf(in), readNullableUtf(in)), position));
+        }
+        return openTaps;
+    }
+
+    private static void writeNullableUtf(final DataOutputStream out, final String value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeUTF(value);
+        }
+    }
+
+    private static String readNullableUtf(final DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+}
@@ -1,19 +1,34 @@
 package com.littlepay.tapfare.service;
 
-import com.littlepay.tapfare.constant.TapType;
-import com.littlepay.tapfare.constant.TripStatus;
+import com.littlepay.tapfare.config.TripsMatchingConfig;
 import com.littlepay.tapfare.model.Tap;
+import com.littlepay.tapfare.model.TapBatch;
 import com.littlepay.tapfare.model.Trip;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
+import com.littlepay.tapfare.model.TripsReport;
+import com.littlepay.tapfare.service.TripMatcher.SequencedTrip;
+import com.littlepay.tapfare.utils.CompiledFareMatrix;
+import com.littlepay.tapfare.utils.LongHashSet;
+import com.littlepay.tapfare.utils.TripTotals;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 
-import java.time.Duration;
-import java.time.LocalDateTime;
+import java.time.Instant;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.Iterator;
 import java.util.List;
-import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
 
 /**
  * Service for creating trips from a list of taps.
@@ -21,224 +36,570 @@ import java.util.Map;
  * and cancelled trips. It manages the transitions between tap-on and tap-off
  * events, ensuring that every tap event is properly accounted for in the generated
  * trips.
- * This service uses {@link FareCalculator} to calculate the fare for each trip.
+ * Completed and cancelled trips are returned in the order of the taps closing them,
+ * followed by incomplete trips for orphan "Tap On" and then orphan "Tap Off" events, each in input order.
+ * Since taps only ever match taps of the same PAN, large inputs are partitioned by PAN into shards
+ * that are matched concurrently, each with its own {@link TripMatcher}, producing the same trips in the same order.
+ * With {@link TripsMatchingConfig#isEvictClosedDays()}, the streaming and checkpointed runs, whose taps are sorted,
+ * finalise open taps as soon as the input moves past their day, so matching memory is bounded by the active PANs of
+ * a single day rather than the whole input. The public entry points accept taps in any order and hold every open tap.
+ * This service uses {@link FareCalculator} to calculate the fare for each trip. A run pins the fares once, through
+ * {@link #pinFares()}, and passes the pinned calculator to every call matching its taps, so a fare reload during the
+ * run, even between two of its inputs, does not change the prices of its remaining trips.
+ * With {@link TripsMatchingConfig#isDropDuplicateTaps()}, taps repeating the ID of an earlier tap of the same run,
+ * such as taps resent by a validator, are dropped before matching instead of turning into spurious trips.
+ * Every matcher adds the trips it creates to its own ridership and revenue totals, which are merged into the totals
+ * of the run given by the caller once matching is done. A run may match several inputs, so the caller publishes the
+ * report of its totals with {@link #publishReport(TripTotals)} once the whole run completes.
  */
 @Service
+@Slf4j
 public class TripsCreationService {
 
-    private static final Logger logger = LoggerFactory.getLogger(TripsCreationService.class);
+    private static final Comparator<SequencedTrip> POSITION_ORDER = Comparator.comparingLong(SequencedTrip::position);
 
     private final FareCalculator fareCalculator;
-    private static Map<String, List<Tap>> tapOnMap = new HashMap<>();
-    private static Map<String, List<Tap>> tapOffMap = new HashMap<>();
-    private static List<Trip> trips = new ArrayList<>();
+    private final TripsMatchingConfig tripsMatchingConfig;
+    private final Set<TripMatcher> activeMatchers = ConcurrentHashMap.newKeySet();
+    private final LongAdder duplicateTapsSkipped = new LongAdder();
+    private final AtomicReference<TripsReport> latestReport = new AtomicReference<>(new TripTotals().toReport(Instant.EPOCH));
+    private ForkJoinPool matchingPool;
 
-    public TripsCreationService(final FareCalculator fareCalculator) {
+    public TripsCreationService(final FareCalculator fareCalculator, final TripsMatchingConfig tripsMatchingConfig) {
         this.fareCalculator = fareCalculator;
+        this.tripsMatchingConfig = tripsMatchingConfig;
     }
 
 
+    /**
+     * Pins the current fares for a run, which passes the returned calculator to every call matching its taps.
+     *
+     * @return a calculator pricing trips with the fares current at the time of the call
+     */
+    public FareCalculator pinFares() {
+        return fareCalculator.pin();
+    }
+
+    /**
+     * Describes what the trips of a checkpointed run depend on besides its input: the fares it prices with and the
+     * matching settings deciding which taps are dropped or finalised early. A checkpoint is only resumed by a run
+     * with the same settings, so a resumed output never mixes trips matched or priced in two different ways.
+     *
+     * @param runFareCalculator the fares pinned by the run through {@link #pinFares()}.
+     * @return the settings of the run.
+     */
+    String checkpointSettings(final FareCalculator runFareCalculator) {
+        return "fares=%s|dropDuplicateTaps=%s|evictClosedDays=%s".formatted(runFareCalculator.faresFingerprint(),
+                tripsMatchingConfig.isDropDuplicateTaps(), tripsMatchingConfig.isEvictClosedDays());
+    }
+
     /**
      * Creates a list of trips from the given list of taps.
      * It first creates Completed And Cancelled Trips
      * Then Creates Incomplete trips from Orphans
+     * Inputs of at least {@link TripsMatchingConfig#getParallelThreshold()} taps are matched in parallel.
      *
      * @param taps the list of taps to process. Each tap represents Tap On or Tap Off.
      * @return a list of trips created from the taps.
      */
     public List<Trip> createTrips(final List<Tap> taps) {
-        resetTrips();
-        taps.forEach(this::createCompletedAndCancelledTrips);
-        createTripsForOrphanTaps();
-        return trips;
+        return createTrips(taps, pinFares(), new TripTotals());
     }
 
-    private void resetTrips() {
-        tapOnMap = new HashMap<>();
-        tapOffMap = new HashMap<>();
-        trips = new ArrayList<>();
+    /**
+     * Creates a list of trips from the given list of taps like {@link #createTrips(List)}, pricing them with the
+     * fares pinned by the run and adding their totals to the given totals of the run.
+     *
+     * @param taps              the list of taps to process. Each tap represents Tap On or Tap Off.
+     * @param runFareCalculator the fares pinned by the run through {@link #pinFares()}.
+     * @param runTotals         the totals of the run the taps belong to.
+     * @return a list of trips created from the taps.
+     */
+    public List<Trip> createTrips(final List<Tap> taps, final FareCalculator runFareCalculator, final TripTotals runTotals) {
+        final int shards = tripsMatchingConfig.getShards();
+        if (shards > 1 && taps.size() >= tripsMatchingConfig.getParallelThreshold()) {
+            return createTripsInParallel(taps, shards, runFareCalculator, runTotals);
+        }
+        return createTrips(taps.iterator(), runFareCalculator, runTotals);
     }
 
-    private void createCompletedAndCancelledTrips(final Tap tap) {
-        logger.info("Processing tap: {}", tap);
+    /**
+     * Creates a list of trips from taps consumed one at a time from the given iterator.
+     * This allows trips to be created from a stream of taps that never fully resides in memory.
+     *
+     * @param taps an iterator over the taps to process.
+     * @return a list of trips created from the taps.
+     */
+    public List<Trip> createTrips(final Iterator<Tap> taps) {
+        return createTrips(taps, pinFares(), new TripTotals());
+    }
 
-        if (tap.getTapType() == TapType.ON) {
-            handleTapOn(tap);
-        } else if (tap.getTapType() == TapType.OFF) {
-            handleTapOff(tap);
-        } else {
-            logger.warn("Unknown tap type: {}", tap.getTapType());
+    /**
+     * Creates a list of trips from taps consumed one at a time like {@link #createTrips(Iterator)}, pricing them with
+     * the fares pinned by the run and adding their totals to the given totals of the run.
+     *
+     * @param taps              an iterator over the taps to process.
+     * @param runFareCalculator the fares pinned by the run through {@link #pinFares()}.
+     * @param runTotals         the totals of the run the taps belong to.
+     * @return a list of trips created from the taps.
+     */
+    public List<Trip> createTrips(final Iterator<Tap> taps, final FareCalculator runFareCalculator, final TripTotals runTotals) {
+        final TripMatcher matcher = new TripMatcher(runFareCalculator);
+        activeMatchers.add(matcher);
+        try {
+            final Iterator<Tap> distinctTaps = distinct(taps);
+            long position = 0;
+            while (distinctTaps.hasNext()) {
+                matcher.accept(distinctTaps.next(), position++);
+            }
+
+            final List<Trip> trips = new ArrayList<>();
+            addTrips(trips, matcher.getClosedTrips());
+            addTrips(trips, matcher.createOrphanOnTrips());
+            addTrips(trips, matcher.createOrphanOffTrips());
+            runTotals.addAll(matcher.getTotals());
+            return trips;
+        } finally {
+            activeMatchers.remove(matcher);
         }
     }
 
-
     /**
-     * Processes orphan "Tap On" and "Tap Off" events to create incomplete trips.
-     * This method is invoked after attempting to create completed and cancelled trips.
-     * It processes the remaining unmatched "Tap On" and "Tap Off" events, generating
-     * incomplete trips for each orphan tap.
+     * Creates trips from taps consumed one at a time from the given iterator like {@link #createTrips(Iterator)}, but
+     * hands completed and cancelled trips to the given consumer as soon as they are final instead of collecting them.
+     * Incomplete trips follow once the taps are exhausted, so the consumer receives the same trips in the same order.
+     *
+     * @param taps              an iterator over the taps to process, expected to be sorted by date time.
+     * @param tripConsumer      the consumer receiving the trips.
+     * @param runFareCalculator the fares pinned by the run through {@link #pinFares()}.
+     * @param runTotals         the totals of the run the taps belong to.
      */
-    private void createTripsForOrphanTaps() {
-        processOrphanOnTaps();
-        processOrphanOffTaps();
+    void createTrips(final Iterator<Tap> taps, final Consumer<Trip> tripConsumer, final FareCalculator runFareCalculator,
+                     final TripTotals runTotals) {
+        final TripMatcher matcher = new TripMatcher(runFareCalculator, tripsMatchingConfig.isEvictClosedDays());
+        activeMatchers.add(matcher);
+        try {
+            final List<SequencedTrip> orphanOnTrips = new ArrayList<>();
+            final List<SequencedTrip> orphanOffTrips = new ArrayList<>();
+            final Iterator<Tap> distinctTaps = distinct(taps);
+            long position = 0;
+            while (distinctTaps.hasNext()) {
+                matcher.accept(distinctTaps.next(), position++);
+                matcher.drainClosedTrips().forEach(trip -> tripConsumer.accept(trip.trip()));
+                orphanOnTrips.addAll(matcher.drainEvictedOnTrips());
+                orphanOffTrips.addAll(matcher.drainEvictedOffTrips());
+            }
+            orphanOnTrips.addAll(matcher.createOrphanOnTrips());
+            orphanOffTrips.addAll(matcher.createOrphanOffTrips());
+            orphanOnTrips.forEach(trip -> tripConsumer.accept(trip.trip()));
+            orphanOffTrips.forEach(trip -> tripConsumer.accept(trip.trip()));
+            runTotals.addAll(matcher.getTotals());
+        } finally {
+            activeMatchers.remove(matcher);
+        }
     }
 
+    /**
+     * Creates trips from taps consumed one at a time from the given iterator like {@link #createTrips(Iterator)}, but
+     * hands every trip to the given writer as soon as it is final instead of collecting them, and checkpoints the
+     * writer every given number of taps. If the writer resumes from a checkpoint, the taps consumed before it are
+     * skipped and its open taps restored, so the trips written are the same as those of an uninterrupted run.
+     *
+     * @param taps               an iterator over the taps to process, expected to be sorted by date time.
+     * @param writer             the writer receiving the trips and checkpoints.
+     * @param checkpointInterval the number of taps between two checkpoints.
+     * @param runFareCalculator  the fares pinned by the run through {@link #pinFares()}.
+     * @param runTotals          the totals of the run, incomplete once resumed from a checkpoint.
+     */
+    void createTrips(final Iterator<Tap> taps, final CheckpointedTripsWriter writer, final int checkpointInterval,
+                     final FareCalculator runFareCalculator, final TripTotals runTotals) {
+        final TripMatcher matcher = new TripMatcher(runFareCalculator, tripsMatchingConfig.isEvictClosedDays());
+        activeMatchers.add(matcher);
+        try {
+            // duplicates are dropped the same way on every run, so distinct tap positions stay valid across a resume
+            final Iterator<Tap> distinctTaps = distinct(taps);
+            long position = 0;
+            final Optional<TripsCheckpoint> checkpoint = writer.getResumeCheckpoint();
+            if (checkpoint.isPresent()) {
+                matcher.restore(checkpoint.get().matcherState());
+                for (; position < checkpoint.get().tapsConsumed(); position++) {
+                    distinctTaps.next();
+                }
+            }
+            while (distinctTaps.hasNext()) {
+                matcher.accept(distinctTaps.next(), position++);
+                matcher.drainClosedTrips().forEach(trip -> writer.writeTrip(trip.trip()));
+                matcher.drainEvictedOnTrips().forEach(trip -> writer.writeOrphanOnTrip(trip.trip()));
+                matcher.drainEvictedOffTrips().forEach(trip -> writer.writeOrphanOffTrip(trip.trip()));
+                if (position % checkpointInterval == 0) {
+                    writer.checkpoint(position, matcher.snapshot());
+                }
+            }
+            matcher.createOrphanOnTrips().forEach(trip -> writer.writeOrphanOnTrip(trip.trip()));
+            matcher.createOrphanOffTrips().forEach(trip -> writer.writeOrphanOffTrip(trip.trip()));
+            runTotals.addAll(matcher.getTotals());
+            if (checkpoint.isPresent()) {
+                // the trips written before the checkpoint were matched by the interrupted run and are not counted
+                runTotals.markIncomplete();
+            }
+        } finally {
+            activeMatchers.remove(matcher);
+        }
+    }
 
     /**
-     * Handles the "Tap On" event by attempting to match it with an existing "Tap Off" event to create a completed trip.
-     * If a matching "Tap Off" event is found, a trip is created and logged; otherwise, the "Tap On" event is stored
-     * for future processing.
+     * Creates a list of trips from a columnar batch of taps, handing its rows to the matchers as transient taps.
+     * Batches of at least {@link TripsMatchingConfig#getParallelThreshold()} taps are matched in parallel.
      *
-     * @param tapOn the tap on event to be handled. This event will be used to find a corresponding "Tap Off" event
-     *              to complete the trip.
+     * @param batch the taps to process, expected to be sorted by date time.
+     * @return a list of trips created from the taps.
      */
-    private void handleTapOn(final Tap tapOn) {
-        final List<Tap> matchingOffTaps = tapOffMap.getOrDefault(tapOn.getPan(), new ArrayList<>());
-        final Tap matchingTapOff = findMatchingTapOff(matchingOffTaps, tapOn.getPan(), tapOn.getLocalDateTime());
+    public List<Trip> createTrips(final TapBatch batch) {
+        return createTrips(batch, pinFares(), new TripTotals());
+    }
 
-        if (matchingTapOff != null) {
-            final Trip trip = createTrip(tapOn, matchingTapOff);
-            trips.add(trip);
-            matchingOffTaps.remove(matchingTapOff);
-            logger.info("Completed trip created for PAN: {} from {} to {}", tapOn.getPan(), tapOn.getStopId(), matchingTapOff.getStopId());
-        } else {
-            tapOnMap.computeIfAbsent(tapOn.getPan(), k -> new ArrayList<>()).add(tapOn);
-            logger.info("No matching OFF tap found for ON tap at stop {}, storing for later.", tapOn.getStopId());
+    /**
+     * Creates a list of trips from a columnar batch of taps like {@link #createTrips(TapBatch)}, pricing them with
+     * the fares pinned by the run and adding their totals to the given totals of the run.
+     *
+     * @param batch             the taps to process, expected to be sorted by date time.
+     * @param runFareCalculator the fares pinned by the run through {@link #pinFares()}.
+     * @param runTotals         the totals of the run the taps belong to.
+     * @return a list of trips created from the taps.
+     */
+    public List<Trip> createTrips(final TapBatch batch, final FareCalculator runFareCalculator, final TripTotals runTotals) {
+        final int shards = tripsMatchingConfig.getShards();
+        if (shards > 1 && batch.size() >= tripsMatchingConfig.getParallelThreshold()) {
+            return createTripsInParallel(batch, shards, runFareCalculator, runTotals);
         }
+        return createTrips(batch.iterator(), runFareCalculator, runTotals);
     }
 
+    /**
+     * Creates trips by hash-partitioning the taps by PAN into the given number of shards and matching
+     * every shard on the matching fork-join pool with its own state.
+     * The shard results are merged back by tap position, so the trips are identical to the sequential path.
+     *
+     * @param taps   the list of taps to process, expected to be sorted by date time.
+     * @param shards the number of PAN shards to match concurrently.
+     * @return a list of trips created from the taps.
+     */
+    public List<Trip> createTripsInParallel(final List<Tap> taps, final int shards) {
+        return createTripsInParallel(taps, shards, pinFares(), new TripTotals());
+    }
+
+    private List<Trip> createTripsInParallel(final List<Tap> taps, final int shards, final FareCalculator runFareCalculator,
+                                             final TripTotals runTotals) {
+        log.info("Matching {} taps across {} PAN shards.", taps.size(), shards);
+        final List<Consumer<TripMatcher>> shardMatches = new ArrayList<>(shards);
+        for (final TapShard shard : partitionByPan(distinct(taps), shards)) {
+            shardMatches.add(matcher -> matchShard(shard, matcher));
+        }
+        return matchShards(shardMatches, runFareCalculator, runTotals);
+    }
 
     /**
-     * Handles a "Tap Off" event by attempting to find a matching "Tap On" event.
-     * If a matching "Tap On" event is found, a trip is created and logged.
-     * Otherwise, the "Tap Off" event is stored for future processing.
+     * Creates trips from a columnar batch by hash-partitioning its rows by PAN key, as
+     * {@link #createTripsInParallel(List, int)} does for a list of taps. Every shard resolves the stop dictionary of
+     * the batch to fare matrix indexes once, instead of resolving the stop of every row.
      *
-     * @param tapOff the tap off event to be handled. This event will be used
-     *               to find a corresponding "Tap On" event to complete the trip.
+     * @param batch  the taps to process, expected to be sorted by date time.
+     * @param shards the number of PAN shards to match concurrently.
+     * @return a list of trips created from the taps.
+     */
+    public List<Trip> createTripsInParallel(final TapBatch batch, final int shards) {
+        return createTripsInParallel(batch, shards, pinFares(), new TripTotals());
+    }
+
+    private List<Trip> createTripsInParallel(final TapBatch batch, final int shards, final FareCalculator runFareCalculator,
+                                             final TripTotals runTotals) {
+        log.info("Matching {} batched taps across {} PAN shards.", batch.size(), shards);
+        final List<Consumer<TripMatcher>> shardMatches = new ArrayList<>(shards);
+        for (final int[] rows : partitionByPan(batch, duplicateRows(batch), shards)) {
+            shardMatches.add(matcher -> {
+                final int[] stopIndexes = matcher.stopIndexes(batch.getStopDictionary());
+                for (final int row : rows) {
+                    final int stopCode = batch.getStopCode(row);
+                    matcher.accept(batch.toTap(row), row,
+                            stopCode != TapBatch.NULL_CODE ? stopIndexes[stopCode] : CompiledFareMatrix.UNKNOWN_STOP);
+                }
+            });
+        }
+        return matchShards(shardMatches, runFareCalculator, runTotals);
+    }
+
+    private List<Trip> matchShards(final List<Consumer<TripMatcher>> shardMatches, final FareCalculator runFareCalculator,
+                                   final TripTotals runTotals) {
+        final List<TripMatcher> matchers = new ArrayList<>(shardMatches.size());
+        final List<ForkJoinTask<TripMatcher>> tasks = new ArrayList<>(shardMatches.size());
+        try {
+            for (final Consumer<TripMatcher> shardMatch : shardMatches) {
+                final TripMatcher matcher = new TripMatcher(runFareCalculator);
+                matchers.add(matcher);
+                activeMatchers.add(matcher);
+                tasks.add(getMatchingPool().submit(() -> {
+                    shardMatch.accept(matcher);
+                    return matcher;
+                }));
+            }
+
+            final List<SequencedTrip> closedTrips = new ArrayList<>();
+            final List<SequencedTrip> orphanOnTrips = new ArrayList<>();
+            final List<SequencedTrip> orphanOffTrips = new ArrayList<>();
+            for (final ForkJoinTask<TripMatcher> task : tasks) {
+                final TripMatcher matcher = task.join();
+                closedTrips.addAll(matcher.getClosedTrips());
+                orphanOnTrips.addAll(matcher.createOrphanOnTrips());
+                orphanOffTrips.addAll(matcher.createOrphanOffTrips());
+            }
+
+            final List<Trip> trips = new ArrayList<>(closedTrips.size() + orphanOnTrips.size() + orphanOffTrips.size());
+            addTrips(trips, sortByPosition(closedTrips));
+            addTrips(trips, sortByPosition(orphanOnTrips));
+            addTrips(trips, sortByPosition(orphanOffTrips));
+            matchers.forEach(matcher -> runTotals.addAll(matcher.getTotals()));
+            return trips;
+        } finally {
+            matchers.forEach(activeMatchers::remove);
+        }
+    }
+
+    private static void matchShard(final TapShard shard, final TripMatcher matcher) {
+        for (int i = 0; i < shard.size(); i++) {
+            matcher.accept(shard.taps()[i], shard.positions()[i]);
+        }
+    }
+
+    /**
+     * Splits the taps into shards by PAN hash, keeping the relative order of the taps within each shard.
+     */
+    private static List<TapShard> partitionByPan(final List<Tap> taps, final int shards) {
+        final int[] shardOfTap = new int[taps.size()];
+        final int[] shardSizes = new int[shards];
+        for (int i = 0; i < taps.size(); i++) {
+            shardOfTap[i] = shardOf(taps.get(i).getPan(), shards);
+            shardSizes[shardOfTap[i]]++;
+        }
+
+        final List<TapShard> tapShards = new ArrayList<>(shards);
+        for (int shard = 0; shard < shards; shard++) {
+            tapShards.add(new TapShard(new Tap[shardSizes[shard]], new int[shardSizes[shard]]));
+        }
+        final int[] filled = new int[shards];
+        for (int i = 0; i < taps.size(); i++) {
+            final TapShard tapShard = tapShards.get(shardOfTap[i]);
+            final int slot = filled[shardOfTap[i]]++;
+            tapShard.taps()[slot] = taps.get(i);
+            tapShard.positions()[slot] = i;
+        }
+        return tapShards;
+    }
+
+    /**
+     * Splits the rows of a batch into shards by PAN key hash, leaving out the given duplicate rows and keeping the
+     * relative order of the rows within each shard.
      */
-    private void handleTapOff(final Tap tapOff) {
-        final List<Tap> matchingOnTaps = tapOnMap.getOrDefault(tapOff.getPan(), new ArrayList<>());
-        final Tap matchingTapOn = findMatchingTapOn(matchingOnTaps, tapOff.getPan(), tapOff.getLocalDateTime());
+    private static List<int[]> partitionByPan(final TapBatch batch, final BitSet duplicateRows, final int shards) {
+        final int[] shardOfRow = new int[batch.size()];
+        final int[] shardSizes = new int[shards];
+        for (int row = 0; row < batch.size(); row++) {
+            if (duplicateRows.get(row)) {
+                shardOfRow[row] = -1;
+                continue;
+            }
+            final int hash = Long.hashCode(batch.getPanKey(row));
+            shardOfRow[row] = Math.floorMod(hash ^ (hash >>> 16), shards);
+            shardSizes[shardOfRow[row]]++;
+        }
 
-        if (matchingTapOn != null) {
-            final Trip trip = createTrip(matchingTapOn, tapOff);
-            trips.add(trip);
-            matchingOnTaps.remove(matchingTapOn);
-            logger.info("Completed trip created for PAN: {} from {} to {}", tapOff.getPan(), matchingTapOn.getStopId(), tapOff.getStopId());
-        } else {
-            tapOffMap.computeIfAbsent(tapOff.getPan(), k -> new ArrayList<>()).add(tapOff);
-            logger.info("No matching ON tap found for OFF tap at stop {}, storing for later.", tapOff.getStopId());
+        final List<int[]> rowShards = new ArrayList<>(shards);
+        for (int shard = 0; shard < shards; shard++) {
+            rowShards.add(new int[shardSizes[shard]]);
         }
+        final int[] filled = new int[shards];
+        for (int row = 0; row < batch.size(); row++) {
+            if (shardOfRow[row] >= 0) {
+                rowShards.get(shardOfRow[row])[filled[shardOfRow[row]]++] = row;
+            }
+        }
+        return rowShards;
     }
 
-    private Tap findMatchingTapOff(final List<Tap> taps, final String pan, final LocalDateTime localDateTime) {
-        return taps.stream()
-                .filter(tap -> tap.getPan().equals(pan) && tap.getLocalDateTime().isAfter(localDateTime) &&
-                        tap.getLocalDateTime().toLocalDate().isEqual(localDateTime.toLocalDate()))
-                .findFirst()
-                .orElse(null);
+    /**
+     * @return the taps without the taps repeating the ID of an earlier tap, or the taps themselves if there are none
+     * or duplicates are kept
+     */
+    private List<Tap> distinct(final List<Tap> taps) {
+        if (!tripsMatchingConfig.isDropDuplicateTaps()) {
+            return taps;
+        }
+        final LongHashSet seenIds = new LongHashSet(taps.size());
+        List<Tap> distinctTaps = null;
+        for (int i = 0; i < taps.size(); i++) {
+            final Tap tap = taps.get(i);
+            if (!seenIds.add(tap.getId())) {
+                if (distinctTaps == null) {
+                    distinctTaps = new ArrayList<>(taps.subList(0, i));
+                }
+            } else if (distinctTaps != null) {
+                distinctTaps.add(tap);
+            }
+        }
+        if (distinctTaps == null) {
+            return taps;
+        }
+        recordDuplicates(taps.size() - distinctTaps.size());
+        return distinctTaps;
     }
 
-    private Tap findMatchingTapOn(final List<Tap> taps, final String pan, final LocalDateTime localDateTime) {
-        return taps.stream()
-                .filter(tap -> tap.getPan().equals(pan) && tap.getLocalDateTime().isBefore(localDateTime) &&
-                        tap.getLocalDateTime().toLocalDate().isEqual(localDateTime.toLocalDate()))
-                .findFirst()
-                .orElse(null);
+    /**
+     * @return the taps consumed lazily, skipping the taps repeating the ID of an earlier tap unless duplicates are kept
+     */
+    private Iterator<Tap> distinct(final Iterator<Tap> taps) {
+        return tripsMatchingConfig.isDropDuplicateTaps() ? new DistinctTapIterator(taps) : taps;
     }
 
-    private void processOrphanOnTaps() {
-        tapOnMap.forEach((pan, taps) -> {
-            for (final Tap tapOn : taps) {
-                trips.add(createIncompleteTrip(tapOn));
-                logger.info("Incomplete trip created for orphan ON tap at stop {}", tapOn.getStopId());
+    /**
+     * @return the rows of the batch repeating the ID of an earlier row, none if duplicates are kept
+     */
+    private BitSet duplicateRows(final TapBatch batch) {
+        final BitSet duplicateRows = new BitSet();
+        if (tripsMatchingConfig.isDropDuplicateTaps()) {
+            final LongHashSet seenIds = new LongHashSet(batch.size());
+            for (int row = 0; row < batch.size(); row++) {
+                if (!seenIds.add(batch.getId(row))) {
+                    duplicateRows.set(row);
+                }
             }
-        });
-        tapOnMap.clear();
+            recordDuplicates(duplicateRows.cardinality());
+        }
+        return duplicateRows;
+    }
+
+    private void recordDuplicates(final long duplicates) {
+        if (duplicates > 0) {
+            duplicateTapsSkipped.add(duplicates);
+            log.info("Dropped {} duplicate taps.", duplicates);
+        }
+    }
+
+    private static int shardOf(final String pan, final int shards) {
+        final int hash = Objects.hashCode(pan);
+        return Math.floorMod(hash ^ (hash >>> 16), shards);
+    }
+
+    private static List<SequencedTrip> sortByPosition(final List<SequencedTrip> trips) {
+        trips.sort(POSITION_ORDER);
+        return trips;
+    }
+
+    private static void addTrips(final List<Trip> trips, final List<SequencedTrip> sequencedTrips) {
+        for (final SequencedTrip sequencedTrip : sequencedTrips) {
+            trips.add(sequencedTrip.trip());
+        }
+    }
+
+    /**
+     * @return the number of "Tap On" events currently waiting for a "Tap Off" across all running matches
+     */
+    public long getOpenTapOnCount() {
+        return activeMatchers.stream().mapToLong(TripMatcher::getOpenTapOnCount).sum();
+    }
+
+    /**
+     * @return the number of "Tap Off" events currently waiting for a "Tap On" across all running matches
+     */
+    public long getOpenTapOffCount() {
+        return activeMatchers.stream().mapToLong(TripMatcher::getOpenTapOffCount).sum();
+    }
+
+    /**
+     * Replaces the report of the latest run with the report of the given totals of a run that just completed. Runs
+     * that fail as a whole or are cancelled are never published, so the report always covers a whole run.
+     *
+     * @param runTotals the totals of every input of the run.
+     */
+    public void publishReport(final TripTotals runTotals) {
+        latestReport.set(runTotals.toReport(Instant.now()));
     }
 
-    private void processOrphanOffTaps() {
-        tapOffMap.forEach((pan, taps) -> {
-            for (final Tap tapOff : taps) {
-                trips.add(handleOrphanTapOff(tapOff));
-                logger.info("Incomplete trip created for orphan OFF tap at stop {}", tapOff.getStopId());
+    /**
+     * @return the ridership and revenue report of the latest completed run, empty before any run completed
+     */
+    public TripsReport getLatestReport() {
+        return latestReport.get();
+    }
+
+    /**
+     * @return the number of taps dropped so far for repeating the ID of an earlier tap of the same run
+     */
+    public long getDuplicateTapsSkipped() {
+        return duplicateTapsSkipped.sum();
+    }
+
+    private synchronized ForkJoinPool getMatchingPool() {
+        if (matchingPool == null) {
+            matchingPool = new ForkJoinPool(Math.max(1, tripsMatchingConfig.getShards()));
+        }
+        return matchingPool;
+    }
+
+    @PreDestroy
+    public synchronized void shutdown() {
+        if (matchingPool != null) {
+            matchingPool.shutdown();
+        }
+    }
+
+    /**
+     * Iterates over the taps of another iterator, skipping the taps repeating the ID of an earlier tap and recording
+     * how many were skipped once the taps are exhausted.
+     */
+    private final class DistinctTapIterator implements Iterator<Tap> {
+
+        private final Iterator<Tap> taps;
+        private final LongHashSet seenIds = new LongHashSet();
+        private Tap next;
+        private long duplicates;
+
+        private DistinctTapIterator(final Iterator<Tap> taps) {
+            this.taps = taps;
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (next == null && taps.hasNext()) {
+                final Tap tap = taps.next();
+                if (seenIds.add(tap.getId())) {
+                    next = tap;
+                } else {
+                    duplicates++;
+                }
+            }
+            if (next == null && duplicates > 0) {
+                recordDuplicates(duplicates);
+                duplicates = 0;
             }
-        });
-        tapOffMap.clear();
-    }
-
-    private Trip createTrip(final Tap tapOn, final Tap tapOff) {
-        if (tapOff == null) {
-            return createIncompleteTrip(tapOn);
-        }
-        if (tapOn.getStopId().equals(tapOff.getStopId())) {
-            return createCancelledTrip(tapOn, tapOff);
-        }
-        return createCompletedTrip(tapOn, tapOff);
-    }
-
-    private Trip handleOrphanTapOff(final Tap tapOff) {
-        final double maxFare = fareCalculator.calculateMaxFare(tapOff.getStopId());
-        return createTripWithoutOn(tapOff, maxFare);
-    }
-
-    private Trip createIncompleteTrip(final Tap tapOn) {
-        final double maxFare = fareCalculator.calculateMaxFare(tapOn.getStopId());
-        return createTripWithoutOff(tapOn, maxFare);
-    }
-
-    private Trip createCancelledTrip(final Tap tapOn, final Tap tapOff) {
-        return createTripWithDetails(tapOn, tapOff, 0, 0.0, TripStatus.CANCELLED);
-    }
-
-    private Trip createCompletedTrip(final Tap tapOn, final Tap tapOff) {
-        final long durationSecs = Duration.between(tapOn.getLocalDateTime(), tapOff.getLocalDateTime()).getSeconds();
-        final double fare = fareCalculator.calculateFare(tapOn.getStopId(), tapOff.getStopId());
-        return createTripWithDetails(tapOn, tapOff, durationSecs, fare, TripStatus.COMPLETED);
-    }
-
-    private Trip createTripWithDetails(final Tap tapOn, final Tap tapOff, final long durationSecs, final double fare, final TripStatus status) {
-        return new Trip(
-                tapOn.getLocalDateTime(),
-                tapOff != null ? tapOff.getLocalDateTime() : null,
-                durationSecs,
-                tapOn.getStopId(),
-                tapOff != null ? tapOff.getStopId() : null,
-                fare,
-                tapOn.getCompanyId(),
-                tapOn.getBusId(),
-                tapOn.getPan(),
-                status
-        );
-    }
-
-    private Trip createTripWithoutOff(final Tap tapOn, final double fare) {
-        return new Trip(
-                tapOn.getLocalDateTime(),
-                null,
-                0,
-                tapOn.getStopId(),
-                null,
-                fare,
-                tapOn.getCompanyId(),
-                tapOn.getBusId(),
-                tapOn.getPan(),
-                TripStatus.INCOMPLETE
-        );
-    }
-
-    private Trip createTripWithoutOn(final Tap tapOff, final double fare) {
-        return new Trip(
-                null,
-                tapOff.getLocalDateTime(),
-                0,
-                null,
-                tapOff.getStopId(),
-                fare,
-                tapOff.getCompanyId(),
-                tapOff.getBusId(),
-                tapOff.getPan(),
-                TripStatus.INCOMPLETE
-        );
+            return next != null;
+        }
+
+        @Override
+        public Tap next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException("No more taps");
+            }
+            final Tap tap = next;
+            next = null;
+            return tap;
+        }
+    }
+
+    /**
+     * The taps of one PAN shard, along with their positions in the whole input.
+     */
+    private record TapShard(Tap[] taps, int[] positions) {
+        int size() {
+            return taps.length;
+        }
     }
 }
@@ -0,0 +1,120 @@
+package com.littlepay.tapfare.utils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Input stream over the decompressed content of a gzip stream, inflated ahead of the reader on a dedicated thread.
+ * The inflater thread hands chunks of decompressed bytes to the reader through a bounded queue, so parsing one chunk
+ * overlaps with inflating the next ones while at most {@link #QUEUED_CHUNKS} chunks are held in memory.
+ * Concatenated gzip members are read as one stream. A failure of the inflater thread is rethrown by the read that
+ * reaches it. Closing the stream stops the inflater thread and closes the compressed stream.
+ */
+final class AsyncGzipInputStream extends InputStream {
+
+    private static final int CHUNK_SIZE = 1024 * 1024;
+    private static final int QUEUED_CHUNKS = 4;
+    private static final int INFLATER_BUFFER_SIZE = 64 * 1024;
+    private static final byte[] END = new byte[0];
+
+    private final BlockingQueue<byte[]> chunks = new ArrayBlockingQueue<>(QUEUED_CHUNKS);
+    private final Thread inflater;
+    private volatile IOException failure;
+    private byte[] chunk = new byte[0];
+    private int offset;
+    private boolean ended;
+
+    /**
+     * Starts inflating the given compressed stream, which is closed once fully read or when this stream is closed.
+     *
+     * @param compressed the gzip stream
+     */
+    AsyncGzipInputStream(final InputStream compressed) {
+        this.inflater = new Thread(() -> inflate(compressed), "gzip-inflater");
+        this.inflater.setDaemon(true);
+        this.inflater.start();
+    }
+
+    @Override
+    public int read() throws IOException {
+        if (!nextChunk()) {
+            return -1;
+        }
+        return chunk[offset++] & 0xFF;
+    }
+
+    @Override
+    public int read(final byte[] bytes, final int off, final int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+        if (!nextChunk()) {
+            return -1;
+        }
+        final int read = Math.min(len, chunk.length - offset);
+        System.arraycopy(chunk, offset, bytes, off, read);
+        offset += read;
+        return read;
+    }
+
+    @Override
+    public int available() {
+        return chunk.length - offset;
+    }
+
+    @Override
+    public void close() {
+        ended = true;
+        inflater.interrupt();
+    }
+
+    /**
+     * Makes sure the current chunk has bytes left, taking the next one from the inflater if needed.
+     *
+     * @return false once the decompressed content is exhausted
+     */
+    private boolean nextChunk() throws IOException {
+        while (offset == chunk.length) {
+            if (ended) {
+                return false;
+            }
+            try {
+                chunk = chunks.take();
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while waiting for decompressed bytes");
+            }
+            offset = 0;
+            if (chunk == END) {
+                ended = true;
+                if (failure != null) {
+                    throw new IOException("Error decompressing gzip stream", failure);
+                }
+            }
+        }
+        return true;
+    }
+
+    private void inflate(final InputStream compressed) {
+        try (compressed; final GZIPInputStream gzip = new GZIPInputStream(compressed, INFLATER_BUFFER_SIZE)) {
+            byte[] inflated;
+            while ((inflated = gzip.readNBytes(CHUNK_SIZE)).length > 0) {
+                chunks.put(inflated);
+            }
+        } catch (final IOException e) {
+            failure = e;
+        } catch (final InterruptedException e) {
+            // closed by the reader, nobody is waiting for the end of the stream
+            return;
+        }
+        try {
+            chunks.put(END);
+        } catch (final InterruptedException e) {
+            // closed by the reader
+        }
+    }
+}
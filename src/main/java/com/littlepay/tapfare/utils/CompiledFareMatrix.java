@@ -0,0 +1,126 @@
+package com.littlepay.tapfare.utils;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+/**
+ * Dense, read-only form of the fare matrix.
+ * Stop IDs are dictionary-encoded into indexes {@code 0..stopCount()-1} (in stop ID order), fares are held in a
+ * row-major primitive {@code double[]} and the maximum outgoing fare of every stop is precomputed, so that once
+ * a stop index is known, fare lookups neither hash strings nor box values.
+ */
+public final class CompiledFareMatrix {
+
+    public static final int UNKNOWN_STOP = -1;
+
+    private final Map<String, Integer> stopIndexes;
+    private final String[] stopIds;
+    private final double[] fares;
+    private final double[] maxFares;
+
+    private CompiledFareMatrix(final String[] stopIds) {
+        this.stopIds = stopIds;
+        this.stopIndexes = new HashMap<>(stopIds.length * 2);
+        for (int i = 0; i < stopIds.length; i++) {
+            stopIndexes.put(stopIds[i], i);
+        }
+        this.fares = new double[stopIds.length * stopIds.length];
+        this.maxFares = new double[stopIds.length];
+    }
+
+    /**
+     * Compiles a nested fare map into a dense matrix. Missing fares compile to 0.0.
+     *
+     * @param fareMatrix fares keyed by starting stop and then by destination stop
+     * @return the compiled fare matrix
+     */
+    public static CompiledFareMatrix compile(final Map<String, Map<String, Double>> fareMatrix) {
+        final TreeSet<String> stops = new TreeSet<>(fareMatrix.keySet());
+        fareMatrix.values().forEach(toMap -> stops.addAll(toMap.keySet()));
+
+        final CompiledFareMatrix compiled = new CompiledFareMatrix(stops.toArray(String[]::new));
+        fareMatrix.forEach((fromStop, toMap) -> toMap.forEach((toStop, fare) -> {
+            final int from = compiled.indexOf(fromStop);
+            compiled.fares[from * compiled.stopIds.length + compiled.indexOf(toStop)] = fare;
+            compiled.maxFares[from] = Math.max(compiled.maxFares[from], fare);
+        }));
+        return compiled;
+    }
+
+    /**
+     * @return an empty matrix, pricing every trip at 0.0
+     */
+    public static CompiledFareMatrix empty() {
+        return compile(Map.of());
+    }
+
+    /**
+     * @param stopId the stop ID to look up
+     * @return the index of the stop, or {@link #UNKNOWN_STOP} if the stop has no fares
+     */
+    public int indexOf(final String stopId) {
+        final Integer index = stopId != null ? stopIndexes.get(stopId) : null;
+        return index != null ? index : UNKNOWN_STOP;
+    }
+
+    public String stopIdAt(final int stopIndex) {
+        return stopIds[stopIndex];
+    }
+
+    public int stopCount() {
+        return stopIds.length;
+    }
+
+    public List<String> getStopIds() {
+        return List.of(stopIds);
+    }
+
+    /**
+     * @return the fare between two stop indexes; 0.0 if either stop is unknown, out of the range of this matrix, or
+     * no fare is defined
+     */
+    public double fare(final int fromStop, final int toStop) {
+        if (!isStop(fromStop) || !isStop(toStop)) {
+            return 0.0;
+        }
+        return fares[fromStop * stopIds.length + toStop];
+    }
+
+    /**
+     * @return the precomputed maximum outgoing fare of the stop; 0.0 if the stop is unknown or out of the range of
+     * this matrix
+     */
+    public double maxFare(final int stop) {
+        return isStop(stop) ? maxFares[stop] : 0.0;
+    }
+
+    /**
+     * @return a SHA-256 digest of the stop IDs and fares, equal for any two matrices pricing every trip the same way
+     */
+    public String fingerprint() {
+        try {
+            final MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            for (final String stopId : stopIds) {
+                digest.update(stopId.getBytes(StandardCharsets.UTF_8));
+                digest.update((byte) 0);
+            }
+            final ByteBuffer fareBytes = ByteBuffer.allocate(fares.length * Double.BYTES);
+            fareBytes.asDoubleBuffer().put(fares);
+            digest.update(fareBytes);
+            return HexFormat.of().formatHex(digest.digest());
+        } catch (final NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    private boolean isStop(final int stop) {
+        return stop >= 0 && stop < stopIds.length;
+    }
+}
@@ -1,38 +1,92 @@
 package com.littlepay.tapfare.utils;
 
+import com.littlepay.tapfare.config.TripsCsvConfig;
+import com.littlepay.tapfare.constant.CsvCompression;
+import com.littlepay.tapfare.constant.TapSortStrategy;
 import com.littlepay.tapfare.constant.TapType;
 import com.littlepay.tapfare.exceptions.CsvProcessingException;
 import com.littlepay.tapfare.model.Tap;
+import com.littlepay.tapfare.model.TapBatch;
 import com.littlepay.tapfare.model.Trip;
 import com.opencsv.CSVReader;
 import com.opencsv.CSVWriter;
-import lombok.RequiredArgsConstructor;
+import com.opencsv.exceptions.CsvValidationException;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
 import java.io.FileReader;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.time.format.DateTimeParseException;
 import java.util.ArrayList;
-import java.util.Comparator;
+import java.util.Iterator;
 import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.GZIPOutputStream;
 
 /**
  * Utility class for reading and writing CSV files containing tap and trip data.
+ * Files are read and written gzip-compressed according to the configured {@link CsvCompression}; compressed input is
+ * inflated on a separate thread so that parsing does not wait on decompression. Taps read into memory are put in
+ * date time order with the configured {@link TapSortStrategy}.
  */
 @Component
 @Slf4j
-@RequiredArgsConstructor
 public class CsvUtils {
 
     private static final String DATE_PATTERN = "dd-MM-yyyy HH:mm:ss";
     private static final DateTimeFormatter formatter = DateTimeFormatter.ofPattern(DATE_PATTERN);
     private static final String[] TRIP_CSV_HEADER = {"Started", "Finished", "DurationSecs", "FromStopId", "ToStopId",
             "ChargeAmount", "CompanyId", "BusID", "PAN", "Status"};
+    private static final int GZIP_BUFFER_SIZE = 64 * 1024;
 
+    private final CsvCompression compression;
+    private final TapSortStrategy sortStrategy;
+
+    /**
+     * Creates CSV utilities telling gzip-compressed files by their {@code .gz} extension.
+     */
+    public CsvUtils() {
+        this(CsvCompression.AUTO);
+    }
+
+    @Autowired
+    public CsvUtils(final TripsCsvConfig tripsCsvConfig) {
+        this(tripsCsvConfig.getCompression() != null ? tripsCsvConfig.getCompression() : CsvCompression.AUTO,
+                tripsCsvConfig.getSortStrategy() != null ? tripsCsvConfig.getSortStrategy() : TapSortStrategy.RADIX);
+    }
+
+    public CsvUtils(final CsvCompression compression) {
+        this(compression, TapSortStrategy.RADIX);
+    }
+
+    public CsvUtils(final CsvCompression compression, final TapSortStrategy sortStrategy) {
+        this.compression = compression;
+        this.sortStrategy = sortStrategy;
+    }
+
+    /**
+     * @param filePath the path to a tap or trip CSV file
+     * @return whether the file is read and written gzip-compressed
+     */
+    public boolean isGzip(final String filePath) {
+        return compression.isGzip(Path.of(filePath));
+    }
 
     /**
      * Reads tap information from a CSV file and returns it as a list of Tap objects.
@@ -44,22 +98,13 @@ public class CsvUtils {
     public List<Tap> readTapsFromCsv(final String inputFilePath) {
         final List<Tap> taps = new ArrayList<>();
 
-        try (final CSVReader reader = new CSVReader(new FileReader(inputFilePath))) {
+        try (final CSVReader reader = new CSVReader(openReader(inputFilePath))) {
             log.info("Reading taps from CSV file: {}", inputFilePath);
             String[] line;
             reader.readNext(); // Skip header
 
             while ((line = reader.readNext()) != null) {
-                try {
-                    final Tap tap = parseCsvLineToTap(line);
-                    taps.add(tap);
-                } catch (final DateTimeParseException e) {
-                    log.error("Error parsing date for tap ID: {}", line[0], e);
-                    throw new CsvProcessingException("Error parsing date for tap ID: %s".formatted(line[0]), e);
-                } catch (final IllegalArgumentException e) {
-                    log.error("Invalid data found in line for tap ID: {}", line[0], e);
-                    throw new CsvProcessingException("Invalid data found in line for tap ID: %s".formatted(line[0]), e);
-                }
+                taps.add(parseTap(line));
             }
         } catch (final Exception e) {
             log.error("Error reading from CSV file: {}", inputFilePath, e);
@@ -69,12 +114,235 @@ public class CsvUtils {
         return taps;
     }
 
-    private static void sortByDatetime(final List<Tap> taps) {
-        taps.sort(Comparator.comparing(Tap::getLocalDateTime));
+    /**
+     * Reads tap information from a CSV file with the byte-level {@link FastTapCsvParser} and returns it sorted by
+     * date time, exactly like {@link #readTapsFromCsv(String)} but without building intermediate strings per row.
+     * A file with a line the fast parser does not support, such as one with quoted fields, is read with
+     * {@link #readTapsFromCsv(String)} instead.
+     *
+     * @param inputFilePath the path to the input CSV file
+     * @return a list of Tap objects read from the provided CSV file
+     * @throws CsvProcessingException if there is an error reading from the file or parsing its contents
+     */
+    public List<Tap> readTapsFromCsvFast(final String inputFilePath) {
+        final List<Tap> taps;
+        try {
+            log.info("Reading taps from CSV file with fast parser: {}", inputFilePath);
+            if (isGzip(inputFilePath)) {
+                try (final InputStream input = openGzipInput(inputFilePath)) {
+                    taps = new FastTapCsvParser().parse(input);
+                }
+            } else {
+                taps = new FastTapCsvParser().parse(Path.of(inputFilePath));
+            }
+        } catch (final FastTapCsvParser.UnsupportedLineException e) {
+            return fallBackToOpenCsv(inputFilePath, e);
+        } catch (final Exception e) {
+            log.error("Error reading from CSV file: {}", inputFilePath, e);
+            throw new CsvProcessingException("Error reading from CSV file: %s".formatted(inputFilePath), e);
+        }
+        sortByDatetime(taps);
+        return taps;
+    }
+
+    /**
+     * Reads tap information from a CSV file like {@link #readTapsFromCsvFast(String)}, but splits the file into up to
+     * {@code parallelism} byte ranges aligned to line boundaries, each parsed and sorted by date time on its own
+     * thread, and merges the sorted ranges. Ties between ranges are resolved in favour of the earlier range, so the
+     * taps are in exactly the same order as with the sequential read. Small and compressed files are read
+     * sequentially.
+     *
+     * @param inputFilePath the path to the input CSV file
+     * @param parallelism   the maximum number of ranges parsed concurrently
+     * @return a list of Tap objects read from the provided CSV file
+     * @throws CsvProcessingException if there is an error reading from the file or parsing its contents
+     */
+    public List<Tap> readTapsFromCsvParallel(final String inputFilePath, final int parallelism) {
+        if (isGzip(inputFilePath)) {
+            return readTapsFromCsvFast(inputFilePath);
+        }
+        final Path inputFile = Path.of(inputFilePath);
+        final List<FastTapCsvParser.ByteRange> ranges = FastTapCsvParser.splitLines(inputFile, parallelism);
+        if (ranges.size() <= 1) {
+            return readTapsFromCsvFast(inputFilePath);
+        }
+        log.info("Reading taps from CSV file with fast parser in {} ranges: {}", ranges.size(), inputFilePath);
+        final ExecutorService parsers = Executors.newFixedThreadPool(ranges.size());
+        try {
+            final List<Future<List<Tap>>> parsedRanges = new ArrayList<>(ranges.size());
+            for (final FastTapCsvParser.ByteRange range : ranges) {
+                parsedRanges.add(parsers.submit(() -> {
+                    final List<Tap> taps = new FastTapCsvParser().parse(inputFile, range);
+                    sortByDatetime(taps);
+                    return taps;
+                }));
+            }
+            final List<Iterator<Tap>> runs = new ArrayList<>(ranges.size());
+            int tapCount = 0;
+            for (final Future<List<Tap>> parsedRange : parsedRanges) {
+                final List<Tap> taps = parsedRange.get();
+                tapCount += taps.size();
+                runs.add(taps.iterator());
+            }
+            final List<Tap> taps = new ArrayList<>(tapCount);
+            new SortedTapIterator(runs).forEachRemaining(taps::add);
+            return taps;
+        } catch (final ExecutionException e) {
+            if (e.getCause() instanceof final FastTapCsvParser.UnsupportedLineException unsupportedLine) {
+                return fallBackToOpenCsv(inputFilePath, unsupportedLine);
+            }
+            log.error("Error reading from CSV file: {}", inputFilePath, e.getCause());
+            throw new CsvProcessingException("Error reading from CSV file: %s".formatted(inputFilePath), e.getCause());
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CsvProcessingException("Interrupted while reading from CSV file: %s".formatted(inputFilePath), e);
+        } finally {
+            parsers.shutdownNow();
+        }
+    }
+
+    /**
+     * Reads tap information from a CSV file with the byte-level {@link FastTapCsvParser} into a columnar
+     * {@link TapBatch} sorted by date time, in the same order as {@link #readTapsFromCsv(String)}.
+     * The batch takes a fraction of the heap of the equivalent list of taps. A file with a line the fast parser does
+     * not support is read with {@link #readTapsFromCsv(String)} instead.
+     *
+     * @param inputFilePath the path to the input CSV file
+     * @return a batch of the taps read from the provided CSV file
+     * @throws CsvProcessingException if there is an error reading from the file or parsing its contents
+     */
+    public TapBatch readTapBatchFromCsv(final String inputFilePath) {
+        final TapBatch batch;
+        try {
+            log.info("Reading taps from CSV file into a columnar batch: {}", inputFilePath);
+            if (isGzip(inputFilePath)) {
+                try (final InputStream input = openGzipInput(inputFilePath)) {
+                    batch = new FastTapCsvParser().parseBatch(input);
+                }
+            } else {
+                batch = new FastTapCsvParser().parseBatch(Path.of(inputFilePath));
+            }
+        } catch (final FastTapCsvParser.UnsupportedLineException e) {
+            final List<Tap> taps = fallBackToOpenCsv(inputFilePath, e);
+            final TapBatch sortedBatch = new TapBatch(taps.size());
+            taps.forEach(sortedBatch::add);
+            return sortedBatch;
+        } catch (final Exception e) {
+            log.error("Error reading from CSV file: {}", inputFilePath, e);
+            throw new CsvProcessingException("Error reading from CSV file: %s".formatted(inputFilePath), e);
+        }
+        batch.sortByDateTime();
+        return batch;
+    }
+
+    private List<Tap> fallBackToOpenCsv(final String inputFilePath, final FastTapCsvParser.UnsupportedLineException e) {
+        log.warn("Fast parser does not support CSV file: {} ({}), reading it with opencsv.", inputFilePath, e.getMessage());
+        return readTapsFromCsv(inputFilePath);
+    }
+
+    /**
+     * Converts a tap CSV file into a binary {@link TapSnapshotFormat} snapshot, sorted by date time, that can be
+     * reloaded with {@link #readTapBatchFromSnapshot(String)} without parsing the CSV again.
+     *
+     * @param inputFilePath    the path to the input CSV file
+     * @param snapshotFilePath the path to the snapshot file to create or replace
+     * @return the taps read from the CSV file
+     * @throws CsvProcessingException if there is an error reading the CSV file or writing the snapshot
+     */
+    public TapBatch convertCsvToSnapshot(final String inputFilePath, final String snapshotFilePath) {
+        final TapBatch batch = readTapBatchFromCsv(inputFilePath);
+        log.info("Writing {} taps to snapshot file: {}", batch.size(), snapshotFilePath);
+        TapSnapshotFormat.write(batch, Path.of(snapshotFilePath));
+        return batch;
+    }
+
+    /**
+     * Reads taps from a binary {@link TapSnapshotFormat} snapshot into a columnar batch sorted by date time.
+     *
+     * @param snapshotFilePath the path to the snapshot file
+     * @return a batch of the taps of the snapshot
+     * @throws CsvProcessingException if the file cannot be read or is not a supported snapshot
+     */
+    public TapBatch readTapBatchFromSnapshot(final String snapshotFilePath) {
+        log.info("Reading taps from snapshot file: {}", snapshotFilePath);
+        return TapSnapshotFormat.read(Path.of(snapshotFilePath));
+    }
+
+    /**
+     * Reads tap information from a CSV file that may be larger than the heap and returns it sorted by date time.
+     * The file is read in chunks of at most {@code chunkSize} taps; every chunk is sorted and, except for the last one,
+     * spilled to a temporary file. The returned iterator k-way merges the chunks so that only one chunk plus one
+     * tap per spilled chunk is held in memory. The taps come out in the same order as {@link #readTapsFromCsv(String)}.
+     * The caller must close the iterator to release and delete the spilled chunk files.
+     *
+     * @param inputFilePath the path to the input CSV file
+     * @param chunkSize     the maximum number of taps sorted in memory at once
+     * @return an iterator over the taps of the file, sorted by date time
+     * @throws CsvProcessingException if there is an error reading from the file, parsing its contents or spilling chunks
+     * @throws IllegalArgumentException if the chunk size is not positive
+     */
+    public SortedTapIterator streamTapsFromCsv(final String inputFilePath, final int chunkSize) {
+        if (chunkSize <= 0) {
+            throw new IllegalArgumentException("Chunk size must be positive, got: %d".formatted(chunkSize));
+        }
+        final List<Iterator<Tap>> runs = new ArrayList<>();
+        try (final CSVReader reader = new CSVReader(openReader(inputFilePath))) {
+            log.info("Streaming taps from CSV file: {} in chunks of {}", inputFilePath, chunkSize);
+            String[] line;
+            reader.readNext(); // Skip header
+
+            List<Tap> chunk = new ArrayList<>(chunkSize);
+            while ((line = reader.readNext()) != null) {
+                chunk.add(parseTap(line));
+                if (chunk.size() >= chunkSize) {
+                    runs.add(spillChunk(chunk));
+                    chunk = new ArrayList<>(chunkSize);
+                }
+            }
+            sortByDatetime(chunk);
+            runs.add(chunk.iterator());
+            log.info("Merging {} sorted chunks of taps from CSV file: {}", runs.size(), inputFilePath);
+            return new SortedTapIterator(runs);
+        } catch (final Exception e) {
+            log.error("Error reading from CSV file: {}", inputFilePath, e);
+            closeRuns(runs);
+            throw new CsvProcessingException("Error reading from CSV file: %s".formatted(inputFilePath), e);
+        }
+    }
+
+    private SpilledTapRun spillChunk(final List<Tap> chunk) throws IOException {
+        sortByDatetime(chunk);
+        final Path spillFile = Files.createTempFile("taps-chunk-", ".csv");
+        try (final CSVWriter writer = new CSVWriter(Files.newBufferedWriter(spillFile))) {
+            for (final Tap tap : chunk) {
+                writer.writeNext(convertTapToCsvLine(tap), false);
+            }
+        } catch (final IOException e) {
+            Files.deleteIfExists(spillFile);
+            throw e;
+        }
+        log.debug("Spilled {} sorted taps to {}", chunk.size(), spillFile);
+        return new SpilledTapRun(spillFile);
+    }
+
+    private static void closeRuns(final List<Iterator<Tap>> runs) {
+        for (final Iterator<Tap> run : runs) {
+            if (run instanceof final SpilledTapRun spilledTapRun) {
+                try {
+                    spilledTapRun.close();
+                } catch (final CsvProcessingException e) {
+                    log.error("Error cleaning up spilled tap chunk.", e);
+                }
+            }
+        }
+    }
+
+    private void sortByDatetime(final List<Tap> taps) {
+        TapSorter.sortByDateTime(taps, sortStrategy);
     }
 
     public void writeTripsToCsv(final List<Trip> trips, final String outputFilePath) {
-        try (final CSVWriter writer = new CSVWriter(new FileWriter(outputFilePath))) {
+        try (final CSVWriter writer = new CSVWriter(openWriter(outputFilePath))) {
             log.info("Writing trips to CSV file: {}", outputFilePath);
             writer.writeNext(TRIP_CSV_HEADER, false);
 
@@ -88,6 +356,57 @@ public class CsvUtils {
         }
     }
 
+    /**
+     * Writes trips to a CSV file with the byte-level {@link FastTripCsvWriter}, producing exactly the same file as
+     * {@link #writeTripsToCsv(List, String)} without building intermediate strings per row.
+     *
+     * @param trips          the trips to write
+     * @param outputFilePath the path to the output CSV file
+     * @throws CsvProcessingException if there is an error writing to the file
+     */
+    public void writeTripsToCsvFast(final List<Trip> trips, final String outputFilePath) {
+        try (final FastTripCsvWriter writer = new FastTripCsvWriter(Path.of(outputFilePath), isGzip(outputFilePath))) {
+            log.info("Writing trips to CSV file with fast writer: {}", outputFilePath);
+            for (final Trip trip : trips) {
+                writer.write(trip);
+            }
+        } catch (final Exception e) {
+            log.error("Error writing to CSV file: {}", outputFilePath, e);
+            throw new CsvProcessingException("Error writing to CSV file: %s".formatted(outputFilePath), e);
+        }
+    }
+
+    private Reader openReader(final String inputFilePath) throws IOException {
+        if (isGzip(inputFilePath)) {
+            return new InputStreamReader(openGzipInput(inputFilePath), Charset.defaultCharset());
+        }
+        return new FileReader(inputFilePath);
+    }
+
+    private static InputStream openGzipInput(final String inputFilePath) throws IOException {
+        return new AsyncGzipInputStream(Files.newInputStream(Path.of(inputFilePath)));
+    }
+
+    private Writer openWriter(final String outputFilePath) throws IOException {
+        if (isGzip(outputFilePath)) {
+            return new OutputStreamWriter(new GZIPOutputStream(Files.newOutputStream(Path.of(outputFilePath)), GZIP_BUFFER_SIZE),
+                    Charset.defaultCharset());
+        }
+        return new FileWriter(outputFilePath);
+    }
+
+    private Tap parseTap(final String[] line) {
+        try {
+            return parseCsvLineToTap(line);
+        } catch (final DateTimeParseException e) {
+            log.error("Error parsing date for tap ID: {}", line[0], e);
+            throw new CsvProcessingException("Error parsing date for tap ID: %s".formatted(line[0]), e);
+        } catch (final IllegalArgumentException e) {
+            log.error("Invalid data found in line for tap ID: {}", line[0], e);
+            throw new CsvProcessingException("Invalid data found in line for tap ID: %s".formatted(line[0]), e);
+        }
+    }
+
     private Tap parseCsvLineToTap(final String[] line) throws DateTimeParseException, IllegalArgumentException {
         final long id = Long.parseLong(line[0]);
         final LocalDateTime dateTime = LocalDateTime.parse(line[1], formatter);
@@ -100,6 +419,18 @@ public class CsvUtils {
         return new Tap(id, dateTime, tapType, stopId, companyId, busId, pan);
     }
 
+    private String[] convertTapToCsvLine(final Tap tap) {
+        return new String[]{
+                String.valueOf(tap.getId()),
+                tap.getLocalDateTime().format(formatter),
+                tap.getTapType().toString(),
+                tap.getStopId(),
+                tap.getCompanyId(),
+                tap.getBusId(),
+                tap.getPan()
+        };
+    }
+
     private String[] convertTripToCsvLine(final Trip trip) {
         return new String[]{
                 trip.getStarted() != null ? trip.getStarted().format(formatter) : "",
@@ -114,4 +445,63 @@ public class CsvUtils {
                 trip.getStatus().toString()
         };
     }
+
+    /**
+     * A sorted chunk of taps spilled to a temporary file, read back lazily one tap at a time.
+     * The file is deleted when the run is closed.
+     */
+    private class SpilledTapRun implements Iterator<Tap>, AutoCloseable {
+
+        private final Path spillFile;
+        private CSVReader reader;
+        private Tap nextTap;
+
+        private SpilledTapRun(final Path spillFile) {
+            this.spillFile = spillFile;
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (nextTap == null) {
+                nextTap = readNextTap();
+            }
+            return nextTap != null;
+        }
+
+        @Override
+        public Tap next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException("No more taps in spilled chunk %s".formatted(spillFile));
+            }
+            final Tap tap = nextTap;
+            nextTap = null;
+            return tap;
+        }
+
+        private Tap readNextTap() {
+            try {
+                if (reader == null) {
+                    reader = new CSVReader(Files.newBufferedReader(spillFile));
+                }
+                final String[] line = reader.readNext();
+                return line != null ? parseTap(line) : null;
+            } catch (final IOException | CsvValidationException e) {
+                log.error("Error reading spilled taps from {}", spillFile, e);
+                throw new CsvProcessingException("Error reading spilled taps from %s".formatted(spillFile), e);
+            }
+        }
+
+        @Override
+        public void close() {
+            try {
+                if (reader != null) {
+                    reader.close();
+                }
+                Files.deleteIfExists(spillFile);
+            } catch (final IOException e) {
+                log.error("Error deleting spilled taps file {}", spillFile, e);
+                throw new CsvProcessingException("Error deleting spilled taps file %s".formatted(spillFile), e);
+            }
+        }
+    }
 }
@@ -1,41 +1,164 @@
 package com.littlepay.tapfare.utils;
 
 import com.littlepay.tapfare.config.TripsFareConfig;
-import lombok.Getter;
+import com.littlepay.tapfare.exceptions.CsvProcessingException;
+import com.littlepay.tapfare.exceptions.InvalidFareException;
+import com.opencsv.CSVReader;
+import com.opencsv.exceptions.CsvValidationException;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Component;
 
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
  * Utility class for managing and accessing fare information between multiple stops.
- * This class provides a fare matrix which is initialized from a configuration and
- * allows efficient retrieval of fare amounts for trips between any two stops.
+ * Fares are held in an immutable {@link FareSnapshot}, initialized from the configuration and optionally from a fare
+ * file, and replaced copy-on-write by every reload: a reload builds a complete new snapshot and publishes it with a
+ * single atomic swap. Readers never lock, they read the current snapshot once and keep pricing with it, so a
+ * processing run pinning the snapshot it started with is not affected by reloads happening while it runs.
  */
 @Component
+@Slf4j
 public class FareMatrixUtils {
 
+    private static final String[] FARE_FILE_HEADER = {"FromStopId", "ToStopId", "Fare"};
+
+    /**
+     * The current fare snapshot, swapped as a whole on every reload.
+     */
+    private static final AtomicReference<FareSnapshot> snapshot = new AtomicReference<>(FareSnapshot.EMPTY);
+
+    private final TripsFareConfig tripsFareConfig;
+    private volatile FileTime fareFileModified;
+
+    public FareMatrixUtils(final TripsFareConfig tripsFareConfig) {
+        this.tripsFareConfig = tripsFareConfig;
+        final Map<String, Map<String, Double>> configuredFares = tripsFareConfig.getFare();
+        publish(configuredFares == null ? Map.of() : configuredFares, "configuration");
+        final Path fareFile = fareFile();
+        if (fareFile != null && Files.exists(fareFile)) {
+            reloadFromFile();
+        }
+    }
+
     /**
-     * A static map representing the fare matrix for trips between various stops.
+     * @return the current fare snapshot
+     */
+    public static FareSnapshot getSnapshot() {
+        return snapshot.get();
+    }
+
+    /**
+     * A map representing the fare matrix of the current snapshot.
      * The outer map's keys are the starting stop names, and the values are nested maps.
      * The nested maps have destination stop names as keys and fare amounts as values.
-     * This matrix provides quick access to the fare for any trip from one stop to another.
+     *
+     * @return the read-only fare matrix of the current snapshot
      */
-    @Getter
-    private static final Map<String, Map<String, Double>> fareMatrix = new HashMap<>();
+    public static Map<String, Map<String, Double>> getFareMatrix() {
+        return snapshot.get().fareMatrix();
+    }
 
-    public FareMatrixUtils(final TripsFareConfig tripsFareConfig) {
-        populateFareMatrix(tripsFareConfig);
+    /**
+     * @return the dense form of the current snapshot, used for all fare lookups
+     */
+    public static CompiledFareMatrix getCompiledFareMatrix() {
+        return snapshot.get().compiledFareMatrix();
+    }
+
+    /**
+     * Replaces the fares with the given ones, each fare applying in both directions between its two stops.
+     * The current snapshot is left untouched if the fares are invalid.
+     *
+     * @param fares  the fares keyed by starting stop and then by destination stop
+     * @param source where the fares come from
+     * @return the published snapshot
+     * @throws InvalidFareException if a stop ID is blank or a fare is negative or not a number
+     */
+    public FareSnapshot publish(final Map<String, Map<String, Double>> fares, final String source) {
+        final FareSnapshot loaded = FareSnapshot.of(0, source, fares);
+        while (true) {
+            final FareSnapshot current = snapshot.get();
+            final FareSnapshot next = loaded.withVersion(current.version() + 1);
+            if (snapshot.compareAndSet(current, next)) {
+                log.info("Published fare snapshot {} with {} stops from {}.", next.version(),
+                        next.compiledFareMatrix().stopCount(), source);
+                return next;
+            }
+        }
+    }
+
+    /**
+     * Replaces the fares with those of the configured fare file, a CSV file with a
+     * {@code FromStopId,ToStopId,Fare} header and one fare per line.
+     *
+     * @return the published snapshot
+     * @throws InvalidFareException   if no fare file is configured or the file holds an invalid fare
+     * @throws CsvProcessingException if the fare file cannot be read
+     */
+    public FareSnapshot reloadFromFile() {
+        final Path fareFile = fareFile();
+        if (fareFile == null) {
+            throw new InvalidFareException("No fare file configured");
+        }
+        try {
+            final FileTime modified = Files.getLastModifiedTime(fareFile);
+            final FareSnapshot published = publish(readFareFile(fareFile), fareFile.toString());
+            fareFileModified = modified;
+            return published;
+        } catch (final IOException | CsvValidationException e) {
+            throw new CsvProcessingException("Error reading fare file: %s".formatted(fareFile), e);
+        }
+    }
+
+    /**
+     * Reloads the fare file when it changed since it was last loaded. Scheduled every
+     * {@link TripsFareConfig#getFareReloadInterval()} by {@code TripsSchedulingConfig}. A failed reload is logged and
+     * the current fares are kept.
+     */
+    public void reloadIfChanged() {
+        final Path fareFile = fareFile();
+        if (fareFile == null || !Files.exists(fareFile)) {
+            return;
+        }
+        try {
+            if (!Files.getLastModifiedTime(fareFile).equals(fareFileModified)) {
+                reloadFromFile();
+            }
+        } catch (final IOException | RuntimeException e) {
+            log.error("Error reloading fare file {}, keeping fare snapshot {}.", fareFile, getSnapshot().version(), e);
+        }
     }
 
-    private void populateFareMatrix(final TripsFareConfig tripsFareConfig) {
-        tripsFareConfig.getFare().forEach((fromStop, toMap) -> {
-            toMap.forEach((toStop, fare) -> addFare(fromStop, toStop, fare));
-        });
+    private Path fareFile() {
+        final String fareFilePath = tripsFareConfig.getFareFilePath();
+        return fareFilePath == null || fareFilePath.isBlank() ? null : Path.of(fareFilePath);
     }
 
-    private void addFare(final String stopA, final String stopB, final double fare) {
-        fareMatrix.computeIfAbsent(stopA, k -> new HashMap<>()).put(stopB, fare);
-        fareMatrix.computeIfAbsent(stopB, k -> new HashMap<>()).put(stopA, fare);
+    private static Map<String, Map<String, Double>> readFareFile(final Path fareFile) throws IOException, CsvValidationException {
+        final Map<String, Map<String, Double>> fares = new HashMap<>();
+        try (final CSVReader reader = new CSVReader(Files.newBufferedReader(fareFile))) {
+            String[] line = reader.readNext();
+            if (line != null && line.length > 0 && FARE_FILE_HEADER[0].equals(line[0].trim())) {
+                line = reader.readNext();
+            }
+            for (; line != null; line = reader.readNext()) {
+                if (line.length != FARE_FILE_HEADER.length) {
+                    throw new InvalidFareException("Invalid fare line %d of %s".formatted(reader.getLinesRead(), fareFile));
+                }
+                try {
+                    fares.computeIfAbsent(line[0].trim(), k -> new HashMap<>()).put(line[1].trim(), Double.parseDouble(line[2].trim()));
+                } catch (final NumberFormatException e) {
+                    throw new InvalidFareException("Invalid fare '%s' on line %d of %s".formatted(line[2], reader.getLinesRead(), fareFile));
+                }
+            }
+        }
+        return fares;
     }
 }
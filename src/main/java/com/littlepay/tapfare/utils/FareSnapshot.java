@@ -0,0 +1,61 @@
+package com.littlepay.tapfare.utils;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.littlepay.tapfare.exceptions.InvalidFareException;
+
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Immutable version of the fare matrix. A snapshot is never modified once published: reloading fares publishes a new
+ * snapshot with the next version, so a reader holding a snapshot keeps pricing with the same fares.
+ *
+ * @param version            the version of the snapshot, incremented by every reload
+ * @param loadedAt           when the snapshot was loaded
+ * @param source             where the fares were loaded from
+ * @param fareMatrix         the fares keyed by starting stop and then by destination stop, in both directions
+ * @param compiledFareMatrix the dense form of the fares, used for all fare lookups
+ */
+public record FareSnapshot(long version, Instant loadedAt, String source, Map<String, Map<String, Double>> fareMatrix,
+                           @JsonIgnore CompiledFareMatrix compiledFareMatrix) {
+
+    static final FareSnapshot EMPTY = new FareSnapshot(0, Instant.EPOCH, "none", Map.of(), CompiledFareMatrix.empty());
+
+    /**
+     * Builds a snapshot from fare rules, each fare applying in both directions between its two stops.
+     *
+     * @param version the version of the snapshot
+     * @param source  where the fares were loaded from
+     * @param fares   the fares keyed by starting stop and then by destination stop
+     * @return the snapshot
+     * @throws InvalidFareException if a stop ID is blank or a fare is negative or not a number
+     */
+    static FareSnapshot of(final long version, final String source, final Map<String, Map<String, Double>> fares) {
+        final Map<String, Map<String, Double>> fareMatrix = new HashMap<>();
+        fares.forEach((fromStop, toMap) -> toMap.forEach((toStop, fare) -> {
+            validate(fromStop, toStop, fare);
+            fareMatrix.computeIfAbsent(fromStop, k -> new HashMap<>()).put(toStop, fare);
+            fareMatrix.computeIfAbsent(toStop, k -> new HashMap<>()).put(fromStop, fare);
+        }));
+        final Map<String, Map<String, Double>> frozen = new HashMap<>();
+        fareMatrix.forEach((fromStop, toMap) -> frozen.put(fromStop, Map.copyOf(toMap)));
+        return new FareSnapshot(version, Instant.now(), source, Map.copyOf(frozen), CompiledFareMatrix.compile(frozen));
+    }
+
+    /**
+     * @return this snapshot published under the given version
+     */
+    FareSnapshot withVersion(final long version) {
+        return new FareSnapshot(version, loadedAt, source, fareMatrix, compiledFareMatrix);
+    }
+
+    private static void validate(final String fromStop, final String toStop, final Double fare) {
+        if (fromStop == null || fromStop.isBlank() || toStop == null || toStop.isBlank()) {
+            throw new InvalidFareException("Fare stop IDs must not be blank: '%s' -> '%s'".formatted(fromStop, toStop));
+        }
+        if (fare == null || !Double.isFinite(fare) || fare < 0) {
+            throw new InvalidFareException("Invalid fare between %s and %s: %s".formatted(fromStop, toStop, fare));
+        }
+    }
+}
@@ -0,0 +1,481 @@
+package com.littlepay.tapfare.utils;
+
+import com.littlepay.tapfare.constant.TapType;
+import com.littlepay.tapfare.exceptions.CsvProcessingException;
+import com.littlepay.tapfare.model.Tap;
+import com.littlepay.tapfare.model.TapBatch;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.DateTimeException;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Byte-level parser for tap CSV files in the fixed {@code ID,DateTimeUTC,TapType,StopId,CompanyId,BusID,PAN} layout.
+ * The file is memory-mapped in windows, or read into a heap window when parsing a stream such as a decompressed
+ * file, and every row is decoded straight from the window bytes: the ID is
+ * accumulated digit by digit, the {@code dd-MM-yyyy HH:mm:ss} timestamp is decoded arithmetically from its fixed
+ * offsets and the tap type is matched on raw bytes. No line string or {@code String[]} is created per row, and
+ * repeated stop, company, bus and PAN values are served from small byte-keyed caches instead of new strings.
+ * Taps are either returned as {@link Tap} objects or appended to a columnar {@link TapBatch}; in the latter case the
+ * timestamp goes straight to epoch seconds and all-digit PANs are packed from their bytes without creating a string.
+ * Quoted fields, IDs of more than 18 digits and blank lines are not supported and raise an
+ * {@link UnsupportedLineException}, upon which {@link CsvUtils} reads the file with opencsv instead.
+ * An instance keeps per-file caches and is not thread-safe.
+ */
+public class FastTapCsvParser {
+
+    private static final long WINDOW_SIZE = 64L * 1024 * 1024;
+    private static final int STREAM_WINDOW_SIZE = 4 * 1024 * 1024;
+    private static final int DATE_TIME_LENGTH = 19;
+    private static final int FIELD_COUNT = 7;
+    private static final long MIN_RANGE_SIZE = 1024 * 1024;
+    private static final int BOUNDARY_SCAN_SIZE = 8 * 1024;
+
+    private final ByteStringCache stopIds = new ByteStringCache(1 << 10);
+    private final ByteStringCache companyIds = new ByteStringCache(1 << 6);
+    private final ByteStringCache busIds = new ByteStringCache(1 << 12);
+    private final ByteStringCache pans = new ByteStringCache(1 << 16);
+    private final int[] fieldStarts = new int[FIELD_COUNT];
+    private final int[] fieldEnds = new int[FIELD_COUNT];
+    private int cachedDateKey = -1;
+    private LocalDate cachedDate;
+    private long cachedEpochDay;
+    private int hour;
+    private int minute;
+    private int second;
+
+    /**
+     * Parses every tap of the given file, skipping the header row. Taps are returned in file order.
+     *
+     * @param inputFile the tap CSV file
+     * @return the taps of the file
+     * @throws CsvProcessingException if the file cannot be read or a row cannot be parsed
+     */
+    public List<Tap> parse(final Path inputFile) {
+        final List<Tap> taps = new ArrayList<>();
+        parse(inputFile, buffer -> taps.add(toTap(buffer)));
+        return taps;
+    }
+
+    /**
+     * Parses every tap of the given file, skipping the header row, into a columnar batch. Taps are appended in
+     * file order.
+     *
+     * @param inputFile the tap CSV file
+     * @return the taps of the file
+     * @throws CsvProcessingException if the file cannot be read or a row cannot be parsed
+     */
+    public TapBatch parseBatch(final Path inputFile) {
+        final TapBatch batch = new TapBatch();
+        parse(inputFile, buffer -> appendTo(batch, buffer));
+        return batch;
+    }
+
+    /**
+     * Parses every tap of the given stream, skipping the header row. Taps are returned in stream order.
+     * The stream is read to its end but not closed.
+     *
+     * @param input the tap CSV content
+     * @return the taps of the stream
+     * @throws CsvProcessingException if the stream cannot be read or a row cannot be parsed
+     */
+    public List<Tap> parse(final InputStream input) {
+        final List<Tap> taps = new ArrayList<>();
+        parse(input, buffer -> taps.add(toTap(buffer)));
+        return taps;
+    }
+
+    /**
+     * Parses every tap of the given stream, skipping the header row, into a columnar batch. Taps are appended in
+     * stream order. The stream is read to its end but not closed.
+     *
+     * @param input the tap CSV content
+     * @return the taps of the stream
+     * @throws CsvProcessingException if the stream cannot be read or a row cannot be parsed
+     */
+    public TapBatch parseBatch(final InputStream input) {
+        final TapBatch batch = new TapBatch();
+        parse(input, buffer -> appendTo(batch, buffer));
+        return batch;
+    }
+
+    /**
+     * Parses the taps of the lines starting within the given byte range of the file, skipping the header row if the
+     * range starts at the beginning of the file. Taps are returned in file order.
+     *
+     * @param inputFile the tap CSV file
+     * @param range     a range starting at the beginning of a line, as returned by {@link #splitLines(Path, int)}
+     * @return the taps of the range
+     * @throws CsvProcessingException if the file cannot be read or a row cannot be parsed
+     */
+    public List<Tap> parse(final Path inputFile, final ByteRange range) {
+        final List<Tap> taps = new ArrayList<>();
+        parse(inputFile, range, buffer -> taps.add(toTap(buffer)));
+        return taps;
+    }
+
+    /**
+     * Splits the file into at most the given number of byte ranges of similar size, each starting at the beginning
+     * of a line and ending where the next one starts, so that every range can be parsed on its own. Ranges are
+     * never smaller than {@value #MIN_RANGE_SIZE} bytes, except for the last one.
+     *
+     * @param inputFile the tap CSV file
+     * @param parts     the maximum number of ranges
+     * @return the ranges, in file order, covering the whole file
+     * @throws CsvProcessingException if the file cannot be read
+     */
+    public static List<ByteRange> splitLines(final Path inputFile, final int parts) {
+        try (final FileChannel channel = FileChannel.open(inputFile, StandardOpenOption.READ)) {
+            final long size = channel.size();
+            final int rangeCount = (int) Math.max(1, Math.min(parts, size / MIN_RANGE_SIZE));
+            final List<ByteRange> ranges = new ArrayList<>(rangeCount);
+            final ByteBuffer buffer = ByteBuffer.allocate(BOUNDARY_SCAN_SIZE);
+            long start = 0;
+            for (int i = 1; i <= rangeCount && start < size; i++) {
+                final long end = i == rangeCount ? size : nextLineStart(channel, buffer, Math.max(start, size / rangeCount * i), size);
+                if (end > start) {
+                    ranges.add(new ByteRange(start, end));
+                    start = end;
+                }
+            }
+            return ranges;
+        } catch (final IOException e) {
+            throw new CsvProcessingException("Error reading from CSV file: %s".formatted(inputFile), e);
+        }
+    }
+
+    /**
+     * Returns the offset of the first line starting at or after the given offset, or the file size if there is none.
+     */
+    private static long nextLineStart(final FileChannel channel, final ByteBuffer buffer, final long offset, final long size)
+            throws IOException {
+        if (offset == 0) {
+            return 0;
+        }
+        long position = offset - 1;
+        while (position < size) {
+            buffer.clear();
+            final int read = channel.read(buffer, position);
+            if (read <= 0) {
+                break;
+            }
+            for (int i = 0; i < read; i++) {
+                if (buffer.get(i) == '\n') {
+                    return position + i + 1;
+                }
+            }
+            position += read;
+        }
+        return size;
+    }
+
+    private void parse(final Path inputFile, final RowHandler handler) {
+        parse(inputFile, null, handler);
+    }
+
+    private void parse(final Path inputFile, final ByteRange range, final RowHandler handler) {
+        try (final FileChannel channel = FileChannel.open(inputFile, StandardOpenOption.READ)) {
+            final long end = range != null ? Math.min(range.end(), channel.size()) : channel.size();
+            long windowStart = range != null ? range.start() : 0;
+            boolean header = windowStart == 0;
+            while (windowStart < end) {
+                final long windowLength = Math.min(WINDOW_SIZE, end - windowStart);
+                final MappedByteBuffer window = channel.map(FileChannel.MapMode.READ_ONLY, windowStart, windowLength);
+                final boolean lastWindow = windowStart + windowLength == end;
+                final int consumed = parseWindow(window, (int) windowLength, lastWindow, header, handler);
+                if (consumed == 0) {
+                    throw new CsvProcessingException("Line longer than %d bytes at offset %d".formatted(WINDOW_SIZE, windowStart), null);
+                }
+                header = false;
+                windowStart += consumed;
+            }
+        } catch (final IOException e) {
+            throw new CsvProcessingException("Error reading from CSV file: %s".formatted(inputFile), e);
+        }
+    }
+
+    /**
+     * Reads the stream into a heap window, parsing its complete lines and moving the line cut by the end of the
+     * window to the start of the window before reading on.
+     */
+    private void parse(final InputStream input, final RowHandler handler) {
+        final ByteBuffer window = ByteBuffer.allocate(STREAM_WINDOW_SIZE);
+        final byte[] bytes = window.array();
+        int length = 0;
+        long windowStart = 0;
+        boolean header = true;
+        try {
+            while (true) {
+                length += input.readNBytes(bytes, length, bytes.length - length);
+                final boolean lastWindow = length < bytes.length;
+                final int consumed = parseWindow(window, length, lastWindow, header, handler);
+                if (lastWindow) {
+                    return;
+                }
+                if (consumed == 0) {
+                    throw new CsvProcessingException("Line longer than %d bytes at offset %d".formatted(STREAM_WINDOW_SIZE, windowStart), null);
+                }
+                header = false;
+                windowStart += consumed;
+                length -= consumed;
+                System.arraycopy(bytes, consumed, bytes, 0, length);
+            }
+        } catch (final IOException e) {
+            throw new CsvProcessingException("Error reading from CSV stream", e);
+        }
+    }
+
+    /**
+     * Parses the complete lines of a window and returns the number of bytes consumed, so that a line cut by the
+     * end of the window is parsed again at the start of the next one.
+     */
+    private int parseWindow(final ByteBuffer window, final int length, final boolean lastWindow,
+                            final boolean skipHeader, final RowHandler handler) {
+        int lineStart = 0;
+        boolean header = skipHeader;
+        for (int i = 0; i < length; i++) {
+            if (window.get(i) == '\n') {
+                if (header) {
+                    header = false;
+                } else {
+                    parseLine(window, lineStart, i, handler);
+                }
+                lineStart = i + 1;
+            }
+        }
+        if (lastWindow && lineStart < length) {
+            if (!header) {
+                parseLine(window, lineStart, length, handler);
+            }
+            return length;
+        }
+        return lineStart;
+    }
+
+    private void parseLine(final ByteBuffer buffer, final int start, final int end, final RowHandler handler) {
+        final int lineEnd = end > start && buffer.get(end - 1) == '\r' ? end - 1 : end;
+        if (lineEnd == start) {
+            throw new UnsupportedLineException("Blank line at offset %d".formatted(start));
+        }
+        splitFields(buffer, start, lineEnd);
+        handler.accept(buffer);
+    }
+
+    private Tap toTap(final ByteBuffer buffer) {
+        final long id = parseId(buffer);
+        decodeDateTime(buffer, id);
+        final LocalDateTime dateTime = LocalDateTime.of(cachedDate, LocalTime.of(hour, minute, second));
+        final TapType tapType = parseTapType(buffer, id);
+        return new Tap(id, dateTime, tapType,
+                stopIds.get(buffer, fieldStarts[3], fieldEnds[3]),
+                companyIds.get(buffer, fieldStarts[4], fieldEnds[4]),
+                busIds.get(buffer, fieldStarts[5], fieldEnds[5]),
+                pans.get(buffer, fieldStarts[6], fieldEnds[6]));
+    }
+
+    private void appendTo(final TapBatch batch, final ByteBuffer buffer) {
+        final long id = parseId(buffer);
+        decodeDateTime(buffer, id);
+        final long epochSecond = cachedEpochDay * 86_400 + hour * 3_600L + minute * 60L + second;
+        final TapType tapType = parseTapType(buffer, id);
+        long panKey = packPan(buffer, fieldStarts[6], fieldEnds[6]);
+        if (panKey == PanCodec.NOT_PACKABLE) {
+            panKey = batch.panKey(pans.get(buffer, fieldStarts[6], fieldEnds[6]));
+        }
+        batch.add(id, epochSecond, tapType,
+                batch.stopCode(stopIds.get(buffer, fieldStarts[3], fieldEnds[3])),
+                batch.companyCode(companyIds.get(buffer, fieldStarts[4], fieldEnds[4])),
+                batch.busCode(busIds.get(buffer, fieldStarts[5], fieldEnds[5])),
+                panKey);
+    }
+
+    private static long packPan(final ByteBuffer buffer, final int start, final int end) {
+        final int length = end - start;
+        if (length == 0 || length > PanCodec.MAX_PACKED_DIGITS) {
+            return PanCodec.NOT_PACKABLE;
+        }
+        long value = 0;
+        for (int i = start; i < end; i++) {
+            final int digit = buffer.get(i) - '0';
+            if (digit < 0 || digit > 9) {
+                return PanCodec.NOT_PACKABLE;
+            }
+            value = value * 10 + digit;
+        }
+        return PanCodec.pack(length, value);
+    }
+
+    private void splitFields(final ByteBuffer buffer, final int start, final int end) {
+        int field = 0;
+        fieldStarts[0] = start;
+        for (int i = start; i < end && field < FIELD_COUNT; i++) {
+            final byte b = buffer.get(i);
+            if (b == ',') {
+                fieldEnds[field++] = i;
+                if (field < FIELD_COUNT) {
+                    fieldStarts[field] = i + 1;
+                }
+            } else if (b == '"') {
+                throw new UnsupportedLineException("Quoted fields are not supported at offset %d".formatted(i));
+            }
+        }
+        if (field == FIELD_COUNT - 1) {
+            fieldEnds[field++] = end;
+        }
+        if (field < FIELD_COUNT) {
+            throw new CsvProcessingException("Expected %d fields in line at offset %d".formatted(FIELD_COUNT, start), null);
+        }
+    }
+
+    private long parseId(final ByteBuffer buffer) {
+        final int start = fieldStarts[0];
+        final int end = fieldEnds[0];
+        if (start == end) {
+            throw new CsvProcessingException("Invalid tap ID at offset %d".formatted(start), null);
+        }
+        if (end - start > 18) {
+            throw new UnsupportedLineException("Tap ID of more than 18 digits at offset %d".formatted(start));
+        }
+        long id = 0;
+        for (int i = start; i < end; i++) {
+            id = id * 10 + digit(buffer, i);
+        }
+        return id;
+    }
+
+    /**
+     * Decodes {@code dd-MM-yyyy HH:mm:ss} from its fixed offsets into {@link #cachedDate}, {@link #hour},
+     * {@link #minute} and {@link #second}, reusing the date of the previous row when unchanged.
+     */
+    private void decodeDateTime(final ByteBuffer buffer, final long id) {
+        final int p = fieldStarts[1];
+        if (fieldEnds[1] - p != DATE_TIME_LENGTH || buffer.get(p + 2) != '-' || buffer.get(p + 5) != '-'
+                || buffer.get(p + 10) != ' ' || buffer.get(p + 13) != ':' || buffer.get(p + 16) != ':') {
+            throw new CsvProcessingException("Error parsing date for tap ID: %s".formatted(id), null);
+        }
+        try {
+            final int day = twoDigits(buffer, p);
+            final int month = twoDigits(buffer, p + 3);
+            final int year = twoDigits(buffer, p + 6) * 100 + twoDigits(buffer, p + 8);
+            final int dateKey = (year * 100 + month) * 100 + day;
+            if (dateKey != cachedDateKey) {
+                cachedDate = LocalDate.of(year, month, day);
+                cachedEpochDay = cachedDate.toEpochDay();
+                cachedDateKey = dateKey;
+            }
+            hour = twoDigits(buffer, p + 11);
+            minute = twoDigits(buffer, p + 14);
+            second = twoDigits(buffer, p + 17);
+            if (hour > 23 || minute > 59 || second > 59) {
+                throw new DateTimeException("Invalid time of day");
+            }
+        } catch (final DateTimeException | CsvProcessingException e) {
+            throw new CsvProcessingException("Error parsing date for tap ID: %s".formatted(id), e);
+        }
+    }
+
+    private TapType parseTapType(final ByteBuffer buffer, final long id) {
+        final int start = fieldStarts[2];
+        final int length = fieldEnds[2] - start;
+        if (length == 2 && buffer.get(start) == 'O' && buffer.get(start + 1) == 'N') {
+            return TapType.ON;
+        }
+        if (length == 3 && buffer.get(start) == 'O' && buffer.get(start + 1) == 'F' && buffer.get(start + 2) == 'F') {
+            return TapType.OFF;
+        }
+        throw new CsvProcessingException("Invalid data found in line for tap ID: %s".formatted(id), null);
+    }
+
+    private static int twoDigits(final ByteBuffer buffer, final int offset) {
+        return digit(buffer, offset) * 10 + digit(buffer, offset + 1);
+    }
+
+    private static int digit(final ByteBuffer buffer, final int offset) {
+        final int digit = buffer.get(offset) - '0';
+        if (digit < 0 || digit > 9) {
+            throw new CsvProcessingException("Invalid digit at offset %d".formatted(offset), null);
+        }
+        return digit;
+    }
+
+    /**
+     * A range of bytes of a file, from {@code start} inclusive to {@code end} exclusive.
+     */
+    public record ByteRange(long start, long end) {
+    }
+
+    /**
+     * Thrown for a line that is not necessarily invalid CSV but uses a feature the byte-level parser does not handle,
+     * so that the file can be read with a full CSV reader instead.
+     */
+    public static class UnsupportedLineException extends CsvProcessingException {
+        public UnsupportedLineException(final String message) {
+            super(message, null);
+        }
+    }
+
+    /**
+     * Consumes one row whose field boundaries are in {@link #fieldStarts} and {@link #fieldEnds}.
+     */
+    @FunctionalInterface
+    private interface RowHandler {
+        void accept(ByteBuffer buffer);
+    }
+
+    /**
+     * Direct-mapped cache from byte ranges to strings. A hit returns the previously decoded string; a miss decodes
+     * the bytes and replaces the slot, so the cache never grows beyond its fixed number of slots.
+     */
+    private static final class ByteStringCache {
+
+        private final byte[][] keys;
+        private final String[] values;
+        private final int mask;
+
+        private ByteStringCache(final int slots) {
+            this.keys = new byte[slots][];
+            this.values = new String[slots];
+            this.mask = slots - 1;
+        }
+
+        private String get(final ByteBuffer buffer, final int start, final int end) {
+            int hash = 1;
+            for (int i = start; i < end; i++) {
+                hash = 31 * hash + buffer.get(i);
+            }
+            final int slot = (hash ^ (hash >>> 16)) & mask;
+            final byte[] key = keys[slot];
+            if (key != null && matches(key, buffer, start, end)) {
+                return values[slot];
+            }
+            final byte[] bytes = new byte[end - start];
+            buffer.get(start, bytes);
+            keys[slot] = bytes;
+            values[slot] = new String(bytes, StandardCharsets.UTF_8);
+            return values[slot];
+        }
+
+        private static boolean matches(final byte[] key, final ByteBuffer buffer, final int start, final int end) {
+            if (key.length != end - start) {
+                return false;
+            }
+            for (int i = 0; i < key.length; i++) {
+                if (key[i] != buffer.get(start + i)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+}
@@ -0,0 +1,399 @@
+package com.littlepay.tapfare.utils;
+
+import com.littlepay.tapfare.constant.TripStatus;
+import com.littlepay.tapfare.exceptions.CsvProcessingException;
+import com.littlepay.tapfare.model.Trip;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Byte-level writer for trip CSV files, producing exactly the bytes {@link CsvUtils#writeTripsToCsv} writes through
+ * opencsv. Every row is appended straight into one reusable buffer that is drained to a {@link FileChannel} when
+ * full: timestamps, durations and fares are written digit by digit, the {@code dd-MM-yyyy } date prefix is encoded
+ * once per day and reused by the following rows of the same day, and statuses come from pre-encoded bytes.
+ * Fields containing a separator, quote or line break are quoted and escaped like opencsv does, and non-ASCII text is
+ * encoded with the platform default charset, as the {@code FileWriter} used by opencsv does.
+ * A writer can also gzip-compress the file, draining its buffer through a {@link GZIPOutputStream} instead.
+ * An instance owns its buffer and file channel and is not thread-safe.
+ */
+public class FastTripCsvWriter implements AutoCloseable {
+
+    private static final int BUFFER_SIZE = 4 * 1024 * 1024;
+    private static final int GZIP_BUFFER_SIZE = 64 * 1024;
+    private static final int DATE_PREFIX_LENGTH = 11;
+    private static final int DATE_TIME_LENGTH = 19;
+    private static final int MAX_NUMBER_LENGTH = 24;
+    private static final long CENT_FARE_LIMIT = 1_000_000_000L;
+    private static final DateTimeFormatter formatter = DateTimeFormatter.ofPattern("dd-MM-yyyy HH:mm:ss");
+    private static final byte[] HEADER = ("Started,Finished,DurationSecs,FromStopId,ToStopId,ChargeAmount,CompanyId,"
+            + "BusID,PAN,Status\n").getBytes(StandardCharsets.UTF_8);
+    private static final byte[][] STATUSES = encodeStatuses();
+    private static final Charset TEXT_CHARSET = Charset.defaultCharset();
+
+    private final Path outputFile;
+    private final FileChannel channel;
+    private final OutputStream gzipOutput;
+    private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+    private final byte[] bytes = buffer.array();
+    private final byte[] cachedDatePrefix = new byte[DATE_PREFIX_LENGTH];
+    private LocalDate cachedDate;
+    private int position;
+
+    /**
+     * Creates or truncates the given file and writes the trip CSV header.
+     *
+     * @param outputFile the trip CSV file
+     * @throws CsvProcessingException if the file cannot be opened
+     */
+    public FastTripCsvWriter(final Path outputFile) {
+        this(outputFile, false);
+    }
+
+    /**
+     * Creates or truncates the given file and writes the trip CSV header, gzip-compressing the file if asked to.
+     * A compressed file has no {@link #size()} and cannot be {@link #sync() synced} or resumed.
+     *
+     * @param outputFile the trip CSV file
+     * @param gzip       whether to gzip-compress the file
+     * @throws CsvProcessingException if the file cannot be opened
+     */
+    public FastTripCsvWriter(final Path outputFile, final boolean gzip) {
+        this(outputFile, gzip ? null : openAt(outputFile, 0), gzip ? openGzip(outputFile) : null, true);
+    }
+
+    private FastTripCsvWriter(final Path outputFile, final FileChannel channel, final OutputStream gzipOutput, final boolean header) {
+        this.outputFile = outputFile;
+        this.channel = channel;
+        this.gzipOutput = gzipOutput;
+        if (header) {
+            System.arraycopy(HEADER, 0, bytes, 0, HEADER.length);
+            position = HEADER.length;
+        }
+    }
+
+    /**
+     * Opens the given file for appending trip rows from the given byte offset on, discarding anything after it.
+     * No header is written, so this is used both to resume a partially written trip CSV file and, with an offset of
+     * zero, to write header-less fragments that are later appended to one.
+     *
+     * @param outputFile the trip CSV file
+     * @param offset     the number of bytes of the file to keep
+     * @return a writer continuing at the offset
+     * @throws CsvProcessingException if the file cannot be opened or is shorter than the offset
+     */
+    public static FastTripCsvWriter resumeAt(final Path outputFile, final long offset) {
+        return new FastTripCsvWriter(outputFile, openAt(outputFile, offset), null, false);
+    }
+
+    /**
+     * @return the number of bytes of the file written so far, including rows still buffered
+     */
+    public long size() {
+        requireUncompressed();
+        try {
+            return channel.position() + position;
+        } catch (final IOException e) {
+            throw new CsvProcessingException("Error writing to CSV file: %s".formatted(outputFile), e);
+        }
+    }
+
+    /**
+     * Drains the buffered rows and forces them to the storage device, so that the first {@link #size()} bytes of
+     * the file survive a crash.
+     *
+     * @throws CsvProcessingException if the rows cannot be written
+     */
+    public void sync() {
+        requireUncompressed();
+        try {
+            flush();
+            channel.force(false);
+        } catch (final IOException e) {
+            throw new CsvProcessingException("Error writing to CSV file: %s".formatted(outputFile), e);
+        }
+    }
+
+    /**
+     * Appends one trip as a CSV row.
+     *
+     * @param trip the trip to write
+     * @throws CsvProcessingException if the buffer cannot be drained to the file
+     */
+    public void write(final Trip trip) {
+        writeDateTime(trip.getStarted());
+        writeSeparator();
+        writeDateTime(trip.getFinished());
+        writeSeparator();
+        writeLong(trip.getDurationSecs());
+        writeSeparator();
+        writeField(trip.getFromStopId());
+        writeSeparator();
+        writeField(trip.getToStopId());
+        writeSeparator();
+        writeFare(trip.getChargeAmount());
+        writeSeparator();
+        writeField(trip.getCompanyId());
+        writeSeparator();
+        writeField(trip.getBusId());
+        writeSeparator();
+        writeField(trip.getPan());
+        writeSeparator();
+        final TripStatus status = trip.getStatus();
+        if (status != null) {
+            writeBytes(STATUSES[status.ordinal()]);
+        }
+        ensureCapacity(1);
+        bytes[position++] = '\n';
+    }
+
+    /**
+     * Drains the remaining buffered rows and closes the file.
+     *
+     * @throws CsvProcessingException if the buffer cannot be drained or the file cannot be closed
+     */
+    @Override
+    public void close() {
+        try (channel; gzipOutput) {
+            flush();
+        } catch (final IOException e) {
+            throw new CsvProcessingException("Error writing to CSV file: %s".formatted(outputFile), e);
+        }
+    }
+
+    private static OutputStream openGzip(final Path outputFile) {
+        try {
+            return new GZIPOutputStream(Files.newOutputStream(outputFile), GZIP_BUFFER_SIZE);
+        } catch (final IOException e) {
+            throw new CsvProcessingException("Error writing to CSV file: %s".formatted(outputFile), e);
+        }
+    }
+
+    private void requireUncompressed() {
+        if (channel == null) {
+            throw new UnsupportedOperationException("Compressed CSV file %s cannot be synced or resumed".formatted(outputFile));
+        }
+    }
+
+    private static FileChannel openAt(final Path outputFile, final long offset) {
+        FileChannel channel = null;
+        try {
+            channel = FileChannel.open(outputFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+            if (channel.size() < offset) {
+                channel.close();
+                throw new CsvProcessingException("CSV file %s is shorter than %d bytes".formatted(outputFile, offset), null);
+            }
+            channel.truncate(offset);
+            channel.position(offset);
+            return channel;
+        } catch (final IOException e) {
+            final CsvProcessingException failure = new CsvProcessingException("Error writing to CSV file: %s".formatted(outputFile), e);
+            if (channel != null) {
+                try {
+                    channel.close();
+                } catch (final IOException closeFailure) {
+                    failure.addSuppressed(closeFailure);
+                }
+            }
+            throw failure;
+        }
+    }
+
+    private void writeSeparator() {
+        ensureCapacity(1);
+        bytes[position++] = ',';
+    }
+
+    private void writeDateTime(final LocalDateTime dateTime) {
+        if (dateTime == null) {
+            return;
+        }
+        final int year = dateTime.getYear();
+        if (year < 0 || year > 9999) {
+            writeField(dateTime.format(formatter));
+            return;
+        }
+        ensureCapacity(DATE_TIME_LENGTH);
+        final LocalDate date = dateTime.toLocalDate();
+        if (!date.equals(cachedDate)) {
+            twoDigits(cachedDatePrefix, 0, date.getDayOfMonth());
+            cachedDatePrefix[2] = '-';
+            twoDigits(cachedDatePrefix, 3, date.getMonthValue());
+            cachedDatePrefix[5] = '-';
+            twoDigits(cachedDatePrefix, 6, year / 100);
+            twoDigits(cachedDatePrefix, 8, year % 100);
+            cachedDatePrefix[10] = ' ';
+            cachedDate = date;
+        }
+        System.arraycopy(cachedDatePrefix, 0, bytes, position, DATE_PREFIX_LENGTH);
+        final int p = position + DATE_PREFIX_LENGTH;
+        twoDigits(bytes, p, dateTime.getHour());
+        bytes[p + 2] = ':';
+        twoDigits(bytes, p + 3, dateTime.getMinute());
+        bytes[p + 5] = ':';
+        twoDigits(bytes, p + 6, dateTime.getSecond());
+        position += DATE_TIME_LENGTH;
+    }
+
+    private void writeLong(final long value) {
+        if (value == Long.MIN_VALUE) {
+            writeField(String.valueOf(value));
+            return;
+        }
+        ensureCapacity(MAX_NUMBER_LENGTH);
+        long remaining = value;
+        if (remaining < 0) {
+            bytes[position++] = '-';
+            remaining = -remaining;
+        }
+        final int length = digitCount(remaining);
+        int p = position + length;
+        do {
+            bytes[--p] = (byte) ('0' + remaining % 10);
+            remaining /= 10;
+        } while (remaining != 0);
+        position += length;
+    }
+
+    /**
+     * Writes fares with a whole number of cents as {@link Double#toString(double)} would, i.e. with the shortest
+     * fraction that has at least one digit ({@code 7.0}, {@code 7.3}, {@code 3.25}). Any other value, including
+     * negative zero and amounts that {@code Double.toString} would print in scientific notation, is written
+     * through {@code Double.toString} itself.
+     */
+    private void writeFare(final double fare) {
+        final long cents = Math.round(fare * 100);
+        if (cents < 0 || cents >= CENT_FARE_LIMIT || cents / 100.0 != fare || Double.doubleToRawLongBits(fare) == Long.MIN_VALUE) {
+            writeField(Double.toString(fare));
+            return;
+        }
+        writeLong(cents / 100);
+        ensureCapacity(3);
+        final int fraction = (int) (cents % 100);
+        bytes[position++] = '.';
+        bytes[position++] = (byte) ('0' + fraction / 10);
+        if (fraction % 10 != 0) {
+            bytes[position++] = (byte) ('0' + fraction % 10);
+        }
+    }
+
+    /**
+     * Writes a text field, quoting it and doubling embedded quotes when it contains a separator, quote or line break.
+     */
+    private void writeField(final String value) {
+        if (value == null) {
+            return;
+        }
+        final int length = value.length();
+        boolean ascii = true;
+        boolean quote = false;
+        for (int i = 0; i < length; i++) {
+            final char c = value.charAt(i);
+            if (c >= 0x80) {
+                ascii = false;
+            } else if (c == ',' || c == '"' || c == '\n' || c == '\r') {
+                quote = true;
+            }
+        }
+        if (!ascii || length > BUFFER_SIZE / 4) {
+            writeEncodedField(value.getBytes(TEXT_CHARSET), quote);
+            return;
+        }
+        ensureCapacity(2 * length + 2);
+        if (quote) {
+            bytes[position++] = '"';
+        }
+        for (int i = 0; i < length; i++) {
+            final char c = value.charAt(i);
+            if (c == '"') {
+                bytes[position++] = '"';
+            }
+            bytes[position++] = (byte) c;
+        }
+        if (quote) {
+            bytes[position++] = '"';
+        }
+    }
+
+    private void writeEncodedField(final byte[] encoded, final boolean quote) {
+        if (quote) {
+            writeByte('"');
+        }
+        for (final byte b : encoded) {
+            if (b == '"') {
+                writeByte('"');
+            }
+            writeByte(b);
+        }
+        if (quote) {
+            writeByte('"');
+        }
+    }
+
+    private void writeBytes(final byte[] value) {
+        ensureCapacity(value.length);
+        System.arraycopy(value, 0, bytes, position, value.length);
+        position += value.length;
+    }
+
+    private void writeByte(final int b) {
+        ensureCapacity(1);
+        bytes[position++] = (byte) b;
+    }
+
+    private void ensureCapacity(final int length) {
+        if (position + length > BUFFER_SIZE) {
+            try {
+                flush();
+            } catch (final IOException e) {
+                throw new CsvProcessingException("Error writing to CSV file: %s".formatted(outputFile), e);
+            }
+        }
+    }
+
+    private void flush() throws IOException {
+        if (gzipOutput != null) {
+            gzipOutput.write(bytes, 0, position);
+            position = 0;
+            return;
+        }
+        buffer.clear().limit(position);
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        position = 0;
+    }
+
+    private static void twoDigits(final byte[] target, final int offset, final int value) {
+        target[offset] = (byte) ('0' + value / 10);
+        target[offset + 1] = (byte) ('0' + value % 10);
+    }
+
+    private static int digitCount(final long value) {
+        int count = 1;
+        for (long threshold = 10; count < 19 && value >= threshold; threshold *= 10) {
+            count++;
+        }
+        return count;
+    }
+
+    private static byte[][] encodeStatuses() {
+        final TripStatus[] statuses = TripStatus.values();
+        final byte[][] encoded = new byte[statuses.length][];
+        for (final TripStatus status : statuses) {
+            encoded[status.ordinal()] = status.toString().getBytes(StandardCharsets.UTF_8);
+        }
+        return encoded;
+    }
+}
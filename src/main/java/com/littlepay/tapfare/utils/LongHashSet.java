@@ -0,0 +1,106 @@
+package com.littlepay.tapfare.utils;
+
+import java.util.Arrays;
+
+/**
+ * Open-addressing hash set of primitive {@code long}s, such as tap IDs, probed linearly in a single array.
+ * An element costs 8 bytes of array slot at most 60% full instead of a boxed {@code Long} and a {@code HashMap.Node},
+ * and adding an element that is already present is detected with the same probe that would insert it.
+ * Elements cannot be removed. The set is not thread-safe.
+ */
+public final class LongHashSet {
+
+    private static final long FREE = Long.MIN_VALUE;
+    private static final int MIN_CAPACITY = 16;
+    private static final double MAX_LOAD = 0.6;
+
+    private long[] elements;
+    private int mask;
+    private int size;
+    private int resizeThreshold;
+    private boolean containsFree;
+
+    public LongHashSet() {
+        this(MIN_CAPACITY);
+    }
+
+    /**
+     * @param expectedSize the number of elements the set should hold without resizing
+     */
+    public LongHashSet(final int expectedSize) {
+        allocate(tableSizeFor((int) Math.min(1 << 30, (long) Math.ceil(Math.max(expectedSize, 1) / MAX_LOAD))));
+    }
+
+    /**
+     * Adds the element unless the set already contains it.
+     *
+     * @return true if the element was added, false if the set already contained it
+     */
+    public boolean add(final long element) {
+        if (element == FREE) {
+            if (containsFree) {
+                return false;
+            }
+            containsFree = true;
+            size++;
+            return true;
+        }
+        int slot = slot(element);
+        for (; elements[slot] != FREE; slot = (slot + 1) & mask) {
+            if (elements[slot] == element) {
+                return false;
+            }
+        }
+        elements[slot] = element;
+        if (++size > resizeThreshold) {
+            resize(elements.length * 2);
+        }
+        return true;
+    }
+
+    public boolean contains(final long element) {
+        if (element == FREE) {
+            return containsFree;
+        }
+        for (int slot = slot(element); elements[slot] != FREE; slot = (slot + 1) & mask) {
+            if (elements[slot] == element) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    private int slot(final long element) {
+        // Fibonacci hashing spreads sequential IDs over the whole table
+        return (int) ((element * 0x9E3779B97F4A7C15L) >>> 32) & mask;
+    }
+
+    private void resize(final int capacity) {
+        final long[] oldElements = elements;
+        allocate(capacity);
+        for (final long element : oldElements) {
+            if (element != FREE) {
+                int slot = slot(element);
+                while (elements[slot] != FREE) {
+                    slot = (slot + 1) & mask;
+                }
+                elements[slot] = element;
+            }
+        }
+    }
+
+    private void allocate(final int capacity) {
+        elements = new long[capacity];
+        Arrays.fill(elements, FREE);
+        mask = capacity - 1;
+        resizeThreshold = (int) (capacity * MAX_LOAD);
+    }
+
+    private static int tableSizeFor(final int capacity) {
+        return Math.max(MIN_CAPACITY, Integer.highestOneBit(Math.max(1, capacity - 1)) << 1);
+    }
+}
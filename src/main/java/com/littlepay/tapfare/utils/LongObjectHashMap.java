@@ -0,0 +1,217 @@
+package com.littlepay.tapfare.utils;
+
+import java.util.Arrays;
+import java.util.function.Consumer;
+import java.util.function.UnaryOperator;
+
+/**
+ * Open-addressing hash map from primitive {@code long} keys, such as PANs packed by {@link PanCodec}, to objects.
+ * Keys and values are held inline in two parallel arrays probed linearly, so an entry costs 12 to 16 bytes of array
+ * slots instead of a boxed key and a {@code HashMap.Node}, and a lookup reads adjacent slots instead of chasing
+ * pointers. Removal shifts the following entries of the probe sequence back, leaving no tombstones behind.
+ * {@link Long#MIN_VALUE} marks free slots and cannot be used as a key. The map is not thread-safe.
+ *
+ * @param <V> the type of the values
+ */
+public final class LongObjectHashMap<V> {
+
+    private static final long FREE = Long.MIN_VALUE;
+    private static final int MIN_CAPACITY = 16;
+    private static final double MAX_LOAD = 0.6;
+
+    private long[] keys;
+    private Object[] values;
+    private int mask;
+    private int size;
+    private int resizeThreshold;
+
+    public LongObjectHashMap() {
+        this(MIN_CAPACITY);
+    }
+
+    /**
+     * @param expectedSize the number of entries the map should hold without resizing
+     */
+    public LongObjectHashMap(final int expectedSize) {
+        allocate(tableSizeFor((int) Math.min(1 << 30, (long) Math.ceil(Math.max(expectedSize, 1) / MAX_LOAD))));
+    }
+
+    /**
+     * @return the value of the key, or null if the map does not contain it
+     */
+    @SuppressWarnings("unchecked")
+    public V get(final long key) {
+        checkKey(key);
+        for (int slot = slot(key); keys[slot] != FREE; slot = (slot + 1) & mask) {
+            if (keys[slot] == key) {
+                return (V) values[slot];
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Associates the value with the key.
+     *
+     * @param key   the key, anything but {@link Long#MIN_VALUE}
+     * @param value the value, not null
+     * @return the previous value of the key, or null if the map did not contain it
+     */
+    @SuppressWarnings("unchecked")
+    public V put(final long key, final V value) {
+        checkKey(key);
+        if (value == null) {
+            throw new IllegalArgumentException("Null values are not supported");
+        }
+        int slot = slot(key);
+        for (; keys[slot] != FREE; slot = (slot + 1) & mask) {
+            if (keys[slot] == key) {
+                final V previous = (V) values[slot];
+                values[slot] = value;
+                return previous;
+            }
+        }
+        keys[slot] = key;
+        values[slot] = value;
+        if (++size > resizeThreshold) {
+            resize(keys.length * 2);
+        }
+        return null;
+    }
+
+    /**
+     * @return the removed value of the key, or null if the map did not contain it
+     */
+    @SuppressWarnings("unchecked")
+    public V remove(final long key) {
+        checkKey(key);
+        for (int slot = slot(key); keys[slot] != FREE; slot = (slot + 1) & mask) {
+            if (keys[slot] == key) {
+                final V removed = (V) values[slot];
+                removeSlot(slot);
+                return removed;
+            }
+        }
+        return null;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Removes every entry, keeping the current capacity.
+     */
+    public void clear() {
+        Arrays.fill(keys, FREE);
+        Arrays.fill(values, null);
+        size = 0;
+    }
+
+    /**
+     * Calls the action with every value, in no particular order.
+     */
+    @SuppressWarnings("unchecked")
+    public void forEachValue(final Consumer<? super V> action) {
+        for (int slot = 0; slot < keys.length; slot++) {
+            if (keys[slot] != FREE) {
+                action.accept((V) values[slot]);
+            }
+        }
+    }
+
+    /**
+     * Replaces every value with the result of the given function, in no particular order, removing the entries
+     * whose new value is null.
+     */
+    @SuppressWarnings("unchecked")
+    public void replaceAll(final UnaryOperator<V> function) {
+        long[] removedKeys = null;
+        int removedCount = 0;
+        for (int slot = 0; slot < keys.length; slot++) {
+            if (keys[slot] != FREE) {
+                final V value = function.apply((V) values[slot]);
+                if (value != null) {
+                    values[slot] = value;
+                } else {
+                    if (removedKeys == null || removedCount == removedKeys.length) {
+                        removedKeys = removedKeys == null ? new long[16] : Arrays.copyOf(removedKeys, removedCount * 2);
+                    }
+                    removedKeys[removedCount++] = keys[slot];
+                }
+            }
+        }
+        // removing shifts entries between slots, so removals wait until every entry has been visited once
+        for (int i = 0; i < removedCount; i++) {
+            remove(removedKeys[i]);
+        }
+    }
+
+    /**
+     * Frees the slot and shifts back the following entries of its probe sequence that can move closer to their
+     * home slot, so that every entry stays reachable from its home slot without tombstones.
+     */
+    private void removeSlot(int free) {
+        int slot = free;
+        while (true) {
+            slot = (slot + 1) & mask;
+            final long key = keys[slot];
+            if (key == FREE) {
+                break;
+            }
+            final int home = slot(key);
+            // the entry can fill the free slot unless its home slot lies cyclically after the free slot
+            if (((slot - home) & mask) >= ((slot - free) & mask)) {
+                keys[free] = key;
+                values[free] = values[slot];
+                free = slot;
+            }
+        }
+        keys[free] = FREE;
+        values[free] = null;
+        size--;
+    }
+
+    private int slot(final long key) {
+        // Fibonacci hashing spreads the sequential low bits of packed PANs over the whole table
+        return (int) ((key * 0x9E3779B97F4A7C15L) >>> 32) & mask;
+    }
+
+    private void resize(final int capacity) {
+        final long[] oldKeys = keys;
+        final Object[] oldValues = values;
+        allocate(capacity);
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != FREE) {
+                int slot = slot(oldKeys[i]);
+                while (keys[slot] != FREE) {
+                    slot = (slot + 1) & mask;
+                }
+                keys[slot] = oldKeys[i];
+                values[slot] = oldValues[i];
+            }
+        }
+    }
+
+    private void allocate(final int capacity) {
+        keys = new long[capacity];
+        Arrays.fill(keys, FREE);
+        values = new Object[capacity];
+        mask = capacity - 1;
+        resizeThreshold = (int) (capacity * MAX_LOAD);
+    }
+
+    private static int tableSizeFor(final int capacity) {
+        return Math.max(MIN_CAPACITY, Integer.highestOneBit(Math.max(1, capacity - 1)) << 1);
+    }
+
+    private static void checkKey(final long key) {
+        if (key == FREE) {
+            throw new IllegalArgumentException("Long.MIN_VALUE cannot be used as a key");
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package com.littlepay.tapfare.utils;
+
+/**
+ * Packs all-digit PANs of up to {@value #MAX_PACKED_DIGITS} digits into a single non-negative {@code long}:
+ * the digit count in bits 58 to 62 and the numeric value in the low {@value #LENGTH_SHIFT} bits, so that PANs with
+ * leading zeros round-trip exactly. PANs that cannot be packed are reported as {@link #NOT_PACKABLE} and are left
+ * to the caller to dictionary-encode, typically as negative keys.
+ */
+public final class PanCodec {
+
+    public static final int MAX_PACKED_DIGITS = 17;
+    public static final long NOT_PACKABLE = -1L;
+
+    private static final int LENGTH_SHIFT = 58;
+    private static final long VALUE_MASK = (1L << LENGTH_SHIFT) - 1;
+
+    private PanCodec() {
+    }
+
+    /**
+     * @param pan the PAN to pack
+     * @return the packed PAN, or {@link #NOT_PACKABLE} if it is empty, too long or not made of digits only
+     */
+    public static long pack(final CharSequence pan) {
+        final int length = pan.length();
+        if (length == 0 || length > MAX_PACKED_DIGITS) {
+            return NOT_PACKABLE;
+        }
+        long value = 0;
+        for (int i = 0; i < length; i++) {
+            final int digit = pan.charAt(i) - '0';
+            if (digit < 0 || digit > 9) {
+                return NOT_PACKABLE;
+            }
+            value = value * 10 + digit;
+        }
+        return pack(length, value);
+    }
+
+    /**
+     * @param digits the number of digits of the PAN, between 1 and {@value #MAX_PACKED_DIGITS}
+     * @param value  the numeric value of the PAN
+     * @return the packed PAN
+     */
+    public static long pack(final int digits, final long value) {
+        return (long) digits << LENGTH_SHIFT | value;
+    }
+
+    /**
+     * @param packed a packed PAN, as returned by {@link #pack(CharSequence)}
+     * @return the PAN, including its leading zeros
+     */
+    public static String unpack(final long packed) {
+        final char[] digits = new char[(int) (packed >>> LENGTH_SHIFT)];
+        long value = packed & VALUE_MASK;
+        for (int i = digits.length - 1; i >= 0; i--) {
+            digits[i] = (char) ('0' + value % 10);
+            value /= 10;
+        }
+        return new String(digits);
+    }
+
+    /**
+     * @param key a PAN key
+     * @return whether the key holds a packed PAN rather than a dictionary code
+     */
+    public static boolean isPacked(final long key) {
+        return key >= 0;
+    }
+}
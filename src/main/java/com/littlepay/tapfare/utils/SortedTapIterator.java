@@ -0,0 +1,87 @@
+package com.littlepay.tapfare.utils;
+
+import com.littlepay.tapfare.exceptions.CsvProcessingException;
+import com.littlepay.tapfare.model.Tap;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+
+/**
+ * Iterator performing a k-way merge over runs of taps that are each already sorted by date time.
+ * Ties are resolved in favour of the run with the lowest index, so merging the chunks of a file in
+ * file order yields exactly the same sequence as a stable in-memory sort of the whole file.
+ * Runs implementing {@link AutoCloseable} (for example spilled chunk files) are closed with this iterator.
+ */
+@Slf4j
+public class SortedTapIterator implements Iterator<Tap>, AutoCloseable {
+
+    private static final Comparator<RunHead> HEAD_ORDER = Comparator
+            .comparing((RunHead head) -> head.tap.getLocalDateTime())
+            .thenComparingInt(head -> head.runIndex);
+
+    private final List<? extends Iterator<Tap>> runs;
+    private final PriorityQueue<RunHead> heads;
+
+    public SortedTapIterator(final List<? extends Iterator<Tap>> runs) {
+        this.runs = runs;
+        this.heads = new PriorityQueue<>(Math.max(1, runs.size()), HEAD_ORDER);
+        for (int i = 0; i < runs.size(); i++) {
+            advance(i);
+        }
+    }
+
+    @Override
+    public boolean hasNext() {
+        return !heads.isEmpty();
+    }
+
+    @Override
+    public Tap next() {
+        final RunHead head = heads.poll();
+        if (head == null) {
+            throw new NoSuchElementException("No more taps to merge");
+        }
+        advance(head.runIndex);
+        return head.tap;
+    }
+
+    private void advance(final int runIndex) {
+        final Iterator<Tap> run = runs.get(runIndex);
+        if (run.hasNext()) {
+            heads.add(new RunHead(run.next(), runIndex));
+        }
+    }
+
+    /**
+     * Closes every closeable run, releasing file handles and deleting spilled chunk files.
+     *
+     * @throws CsvProcessingException if any of the runs could not be closed
+     */
+    @Override
+    public void close() {
+        heads.clear();
+        CsvProcessingException failure = null;
+        for (final Iterator<Tap> run : runs) {
+            if (run instanceof final AutoCloseable closeable) {
+                try {
+                    closeable.close();
+                } catch (final Exception e) {
+                    log.error("Error closing sorted tap run.", e);
+                    if (failure == null) {
+                        failure = new CsvProcessingException("Error closing sorted tap run", e);
+                    }
+                }
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    private record RunHead(Tap tap, int runIndex) {
+    }
+}
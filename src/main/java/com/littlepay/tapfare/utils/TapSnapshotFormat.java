@@ -0,0 +1,198 @@
+package com.littlepay.tapfare.utils;
+
+import com.littlepay.tapfare.constant.TapType;
+import com.littlepay.tapfare.exceptions.CsvProcessingException;
+import com.littlepay.tapfare.model.TapBatch;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.function.ToIntFunction;
+
+/**
+ * Versioned binary snapshot of a {@link TapBatch}, so that taps can be reprocessed without parsing their CSV again.
+ * <pre>
+ * header      magic "TAPS" (int), version (short), flags (short), record size (int), reserved (int),
+ *             record count (long), dictionary offset (long)                                       32 bytes
+ * records     id (long), epoch second (long), PAN key (long), stop code (int), company code (int),
+ *             bus code (int), tap type (byte), padding                                    40 bytes each
+ * dictionary  stop, company, bus and unpackable PAN dictionaries, each as an entry count (int)
+ *             followed by the length (int) and UTF-8 bytes of every entry, in code order
+ * </pre>
+ * All values are big-endian. The {@link #FLAG_SORTED} flag records that the records are in date time order, in
+ * which case the reader skips sorting. Reading memory-maps the file and copies the fixed-width records straight into
+ * the batch columns; codes and PAN keys are stored as is, so nothing is parsed or re-encoded.
+ */
+public final class TapSnapshotFormat {
+
+    public static final int MAGIC = 0x54415053;
+    public static final short VERSION = 1;
+    public static final short FLAG_SORTED = 1;
+
+    private static final int HEADER_SIZE = 32;
+    private static final int RECORD_SIZE = 40;
+    private static final int BUFFER_SIZE = 1024 * 1024;
+    private static final long MAX_WINDOW_SIZE = (Integer.MAX_VALUE / RECORD_SIZE) * (long) RECORD_SIZE;
+    private static final byte NULL_TAP_TYPE = -1;
+    private static final TapType[] TAP_TYPES = TapType.values();
+
+    private TapSnapshotFormat() {
+    }
+
+    /**
+     * Writes the given batch as a snapshot, replacing any existing file.
+     *
+     * @param batch        the taps to write
+     * @param snapshotFile the snapshot file
+     * @throws CsvProcessingException if the snapshot cannot be written
+     */
+    public static void write(final TapBatch batch, final Path snapshotFile) {
+        try (final FileChannel channel = FileChannel.open(snapshotFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+            buffer.putInt(MAGIC)
+                    .putShort(VERSION)
+                    .putShort(batch.isSortedByDateTime() ? FLAG_SORTED : 0)
+                    .putInt(RECORD_SIZE)
+                    .putInt(0)
+                    .putLong(batch.size())
+                    .putLong(HEADER_SIZE + (long) batch.size() * RECORD_SIZE);
+            for (int row = 0; row < batch.size(); row++) {
+                ensureRemaining(channel, buffer, RECORD_SIZE);
+                final TapType tapType = batch.getTapType(row);
+                buffer.putLong(batch.getId(row))
+                        .putLong(batch.getEpochSecond(row))
+                        .putLong(batch.getPanKey(row))
+                        .putInt(batch.getStopCode(row))
+                        .putInt(batch.getCompanyCode(row))
+                        .putInt(batch.getBusCode(row))
+                        .put(tapType != null ? (byte) tapType.ordinal() : NULL_TAP_TYPE)
+                        .put(new byte[3]);
+            }
+            for (final List<String> dictionary : List.of(batch.getStopDictionary(), batch.getCompanyDictionary(),
+                    batch.getBusDictionary(), batch.getUnpackablePanDictionary())) {
+                writeDictionary(channel, buffer, dictionary);
+            }
+            drain(channel, buffer);
+        } catch (final IOException e) {
+            throw new CsvProcessingException("Error writing tap snapshot: %s".formatted(snapshotFile), e);
+        }
+    }
+
+    /**
+     * Reads a snapshot into a batch sorted by date time.
+     *
+     * @param snapshotFile the snapshot file
+     * @return the taps of the snapshot
+     * @throws CsvProcessingException if the file cannot be read or is not a supported snapshot
+     */
+    public static TapBatch read(final Path snapshotFile) {
+        try (final FileChannel channel = FileChannel.open(snapshotFile, StandardOpenOption.READ)) {
+            if (channel.size() < HEADER_SIZE) {
+                throw new CsvProcessingException("Not a tap snapshot: %s".formatted(snapshotFile), null);
+            }
+            final MappedByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_SIZE);
+            final int magic = header.getInt();
+            final short version = header.getShort();
+            final short flags = header.getShort();
+            final int recordSize = header.getInt();
+            header.getInt();
+            final long recordCount = header.getLong();
+            final long dictionaryOffset = header.getLong();
+            if (magic != MAGIC || recordSize != RECORD_SIZE || recordCount > Integer.MAX_VALUE
+                    || dictionaryOffset != HEADER_SIZE + recordCount * RECORD_SIZE || dictionaryOffset > channel.size()) {
+                throw new CsvProcessingException("Not a tap snapshot: %s".formatted(snapshotFile), null);
+            }
+            if (version != VERSION) {
+                throw new CsvProcessingException("Unsupported tap snapshot version %d: %s".formatted(version, snapshotFile), null);
+            }
+
+            final TapBatch batch = new TapBatch((int) recordCount);
+            final MappedByteBuffer dictionaries = channel.map(FileChannel.MapMode.READ_ONLY, dictionaryOffset,
+                    channel.size() - dictionaryOffset);
+            readDictionary(dictionaries, batch::stopCode);
+            readDictionary(dictionaries, batch::companyCode);
+            readDictionary(dictionaries, batch::busCode);
+            readDictionary(dictionaries, pan -> (int) ~batch.panKey(pan));
+            readRecords(channel, recordCount, batch);
+
+            if ((flags & FLAG_SORTED) == 0) {
+                batch.sortByDateTime();
+            }
+            return batch;
+        } catch (final IOException | RuntimeException e) {
+            if (e instanceof final CsvProcessingException csvProcessingException) {
+                throw csvProcessingException;
+            }
+            throw new CsvProcessingException("Error reading tap snapshot: %s".formatted(snapshotFile), e);
+        }
+    }
+
+    private static void readRecords(final FileChannel channel, final long recordCount, final TapBatch batch) throws IOException {
+        final long recordsSize = recordCount * RECORD_SIZE;
+        for (long windowStart = 0; windowStart < recordsSize; windowStart += MAX_WINDOW_SIZE) {
+            final int windowSize = (int) Math.min(MAX_WINDOW_SIZE, recordsSize - windowStart);
+            final MappedByteBuffer records = channel.map(FileChannel.MapMode.READ_ONLY, HEADER_SIZE + windowStart, windowSize);
+            for (int offset = 0; offset < windowSize; offset += RECORD_SIZE) {
+                final byte tapType = records.get(offset + 36);
+                batch.add(records.getLong(offset),
+                        records.getLong(offset + 8),
+                        tapType != NULL_TAP_TYPE ? TAP_TYPES[tapType] : null,
+                        records.getInt(offset + 24),
+                        records.getInt(offset + 28),
+                        records.getInt(offset + 32),
+                        records.getLong(offset + 16));
+            }
+        }
+    }
+
+    /**
+     * Re-encodes the dictionary entries in code order, which gives every entry back its original code.
+     */
+    private static void readDictionary(final MappedByteBuffer buffer, final ToIntFunction<String> encoder) {
+        final int count = buffer.getInt();
+        for (int code = 0; code < count; code++) {
+            final byte[] bytes = new byte[buffer.getInt()];
+            buffer.get(bytes);
+            if (encoder.applyAsInt(new String(bytes, StandardCharsets.UTF_8)) != code) {
+                throw new CsvProcessingException("Corrupt tap snapshot dictionary at entry %d".formatted(code), null);
+            }
+        }
+    }
+
+    private static void writeDictionary(final FileChannel channel, final ByteBuffer buffer, final List<String> dictionary)
+            throws IOException {
+        ensureRemaining(channel, buffer, Integer.BYTES);
+        buffer.putInt(dictionary.size());
+        for (final String value : dictionary) {
+            final byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            ensureRemaining(channel, buffer, Integer.BYTES);
+            buffer.putInt(bytes.length);
+            for (int offset = 0; offset < bytes.length; ) {
+                ensureRemaining(channel, buffer, 1);
+                final int length = Math.min(buffer.remaining(), bytes.length - offset);
+                buffer.put(bytes, offset, length);
+                offset += length;
+            }
+        }
+    }
+
+    private static void ensureRemaining(final FileChannel channel, final ByteBuffer buffer, final int length) throws IOException {
+        if (buffer.remaining() < length) {
+            drain(channel, buffer);
+        }
+    }
+
+    private static void drain(final FileChannel channel, final ByteBuffer buffer) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+}
@@ -0,0 +1,127 @@
+package com.littlepay.tapfare.utils;
+
+import com.littlepay.tapfare.constant.TapSortStrategy;
+import com.littlepay.tapfare.model.Tap;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Comparator;
+import java.util.List;
+import java.util.ListIterator;
+
+/**
+ * Stable sorts of taps by date time. The radix sort packs the epoch second offset of every tap from the earliest one
+ * and its position in the list into a single {@code long} key, then sorts the keys by their epoch second bits with
+ * an LSD radix sort of 8-bit digits. Passes over digits that are the same for every key are skipped, so a day of
+ * taps sorts in two or three linear passes. The position bits keep taps with equal date times in list order.
+ */
+public final class TapSorter {
+
+    /**
+     * Inputs smaller than this are sorted by comparison, the radix sort passes costing more than they save.
+     */
+    static final int RADIX_THRESHOLD = 1024;
+
+    private static final int DIGIT_BITS = 8;
+    private static final int RADIX = 1 << DIGIT_BITS;
+    private static final Comparator<Tap> DATE_TIME_ORDER = Comparator.comparing(Tap::getLocalDateTime);
+
+    private TapSorter() {
+    }
+
+    /**
+     * Stably sorts the taps by date time, keeping taps with equal date times in list order.
+     *
+     * @param taps     the taps to sort in place
+     * @param strategy how to sort them
+     */
+    public static void sortByDateTime(final List<Tap> taps, final TapSortStrategy strategy) {
+        if (strategy != TapSortStrategy.RADIX || taps.size() < RADIX_THRESHOLD || !radixSortByDateTime(taps)) {
+            taps.sort(DATE_TIME_ORDER);
+        }
+    }
+
+    /**
+     * @return false, leaving the taps untouched, if a date time is missing, has fractions of a second or the date
+     * times span too long a time to be packed with the tap positions
+     */
+    private static boolean radixSortByDateTime(final List<Tap> taps) {
+        final Tap[] unsorted = taps.toArray(Tap[]::new);
+        final long[] keys = new long[unsorted.length];
+        long min = Long.MAX_VALUE;
+        long max = Long.MIN_VALUE;
+        for (int i = 0; i < unsorted.length; i++) {
+            final LocalDateTime dateTime = unsorted[i].getLocalDateTime();
+            if (dateTime == null || dateTime.getNano() != 0) {
+                return false;
+            }
+            keys[i] = dateTime.toEpochSecond(ZoneOffset.UTC);
+            min = Math.min(min, keys[i]);
+            max = Math.max(max, keys[i]);
+        }
+        final int positionBits = Integer.SIZE - Integer.numberOfLeadingZeros(unsorted.length - 1);
+        final int secondBits = Long.SIZE - Long.numberOfLeadingZeros(max - min);
+        if (positionBits + secondBits >= Long.SIZE) {
+            return false;
+        }
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = (keys[i] - min) << positionBits | i;
+        }
+
+        radixSort(keys, positionBits, secondBits);
+
+        final long positionMask = (1L << positionBits) - 1;
+        final ListIterator<Tap> sorted = taps.listIterator();
+        for (final long key : keys) {
+            sorted.next();
+            sorted.set(unsorted[(int) (key & positionMask)]);
+        }
+        return true;
+    }
+
+    /**
+     * Stably sorts non-negative keys by their bits {@code fromBit} to {@code fromBit + bits}, ignoring the lower bits.
+     *
+     * @param keys    the keys to sort in place
+     * @param fromBit the lowest bit of the sort key
+     * @param bits    the number of bits of the sort key
+     */
+    static void radixSort(final long[] keys, final int fromBit, final int bits) {
+        long[] source = keys;
+        long[] target = new long[keys.length];
+        for (int shift = fromBit; shift < fromBit + bits; shift += DIGIT_BITS) {
+            final int[] offsets = new int[RADIX + 1];
+            for (final long key : source) {
+                offsets[digit(key, shift) + 1]++;
+            }
+            if (isSingleDigit(offsets, keys.length)) {
+                continue;
+            }
+            for (int digit = 0; digit < RADIX; digit++) {
+                offsets[digit + 1] += offsets[digit];
+            }
+            for (final long key : source) {
+                target[offsets[digit(key, shift)]++] = key;
+            }
+            final long[] sorted = target;
+            target = source;
+            source = sorted;
+        }
+        if (source != keys) {
+            System.arraycopy(source, 0, keys, 0, keys.length);
+        }
+    }
+
+    private static int digit(final long key, final int shift) {
+        return (int) (key >>> shift) & (RADIX - 1);
+    }
+
+    private static boolean isSingleDigit(final int[] counts, final int size) {
+        for (final int count : counts) {
+            if (count == size) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,238 @@
+package com.littlepay.tapfare.utils;
+
+import com.littlepay.tapfare.model.Trip;
+import com.littlepay.tapfare.model.TripStoreStats;
+import com.littlepay.tapfare.model.TripsPage;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Function;
+
+/**
+ * Immutable, indexed copy of the trips of a processing run. The trips are held in output order in a single array,
+ * and every secondary index maps a PAN, bus, company or service date to the ascending positions of its trips in a
+ * plain {@code int[]}, so a lookup is one hash probe followed by a scan of just the matching trips.
+ * The service date of a trip is the date it started, or the date it finished for a trip without a "Tap On".
+ */
+public final class TripIndex {
+
+    public static final TripIndex EMPTY = new TripIndex(new Trip[0], null, Instant.EPOCH, true);
+
+    // approximate shallow sizes with compressed oops: a trip with its two date times, a hash map entry with its
+    // table slot, an array header and a string with its byte array header
+    private static final long TRIP_BYTES = 64 + 2 * 72;
+    private static final long MAP_ENTRY_BYTES = 32 + 4;
+    private static final long ARRAY_BYTES = 16;
+    private static final long STRING_BYTES = 24 + 16;
+
+    private final Trip[] trips;
+    private final String jobId;
+    private final Instant loadedAt;
+    private final boolean complete;
+    private final Map<String, int[]> tripsByPan;
+    private final Map<String, int[]> tripsByBus;
+    private final Map<String, int[]> tripsByCompany;
+    private final Map<LocalDate, int[]> tripsByDate;
+    private final long estimatedBytes;
+
+    private TripIndex(final Trip[] trips, final String jobId, final Instant loadedAt, final boolean complete) {
+        this.trips = trips;
+        this.jobId = jobId;
+        this.loadedAt = loadedAt;
+        this.complete = complete;
+        this.tripsByPan = index(trips, Trip::getPan);
+        this.tripsByBus = index(trips, Trip::getBusId);
+        this.tripsByCompany = index(trips, Trip::getCompanyId);
+        this.tripsByDate = index(trips, TripIndex::serviceDate);
+        this.estimatedBytes = ARRAY_BYTES + 4L * trips.length + TRIP_BYTES * trips.length
+                + indexBytes(tripsByPan) + indexBytes(tripsByBus) + indexBytes(tripsByCompany) + indexBytes(tripsByDate);
+    }
+
+    /**
+     * Finds the trips matching every given criterion, in output order.
+     *
+     * @param pan       the PAN of the trips, or null for any PAN
+     * @param busId     the bus of the trips, or null for any bus
+     * @param companyId the company of the trips, or null for any company
+     * @param date      the service date of the trips, or null for any date
+     * @param page      the zero-based page to return
+     * @param size      the number of trips per page
+     * @return the requested page of matching trips
+     */
+    public TripsPage find(final String pan, final String busId, final String companyId, final LocalDate date,
+                          final int page, final int size) {
+        // scanning the shortest of the requested indexes visits the fewest trips
+        int[] candidates = null;
+        int criteria = 0;
+        for (final int[] positions : new int[][]{
+                lookup(tripsByPan, pan), lookup(tripsByBus, busId), lookup(tripsByCompany, companyId), lookup(tripsByDate, date)}) {
+            if (positions != null) {
+                criteria++;
+                if (candidates == null || positions.length < candidates.length) {
+                    candidates = positions;
+                }
+            }
+        }
+
+        final long firstMatch = (long) page * size;
+        final int candidateCount = candidates != null ? candidates.length : trips.length;
+        if (criteria <= 1) {
+            // every candidate matches, so the page is a slice of the candidates and the total their count
+            final int from = (int) Math.min(Math.max(firstMatch, 0), candidateCount);
+            final int to = (int) Math.min((long) from + Math.max(size, 0), candidateCount);
+            final List<Trip> pageTrips = new ArrayList<>(to - from);
+            for (int i = from; i < to; i++) {
+                pageTrips.add(trips[candidates != null ? candidates[i] : i]);
+            }
+            return new TripsPage(pageTrips, page, size, candidateCount, jobId, complete);
+        }
+
+        // the candidates of an intersection are checked against the other criteria, and all of them are scanned
+        // because the page reports the total number of matches
+        final List<Trip> pageTrips = new ArrayList<>(Math.min(size, candidateCount));
+        long matches = 0;
+        for (int i = 0; i < candidateCount; i++) {
+            final Trip trip = trips[candidates[i]];
+            if (matches(trip, pan, busId, companyId, date)) {
+                if (matches >= firstMatch && pageTrips.size() < size) {
+                    pageTrips.add(trip);
+                }
+                matches++;
+            }
+        }
+        return new TripsPage(pageTrips, page, size, matches, jobId, complete);
+    }
+
+    public int size() {
+        return trips.length;
+    }
+
+    /**
+     * @return the number of trips and index keys and the approximate memory they retain
+     */
+    public TripStoreStats getStats() {
+        return new TripStoreStats(jobId, loadedAt, complete, trips.length, tripsByPan.size(), tripsByBus.size(),
+                tripsByCompany.size(), tripsByDate.size(), estimatedBytes);
+    }
+
+    private static <K> int[] lookup(final Map<K, int[]> index, final K key) {
+        if (key == null) {
+            return null;
+        }
+        return index.getOrDefault(key, new int[0]);
+    }
+
+    private static boolean matches(final Trip trip, final String pan, final String busId, final String companyId,
+                                   final LocalDate date) {
+        return (pan == null || pan.equals(trip.getPan()))
+                && (busId == null || busId.equals(trip.getBusId()))
+                && (companyId == null || companyId.equals(trip.getCompanyId()))
+                && (date == null || date.equals(serviceDate(trip)));
+    }
+
+    private static LocalDate serviceDate(final Trip trip) {
+        if (trip.getStarted() != null) {
+            return trip.getStarted().toLocalDate();
+        }
+        return trip.getFinished() != null ? trip.getFinished().toLocalDate() : null;
+    }
+
+    /**
+     * Maps every key to the ascending positions of its trips. A first pass numbers the keys in a single hash probe
+     * per trip and counts their trips, so the second pass fills exactly sized position arrays without hashing.
+     */
+    private static <K> Map<K, int[]> index(final Trip[] trips, final Function<Trip, K> key) {
+        final Map<K, Integer> keyIds = new HashMap<>();
+        final int[] tripKeyIds = new int[trips.length];
+        int[] counts = new int[16];
+        for (int position = 0; position < trips.length; position++) {
+            final K tripKey = key.apply(trips[position]);
+            if (tripKey == null) {
+                tripKeyIds[position] = -1;
+                continue;
+            }
+            final int keyId = keyIds.computeIfAbsent(tripKey, k -> keyIds.size());
+            if (keyId == counts.length) {
+                counts = Arrays.copyOf(counts, counts.length * 2);
+            }
+            counts[keyId]++;
+            tripKeyIds[position] = keyId;
+        }
+
+        final int[][] positions = new int[keyIds.size()][];
+        final Map<K, int[]> index = new HashMap<>((int) (keyIds.size() / 0.75f) + 1);
+        for (final Map.Entry<K, Integer> keyId : keyIds.entrySet()) {
+            positions[keyId.getValue()] = new int[counts[keyId.getValue()]];
+            index.put(keyId.getKey(), positions[keyId.getValue()]);
+        }
+        final int[] filled = new int[keyIds.size()];
+        for (int position = 0; position < trips.length; position++) {
+            final int keyId = tripKeyIds[position];
+            if (keyId >= 0) {
+                positions[keyId][filled[keyId]++] = position;
+            }
+        }
+        return index;
+    }
+
+    private static long indexBytes(final Map<?, int[]> index) {
+        long bytes = 0;
+        for (final Map.Entry<?, int[]> entry : index.entrySet()) {
+            bytes += MAP_ENTRY_BYTES + ARRAY_BYTES + 4L * entry.getValue().length;
+            if (entry.getKey() instanceof String key) {
+                bytes += STRING_BYTES + key.length();
+            }
+        }
+        return bytes;
+    }
+
+    /**
+     * Collects the trips of a run, in output order, up to a maximum number of trips. Not thread-safe.
+     */
+    public static final class Builder {
+
+        private final int maxTrips;
+        private final List<Trip> trips = new ArrayList<>();
+        private boolean complete = true;
+
+        /**
+         * @param maxTrips the number of trips beyond which further trips are dropped and the index marked incomplete
+         */
+        public Builder(final int maxTrips) {
+            this.maxTrips = maxTrips;
+        }
+
+        public void add(final Trip trip) {
+            if (trips.size() < maxTrips) {
+                trips.add(Objects.requireNonNull(trip));
+            } else {
+                complete = false;
+            }
+        }
+
+        public void addAll(final List<Trip> runTrips) {
+            runTrips.forEach(this::add);
+        }
+
+        /**
+         * Marks the index incomplete, for runs whose earlier trips were never handed to this builder.
+         */
+        public void markIncomplete() {
+            complete = false;
+        }
+
+        /**
+         * @param jobId the ID of the job that produced the trips
+         * @return the indexed trips
+         */
+        public TripIndex build(final String jobId) {
+            return new TripIndex(trips.toArray(Trip[]::new), jobId, Instant.now(), complete);
+        }
+    }
+}
@@ -0,0 +1,130 @@
+package com.littlepay.tapfare.utils;
+
+import com.littlepay.tapfare.constant.TripStatus;
+import com.littlepay.tapfare.model.Trip;
+import com.littlepay.tapfare.model.TripTotal;
+import com.littlepay.tapfare.model.TripsReport;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Running ridership and revenue totals of trips, per trip status overall and per company, bus, boarding stop and
+ * service date. Every total is a pair of plain {@code long} counters, the trip count and the revenue in cents, so
+ * adding a trip costs a few hash probes and no allocation once its keys have been seen, and sums are exact and
+ * independent of the order trips are added in.
+ * Totals are not thread-safe: every matcher accumulates its own and the totals of concurrent matchers are merged with
+ * {@link #addAll(TripTotals)} once they are done, so accumulating never contends.
+ */
+public final class TripTotals {
+
+    private static final TripStatus[] STATUSES = TripStatus.values();
+
+    private final long[] total = newCounters();
+    private final Dimension<String> byCompany = new Dimension<>();
+    private final Dimension<String> byBus = new Dimension<>();
+    private final Dimension<String> byStop = new Dimension<>();
+    private final Dimension<LocalDate> byDate = new Dimension<>();
+    private boolean complete = true;
+
+    public void add(final Trip trip) {
+        final int status = trip.getStatus().ordinal();
+        final long cents = Math.round(trip.getChargeAmount() * 100);
+        add(total, status, cents);
+        byCompany.add(trip.getCompanyId(), status, cents);
+        byBus.add(trip.getBusId(), status, cents);
+        byStop.add(trip.getFromStopId() != null ? trip.getFromStopId() : trip.getToStopId(), status, cents);
+        byDate.add(trip.getStarted() != null ? trip.getStarted().toLocalDate()
+                : trip.getFinished() != null ? trip.getFinished().toLocalDate() : null, status, cents);
+    }
+
+    /**
+     * Adds the totals of other trips to these totals, which become incomplete if the other totals are.
+     */
+    public void addAll(final TripTotals other) {
+        complete &= other.complete;
+        addAll(total, other.total);
+        byCompany.addAll(other.byCompany);
+        byBus.addAll(other.byBus);
+        byStop.addAll(other.byStop);
+        byDate.addAll(other.byDate);
+    }
+
+    /**
+     * Marks the totals incomplete, for runs some of whose trips were never added.
+     */
+    public void markIncomplete() {
+        complete = false;
+    }
+
+    /**
+     * @param generatedAt when the trips were matched
+     * @return the report of these totals, with keys in natural order
+     */
+    public TripsReport toReport(final Instant generatedAt) {
+        return new TripsReport(generatedAt, complete, toTotals(total), byCompany.toReport(), byBus.toReport(),
+                byStop.toReport(), byDate.toReport());
+    }
+
+    private static long[] newCounters() {
+        return new long[2 * STATUSES.length];
+    }
+
+    private static void add(final long[] counters, final int status, final long cents) {
+        counters[2 * status]++;
+        counters[2 * status + 1] += cents;
+    }
+
+    private static void addAll(final long[] counters, final long[] otherCounters) {
+        for (int i = 0; i < counters.length; i++) {
+            counters[i] += otherCounters[i];
+        }
+    }
+
+    private static Map<TripStatus, TripTotal> toTotals(final long[] counters) {
+        final Map<TripStatus, TripTotal> totals = new EnumMap<>(TripStatus.class);
+        for (final TripStatus status : STATUSES) {
+            totals.put(status, new TripTotal(counters[2 * status.ordinal()], BigDecimal.valueOf(counters[2 * status.ordinal() + 1], 2)));
+        }
+        return Collections.unmodifiableMap(totals);
+    }
+
+    /**
+     * The counters of every key of a dimension. Consecutive trips often share a key, so the counters of the last key
+     * are kept at hand to skip the hash probe.
+     */
+    private static final class Dimension<K extends Comparable<? super K>> {
+
+        private final Map<K, long[]> counters = new HashMap<>();
+        private K lastKey;
+        private long[] lastCounters;
+
+        private void add(final K key, final int status, final long cents) {
+            if (key == null) {
+                return;
+            }
+            if (!key.equals(lastKey)) {
+                lastKey = key;
+                lastCounters = counters.computeIfAbsent(key, k -> newCounters());
+            }
+            TripTotals.add(lastCounters, status, cents);
+        }
+
+        private void addAll(final Dimension<K> other) {
+            other.counters.forEach((key, otherCounters) ->
+                    TripTotals.addAll(counters.computeIfAbsent(key, k -> newCounters()), otherCounters));
+        }
+
+        private Map<K, Map<TripStatus, TripTotal>> toReport() {
+            final Map<K, Map<TripStatus, TripTotal>> report = new TreeMap<>();
+            counters.forEach((key, keyCounters) -> report.put(key, toTotals(keyCounters)));
+            return Collections.unmodifiableMap(report);
+        }
+    }
+}
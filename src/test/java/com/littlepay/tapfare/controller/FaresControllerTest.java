@@ -0,0 +1,67 @@
+package com.littlepay.tapfare.controller;
+
+import com.littlepay.tapfare.exceptions.InvalidFareException;
+import com.littlepay.tapfare.utils.CompiledFareMatrix;
+import com.littlepay.tapfare.utils.FareMatrixUtils;
+import com.littlepay.tapfare.utils.FareSnapshot;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.time.Instant;
+import java.util.Map;
+
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@WebMvcTest(FaresController.class)
+class FaresControllerTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @MockBean
+    private FareMatrixUtils fareMatrixUtils;
+
+    @Test
+    void testReplaceFares_ReturnsPublishedSnapshot() throws Exception {
+        final Map<String, Map<String, Double>> fares = Map.of("Stop1", Map.of("Stop2", 4.0), "Stop2", Map.of("Stop1", 4.0));
+        when(fareMatrixUtils.publish(Map.of("Stop1", Map.of("Stop2", 4.0)), "api")).thenReturn(
+                new FareSnapshot(2, Instant.parse("2023-01-22T13:00:00Z"), "api", fares, CompiledFareMatrix.compile(fares)));
+
+        mockMvc.perform(put("/fares")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"Stop1\": {\"Stop2\": 4.0}}"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.version").value(2))
+                .andExpect(jsonPath("$.source").value("api"))
+                .andExpect(jsonPath("$.fareMatrix.Stop2.Stop1").value(4.0))
+                .andExpect(jsonPath("$.compiledFareMatrix").doesNotExist());
+    }
+
+    @Test
+    void testReplaceFares_ReturnsBadRequestForInvalidFares() throws Exception {
+        when(fareMatrixUtils.publish(anyMap(), eq("api"))).thenThrow(new InvalidFareException("Invalid fare"));
+
+        mockMvc.perform(put("/fares")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"Stop1\": {\"Stop2\": -4.0}}"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void testReloadFares_ReturnsBadRequestWithoutFareFile() throws Exception {
+        when(fareMatrixUtils.reloadFromFile()).thenThrow(new InvalidFareException("No fare file configured"));
+
+        mockMvc.perform(post("/fares/reload"))
+                .andExpect(status().isBadRequest());
+    }
+}
@@ -1,6 +1,18 @@
 package com.littlepay.tapfare.controller;
 
-import com.littlepay.tapfare.service.TapsProcessor;
+import com.littlepay.tapfare.constant.ProcessStage;
+import com.littlepay.tapfare.constant.ProcessState;
+import com.littlepay.tapfare.constant.TapType;
+import com.littlepay.tapfare.constant.TripStatus;
+import com.littlepay.tapfare.exceptions.InvalidTapException;
+import com.littlepay.tapfare.exceptions.JobNotFoundException;
+import com.littlepay.tapfare.exceptions.ProcessStartedException;
+import com.littlepay.tapfare.model.Tap;
+import com.littlepay.tapfare.model.TapFileResult;
+import com.littlepay.tapfare.model.TapsJobStatus;
+import com.littlepay.tapfare.model.Trip;
+import com.littlepay.tapfare.service.OnlineTripsService;
+import com.littlepay.tapfare.service.TapsJobService;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
@@ -8,9 +20,16 @@ import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.http.MediaType;
 import org.springframework.test.web.servlet.MockMvc;
 
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.mockito.ArgumentMatchers.anyList;
 import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
-import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 @WebMvcTest(TapsProcessController.class)
@@ -20,17 +39,131 @@ class TapsProcessControllerTest {
     private MockMvc mockMvc;
 
     @MockBean
-    private TapsProcessor tapsProcessor;
+    private TapsJobService tapsJobService;
+
+    @MockBean
+    private OnlineTripsService onlineTripsService;
 
     @Test
-    void testProcessTaps_ReturnsCreatedStatusAndMessage() throws Exception {
-        final String expectedResponse = "Processing completed, output saved to src/main/resources/trips.csv";
-        when(tapsProcessor.processTaps()).thenReturn(expectedResponse);
+    void testProcessTaps_ReturnsAcceptedStatusAndJobId() throws Exception {
+        when(tapsJobService.submit()).thenReturn(jobStatus(ProcessState.STARTED, ProcessStage.QUEUED, false));
 
         mockMvc.perform(post("/taps/process")
                         .contentType(MediaType.APPLICATION_JSON))
-                .andExpect(status().isCreated())
-                .andExpect(content().string(expectedResponse));
+                .andExpect(status().isAccepted())
+                .andExpect(jsonPath("$.jobId").value("job-1"))
+                .andExpect(jsonPath("$.stage").value("QUEUED"));
+    }
+
+    @Test
+    void testProcessTapFiles_ReturnsAcceptedStatusAndJobId() throws Exception {
+        when(tapsJobService.submitFiles()).thenReturn(jobStatus(ProcessState.STARTED, ProcessStage.QUEUED, false));
+
+        mockMvc.perform(post("/taps/process/files"))
+                .andExpect(status().isAccepted())
+                .andExpect(jsonPath("$.jobId").value("job-1"))
+                .andExpect(jsonPath("$.stage").value("QUEUED"));
+    }
+
+    @Test
+    void testGetJobStatus_ReturnsResultPerFile() throws Exception {
+        final TapsJobStatus status = jobStatus(ProcessState.FAILED, ProcessStage.DONE, false);
+        status.setFiles(List.of(
+                new TapFileResult("Company1", "taps/Company1.csv", "trips/Company1-trips.csv", ProcessState.COMPLETED, 10, 5, "done"),
+                new TapFileResult("Company2", "taps/Company2.csv", "trips/Company2-trips.csv", ProcessState.FAILED, 0, 0, "failed")));
+        when(tapsJobService.getStatus("job-1")).thenReturn(status);
+
+        mockMvc.perform(get("/taps/jobs/job-1"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.files[0].companyId").value("Company1"))
+                .andExpect(jsonPath("$.files[0].tripsEmitted").value(5))
+                .andExpect(jsonPath("$.files[1].state").value("FAILED"));
+    }
+
+    @Test
+    void testProcessTaps_ReturnsConflictWhenAlreadyRunning() throws Exception {
+        when(tapsJobService.submit()).thenThrow(new ProcessStartedException("Taps processing is already running."));
+
+        mockMvc.perform(post("/taps/process")
+                        .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isConflict());
+    }
+
+    @Test
+    void testGetJobStatus_ReturnsProgress() throws Exception {
+        when(tapsJobService.getStatus("job-1")).thenReturn(jobStatus(ProcessState.STARTED, ProcessStage.MATCHING, false));
+
+        mockMvc.perform(get("/taps/jobs/job-1"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.state").value("STARTED"))
+                .andExpect(jsonPath("$.stage").value("MATCHING"))
+                .andExpect(jsonPath("$.tapsRead").value(1000))
+                .andExpect(jsonPath("$.tripsEmitted").value(400));
     }
-}
 
+    @Test
+    void testGetJobStatus_ReturnsNotFoundForUnknownJob() throws Exception {
+        when(tapsJobService.getStatus("unknown")).thenThrow(new JobNotFoundException("Taps processing job unknown not found."));
+
+        mockMvc.perform(get("/taps/jobs/unknown"))
+                .andExpect(status().isNotFound());
+    }
+
+    @Test
+    void testCancelJob_ReturnsAcceptedStatus() throws Exception {
+        when(tapsJobService.cancel("job-1")).thenReturn(jobStatus(ProcessState.STARTED, ProcessStage.MATCHING, true));
+
+        mockMvc.perform(delete("/taps/jobs/job-1"))
+                .andExpect(status().isAccepted())
+                .andExpect(jsonPath("$.cancelRequested").value(true));
+    }
+
+    @Test
+    void testIngestTaps_ReturnsTripsClosedByBatch() throws Exception {
+        final LocalDateTime tapOnTime = LocalDateTime.of(2023, 1, 22, 13, 0);
+        final List<Tap> taps = List.of(
+                new Tap(1, tapOnTime, TapType.ON, "Stop1", "Company1", "Bus37", "5500005555555559"),
+                new Tap(2, tapOnTime.plusMinutes(5), TapType.OFF, "Stop2", "Company1", "Bus37", "5500005555555559"));
+        when(onlineTripsService.ingest(taps)).thenReturn(List.of(new Trip(tapOnTime, tapOnTime.plusMinutes(5), 300,
+                "Stop1", "Stop2", 3.25, "Company1", "Bus37", "5500005555555559", TripStatus.COMPLETED)));
+
+        mockMvc.perform(post("/taps")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("""
+                                [{"id": 1, "localDateTime": "22-01-2023 13:00:00", "tapType": "ON", "stopId": "Stop1",
+                                  "companyId": "Company1", "busId": "Bus37", "pan": "5500005555555559"},
+                                 {"id": 2, "localDateTime": "22-01-2023 13:05:00", "tapType": "OFF", "stopId": "Stop2",
+                                  "companyId": "Company1", "busId": "Bus37", "pan": "5500005555555559"}]"""))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].status").value("COMPLETED"))
+                .andExpect(jsonPath("$[0].chargeAmount").value(3.25));
+    }
+
+    @Test
+    void testIngestTaps_AcceptsSingleTap() throws Exception {
+        final Tap tap = new Tap(1, LocalDateTime.of(2023, 1, 22, 13, 0), TapType.ON, "Stop1", "Company1", "Bus37", "5500005555555559");
+        when(onlineTripsService.ingest(List.of(tap))).thenReturn(List.of());
+
+        mockMvc.perform(post("/taps")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("""
+                                {"id": 1, "localDateTime": "22-01-2023 13:00:00", "tapType": "ON", "stopId": "Stop1",
+                                 "companyId": "Company1", "busId": "Bus37", "pan": "5500005555555559"}"""))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$").isEmpty());
+    }
+
+    @Test
+    void testIngestTaps_ReturnsBadRequestForInvalidTap() throws Exception {
+        when(onlineTripsService.ingest(anyList())).thenThrow(new InvalidTapException("Invalid tap"));
+
+        mockMvc.perform(post("/taps")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("[{\"id\": 1}]"))
+                .andExpect(status().isBadRequest());
+    }
+
+    private static TapsJobStatus jobStatus(final ProcessState state, final ProcessStage stage, final boolean cancelRequested) {
+        return new TapsJobStatus("job-1", state, stage, 1000, 400, cancelRequested, null, Instant.parse("2023-01-22T13:00:00Z"), null, List.of());
+    }
+}
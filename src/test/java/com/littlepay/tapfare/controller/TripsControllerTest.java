@@ -0,0 +1,77 @@
+package com.littlepay.tapfare.controller;
+
+import com.littlepay.tapfare.constant.TripStatus;
+import com.littlepay.tapfare.exceptions.InvalidTripQueryException;
+import com.littlepay.tapfare.model.Trip;
+import com.littlepay.tapfare.model.TripsPage;
+import com.littlepay.tapfare.service.TripStore;
+import com.littlepay.tapfare.service.TripsCreationService;
+import com.littlepay.tapfare.utils.TripTotals;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@WebMvcTest(TripsController.class)
+class TripsControllerTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @MockBean
+    private TripStore tripStore;
+
+    @MockBean
+    private TripsCreationService tripsCreationService;
+
+    @Test
+    void testFindTrips_ReturnsPageOfTrips() throws Exception {
+        final Trip trip = new Trip(LocalDateTime.of(2023, 1, 22, 13, 0), LocalDateTime.of(2023, 1, 22, 13, 5), 300,
+                "Stop1", "Stop2", 3.25, "Company1", "Bus37", "4111111111111111", TripStatus.COMPLETED);
+        when(tripStore.findTrips("4111111111111111", null, null, LocalDate.of(2023, 1, 22), 0, 100))
+                .thenReturn(new TripsPage(List.of(trip), 0, 100, 1, "job", true));
+
+        mockMvc.perform(get("/trips").param("pan", "4111111111111111").param("date", "2023-01-22"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.totalTrips").value(1))
+                .andExpect(jsonPath("$.trips[0].chargeAmount").value(3.25))
+                .andExpect(jsonPath("$.trips[0].busId").value("Bus37"));
+    }
+
+    @Test
+    void testGetReport_ReturnsTotalsByStatus() throws Exception {
+        final TripTotals totals = new TripTotals();
+        totals.add(new Trip(LocalDateTime.of(2023, 1, 22, 13, 0), LocalDateTime.of(2023, 1, 22, 13, 5), 300,
+                "Stop1", "Stop2", 3.25, "Company1", "Bus37", "4111111111111111", TripStatus.COMPLETED));
+        when(tripsCreationService.getLatestReport()).thenReturn(totals.toReport(Instant.parse("2023-01-22T14:00:00Z")));
+
+        mockMvc.perform(get("/trips/report"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.total.COMPLETED.trips").value(1))
+                .andExpect(jsonPath("$.byCompany.Company1.COMPLETED.revenue").value(3.25))
+                .andExpect(jsonPath("$.byDate['2023-01-22'].CANCELLED.trips").value(0));
+    }
+
+    @Test
+    void testFindTrips_ReturnsBadRequestForInvalidPage() throws Exception {
+        when(tripStore.findTrips(isNull(), isNull(), isNull(), any(), anyInt(), anyInt()))
+                .thenThrow(new InvalidTripQueryException("Page must not be negative: -1"));
+
+        mockMvc.perform(get("/trips").param("page", "-1"))
+                .andExpect(status().isBadRequest());
+    }
+}
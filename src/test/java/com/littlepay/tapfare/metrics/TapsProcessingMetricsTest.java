@@ -0,0 +1,60 @@
+package com.littlepay.tapfare.metrics;
+
+import com.littlepay.tapfare.constant.ProcessStage;
+import com.littlepay.tapfare.constant.ProcessState;
+import com.littlepay.tapfare.constant.TripStatus;
+import com.littlepay.tapfare.model.Trip;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TapsProcessingMetricsTest {
+
+    private SimpleMeterRegistry meterRegistry;
+    private TapsProcessingMetrics tapsProcessingMetrics;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        tapsProcessingMetrics = new TapsProcessingMetrics(meterRegistry);
+    }
+
+    @Test
+    void testRecordStage() {
+        tapsProcessingMetrics.recordStage(ProcessStage.MATCHING, TimeUnit.MILLISECONDS.toNanos(250));
+
+        assertThat(meterRegistry.get("tapfare.processing.stage").tag("stage", "matching").timer().totalTime(TimeUnit.MILLISECONDS))
+                .isEqualTo(250.0);
+        assertThat(meterRegistry.get("tapfare.processing.stage").tag("stage", "reading").timer().count()).isZero();
+    }
+
+    @Test
+    void testRecordRun() {
+        tapsProcessingMetrics.recordRun(ProcessState.FAILED, 1_000);
+
+        assertThat(meterRegistry.get("tapfare.processing.run").tag("state", "FAILED").timer().count()).isEqualTo(1);
+    }
+
+    @Test
+    void testRecordTapsAndTrips() {
+        final LocalDateTime now = LocalDateTime.of(2023, 1, 22, 13, 0);
+        tapsProcessingMetrics.recordTapsRead(5);
+        tapsProcessingMetrics.recordTrips(List.of(
+                new Trip(now, now.plusMinutes(5), 300, "Stop1", "Stop2", 3.25, "Company1", "Bus37", "5500005555555559", TripStatus.COMPLETED),
+                new Trip(now, now.plusMinutes(2), 0, "Stop1", "Stop1", 0.0, "Company1", "Bus37", "4111111111111111", TripStatus.CANCELLED),
+                new Trip(now, null, 0, "Stop3", null, 7.30, "Company1", "Bus36", "4111111111111111", TripStatus.INCOMPLETE),
+                new Trip(now, now.plusMinutes(9), 540, "Stop2", "Stop3", 5.50, "Company1", "Bus36", "4111111111111112", TripStatus.COMPLETED)
+        ));
+
+        assertThat(meterRegistry.get("tapfare.taps.read").counter().count()).isEqualTo(5.0);
+        assertThat(meterRegistry.get("tapfare.trips.created").tag("status", "COMPLETED").counter().count()).isEqualTo(2.0);
+        assertThat(meterRegistry.get("tapfare.trips.created").tag("status", "CANCELLED").counter().count()).isEqualTo(1.0);
+        assertThat(meterRegistry.get("tapfare.trips.created").tag("status", "INCOMPLETE").counter().count()).isEqualTo(1.0);
+    }
+}
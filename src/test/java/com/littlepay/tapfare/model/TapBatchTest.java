@@ -0,0 +1,52 @@
+package com.littlepay.tapfare.model;
+
+import com.littlepay.tapfare.constant.TapType;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TapBatchTest {
+
+    @Test
+    void testRowsRoundTripToTaps() {
+        final List<Tap> taps = List.of(
+                new Tap(1, LocalDateTime.of(2023, 1, 22, 13, 0), TapType.ON, "Stop1", "Company1", "Bus37", "5500005555555559"),
+                new Tap(2, LocalDateTime.of(2023, 1, 22, 13, 5), TapType.OFF, "Stop2", "Company1", "Bus37", "0055000055555555"),
+                new Tap(3, LocalDateTime.of(2023, 1, 23, 8, 0), null, null, null, null, "not-a-pan"),
+                new Tap(4, null, TapType.ON, "Stop1", "Company2", "Bus38", null)
+        );
+
+        final TapBatch batch = new TapBatch(2);
+        taps.forEach(batch::add);
+
+        assertThat(batch.size()).isEqualTo(4);
+        assertThat(batch).containsExactlyElementsOf(taps);
+        assertThat(batch.getStopCode(0)).isEqualTo(batch.getStopCode(3));
+        assertThat(batch.getPanKey(2)).isNegative();
+    }
+
+    @Test
+    void testSortByDateTimeIsStable() {
+        final Random random = new Random(7);
+        final List<Tap> taps = new ArrayList<>();
+        final TapBatch batch = new TapBatch();
+        for (int i = 0; i < 2_000; i++) {
+            final Tap tap = new Tap(i, LocalDateTime.of(2023, 1, 22, 6, 0).plusMinutes(random.nextInt(300)),
+                    random.nextBoolean() ? TapType.ON : TapType.OFF, "Stop" + random.nextInt(5), "Company1",
+                    "Bus" + random.nextInt(3), "41111111111111" + (10 + random.nextInt(50)));
+            taps.add(tap);
+            batch.add(tap);
+        }
+
+        batch.sortByDateTime();
+        taps.sort(Comparator.comparing(Tap::getLocalDateTime));
+
+        assertThat(batch).containsExactlyElementsOf(taps);
+    }
+}
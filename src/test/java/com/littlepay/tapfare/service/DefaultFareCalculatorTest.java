@@ -68,5 +68,27 @@ class DefaultFareCalculatorTest {
         maxFare = defaultFareCalculator.calculateMaxFare("Stop4");
         assertThat(maxFare).isEqualTo(0.0);
     }
-}
 
+    @Test
+    void testCalculateFareByStopIndex() {
+        final int stop1 = defaultFareCalculator.stopIndex("Stop1");
+        final int stop3 = defaultFareCalculator.stopIndex("Stop3");
+
+        assertThat(defaultFareCalculator.calculateFare(stop1, stop3)).isEqualTo(7.00);
+        assertThat(defaultFareCalculator.calculateFare(stop3, stop1)).isEqualTo(7.00);
+        assertThat(defaultFareCalculator.calculateMaxFare(stop3)).isEqualTo(7.00);
+        assertThat(defaultFareCalculator.calculateMaxFare(defaultFareCalculator.stopIndex("Stop4"))).isEqualTo(0.0);
+    }
+
+    @Test
+    void testPinnedCalculatorIgnoresLaterReloads() {
+        final FareCalculator pinned = defaultFareCalculator.pin();
+
+        new FareMatrixUtils(tripsFareConfig).publish(Map.of("Stop1", Map.of("Stop2", 9.00)), "test");
+
+        assertThat(pinned.calculateFare("Stop1", "Stop2")).isEqualTo(3.25);
+        assertThat(pinned.calculateMaxFare("Stop3")).isEqualTo(7.00);
+        assertThat(defaultFareCalculator.calculateFare("Stop1", "Stop2")).isEqualTo(9.00);
+        assertThat(pinned.pin()).isSameAs(pinned);
+    }
+}
@@ -0,0 +1,186 @@
+package com.littlepay.tapfare.service;
+
+import com.littlepay.tapfare.config.TripsFareConfig;
+import com.littlepay.tapfare.config.TripsOnlineConfig;
+import com.littlepay.tapfare.constant.TapType;
+import com.littlepay.tapfare.constant.TripStatus;
+import com.littlepay.tapfare.exceptions.InvalidTapException;
+import com.littlepay.tapfare.metrics.TapsProcessingMetrics;
+import com.littlepay.tapfare.model.Tap;
+import com.littlepay.tapfare.model.Trip;
+import com.littlepay.tapfare.model.TripsEmittedEvent;
+import com.littlepay.tapfare.utils.FareMatrixUtils;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+@ExtendWith(MockitoExtension.class)
+class OnlineTripsServiceTest {
+
+    private static final LocalDateTime MORNING = LocalDateTime.of(2023, 1, 22, 8, 0);
+
+    @Mock
+    private FareCalculator fareCalculator;
+
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
+    private OnlineTripsService onlineTripsService;
+
+    @BeforeEach
+    void setUp() {
+        lenient().when(fareCalculator.calculateFare(anyString(), anyString())).thenReturn(3.25);
+        lenient().when(fareCalculator.calculateMaxFare(anyString())).thenReturn(7.30);
+        onlineTripsService = newOnlineTripsService(fareCalculator);
+    }
+
+    @Test
+    void testIngestEmitsTripAsSoonAsTapsPair() {
+
+        final Tap tapOn = tap(1, MORNING, TapType.ON, "Stop1", "4111111111111111");
+        final Tap tapOff = tap(2, MORNING.plusMinutes(5), TapType.OFF, "Stop2", "4111111111111111");
+
+        assertThat(onlineTripsService.ingest(List.of(tapOn))).isEmpty();
+        assertThat(onlineTripsService.getOpenTapOnCount()).isEqualTo(1);
+
+        final List<Trip> trips = onlineTripsService.ingest(List.of(tapOff));
+
+        assertThat(trips).hasSize(1);
+        assertThat(trips.get(0).getStatus()).isEqualTo(TripStatus.COMPLETED);
+        assertThat(trips.get(0).getDurationSecs()).isEqualTo(300);
+        assertThat(onlineTripsService.getOpenTapOnCount()).isZero();
+        verify(eventPublisher).publishEvent(new TripsEmittedEvent(trips));
+    }
+
+    @Test
+    void testSweepTurnsOpenTapsOfClosedDaysIntoIncompleteTrips() {
+
+        onlineTripsService.ingest(List.of(
+                tap(1, MORNING, TapType.ON, "Stop1", "4111111111111111"),
+                tap(2, MORNING.plusMinutes(1), TapType.OFF, "Stop3", "5500005555555559"),
+                tap(3, MORNING.plusDays(1), TapType.ON, "Stop2", "4111111111111111")
+        ));
+
+        final List<Trip> trips = onlineTripsService.sweepServiceDaysBefore(LocalDate.of(2023, 1, 23));
+
+        assertThat(trips).extracting(Trip::getStatus).containsExactly(TripStatus.INCOMPLETE, TripStatus.INCOMPLETE);
+        assertThat(trips).extracting(Trip::getPan).containsExactlyInAnyOrder("4111111111111111", "5500005555555559");
+        assertThat(onlineTripsService.getOpenTapOnCount()).isEqualTo(1);
+        assertThat(onlineTripsService.getOpenTapOffCount()).isZero();
+        verify(eventPublisher).publishEvent(new TripsEmittedEvent(trips));
+    }
+
+    @Test
+    void testTripIsPricedWithFaresReloadedWhileItsTapOnIsOpen() {
+
+        final FareMatrixUtils fareMatrixUtils = new FareMatrixUtils(new TripsFareConfig());
+        fareMatrixUtils.publish(Map.of("Stop1", Map.of("Stop2", 3.25, "Stop3", 7.30), "Stop2", Map.of("Stop3", 5.50)), "test");
+        final OnlineTripsService service = newOnlineTripsService(new DefaultFareCalculator());
+        service.ingest(List.of(tap(1, MORNING, TapType.ON, "Stop3", "4111111111111111")));
+
+        // a new first stop shifts the fare matrix index of every other stop
+        fareMatrixUtils.publish(Map.of("Stop0", Map.of("Stop1", 1.10), "Stop1", Map.of("Stop2", 3.25, "Stop3", 7.30),
+                "Stop2", Map.of("Stop3", 5.50)), "test");
+        final List<Trip> trips = service.ingest(List.of(tap(2, MORNING.plusMinutes(5), TapType.OFF, "Stop1", "4111111111111111")));
+
+        assertThat(trips).extracting(Trip::getChargeAmount).containsExactly(7.30);
+    }
+
+    @Test
+    void testSweepAfterFaresShrankPricesOpenTapsWithReloadedFares() {
+
+        final FareMatrixUtils fareMatrixUtils = new FareMatrixUtils(new TripsFareConfig());
+        fareMatrixUtils.publish(Map.of("Stop1", Map.of("Stop2", 3.25, "Stop3", 7.30), "Stop2", Map.of("Stop3", 5.50)), "test");
+        final OnlineTripsService service = newOnlineTripsService(new DefaultFareCalculator());
+        service.ingest(List.of(
+                tap(1, MORNING, TapType.ON, "Stop3", "4111111111111111"),
+                tap(2, MORNING, TapType.ON, "Stop2", "5500005555555559")
+        ));
+
+        fareMatrixUtils.publish(Map.of("Stop1", Map.of("Stop2", 3.25)), "test");
+        final List<Trip> trips = service.sweepServiceDaysBefore(LocalDate.of(2023, 1, 23));
+
+        assertThat(trips).extracting(Trip::getPan, Trip::getChargeAmount).containsExactlyInAnyOrder(
+                tuple("4111111111111111", 0.0), tuple("5500005555555559", 3.25));
+        assertThat(service.getOpenTapOnCount()).isZero();
+    }
+
+    @Test
+    void testIngestRejectsWholeBatchWithInvalidTap() {
+
+        final List<Tap> taps = List.of(
+                tap(1, MORNING, TapType.ON, "Stop1", "4111111111111111"),
+                tap(2, null, TapType.OFF, "Stop2", "4111111111111111")
+        );
+
+        Assertions.assertThrows(InvalidTapException.class, () -> onlineTripsService.ingest(taps));
+        assertThat(onlineTripsService.getOpenTapOnCount()).isZero();
+        verify(eventPublisher, never()).publishEvent(any());
+    }
+
+    @Test
+    void testConcurrentIngestPairsEveryTap() throws Exception {
+
+        final int threads = 8;
+        final int pansPerThread = 500;
+        final ConcurrentLinkedQueue<Trip> trips = new ConcurrentLinkedQueue<>();
+        final ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            final List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                final int thread = t;
+                futures.add(executor.submit(() -> {
+                    for (int i = 0; i < pansPerThread; i++) {
+                        final String pan = String.valueOf(4_000_000_000_000_000L + thread * pansPerThread + i);
+                        trips.addAll(onlineTripsService.ingest(List.of(tap(i, MORNING, TapType.ON, "Stop1", pan))));
+                        trips.addAll(onlineTripsService.ingest(List.of(tap(i, MORNING.plusMinutes(3), TapType.OFF, "Stop2", pan))));
+                    }
+                }));
+            }
+            for (final Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertThat(trips).hasSize(threads * pansPerThread);
+        assertThat(trips).allMatch(trip -> trip.getStatus() == TripStatus.COMPLETED);
+        assertThat(onlineTripsService.getOpenTapOnCount()).isZero();
+        assertThat(onlineTripsService.getOpenTapOffCount()).isZero();
+    }
+
+    private OnlineTripsService newOnlineTripsService(final FareCalculator calculator) {
+        final TripsOnlineConfig tripsOnlineConfig = new TripsOnlineConfig();
+        tripsOnlineConfig.setStripes(4);
+        return new OnlineTripsService(calculator, tripsOnlineConfig, new TapsProcessingMetrics(new SimpleMeterRegistry()),
+                eventPublisher);
+    }
+
+    private static Tap tap(final long id, final LocalDateTime dateTime, final TapType tapType, final String stopId, final String pan) {
+        return new Tap(id, dateTime, tapType, stopId, "Company1", "Bus37", pan);
+    }
+}
@@ -4,6 +4,12 @@ import com.littlepay.tapfare.constant.ProcessState;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
 import static org.junit.jupiter.api.Assertions.*;
 
 class ProcessStateHandlerTest {
@@ -49,4 +55,43 @@ class ProcessStateHandlerTest {
         processStateHandler.setProcessState(ProcessState.FAILED);
         assertFalse(processStateHandler.isProcessingAlreadyRunning());
     }
+
+    @Test
+    void testTryStart() {
+        // A run can be admitted when nothing is running
+        assertTrue(processStateHandler.tryStart());
+        assertEquals(ProcessState.STARTED, processStateHandler.getProcessState());
+
+        // A second run is rejected while the first one is running
+        assertFalse(processStateHandler.tryStart());
+
+        // Once the run has finished, a new one can be admitted
+        processStateHandler.setProcessState(ProcessState.CANCELLED);
+        assertTrue(processStateHandler.tryStart());
+    }
+
+    @Test
+    void testTryStartAdmitsSingleConcurrentRun() throws Exception {
+        final int contenders = 8;
+        final ExecutorService executor = Executors.newFixedThreadPool(contenders);
+        final CountDownLatch start = new CountDownLatch(1);
+        final AtomicInteger admitted = new AtomicInteger();
+        try {
+            for (int i = 0; i < contenders; i++) {
+                executor.submit(() -> {
+                    start.await();
+                    if (processStateHandler.tryStart()) {
+                        admitted.incrementAndGet();
+                    }
+                    return null;
+                });
+            }
+            start.countDown();
+        } finally {
+            executor.shutdown();
+            assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+        }
+
+        assertEquals(1, admitted.get());
+    }
 }
@@ -0,0 +1,278 @@
+package com.littlepay.tapfare.service;
+
+import com.littlepay.tapfare.config.TripsCsvConfig;
+import com.littlepay.tapfare.config.TripsFilesConfig;
+import com.littlepay.tapfare.config.TripsMatchingConfig;
+import com.littlepay.tapfare.config.TripsPipelineConfig;
+import com.littlepay.tapfare.config.TripsStoreConfig;
+import com.littlepay.tapfare.constant.ProcessState;
+import com.littlepay.tapfare.constant.TapType;
+import com.littlepay.tapfare.constant.TripStatus;
+import com.littlepay.tapfare.exceptions.ProcessCancelledException;
+import com.littlepay.tapfare.metrics.TapsProcessingMetrics;
+import com.littlepay.tapfare.model.Tap;
+import com.littlepay.tapfare.model.TapFileResult;
+import com.littlepay.tapfare.model.TapsProcessingJob;
+import com.littlepay.tapfare.utils.CsvUtils;
+import com.littlepay.tapfare.utils.SortedTapIterator;
+import com.littlepay.tapfare.utils.TripTotals;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class TapFilesProcessorTest {
+
+    private static final String HEADER = "ID,DateTimeUTC,TapType,StopId,CompanyId,BusID,PAN\n";
+
+    @Mock
+    private TripsCsvConfig tripsCsvConfig;
+
+    @Mock
+    private ProcessStateHandler processStateHandler;
+
+    @Mock
+    private FareCalculator fareCalculator;
+
+    @TempDir
+    Path tempDir;
+
+    private final TripsFilesConfig tripsFilesConfig = new TripsFilesConfig();
+    private final ThreadPoolTaskExecutor tapFilesExecutor = new ThreadPoolTaskExecutor();
+    private final TripsStoreConfig tripsStoreConfig = new TripsStoreConfig();
+    private final TripStore tripStore = new TripStore(tripsStoreConfig);
+    private Path inputDirectory;
+    private Path outputDirectory;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        inputDirectory = Files.createDirectory(tempDir.resolve("taps"));
+        outputDirectory = tempDir.resolve("trips");
+        tripsFilesConfig.setInputDirectory(inputDirectory.toString());
+        tripsFilesConfig.setOutputDirectory(outputDirectory.toString());
+        tripsFilesConfig.setWorkers(4);
+        tripsStoreConfig.setEnabled(true);
+        tapFilesExecutor.setCorePoolSize(4);
+        tapFilesExecutor.initialize();
+        lenient().when(processStateHandler.tryStart()).thenReturn(true);
+        lenient().when(fareCalculator.pin()).thenReturn(fareCalculator);
+        lenient().when(fareCalculator.stopIndex("Stop1")).thenReturn(1);
+        lenient().when(fareCalculator.stopIndex("Stop2")).thenReturn(2);
+        lenient().when(tripsCsvConfig.getSortChunkSize()).thenReturn(2);
+    }
+
+    @AfterEach
+    void tearDown() {
+        tapFilesExecutor.shutdown();
+    }
+
+    @Test
+    void testProcessFiles_writesOneIsolatedOutputPerFile() throws Exception {
+        when(fareCalculator.calculateFare(1, 2)).thenReturn(3.25);
+        when(fareCalculator.calculateMaxFare(anyInt())).thenReturn(7.30);
+        Files.writeString(inputDirectory.resolve("Company1_morning.csv"), HEADER
+                + "1,22-01-2023 13:00:00,ON,Stop1,Company1,Bus37,5500005555555559\n"
+                + "2,22-01-2023 13:05:00,OFF,Stop2,Company1,Bus37,5500005555555559\n"
+                + "3,22-01-2023 13:10:00,ON,Stop1,Company1,Bus37,4111111111111111\n");
+        Files.writeString(inputDirectory.resolve("Company1_evening.csv"), HEADER
+                + "4,22-01-2023 18:10:00,OFF,Stop2,Company1,Bus37,4111111111111111\n");
+        Files.writeString(inputDirectory.resolve("Company2.csv"), HEADER
+                + "5,22-01-2023 09:00:00,ON,Stop1,Company2,Bus1,4111111111111111\n"
+                + "6,22-01-2023 09:30:00,OFF,Stop2,Company2,Bus1,4111111111111111\n");
+        Files.writeString(inputDirectory.resolve("notes.txt"), "not a tap file");
+        final TripsCreationService tripsCreationService = new TripsCreationService(fareCalculator, new TripsMatchingConfig());
+
+        final TapsProcessingJob job = new TapsProcessingJob();
+
+        final List<TapFileResult> results = newProcessor(new CsvUtils(), tripsCreationService).processFiles(job);
+
+        assertThat(results).extracting(TapFileResult::getCompanyId).containsExactly("Company1", "Company1", "Company2");
+        assertThat(job.toStatus().getState()).isEqualTo(ProcessState.COMPLETED);
+        assertThat(job.toStatus().getFiles()).isEqualTo(results);
+        assertThat(job.getTapsRead()).hasValue(6);
+        assertThat(job.getTripsEmitted()).hasValue(4);
+        assertThat(tripStore.getStats().jobId()).isEqualTo(job.getId());
+        assertThat(tripStore.getStats().complete()).isTrue();
+        assertThat(tripStore.findTrips("4111111111111111", null, null, null, 0, 10).totalTrips()).isEqualTo(3);
+        assertThat(results).extracting(TapFileResult::getState).containsOnly(ProcessState.COMPLETED);
+        assertThat(results).extracting(TapFileResult::getTapsRead).containsExactly(1L, 3L, 2L);
+        assertThat(Files.readAllLines(outputDirectory.resolve("Company1_evening-trips.csv"))).containsExactly(
+                "Started,Finished,DurationSecs,FromStopId,ToStopId,ChargeAmount,CompanyId,BusID,PAN,Status",
+                ",22-01-2023 18:10:00,0,,Stop2,7.3,Company1,Bus37,4111111111111111,INCOMPLETE");
+        assertThat(Files.readAllLines(outputDirectory.resolve("Company1_morning-trips.csv"))).containsExactly(
+                "Started,Finished,DurationSecs,FromStopId,ToStopId,ChargeAmount,CompanyId,BusID,PAN,Status",
+                "22-01-2023 13:00:00,22-01-2023 13:05:00,300,Stop1,Stop2,3.25,Company1,Bus37,5500005555555559,COMPLETED",
+                "22-01-2023 13:10:00,,0,Stop1,,7.3,Company1,Bus37,4111111111111111,INCOMPLETE");
+        assertThat(Files.readAllLines(outputDirectory.resolve("Company2-trips.csv"))).containsExactly(
+                "Started,Finished,DurationSecs,FromStopId,ToStopId,ChargeAmount,CompanyId,BusID,PAN,Status",
+                "22-01-2023 09:00:00,22-01-2023 09:30:00,1800,Stop1,Stop2,3.25,Company2,Bus1,4111111111111111,COMPLETED");
+        assertThat(tripsCreationService.getLatestReport().complete()).isTrue();
+        assertThat(tripsCreationService.getLatestReport().total().get(TripStatus.COMPLETED).trips()).isEqualTo(2);
+        assertThat(tripsCreationService.getLatestReport().total().get(TripStatus.INCOMPLETE).trips()).isEqualTo(2);
+        assertThat(tripsCreationService.getLatestReport().byCompany()).containsOnlyKeys("Company1", "Company2");
+        verify(fareCalculator, times(1)).pin();
+        verify(processStateHandler).setProcessState(ProcessState.COMPLETED);
+    }
+
+    @Test
+    void testProcessFiles_gzipInputWritesGzipOutput() throws Exception {
+        when(fareCalculator.calculateFare(1, 2)).thenReturn(3.25);
+        try (final OutputStream output = new GZIPOutputStream(Files.newOutputStream(inputDirectory.resolve("Company3_daily.csv.gz")))) {
+            output.write((HEADER
+                    + "1,22-01-2023 09:00:00,ON,Stop1,Company3,Bus1,4111111111111111\n"
+                    + "2,22-01-2023 09:30:00,OFF,Stop2,Company3,Bus1,4111111111111111\n").getBytes(StandardCharsets.US_ASCII));
+        }
+        final TripsCreationService tripsCreationService = new TripsCreationService(fareCalculator, new TripsMatchingConfig());
+
+        final List<TapFileResult> results = newProcessor(new CsvUtils(), tripsCreationService).processFiles(new TapsProcessingJob());
+
+        assertThat(results).extracting(TapFileResult::getCompanyId).containsExactly("Company3");
+        assertThat(results.get(0).getOutputFile()).isEqualTo(outputDirectory.resolve("Company3_daily-trips.csv.gz").toString());
+        try (final InputStream input = new GZIPInputStream(Files.newInputStream(outputDirectory.resolve("Company3_daily-trips.csv.gz")))) {
+            assertThat(new String(input.readAllBytes(), StandardCharsets.US_ASCII)).isEqualTo(
+                    "Started,Finished,DurationSecs,FromStopId,ToStopId,ChargeAmount,CompanyId,BusID,PAN,Status\n"
+                            + "22-01-2023 09:00:00,22-01-2023 09:30:00,1800,Stop1,Stop2,3.25,Company3,Bus1,4111111111111111,COMPLETED\n");
+        }
+    }
+
+    @Test
+    void testProcessFiles_limitsConcurrencyPerCompany() throws Exception {
+        for (final String fileName : List.of("Company1_1.csv", "Company1_2.csv", "Company1_3.csv", "Company2_1.csv", "Company2_2.csv")) {
+            Files.writeString(inputDirectory.resolve(fileName), HEADER);
+        }
+        final CsvUtils csvUtils = mock(CsvUtils.class);
+        when(csvUtils.streamTapsFromCsv(anyString(), anyInt())).thenAnswer(invocation -> {
+            final String companyId = TapFilesProcessor.companyId(Path.of(invocation.<String>getArgument(0)));
+            return new SortedTapIterator(List.of(List.of(
+                    new Tap(1, LocalDateTime.now(), TapType.ON, "Stop1", companyId, "Bus1", "4111111111111111")).iterator()));
+        });
+        final TripsCreationService tripsCreationService = mock(TripsCreationService.class);
+        final Map<String, AtomicInteger> running = new ConcurrentHashMap<>();
+        final Map<String, AtomicInteger> maxRunning = new ConcurrentHashMap<>();
+        final CountDownLatch bothCompaniesRunning = new CountDownLatch(2);
+        doAnswer(invocation -> {
+            final String companyId = invocation.<Iterator<Tap>>getArgument(0).next().getCompanyId();
+            final int nowRunning = running.computeIfAbsent(companyId, k -> new AtomicInteger()).incrementAndGet();
+            maxRunning.computeIfAbsent(companyId, k -> new AtomicInteger()).accumulateAndGet(nowRunning, Math::max);
+            bothCompaniesRunning.countDown();
+            bothCompaniesRunning.await(5, TimeUnit.SECONDS);
+            Thread.sleep(20);
+            running.get(companyId).decrementAndGet();
+            return null;
+        }).when(tripsCreationService).createTrips(any(Iterator.class), any(Consumer.class), any(), any(TripTotals.class));
+
+        final List<TapFileResult> results = newProcessor(csvUtils, tripsCreationService).processFiles(new TapsProcessingJob());
+
+        assertThat(results).hasSize(5).extracting(TapFileResult::getState).containsOnly(ProcessState.COMPLETED);
+        assertThat(bothCompaniesRunning.getCount()).isZero();
+        assertThat(maxRunning.get("Company1").get()).isEqualTo(1);
+        assertThat(maxRunning.get("Company2").get()).isEqualTo(1);
+    }
+
+    @Test
+    void testProcessFiles_failingFileDoesNotStopOthers() throws Exception {
+        Files.writeString(inputDirectory.resolve("Company1.csv"), HEADER);
+        Files.writeString(inputDirectory.resolve("Company2.csv"), HEADER);
+        final CsvUtils csvUtils = mock(CsvUtils.class);
+        when(csvUtils.streamTapsFromCsv(eq(inputDirectory.resolve("Company1.csv").toString()), anyInt()))
+                .thenThrow(new RuntimeException("Corrupt file"));
+        when(csvUtils.streamTapsFromCsv(eq(inputDirectory.resolve("Company2.csv").toString()), anyInt()))
+                .thenReturn(new SortedTapIterator(List.of()));
+        final TripsCreationService tripsCreationService = mock(TripsCreationService.class);
+
+        final List<TapFileResult> results = newProcessor(csvUtils, tripsCreationService).processFiles(new TapsProcessingJob());
+
+        assertThat(results).extracting(TapFileResult::getState).containsExactly(ProcessState.FAILED, ProcessState.COMPLETED);
+        assertThat(results.get(0).getMessage()).contains("Corrupt file");
+        assertThat(Files.readAllLines(outputDirectory.resolve("Company2-trips.csv"))).containsExactly(
+                "Started,Finished,DurationSecs,FromStopId,ToStopId,ChargeAmount,CompanyId,BusID,PAN,Status");
+        verify(tripsCreationService).publishReport(argThat(totals -> !totals.toReport(Instant.EPOCH).complete()));
+        verify(processStateHandler).setProcessState(ProcessState.FAILED);
+        assertThat(tripStore.getStats().complete()).isFalse();
+    }
+
+    @Test
+    void testProcessFiles_cancelledJobSkipsRemainingFiles() throws Exception {
+        Files.writeString(inputDirectory.resolve("Company1_1.csv"), HEADER);
+        Files.writeString(inputDirectory.resolve("Company1_2.csv"), HEADER);
+        final TripsCreationService tripsCreationService = mock(TripsCreationService.class);
+        final TapsProcessingJob job = new TapsProcessingJob();
+        final CsvUtils csvUtils = mock(CsvUtils.class);
+        when(csvUtils.streamTapsFromCsv(anyString(), anyInt())).thenAnswer(invocation -> new SortedTapIterator(List.of()));
+        doAnswer(invocation -> {
+            job.cancel();
+            return null;
+        }).when(tripsCreationService).createTrips(any(Iterator.class), any(Consumer.class), any(), any(TripTotals.class));
+        tripsFilesConfig.setPerCompanyConcurrency(1);
+
+        final TapFilesProcessor processor = newProcessor(csvUtils, tripsCreationService);
+        Assertions.assertThrows(ProcessCancelledException.class, () -> processor.processFiles(job));
+
+        assertThat(job.toStatus().getState()).isEqualTo(ProcessState.CANCELLED);
+        assertThat(job.toStatus().getFiles()).extracting(TapFileResult::getState)
+                .containsExactly(ProcessState.COMPLETED, ProcessState.CANCELLED);
+        verify(csvUtils, never()).streamTapsFromCsv(eq(inputDirectory.resolve("Company1_2.csv").toString()), anyInt());
+        verify(tripsCreationService, never()).publishReport(any());
+        verify(processStateHandler).setProcessState(ProcessState.CANCELLED);
+    }
+
+    @Test
+    void testProcessFiles_cancelledWhileStreamingFile() throws Exception {
+        Files.writeString(inputDirectory.resolve("Company1.csv"), HEADER
+                + "1,22-01-2023 09:00:00,ON,Stop1,Company1,Bus1,4111111111111111\n");
+        final TapsProcessingJob job = new TapsProcessingJob();
+        final CsvUtils csvUtils = spy(new CsvUtils());
+        doAnswer(invocation -> {
+            final SortedTapIterator taps = (SortedTapIterator) invocation.callRealMethod();
+            job.cancel();
+            return taps;
+        }).when(csvUtils).streamTapsFromCsv(anyString(), anyInt());
+
+        final TapFilesProcessor processor = newProcessor(csvUtils, new TripsCreationService(fareCalculator, new TripsMatchingConfig()));
+        Assertions.assertThrows(ProcessCancelledException.class, () -> processor.processFiles(job));
+
+        assertThat(job.toStatus().getFiles()).extracting(TapFileResult::getState).containsExactly(ProcessState.CANCELLED);
+        verify(processStateHandler).setProcessState(ProcessState.CANCELLED);
+    }
+
+    private TapFilesProcessor newProcessor(final CsvUtils csvUtils, final TripsCreationService tripsCreationService) {
+        final TapsProcessingMetrics tapsProcessingMetrics = new TapsProcessingMetrics(new SimpleMeterRegistry());
+        final TapsProcessor tapsProcessor = new TapsProcessor(csvUtils, tripsCsvConfig, processStateHandler, tripsCreationService,
+                tapsProcessingMetrics, new TripsPipelineConfig(), tripStore);
+        return new TapFilesProcessor(tapsProcessor, tripsFilesConfig, processStateHandler, tripsCreationService, tripStore,
+                tapsProcessingMetrics, tapFilesExecutor);
+    }
+}
@@ -0,0 +1,125 @@
+package com.littlepay.tapfare.service;
+
+import com.littlepay.tapfare.constant.ProcessState;
+import com.littlepay.tapfare.exceptions.JobNotFoundException;
+import com.littlepay.tapfare.exceptions.ProcessStartedException;
+import com.littlepay.tapfare.model.TapsJobStatus;
+import com.littlepay.tapfare.model.TapsProcessingJob;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.core.task.TaskExecutor;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class TapsJobServiceTest {
+
+    @Mock
+    private TapsProcessor tapsProcessor;
+
+    @Mock
+    private TapFilesProcessor tapFilesProcessor;
+
+    @Mock
+    private ProcessStateHandler processStateHandler;
+
+    @Mock
+    private TaskExecutor tapsJobExecutor;
+
+    private TapsJobService tapsJobService;
+
+    @BeforeEach
+    void setUp() {
+        tapsJobService = new TapsJobService(tapsProcessor, tapFilesProcessor, processStateHandler, tapsJobExecutor);
+    }
+
+    @Test
+    void testSubmit_returnsJobIdAndRunsOnExecutor() {
+        when(processStateHandler.tryStart()).thenReturn(true);
+
+        final TapsJobStatus status = tapsJobService.submit();
+
+        assertThat(status.getJobId()).isNotBlank();
+        assertThat(status.getState()).isEqualTo(ProcessState.STARTED);
+        final ArgumentCaptor<Runnable> task = ArgumentCaptor.forClass(Runnable.class);
+        verify(tapsJobExecutor).execute(task.capture());
+        verifyNoInteractions(tapsProcessor);
+
+        task.getValue().run();
+
+        final ArgumentCaptor<TapsProcessingJob> job = ArgumentCaptor.forClass(TapsProcessingJob.class);
+        verify(tapsProcessor).processTaps(job.capture());
+        assertThat(job.getValue().getId()).isEqualTo(status.getJobId());
+    }
+
+    @Test
+    void testSubmitFiles_runsTapFilesOnExecutor() {
+        when(processStateHandler.tryStart()).thenReturn(true);
+
+        final TapsJobStatus status = tapsJobService.submitFiles();
+
+        assertThat(status.getState()).isEqualTo(ProcessState.STARTED);
+        final ArgumentCaptor<Runnable> task = ArgumentCaptor.forClass(Runnable.class);
+        verify(tapsJobExecutor).execute(task.capture());
+        verifyNoInteractions(tapFilesProcessor);
+
+        task.getValue().run();
+
+        final ArgumentCaptor<TapsProcessingJob> job = ArgumentCaptor.forClass(TapsProcessingJob.class);
+        verify(tapFilesProcessor).processFiles(job.capture());
+        verifyNoInteractions(tapsProcessor);
+        assertThat(job.getValue().getId()).isEqualTo(status.getJobId());
+    }
+
+    @Test
+    void testSubmitFiles_rejectedWhenAlreadyRunning() {
+        when(processStateHandler.tryStart()).thenReturn(false);
+
+        Assertions.assertThrows(ProcessStartedException.class, () -> tapsJobService.submitFiles());
+
+        verifyNoInteractions(tapsJobExecutor);
+    }
+
+    @Test
+    void testSubmit_rejectedWhenAlreadyRunning() {
+        when(processStateHandler.tryStart()).thenReturn(false);
+
+        Assertions.assertThrows(ProcessStartedException.class, () -> tapsJobService.submit());
+
+        verifyNoInteractions(tapsJobExecutor);
+    }
+
+    @Test
+    void testSubmit_failsJobWhenExecutorRejects() {
+        when(processStateHandler.tryStart()).thenReturn(true);
+        doThrow(new IllegalStateException("rejected")).when(tapsJobExecutor).execute(any());
+
+        Assertions.assertThrows(IllegalStateException.class, () -> tapsJobService.submit());
+
+        verify(processStateHandler).setProcessState(ProcessState.FAILED);
+    }
+
+    @Test
+    void testCancel_flagsRunningJob() {
+        when(processStateHandler.tryStart()).thenReturn(true);
+        final String jobId = tapsJobService.submit().getJobId();
+
+        final TapsJobStatus status = tapsJobService.cancel(jobId);
+
+        assertThat(status.isCancelRequested()).isTrue();
+        assertThat(tapsJobService.getStatus(jobId).isCancelRequested()).isTrue();
+    }
+
+    @Test
+    void testGetStatus_unknownJob() {
+        Assertions.assertThrows(JobNotFoundException.class, () -> tapsJobService.getStatus("unknown"));
+        Assertions.assertThrows(JobNotFoundException.class, () -> tapsJobService.cancel("unknown"));
+    }
+}
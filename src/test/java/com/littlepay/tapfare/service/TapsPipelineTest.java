@@ -0,0 +1,116 @@
+package com.littlepay.tapfare.service;
+
+import com.littlepay.tapfare.constant.ProcessStage;
+import com.littlepay.tapfare.constant.TapType;
+import com.littlepay.tapfare.constant.TripStatus;
+import com.littlepay.tapfare.model.Tap;
+import com.littlepay.tapfare.model.Trip;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TapsPipelineTest {
+
+    private static final LocalDateTime START = LocalDateTime.of(2023, 1, 22, 6, 0);
+
+    /**
+     * Turns every tap into an incomplete trip carrying the tap ID as its PAN.
+     */
+    private static final BiConsumer<Iterator<Tap>, Consumer<Trip>> ONE_TRIP_PER_TAP = (taps, trips) -> taps.forEachRemaining(tap ->
+            trips.accept(new Trip(tap.getLocalDateTime(), null, 0, tap.getStopId(), null, 0, tap.getCompanyId(), tap.getBusId(),
+                    String.valueOf(tap.getId()), TripStatus.INCOMPLETE)));
+
+    @Test
+    void testRunHandsEveryItemThroughTheStagesInOrder() {
+        final List<Trip> written = new ArrayList<>();
+        final Set<ProcessStage> completedStages = ConcurrentHashMap.newKeySet();
+
+        new TapsPipeline(7, 2).run(taps -> generateTaps(1_000).forEach(taps), ONE_TRIP_PER_TAP, written::add,
+                (stage, durationNanos) -> completedStages.add(stage));
+
+        assertThat(written).extracting(Trip::getPan).containsExactlyElementsOf(
+                generateTaps(1_000).stream().map(tap -> String.valueOf(tap.getId())).toList());
+        assertThat(completedStages).containsExactlyInAnyOrder(ProcessStage.READING, ProcessStage.MATCHING, ProcessStage.WRITING);
+    }
+
+    @Test
+    @Timeout(10)
+    void testRunBoundsItemsHeldBetweenStages() throws Exception {
+        final AtomicInteger tapsRead = new AtomicInteger();
+        final CountDownLatch writerReleased = new CountDownLatch(1);
+        final List<Trip> written = new ArrayList<>();
+        final Thread run = new Thread(() -> new TapsPipeline(10, 2).run(
+                taps -> generateTaps(1_000).forEach(tap -> {
+                    tapsRead.incrementAndGet();
+                    taps.accept(tap);
+                }),
+                ONE_TRIP_PER_TAP,
+                trip -> {
+                    awaitQuietly(writerReleased);
+                    written.add(trip);
+                },
+                (stage, durationNanos) -> {
+                }));
+        run.start();
+
+        Thread.sleep(200);
+        // two queues of two batches, the batches being filled and the batches held by the matcher and the writer
+        assertThat(tapsRead.get()).isLessThanOrEqualTo(80);
+        writerReleased.countDown();
+        run.join();
+        assertThat(written).hasSize(1_000);
+    }
+
+    @Test
+    @Timeout(10)
+    void testRunRethrowsFirstFailureAndStopsOtherStages() {
+        final IllegalStateException failure = new IllegalStateException("Disk full");
+        final TapsPipeline pipeline = new TapsPipeline(10, 2);
+
+        final IllegalStateException exception = Assertions.assertThrows(IllegalStateException.class, () -> pipeline.run(
+                taps -> {
+                    for (int i = 0; ; i++) {
+                        taps.accept(new Tap(i, START, TapType.ON, "Stop1", "Company1", "Bus1", "4111111111111111"));
+                    }
+                },
+                ONE_TRIP_PER_TAP,
+                trip -> {
+                    throw failure;
+                },
+                (stage, durationNanos) -> {
+                }));
+
+        assertThat(exception).isSameAs(failure);
+    }
+
+    private static List<Tap> generateTaps(final int count) {
+        final List<Tap> taps = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            taps.add(new Tap(i, START.plusMinutes(i), i % 2 == 0 ? TapType.ON : TapType.OFF, "Stop" + i % 3, "Company1", "Bus1",
+                    "4111111111111111"));
+        }
+        return taps;
+    }
+
+    private static void awaitQuietly(final CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -1,28 +1,54 @@
 package com.littlepay.tapfare.service;
 
 import com.littlepay.tapfare.config.TripsCsvConfig;
+import com.littlepay.tapfare.config.TripsPipelineConfig;
+import com.littlepay.tapfare.config.TripsStoreConfig;
+import com.littlepay.tapfare.constant.ProcessStage;
 import com.littlepay.tapfare.constant.ProcessState;
 import com.littlepay.tapfare.constant.TapType;
 import com.littlepay.tapfare.constant.TripStatus;
+import com.littlepay.tapfare.exceptions.ProcessCancelledException;
 import com.littlepay.tapfare.exceptions.ProcessFailedException;
 import com.littlepay.tapfare.exceptions.ProcessStartedException;
+import com.littlepay.tapfare.metrics.TapsProcessingMetrics;
 import com.littlepay.tapfare.model.Tap;
+import com.littlepay.tapfare.model.TapBatch;
+import com.littlepay.tapfare.model.TapsJobStatus;
+import com.littlepay.tapfare.model.TapsProcessingJob;
 import com.littlepay.tapfare.model.Trip;
 import com.littlepay.tapfare.utils.CsvUtils;
+import com.littlepay.tapfare.utils.SortedTapIterator;
+import com.littlepay.tapfare.utils.TripTotals;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
+import org.mockito.ArgumentMatchers;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
 
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.Collections;
+import java.util.Iterator;
 import java.util.List;
+import java.util.function.Consumer;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.Mockito.*;
 
 @ExtendWith(MockitoExtension.class)
@@ -43,6 +69,18 @@ class TapsProcessorTest {
     @Mock
     TripsCreationService tripsCreationService;
 
+    @Spy
+    TapsProcessingMetrics tapsProcessingMetrics = new TapsProcessingMetrics(new SimpleMeterRegistry());
+
+    @Spy
+    TripsPipelineConfig tripsPipelineConfig = new TripsPipelineConfig();
+
+    @Spy
+    TripStore tripStore = new TripStore(enabledStoreConfig());
+
+    @TempDir
+    Path tempDir;
+
     private static final String DATE_PATTERN = "dd-MM-yyyy HH:mm:ss";
     private static final DateTimeFormatter formatter = DateTimeFormatter.ofPattern(DATE_PATTERN);
     private List<Tap> mockTaps;
@@ -58,6 +96,8 @@ class TapsProcessorTest {
         mockTrips = List.of(
                 new Trip(LocalDateTime.parse("22-01-2023 13:00:00", formatter), LocalDateTime.parse("22-01-2023 13:05:00", formatter), 300, "Stop1", "Stop2", 3.25, "Company1", "Bus1", "4111111111111111", TripStatus.COMPLETED)
         );
+
+        lenient().when(processStateHandler.tryStart()).thenReturn(true);
     }
 
     @Test
@@ -67,7 +107,7 @@ class TapsProcessorTest {
         when(tripsCsvConfig.getInputFilePath()).thenReturn(inputFilePath);
         when(tripsCsvConfig.getOutputFilePath()).thenReturn(outputFilePath);
         when(csvUtils.readTapsFromCsv(inputFilePath)).thenReturn(mockTaps);
-        when(tripsCreationService.createTrips(mockTaps)).thenReturn(mockTrips);
+        when(tripsCreationService.createTrips(eq(mockTaps), any(), any(TripTotals.class))).thenReturn(mockTrips);
 
         final String result = tapsProcessor.processTaps();
 
@@ -75,6 +115,274 @@ class TapsProcessorTest {
         verify(csvUtils).writeTripsToCsv(mockTrips, outputFilePath);
 
         assertThat(result).isEqualTo("Processing completed, output saved to output.csv");
+        assertThat(tripStore.findTrips("4111111111111111", null, null, null, 0, 10).trips()).isEqualTo(mockTrips);
+        final ArgumentCaptor<TripTotals> runTotals = ArgumentCaptor.forClass(TripTotals.class);
+        verify(tripsCreationService).createTrips(eq(mockTaps), any(), runTotals.capture());
+        verify(tripsCreationService).publishReport(runTotals.getValue());
+    }
+
+    @Test
+    void testProcessTaps_fastParser() {
+        final String inputFilePath = "input.csv";
+        final String outputFilePath = "output.csv";
+        when(tripsCsvConfig.getInputFilePath()).thenReturn(inputFilePath);
+        when(tripsCsvConfig.getOutputFilePath()).thenReturn(outputFilePath);
+        when(tripsCsvConfig.isFastParserEnabled()).thenReturn(true);
+        when(csvUtils.readTapsFromCsvFast(inputFilePath)).thenReturn(mockTaps);
+        when(tripsCreationService.createTrips(eq(mockTaps), any(), any(TripTotals.class))).thenReturn(mockTrips);
+
+        tapsProcessor.processTaps();
+
+        verify(csvUtils, never()).readTapsFromCsv(anyString());
+        verify(csvUtils).writeTripsToCsv(mockTrips, outputFilePath);
+    }
+
+    @Test
+    void testProcessTaps_parallelParser() {
+        final String inputFilePath = "input.csv";
+        final String outputFilePath = "output.csv";
+        when(tripsCsvConfig.getInputFilePath()).thenReturn(inputFilePath);
+        when(tripsCsvConfig.getOutputFilePath()).thenReturn(outputFilePath);
+        when(tripsCsvConfig.isFastParserEnabled()).thenReturn(true);
+        when(tripsCsvConfig.getParseParallelism()).thenReturn(4);
+        when(csvUtils.readTapsFromCsvParallel(inputFilePath, 4)).thenReturn(mockTaps);
+        when(tripsCreationService.createTrips(eq(mockTaps), any(), any(TripTotals.class))).thenReturn(mockTrips);
+
+        tapsProcessor.processTaps();
+
+        verify(csvUtils, never()).readTapsFromCsvFast(anyString());
+        verify(csvUtils).writeTripsToCsv(mockTrips, outputFilePath);
+    }
+
+    @Test
+    void testProcessTaps_columnar() {
+        final String inputFilePath = "input.csv";
+        final String outputFilePath = "output.csv";
+        final TapBatch batch = new TapBatch();
+        mockTaps.forEach(batch::add);
+        when(tripsCsvConfig.getInputFilePath()).thenReturn(inputFilePath);
+        when(tripsCsvConfig.getOutputFilePath()).thenReturn(outputFilePath);
+        when(tripsCsvConfig.isColumnarEnabled()).thenReturn(true);
+        when(csvUtils.readTapBatchFromCsv(inputFilePath)).thenReturn(batch);
+        when(tripsCreationService.createTrips(eq(batch), any(), any(TripTotals.class))).thenReturn(mockTrips);
+
+        final TapsProcessingJob job = new TapsProcessingJob();
+        tapsProcessor.processTaps(job);
+
+        verify(csvUtils, never()).readTapsFromCsv(anyString());
+        verify(csvUtils).writeTripsToCsv(mockTrips, outputFilePath);
+        assertThat(job.getTapsRead().get()).isEqualTo(2);
+    }
+
+    @Test
+    void testProcessTaps_snapshotReusedWhenUpToDate() throws Exception {
+        final Path inputCsv = Files.writeString(tempDir.resolve("taps.csv"), "ID,DateTimeUTC,TapType,StopId,CompanyId,BusID,PAN");
+        final Path snapshot = Files.writeString(tempDir.resolve("taps.snapshot"), "");
+        Files.setLastModifiedTime(inputCsv, FileTime.fromMillis(1_000));
+        final TapBatch batch = new TapBatch();
+        mockTaps.forEach(batch::add);
+        when(tripsCsvConfig.getInputFilePath()).thenReturn(inputCsv.toString());
+        when(tripsCsvConfig.getOutputFilePath()).thenReturn("output.csv");
+        when(tripsCsvConfig.getSnapshotFilePath()).thenReturn(snapshot.toString());
+        when(csvUtils.readTapBatchFromSnapshot(snapshot.toString())).thenReturn(batch);
+        when(tripsCreationService.createTrips(eq(batch), any(), any(TripTotals.class))).thenReturn(mockTrips);
+
+        tapsProcessor.processTaps();
+
+        verify(csvUtils, never()).convertCsvToSnapshot(anyString(), anyString());
+        verify(csvUtils).writeTripsToCsv(mockTrips, "output.csv");
+    }
+
+    @Test
+    void testProcessTaps_snapshotCreatedWhenStale() throws Exception {
+        final Path inputCsv = Files.writeString(tempDir.resolve("taps.csv"), "ID,DateTimeUTC,TapType,StopId,CompanyId,BusID,PAN");
+        final Path snapshot = tempDir.resolve("taps.snapshot");
+        final TapBatch batch = new TapBatch();
+        mockTaps.forEach(batch::add);
+        when(tripsCsvConfig.getInputFilePath()).thenReturn(inputCsv.toString());
+        when(tripsCsvConfig.getOutputFilePath()).thenReturn("output.csv");
+        when(tripsCsvConfig.getSnapshotFilePath()).thenReturn(snapshot.toString());
+        when(csvUtils.convertCsvToSnapshot(inputCsv.toString(), snapshot.toString())).thenReturn(batch);
+        when(tripsCreationService.createTrips(eq(batch), any(), any(TripTotals.class))).thenReturn(mockTrips);
+
+        tapsProcessor.processTaps();
+
+        verify(csvUtils, never()).readTapBatchFromSnapshot(anyString());
+        verify(csvUtils).writeTripsToCsv(mockTrips, "output.csv");
+    }
+
+    @Test
+    void testProcessTaps_fastWriter() {
+        final String inputFilePath = "input.csv";
+        final String outputFilePath = "output.csv";
+        when(tripsCsvConfig.getInputFilePath()).thenReturn(inputFilePath);
+        when(tripsCsvConfig.getOutputFilePath()).thenReturn(outputFilePath);
+        when(tripsCsvConfig.isFastWriterEnabled()).thenReturn(true);
+        when(csvUtils.readTapsFromCsv(inputFilePath)).thenReturn(mockTaps);
+        when(tripsCreationService.createTrips(eq(mockTaps), any(), any(TripTotals.class))).thenReturn(mockTrips);
+
+        tapsProcessor.processTaps();
+
+        verify(csvUtils).writeTripsToCsvFast(mockTrips, outputFilePath);
+        verify(csvUtils, never()).writeTripsToCsv(anyList(), anyString());
+    }
+
+    @Test
+    void testProcessTaps_pipelined() throws Exception {
+        final Path outputCsv = tempDir.resolve("trips.csv");
+        final TapsProcessingJob job = new TapsProcessingJob();
+        tripsPipelineConfig.setEnabled(true);
+        when(tripsCsvConfig.getInputFilePath()).thenReturn("input.csv");
+        when(tripsCsvConfig.getOutputFilePath()).thenReturn(outputCsv.toString());
+        when(csvUtils.readTapsFromCsv("input.csv")).thenReturn(mockTaps);
+        doAnswer(invocation -> {
+            final Iterator<Tap> taps = invocation.getArgument(0);
+            taps.forEachRemaining(tap -> {
+            });
+            mockTrips.forEach(invocation.<Consumer<Trip>>getArgument(1));
+            return null;
+        }).when(tripsCreationService).createTrips(ArgumentMatchers.<Iterator<Tap>>any(), ArgumentMatchers.<Consumer<Trip>>any(), any(), any(TripTotals.class));
+
+        tapsProcessor.processTaps(job);
+
+        assertThat(Files.readAllLines(outputCsv)).containsExactly(
+                "Started,Finished,DurationSecs,FromStopId,ToStopId,ChargeAmount,CompanyId,BusID,PAN,Status",
+                "22-01-2023 13:00:00,22-01-2023 13:05:00,300,Stop1,Stop2,3.25,Company1,Bus1,4111111111111111,COMPLETED");
+        assertThat(job.getTapsRead()).hasValue(2);
+        assertThat(job.getTripsEmitted()).hasValue(1);
+        assertThat(job.getStage()).isEqualTo(ProcessStage.DONE);
+        verify(processStateHandler).setProcessState(ProcessState.COMPLETED);
+        verify(csvUtils, never()).writeTripsToCsv(anyList(), anyString());
+        assertThat(tripStore.findTrips(null, "Bus1", null, null, 0, 10).trips()).isEqualTo(mockTrips);
+        assertThat(tripStore.getStats().jobId()).isEqualTo(job.getId());
+    }
+
+    @Test
+    void testProcessTaps_pipelineFailure() throws Exception {
+        tripsPipelineConfig.setEnabled(true);
+        when(tripsCsvConfig.getInputFilePath()).thenReturn("input.csv");
+        when(tripsCsvConfig.getOutputFilePath()).thenReturn(tempDir.resolve("trips.csv").toString());
+        when(csvUtils.readTapsFromCsv("input.csv")).thenReturn(mockTaps);
+        doThrow(new IllegalStateException("Matching failed")).when(tripsCreationService).createTrips(ArgumentMatchers.<Iterator<Tap>>any(), ArgumentMatchers.<Consumer<Trip>>any(), any(), any(TripTotals.class));
+
+        final ProcessFailedException exception = Assertions.assertThrows(ProcessFailedException.class, () -> tapsProcessor.processTaps());
+
+        assertThat(exception.getMessage()).contains("Matching failed");
+        verify(processStateHandler).setProcessState(ProcessState.FAILED);
+    }
+
+    @Test
+    void testProcessTaps_streamsLargeInput() throws Exception {
+        final Path inputCsv = Files.writeString(tempDir.resolve("taps.csv"), "ID,DateTimeUTC,TapType,StopId,CompanyId,BusID,PAN");
+        final Path outputCsv = tempDir.resolve("trips.csv");
+        final SortedTapIterator streamedTaps = new SortedTapIterator(List.of(mockTaps.iterator()));
+        final TapsProcessingJob job = new TapsProcessingJob();
+        when(tripsCsvConfig.getInputFilePath()).thenReturn(inputCsv.toString());
+        when(tripsCsvConfig.getOutputFilePath()).thenReturn(outputCsv.toString());
+        when(tripsCsvConfig.getStreamingThresholdBytes()).thenReturn(1L);
+        when(tripsCsvConfig.getSortChunkSize()).thenReturn(1000);
+        when(csvUtils.streamTapsFromCsv(inputCsv.toString(), 1000)).thenReturn(streamedTaps);
+        doAnswer(invocation -> {
+            invocation.<Iterator<Tap>>getArgument(0).forEachRemaining(tap -> {
+            });
+            mockTrips.forEach(invocation.<Consumer<Trip>>getArgument(1));
+            return null;
+        }).when(tripsCreationService).createTrips(ArgumentMatchers.<Iterator<Tap>>any(), ArgumentMatchers.<Consumer<Trip>>any(), any(), any(TripTotals.class));
+
+        final String result = tapsProcessor.processTaps(job);
+
+        verify(csvUtils, never()).readTapsFromCsv(anyString());
+        verify(tripsCreationService, never()).createTrips(ArgumentMatchers.<Iterator<Tap>>any(), any(), any(TripTotals.class));
+        verify(csvUtils, never()).writeTripsToCsv(anyList(), anyString());
+        verify(processStateHandler).setProcessState(ProcessState.COMPLETED);
+        assertThat(result).isEqualTo("Processing completed, output saved to %s".formatted(outputCsv));
+        assertThat(Files.readAllLines(outputCsv)).containsExactly(
+                "Started,Finished,DurationSecs,FromStopId,ToStopId,ChargeAmount,CompanyId,BusID,PAN,Status",
+                "22-01-2023 13:00:00,22-01-2023 13:05:00,300,Stop1,Stop2,3.25,Company1,Bus1,4111111111111111,COMPLETED");
+        assertThat(job.getTapsRead()).hasValue(2);
+        assertThat(job.getTripsEmitted()).hasValue(1);
+    }
+
+    @Test
+    void testProcessTaps_scalesCompressedInputSizeToStreamingThreshold() throws Exception {
+        final Path inputGzip = Files.write(tempDir.resolve("taps.csv.gz"), new byte[100]);
+        when(tripsCsvConfig.getInputFilePath()).thenReturn(inputGzip.toString());
+        when(tripsCsvConfig.getOutputFilePath()).thenReturn(tempDir.resolve("trips.csv").toString());
+        when(tripsCsvConfig.getStreamingThresholdBytes()).thenReturn(500L);
+        when(csvUtils.isGzip(anyString())).thenAnswer(invocation -> invocation.<String>getArgument(0).endsWith(".gz"));
+        when(csvUtils.streamTapsFromCsv(anyString(), anyInt())).thenReturn(new SortedTapIterator(List.of(mockTaps.iterator())));
+
+        tapsProcessor.processTaps();
+
+        verify(csvUtils, never()).readTapsFromCsv(anyString());
+        verify(tripsCreationService).createTrips(ArgumentMatchers.<Iterator<Tap>>any(), ArgumentMatchers.<Consumer<Trip>>any(), any(), any(TripTotals.class));
+    }
+
+    @Test
+    void testProcessTaps_checkpointed() throws Exception {
+        final Path inputCsv = Files.writeString(tempDir.resolve("taps.csv"), "ID,DateTimeUTC,TapType,StopId,CompanyId,BusID,PAN");
+        final Path outputCsv = tempDir.resolve("trips.csv");
+        final Path checkpointFile = tempDir.resolve("trips.checkpoint");
+        when(tripsCsvConfig.getInputFilePath()).thenReturn(inputCsv.toString());
+        when(tripsCsvConfig.getOutputFilePath()).thenReturn(outputCsv.toString());
+        when(tripsCsvConfig.getCheckpointFilePath()).thenReturn(checkpointFile.toString());
+        when(tripsCsvConfig.getCheckpointIntervalTaps()).thenReturn(1000);
+        when(tripsCreationService.checkpointSettings(any())).thenReturn("settings");
+        when(tripsCsvConfig.isFastParserEnabled()).thenReturn(true);
+        when(csvUtils.readTapsFromCsvFast(inputCsv.toString())).thenReturn(mockTaps);
+        doAnswer(invocation -> {
+            final CheckpointedTripsWriter writer = invocation.getArgument(1);
+            mockTrips.forEach(writer::writeTrip);
+            writer.checkpoint(2, new TripMatcher.State(List.of(), List.of(), null));
+            return null;
+        }).when(tripsCreationService).createTrips(ArgumentMatchers.<Iterator<Tap>>any(), any(CheckpointedTripsWriter.class), eq(1000), any(), any(TripTotals.class));
+        final TapsProcessingJob job = new TapsProcessingJob();
+
+        final String result = tapsProcessor.processTaps(job);
+
+        verify(csvUtils, never()).writeTripsToCsvFast(anyList(), anyString());
+        verify(processStateHandler).setProcessState(ProcessState.COMPLETED);
+        assertThat(result).isEqualTo("Processing completed, output saved to %s".formatted(outputCsv));
+        assertThat(Files.readAllLines(outputCsv)).containsExactly(
+                "Started,Finished,DurationSecs,FromStopId,ToStopId,ChargeAmount,CompanyId,BusID,PAN,Status",
+                "22-01-2023 13:00:00,22-01-2023 13:05:00,300,Stop1,Stop2,3.25,Company1,Bus1,4111111111111111,COMPLETED");
+        assertThat(checkpointFile).doesNotExist();
+        assertThat(job.getTripsEmitted().get()).isEqualTo(1);
+    }
+
+    @Test
+    void testProcessTaps_checkpointKeptOnFailure() throws Exception {
+        final Path inputCsv = Files.writeString(tempDir.resolve("taps.csv"), "ID,DateTimeUTC,TapType,StopId,CompanyId,BusID,PAN");
+        final Path checkpointFile = tempDir.resolve("trips.checkpoint");
+        when(tripsCsvConfig.getInputFilePath()).thenReturn(inputCsv.toString());
+        when(tripsCsvConfig.getOutputFilePath()).thenReturn(tempDir.resolve("trips.csv").toString());
+        when(tripsCsvConfig.getCheckpointFilePath()).thenReturn(checkpointFile.toString());
+        when(tripsCsvConfig.getCheckpointIntervalTaps()).thenReturn(1000);
+        when(tripsCreationService.checkpointSettings(any())).thenReturn("settings");
+        when(csvUtils.readTapsFromCsv(inputCsv.toString())).thenReturn(mockTaps);
+        doAnswer(invocation -> {
+            final CheckpointedTripsWriter writer = invocation.getArgument(1);
+            writer.checkpoint(1, new TripMatcher.State(List.of(), List.of(), null));
+            throw new RuntimeException("Matching failed");
+        }).when(tripsCreationService).createTrips(ArgumentMatchers.<Iterator<Tap>>any(), any(CheckpointedTripsWriter.class), eq(1000), any(), any(TripTotals.class));
+
+        Assertions.assertThrows(ProcessFailedException.class, () -> tapsProcessor.processTaps());
+
+        verify(processStateHandler).setProcessState(ProcessState.FAILED);
+        assertThat(checkpointFile).exists();
+    }
+
+    @Test
+    void testProcessTaps_checkpointedRejectsCompressedOutput() {
+        when(tripsCsvConfig.getCheckpointFilePath()).thenReturn(tempDir.resolve("trips.checkpoint").toString());
+        when(tripsCsvConfig.getOutputFilePath()).thenReturn("trips.csv.gz");
+        when(csvUtils.isGzip("trips.csv.gz")).thenReturn(true);
+
+        final ProcessFailedException exception = Assertions.assertThrows(ProcessFailedException.class, () -> tapsProcessor.processTaps());
+
+        assertThat(exception.getMessage()).contains("cannot write compressed output");
+        verify(csvUtils, never()).readTapsFromCsv(anyString());
+        verify(processStateHandler).setProcessState(ProcessState.FAILED);
     }
 
     @Test
@@ -86,12 +394,12 @@ class TapsProcessorTest {
 
         final List<Tap> emptyTaps = List.of();
         when(csvUtils.readTapsFromCsv(inputFilePath)).thenReturn(emptyTaps);
-        when(tripsCreationService.createTrips(emptyTaps)).thenReturn(List.of());
+        when(tripsCreationService.createTrips(eq(emptyTaps), any(), any(TripTotals.class))).thenReturn(List.of());
 
         final String result = tapsProcessor.processTaps();
 
         verify(csvUtils).readTapsFromCsv(inputFilePath);
-        verify(tripsCreationService).createTrips(emptyTaps);
+        verify(tripsCreationService).createTrips(eq(emptyTaps), any(), any(TripTotals.class));
         verify(csvUtils).writeTripsToCsv(Collections.emptyList(), outputFilePath);
 
         assertThat(result).isEqualTo("Processing completed, output saved to output.csv");
@@ -117,13 +425,14 @@ class TapsProcessorTest {
         when(tripsCsvConfig.getInputFilePath()).thenReturn(inputFilePath);
 
         when(csvUtils.readTapsFromCsv(inputFilePath)).thenReturn(mockTaps);
-        when(tripsCreationService.createTrips(mockTaps)).thenThrow(new RuntimeException("Error creating trips"));
+        when(tripsCreationService.createTrips(eq(mockTaps), any(), any(TripTotals.class))).thenThrow(new RuntimeException("Error creating trips"));
 
         final ProcessFailedException exception = Assertions.assertThrows(ProcessFailedException.class, () -> tapsProcessor.processTaps());
         assertThat(exception.getMessage()).contains("Taps processing failed due to unexpected error");
 
         verify(csvUtils).readTapsFromCsv(inputFilePath);
-        verify(tripsCreationService).createTrips(mockTaps);
+        verify(tripsCreationService).createTrips(eq(mockTaps), any(), any(TripTotals.class));
+        verify(tripsCreationService, never()).publishReport(any());
         verify(processStateHandler).setProcessState(ProcessState.FAILED);
     }
 
@@ -134,21 +443,39 @@ class TapsProcessorTest {
         when(tripsCsvConfig.getInputFilePath()).thenReturn(inputFilePath);
         when(tripsCsvConfig.getOutputFilePath()).thenReturn(outputFilePath);
         when(csvUtils.readTapsFromCsv(inputFilePath)).thenReturn(mockTaps);
-        when(tripsCreationService.createTrips(mockTaps)).thenReturn(mockTrips);
+        when(tripsCreationService.createTrips(eq(mockTaps), any(), any(TripTotals.class))).thenReturn(mockTrips);
         doThrow(new RuntimeException("Error writing to CSV")).when(csvUtils).writeTripsToCsv(mockTrips, outputFilePath);
 
         final ProcessFailedException exception = Assertions.assertThrows(ProcessFailedException.class, () -> tapsProcessor.processTaps());
         assertThat(exception.getMessage()).contains("Error writing write trips to CSV");
 
         verify(csvUtils).readTapsFromCsv(inputFilePath);
-        verify(tripsCreationService).createTrips(mockTaps);
+        verify(tripsCreationService).createTrips(eq(mockTaps), any(), any(TripTotals.class));
         verify(csvUtils).writeTripsToCsv(mockTrips, outputFilePath);
         verify(processStateHandler).setProcessState(ProcessState.FAILED);
+        verify(tripStore, never()).publish(any(), anyString());
+    }
+
+    @Test
+    void testProcessTaps_failsWithoutCompletingWhenPublishingFails() {
+        final String inputFilePath = "input.csv";
+        final String outputFilePath = "output.csv";
+        when(tripsCsvConfig.getInputFilePath()).thenReturn(inputFilePath);
+        when(tripsCsvConfig.getOutputFilePath()).thenReturn(outputFilePath);
+        when(csvUtils.readTapsFromCsv(inputFilePath)).thenReturn(mockTaps);
+        when(tripsCreationService.createTrips(eq(mockTaps), any(), any(TripTotals.class))).thenReturn(mockTrips);
+        doThrow(new IllegalStateException("Index failed")).when(tripStore).publish(any(), anyString());
+
+        Assertions.assertThrows(ProcessFailedException.class, () -> tapsProcessor.processTaps());
+
+        verify(processStateHandler, never()).setProcessState(ProcessState.COMPLETED);
+        verify(processStateHandler).setProcessState(ProcessState.FAILED);
+        verify(tripsCreationService, never()).publishReport(any());
     }
 
     @Test
     void testProcessTaps_errorAlreadyStarted() {
-        when(processStateHandler.isProcessingAlreadyRunning()).thenReturn(true);
+        when(processStateHandler.tryStart()).thenReturn(false);
 
         final ProcessStartedException exception = Assertions.assertThrows(ProcessStartedException.class, () -> tapsProcessor.processTaps());
         assertThat(exception.getMessage()).contains("Taps processing is already running.");
@@ -161,12 +488,93 @@ class TapsProcessorTest {
         when(tripsCsvConfig.getInputFilePath()).thenReturn(inputFilePath);
         when(tripsCsvConfig.getOutputFilePath()).thenReturn(outputFilePath);
         when(csvUtils.readTapsFromCsv(inputFilePath)).thenReturn(mockTaps);
-        when(tripsCreationService.createTrips(mockTaps)).thenReturn(mockTrips);
+        when(tripsCreationService.createTrips(eq(mockTaps), any(), any(TripTotals.class))).thenReturn(mockTrips);
 
         tapsProcessor.processTaps();
 
-        verify(processStateHandler).setProcessState(ProcessState.STARTED);
+        verify(processStateHandler).tryStart();
         verify(processStateHandler).setProcessState(ProcessState.COMPLETED);
     }
-}
 
+    @Test
+    void testProcessTaps_recordsJobProgress() {
+        final String inputFilePath = "input.csv";
+        final String outputFilePath = "output.csv";
+        when(tripsCsvConfig.getInputFilePath()).thenReturn(inputFilePath);
+        when(tripsCsvConfig.getOutputFilePath()).thenReturn(outputFilePath);
+        when(csvUtils.readTapsFromCsv(inputFilePath)).thenReturn(mockTaps);
+        when(tripsCreationService.createTrips(eq(mockTaps), any(), any(TripTotals.class))).thenReturn(mockTrips);
+        final TapsProcessingJob job = new TapsProcessingJob();
+
+        tapsProcessor.processTaps(job);
+
+        final TapsJobStatus status = job.toStatus();
+        assertThat(status.getState()).isEqualTo(ProcessState.COMPLETED);
+        assertThat(status.getStage()).isEqualTo(ProcessStage.DONE);
+        assertThat(status.getTapsRead()).isEqualTo(2);
+        assertThat(status.getTripsEmitted()).isEqualTo(1);
+        assertThat(status.getMessage()).isEqualTo("Processing completed, output saved to output.csv");
+    }
+
+    @Test
+    void testProcessTaps_recordsMetrics() {
+        final String inputFilePath = "input.csv";
+        final String outputFilePath = "output.csv";
+        when(tripsCsvConfig.getInputFilePath()).thenReturn(inputFilePath);
+        when(tripsCsvConfig.getOutputFilePath()).thenReturn(outputFilePath);
+        when(csvUtils.readTapsFromCsv(inputFilePath)).thenReturn(mockTaps);
+        when(tripsCreationService.createTrips(eq(mockTaps), any(), any(TripTotals.class))).thenReturn(mockTrips);
+
+        tapsProcessor.processTaps();
+
+        verify(tapsProcessingMetrics).recordStage(eq(ProcessStage.READING), anyLong());
+        verify(tapsProcessingMetrics).recordStage(eq(ProcessStage.MATCHING), anyLong());
+        verify(tapsProcessingMetrics).recordStage(eq(ProcessStage.WRITING), anyLong());
+        verify(tapsProcessingMetrics).recordTapsRead(2);
+        verify(tapsProcessingMetrics).recordTrips(mockTrips);
+        verify(tapsProcessingMetrics).recordRun(eq(ProcessState.COMPLETED), anyLong());
+    }
+
+    @Test
+    void testProcessTaps_cancelledJob() {
+        final TapsProcessingJob job = new TapsProcessingJob();
+        job.cancel();
+
+        Assertions.assertThrows(ProcessCancelledException.class, () -> tapsProcessor.processTaps(job));
+
+        verify(csvUtils, never()).readTapsFromCsv(anyString());
+        verify(csvUtils, never()).writeTripsToCsv(anyList(), anyString());
+        verify(processStateHandler).setProcessState(ProcessState.CANCELLED);
+        assertThat(job.getState()).isEqualTo(ProcessState.CANCELLED);
+    }
+
+    @Test
+    void testProcessTaps_cancelledWhileStreaming() throws Exception {
+        final Path inputCsv = Files.writeString(tempDir.resolve("taps.csv"), "ID,DateTimeUTC,TapType,StopId,CompanyId,BusID,PAN");
+        final SortedTapIterator streamedTaps = new SortedTapIterator(List.of(mockTaps.iterator()));
+        final TapsProcessingJob job = new TapsProcessingJob();
+        when(tripsCsvConfig.getInputFilePath()).thenReturn(inputCsv.toString());
+        when(tripsCsvConfig.getStreamingThresholdBytes()).thenReturn(1L);
+        when(tripsCsvConfig.getOutputFilePath()).thenReturn(tempDir.resolve("trips.csv").toString());
+        when(csvUtils.streamTapsFromCsv(anyString(), anyInt())).thenReturn(streamedTaps);
+        doAnswer(invocation -> {
+            final Iterator<Tap> taps = invocation.getArgument(0);
+            taps.next();
+            job.cancel();
+            taps.hasNext();
+            return null;
+        }).when(tripsCreationService).createTrips(ArgumentMatchers.<Iterator<Tap>>any(), ArgumentMatchers.<Consumer<Trip>>any(), any(), any(TripTotals.class));
+
+        Assertions.assertThrows(ProcessCancelledException.class, () -> tapsProcessor.processTaps(job));
+
+        verify(csvUtils, never()).writeTripsToCsv(anyList(), anyString());
+        assertThat(job.getTapsRead().get()).isEqualTo(1);
+        assertThat(job.getState()).isEqualTo(ProcessState.CANCELLED);
+    }
+
+    private static TripsStoreConfig enabledStoreConfig() {
+        final TripsStoreConfig tripsStoreConfig = new TripsStoreConfig();
+        tripsStoreConfig.setEnabled(true);
+        return tripsStoreConfig;
+    }
+}
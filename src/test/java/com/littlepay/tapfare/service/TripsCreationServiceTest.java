@@ -1,21 +1,50 @@
 package com.littlepay.tapfare.service;
 
+import com.littlepay.tapfare.config.TripsFareConfig;
+import com.littlepay.tapfare.config.TripsMatchingConfig;
 import com.littlepay.tapfare.constant.TapType;
 import com.littlepay.tapfare.constant.TripStatus;
 import com.littlepay.tapfare.model.Tap;
+import com.littlepay.tapfare.model.TapBatch;
 import com.littlepay.tapfare.model.Trip;
+import com.littlepay.tapfare.model.TripTotal;
+import com.littlepay.tapfare.model.TripsReport;
+import com.littlepay.tapfare.utils.FareMatrixUtils;
+import com.littlepay.tapfare.utils.FastTripCsvWriter;
+import com.littlepay.tapfare.utils.TripTotals;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
 
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Random;
 
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 @ExtendWith(MockitoExtension.class)
@@ -24,6 +53,9 @@ class TripsCreationServiceTest {
     @Mock
     private FareCalculator fareCalculator;
 
+    @Spy
+    private TripsMatchingConfig tripsMatchingConfig = new TripsMatchingConfig();
+
     @InjectMocks
     private TripsCreationService tripsCreationService;
 
@@ -34,6 +66,8 @@ class TripsCreationServiceTest {
 
     @BeforeEach
     void setUp() {
+        lenient().when(fareCalculator.pin()).thenReturn(fareCalculator);
+        lenient().when(fareCalculator.stopIndex(any())).thenAnswer(invocation -> stop(invocation.getArgument(0)));
         tapOn = new Tap(1L, LocalDateTime.parse("22-01-2023 13:00:00", formatter), TapType.ON, "Stop1", "Company1", "Bus37", "4111111111111111");
         tapOff = new Tap(2L, LocalDateTime.parse("22-01-2023 13:05:00", formatter), TapType.OFF, "Stop2", "Company1", "Bus37", "4111111111111111");
     }
@@ -41,7 +75,7 @@ class TripsCreationServiceTest {
     @Test
     void testCreateCompletedAndCancelledTripsOnWithMatchingOffTap() {
 
-        when(fareCalculator.calculateFare("Stop1", "Stop2")).thenReturn(3.25);
+        when(fareCalculator.calculateFare(stop("Stop1"), stop("Stop2"))).thenReturn(3.25);
 
         final List<Trip> trips = tripsCreationService.createTrips(List.of(tapOff, tapOn));
 
@@ -56,7 +90,7 @@ class TripsCreationServiceTest {
     @Test
     void testCreateCompletedAndCancelledTripsOffWithMatchingOnTap() {
 
-        when(fareCalculator.calculateFare("Stop1", "Stop2")).thenReturn(2.50);
+        when(fareCalculator.calculateFare(stop("Stop1"), stop("Stop2"))).thenReturn(2.50);
 
         final List<Trip> trips = tripsCreationService.createTrips(List.of(tapOn, tapOff));
 
@@ -68,6 +102,34 @@ class TripsCreationServiceTest {
         assertEquals("Stop2", trip.getToStopId());
     }
 
+    @Test
+    void testTripsArePricedByStopIndexResolvedOncePerTap() {
+        final Tap orphanTapOn = new Tap(3L, LocalDateTime.parse("22-01-2023 14:00:00", formatter), TapType.ON, "Stop3", "Company1", "Bus37", "4111111111111111");
+        when(fareCalculator.calculateFare(0, 1)).thenReturn(3.25);
+        when(fareCalculator.calculateMaxFare(2)).thenReturn(7.30);
+
+        final List<Trip> trips = tripsCreationService.createTrips(List.of(tapOn, tapOff, orphanTapOn));
+
+        assertThat(trips).extracting(Trip::getChargeAmount).containsExactly(3.25, 7.30);
+        verify(fareCalculator, times(3)).stopIndex(anyString());
+        verify(fareCalculator, never()).calculateFare(anyString(), anyString());
+        verify(fareCalculator, never()).calculateMaxFare(anyString());
+    }
+
+    @Test
+    void testParallelBatchMatchingResolvesEveryStopOncePerShard() {
+        tripsMatchingConfig.setParallelThreshold(1);
+        final TapBatch batch = new TapBatch();
+        generateSortedTaps(1_000).forEach(batch::add);
+        lenient().when(fareCalculator.calculateFare(anyInt(), anyInt())).thenReturn(3.25);
+        lenient().when(fareCalculator.calculateMaxFare(anyInt())).thenReturn(7.30);
+
+        tripsCreationService.createTripsInParallel(batch, 4);
+
+        verify(fareCalculator, times(4 * batch.getStopDictionary().size())).stopIndex(anyString());
+        verify(fareCalculator, never()).calculateFare(anyString(), anyString());
+    }
+
     @Test
     void testCreateCompletedAndCancelledTripsOnWithoutOffTap() {
 
@@ -81,7 +143,7 @@ class TripsCreationServiceTest {
     @Test
     void testCreateCompletedAndCancelledTripsForOrphanOnTap() {
 
-        when(fareCalculator.calculateMaxFare("Stop1")).thenReturn(5.50);
+        when(fareCalculator.calculateMaxFare(stop("Stop1"))).thenReturn(5.50);
 
         final List<Trip> trips = tripsCreationService.createTrips(List.of(tapOn));
 
@@ -93,7 +155,7 @@ class TripsCreationServiceTest {
 
     @Test
     void testCreateCompletedAndCancelledTripsForOrphanOffTap() {
-        when(fareCalculator.calculateMaxFare("Stop2")).thenReturn(7.00);
+        when(fareCalculator.calculateMaxFare(stop("Stop2"))).thenReturn(7.00);
 
         final List<Trip> trips = tripsCreationService.createTrips(List.of(tapOff));
 
@@ -121,8 +183,8 @@ class TripsCreationServiceTest {
         final Tap tapOn1 = new Tap(1L, LocalDateTime.parse("22-01-2023 13:00:00", formatter), TapType.ON, "Stop1", "Company1", "Bus37", "4111111111111111");
         final Tap tapOn2 = new Tap(2L, LocalDateTime.parse("22-01-2023 13:05:00", formatter), TapType.ON, "Stop2", "Company1", "Bus37", "4111111111111112");
 
-        when(fareCalculator.calculateMaxFare("Stop1")).thenReturn(5.50);
-        when(fareCalculator.calculateMaxFare("Stop2")).thenReturn(6.00);
+        when(fareCalculator.calculateMaxFare(stop("Stop1"))).thenReturn(5.50);
+        when(fareCalculator.calculateMaxFare(stop("Stop2"))).thenReturn(6.00);
 
         final List<Trip> trips = tripsCreationService.createTrips(List.of(tapOn1, tapOn2));
 
@@ -141,8 +203,8 @@ class TripsCreationServiceTest {
         final Tap tapOn2 = new Tap(3L, LocalDateTime.parse("22-01-2023 14:00:00", formatter), TapType.ON, "Stop3", "Company1", "Bus37", "4111111111111112");
         final Tap tapOff2 = new Tap(4L, LocalDateTime.parse("22-01-2023 14:10:00", formatter), TapType.OFF, "Stop4", "Company1", "Bus37", "4111111111111112");
 
-        when(fareCalculator.calculateFare("Stop1", "Stop2")).thenReturn(3.25);
-        when(fareCalculator.calculateFare("Stop3", "Stop4")).thenReturn(4.50);
+        when(fareCalculator.calculateFare(stop("Stop1"), stop("Stop2"))).thenReturn(3.25);
+        when(fareCalculator.calculateFare(stop("Stop3"), stop("Stop4"))).thenReturn(4.50);
 
         final List<Trip> trips = tripsCreationService.createTrips(List.of(tapOn1, tapOff1, tapOn2, tapOff2));
 
@@ -175,8 +237,8 @@ class TripsCreationServiceTest {
         final Tap tapOn1 = new Tap(1L, LocalDateTime.parse("22-01-2023 13:00:00", formatter), TapType.ON, "Stop1", "Company1", "Bus37", "4111111111111111");
         final Tap tapOn2 = new Tap(2L, LocalDateTime.parse("22-01-2023 14:00:00", formatter), TapType.ON, "Stop2", "Company1", "Bus37", "4111111111111112");
 
-        when(fareCalculator.calculateMaxFare("Stop1")).thenReturn(5.50);
-        when(fareCalculator.calculateMaxFare("Stop2")).thenReturn(6.50);
+        when(fareCalculator.calculateMaxFare(stop("Stop1"))).thenReturn(5.50);
+        when(fareCalculator.calculateMaxFare(stop("Stop2"))).thenReturn(6.50);
 
         final List<Trip> trips = tripsCreationService.createTrips(List.of(tapOn1, tapOn2));
 
@@ -198,7 +260,7 @@ class TripsCreationServiceTest {
 
     @Test
     void testOutOfOrderTaps() {
-        when(fareCalculator.calculateFare("Stop1", "Stop2")).thenReturn(3.25);
+        when(fareCalculator.calculateFare(stop("Stop1"), stop("Stop2"))).thenReturn(3.25);
 
         final List<Trip> trips = tripsCreationService.createTrips(List.of(tapOff, tapOn));
 
@@ -209,6 +271,457 @@ class TripsCreationServiceTest {
         assertEquals("Stop1", trip.getFromStopId());
         assertEquals("Stop2", trip.getToStopId());
     }
-}
 
+    @Test
+    void testOutOfOrderTapsMatchFirstStoredTapOfSameDay() {
+        final TripsCreationService service = new TripsCreationService(stopLengthFareCalculator(), tripsMatchingConfig);
+        final String pan = "4111111111111111";
+        final Tap previousDayOff = new Tap(1L, LocalDateTime.parse("21-01-2023 13:30:00", formatter), TapType.OFF, "Stop4", "Company1", "Bus37", pan);
+        final Tap lateOff = new Tap(2L, LocalDateTime.parse("22-01-2023 13:10:00", formatter), TapType.OFF, "Stop3", "Company1", "Bus37", pan);
+        final Tap earlyOff = new Tap(3L, LocalDateTime.parse("22-01-2023 13:05:00", formatter), TapType.OFF, "Stop2", "Company1", "Bus37", pan);
+        final Tap on = new Tap(4L, LocalDateTime.parse("22-01-2023 13:00:00", formatter), TapType.ON, "Stop1", "Company1", "Bus37", pan);
+
+        final List<Trip> trips = service.createTrips(List.of(previousDayOff, lateOff, earlyOff, on));
+
+        assertThat(trips).extracting(Trip::getStatus, Trip::getFromStopId, Trip::getToStopId).containsExactly(
+                tuple(TripStatus.COMPLETED, "Stop1", "Stop3"),
+                tuple(TripStatus.INCOMPLETE, null, "Stop4"),
+                tuple(TripStatus.INCOMPLETE, null, "Stop2"));
+    }
+
+    @Test
+    void testTapsWithUnpackablePansMatchOnlyTheirOwnPan() {
+        final TripsCreationService service = new TripsCreationService(stopLengthFareCalculator(), tripsMatchingConfig);
+        final LocalDateTime start = LocalDateTime.parse("22-01-2023 13:00:00", formatter);
+
+        final List<Trip> trips = service.createTrips(List.of(
+                new Tap(1L, start, TapType.ON, "Stop1", "Company1", "Bus37", "TEST-CARD-1"),
+                new Tap(2L, start.plusMinutes(1), TapType.ON, "Stop1", "Company1", "Bus37", "5500005555555559"),
+                new Tap(3L, start.plusMinutes(2), TapType.ON, "Stop1", "Company1", "Bus37", "055000055555555590"),
+                new Tap(4L, start.plusMinutes(3), TapType.OFF, "Stop2", "Company1", "Bus37", "TEST-CARD-2"),
+                new Tap(5L, start.plusMinutes(4), TapType.OFF, "Stop3", "Company1", "Bus37", "TEST-CARD-1"),
+                new Tap(6L, start.plusMinutes(5), TapType.OFF, "Stop2", "Company1", "Bus37", "055000055555555590")));
+
+        assertThat(trips).extracting(Trip::getStatus, Trip::getPan, Trip::getToStopId).containsExactly(
+                tuple(TripStatus.COMPLETED, "TEST-CARD-1", "Stop3"),
+                tuple(TripStatus.COMPLETED, "055000055555555590", "Stop2"),
+                tuple(TripStatus.INCOMPLETE, "5500005555555559", null),
+                tuple(TripStatus.INCOMPLETE, "TEST-CARD-2", "Stop2"));
+    }
+
+    @Test
+    void testLongLivedMatcherKeepsNoTotals() {
+        final TripMatcher matcher = TripMatcher.longLived(stopLengthFareCalculator());
+        final LocalDateTime start = LocalDateTime.parse("22-01-2023 13:00:00", formatter);
+
+        matcher.accept(new Tap(1L, start, TapType.ON, "Stop1", "Company1", "Bus37", "5500005555555559"), 0);
+        matcher.accept(new Tap(2L, start.plusMinutes(5), TapType.OFF, "Stop2", "Company1", "Bus37", "5500005555555559"), 1);
+        matcher.accept(new Tap(3L, start.plusMinutes(6), TapType.ON, "Stop3", "Company2", "Bus1", "4111111111111111"), 2);
+        matcher.closeDaysBefore(start.toLocalDate().plusDays(1));
+
+        assertThat(matcher.drainClosedTrips()).hasSize(1);
+        assertThat(matcher.getTotals().toReport(Instant.EPOCH).total().values()).extracting(TripTotal::trips).containsOnly(0L);
+        assertThat(matcher.getTotals().toReport(Instant.EPOCH).byCompany()).isEmpty();
+    }
+
+    @Test
+    void testUnpackablePanKeysAreReleasedOnceTheirTapsAreClosed() {
+        final TripMatcher matcher = new TripMatcher(stopLengthFareCalculator(), true);
+        final LocalDateTime start = LocalDateTime.parse("22-01-2023 13:00:00", formatter);
+
+        matcher.accept(new Tap(1L, start, TapType.ON, "Stop1", "Company1", "Bus37", "TEST-CARD-1"), 0);
+        matcher.accept(new Tap(2L, start.plusMinutes(1), TapType.ON, "Stop1", "Company1", "Bus37", "TEST-CARD-2"), 1);
+        matcher.accept(new Tap(3L, start.plusMinutes(2), TapType.OFF, "Stop2", "Company1", "Bus37", "TEST-CARD-1"), 2);
+        assertThat(matcher.getUnpackablePanCount()).isEqualTo(1);
+
+        matcher.accept(new Tap(4L, start.plusDays(1), TapType.ON, "Stop1", "Company1", "Bus37", "TEST-CARD-3"), 3);
+        assertThat(matcher.getUnpackablePanCount()).isEqualTo(1);
+
+        matcher.accept(new Tap(5L, start.plusDays(1).plusMinutes(1), TapType.OFF, "Stop2", "Company1", "Bus37", "TEST-CARD-2"), 4);
+        matcher.accept(new Tap(6L, start.plusDays(1).plusMinutes(2), TapType.OFF, "Stop3", "Company1", "Bus37", "TEST-CARD-3"), 5);
+        assertThat(matcher.getUnpackablePanCount()).isEqualTo(1);
+        assertThat(matcher.getClosedTrips()).extracting(sequencedTrip -> sequencedTrip.trip().getPan())
+                .containsExactly("TEST-CARD-1", "TEST-CARD-3");
+
+        matcher.createOrphanOnTrips();
+        matcher.createOrphanOffTrips();
+        assertThat(matcher.getUnpackablePanCount()).isZero();
+    }
+
+    @Test
+    void testHeavyPanMatchesEveryTapWithTheNextOne() {
+        final TripsCreationService service = new TripsCreationService(stopLengthFareCalculator(), tripsMatchingConfig);
+        final LocalDateTime start = LocalDateTime.parse("22-01-2023 00:00:00", formatter);
+        final List<Tap> taps = new ArrayList<>();
+        for (int i = 0; i < 40_000; i++) {
+            taps.add(new Tap(i, start.plusSeconds(i * 2L), i % 2 == 0 ? TapType.ON : TapType.OFF, "Stop" + i % 3, "Company1", "Bus37",
+                    "4111111111111111"));
+        }
+
+        final List<Trip> trips = service.createTrips(taps.iterator());
+
+        assertThat(trips).hasSize(20_000).allMatch(trip -> trip.getDurationSecs() == 2 && trip.getStatus() != TripStatus.INCOMPLETE);
+        assertThat(trips).extracting(Trip::getStarted).containsExactlyElementsOf(
+                taps.stream().filter(tap -> tap.getTapType() == TapType.ON).map(Tap::getLocalDateTime).toList());
+    }
+
+    @Test
+    void testOrphanTripsFollowInputOrder() {
+        final Tap tapOff1 = new Tap(1L, LocalDateTime.parse("22-01-2023 08:00:00", formatter), TapType.OFF, "Stop2", "Company1", "Bus37", "4111111111111113");
+        final Tap tapOn1 = new Tap(2L, LocalDateTime.parse("22-01-2023 09:00:00", formatter), TapType.ON, "Stop1", "Company1", "Bus37", "4111111111111112");
+        final Tap tapOn2 = new Tap(3L, LocalDateTime.parse("22-01-2023 10:00:00", formatter), TapType.ON, "Stop3", "Company1", "Bus37", "4111111111111111");
+        final Tap tapOff2 = new Tap(4L, LocalDateTime.parse("22-01-2023 11:00:00", formatter), TapType.OFF, "Stop1", "Company1", "Bus37", "4111111111111114");
+
+        final List<Trip> trips = tripsCreationService.createTrips(List.of(tapOff1, tapOn1, tapOn2, tapOff2));
+
+        assertThat(trips).extracting(Trip::getPan)
+                .containsExactly("4111111111111112", "4111111111111111", "4111111111111113", "4111111111111114");
+    }
+
+    @Test
+    void testEvictingClosedDaysProducesSameTripsAsHoldingAllOpenTaps() {
+        final TripsMatchingConfig holdingConfig = new TripsMatchingConfig();
+        holdingConfig.setEvictClosedDays(false);
+        final TripsMatchingConfig evictingConfig = new TripsMatchingConfig();
+        evictingConfig.setEvictClosedDays(true);
+        final List<Tap> taps = generateSortedTaps(5_000);
+
+        final List<Trip> heldTrips = new ArrayList<>();
+        final TripsCreationService holdingService = new TripsCreationService(stopLengthFareCalculator(), holdingConfig);
+        holdingService.createTrips(taps.iterator(), heldTrips::add, holdingService.pinFares(), new TripTotals());
+        final List<Trip> evictedTrips = new ArrayList<>();
+        final TripsCreationService evictingService = new TripsCreationService(stopLengthFareCalculator(), evictingConfig);
+        evictingService.createTrips(taps.iterator(), evictedTrips::add, evictingService.pinFares(), new TripTotals());
+
+        assertThat(taps.get(taps.size() - 1).getLocalDateTime().toLocalDate()).isAfter(taps.get(0).getLocalDateTime().toLocalDate());
+        assertThat(evictedTrips).isNotEmpty().containsExactlyElementsOf(heldTrips);
+    }
+
+    @Test
+    void testWatermarkReleasesOpenTapsOfClosedDays() {
+        when(fareCalculator.calculateMaxFare(stop("Stop1"))).thenReturn(7.30);
+        final TripMatcher matcher = new TripMatcher(fareCalculator, true);
+
+        matcher.accept(tapOn, 0);
+        matcher.accept(new Tap(3L, LocalDateTime.parse("23-01-2023 08:00:00", formatter), TapType.ON, "Stop2", "Company1", "Bus37", "5500005555555559"), 1);
+
+        assertThat(matcher.getOpenTapOnCount()).isEqualTo(1);
+        assertThat(matcher.createOrphanOnTrips()).extracting(sequencedTrip -> sequencedTrip.trip().getPan())
+                .containsExactly("4111111111111111", "5500005555555559");
+    }
+
+    @Test
+    void testWatermarkRejectsTapOfClosedDay() {
+        tripsMatchingConfig.setEvictClosedDays(true);
+        final Tap nextDayTap = new Tap(3L, LocalDateTime.parse("23-01-2023 08:00:00", formatter), TapType.ON, "Stop1", "Company1", "Bus37", "4111111111111111");
+
+        final Iterator<Tap> taps = List.of(nextDayTap, tapOn).iterator();
+        final IllegalArgumentException exception = assertThrows(IllegalArgumentException.class,
+                () -> tripsCreationService.createTrips(taps, trip -> { }, tripsCreationService.pinFares(), new TripTotals()));
+        assertThat(exception.getMessage()).contains("taps must be sorted by date time");
+    }
+
+    @Test
+    void testTapListWithOutOfOrderDaysIsMatchedWhenEvictingClosedDays() {
+        tripsMatchingConfig.setEvictClosedDays(true);
+        when(fareCalculator.calculateFare(stop("Stop1"), stop("Stop2"))).thenReturn(3.25);
+        when(fareCalculator.calculateMaxFare(stop("Stop1"))).thenReturn(7.30);
+        final Tap nextDayTap = new Tap(3L, LocalDateTime.parse("23-01-2023 08:00:00", formatter), TapType.ON, "Stop1", "Company1", "Bus37", "4111111111111111");
+
+        final List<Trip> trips = tripsCreationService.createTrips(List.of(nextDayTap, tapOn, tapOff));
+
+        assertThat(trips).extracting(Trip::getStatus).containsExactly(TripStatus.COMPLETED, TripStatus.INCOMPLETE);
+        assertThat(trips.get(1).getStarted()).isEqualTo(nextDayTap.getLocalDateTime());
+    }
+
+    @Test
+    void testBatchMatchingProducesSameTripsAsTapList() {
+        final TripsCreationService service = new TripsCreationService(stopLengthFareCalculator(), tripsMatchingConfig);
+        final List<Tap> taps = generateSortedTaps(5_000);
+        final TapBatch batch = new TapBatch();
+        taps.forEach(batch::add);
+
+        try {
+            final List<Trip> listTrips = service.createTrips(taps.iterator());
+
+            assertThat(service.createTrips(batch)).isNotEmpty().containsExactlyElementsOf(listTrips);
+            assertThat(service.createTripsInParallel(batch, 4)).containsExactlyElementsOf(listTrips);
+        } finally {
+            service.shutdown();
+        }
+    }
+
+    @Test
+    void testResentTapsAreDroppedBeforeMatching() {
+        final Tap resentTapOn = new Tap(1L, LocalDateTime.parse("22-01-2023 13:01:00", formatter), TapType.ON, "Stop1", "Company1", "Bus37", "4111111111111111");
+        when(fareCalculator.calculateFare(stop("Stop1"), stop("Stop2"))).thenReturn(3.25);
+
+        final List<Trip> trips = tripsCreationService.createTrips(List.of(tapOn, resentTapOn, tapOff, tapOff));
+
+        assertThat(trips).singleElement().extracting(Trip::getStatus).isEqualTo(TripStatus.COMPLETED);
+        assertEquals(2, tripsCreationService.getDuplicateTapsSkipped());
+    }
+
+    @Test
+    void testDuplicateTapsAreDroppedAlikeOnEveryPath() {
+        final TripsCreationService service = new TripsCreationService(stopLengthFareCalculator(), tripsMatchingConfig);
+        final List<Tap> distinctTaps = generateSortedTaps(5_000);
+        final List<Tap> taps = new ArrayList<>();
+        for (int i = 0; i < distinctTaps.size(); i++) {
+            taps.add(distinctTaps.get(i));
+            if (i % 7 == 0) {
+                taps.add(distinctTaps.get(i));
+            }
+        }
+        final TapBatch batch = new TapBatch();
+        taps.forEach(batch::add);
+
+        try {
+            final List<Trip> expectedTrips = service.createTrips(distinctTaps.iterator());
+            final List<Trip> streamedTrips = new ArrayList<>();
+            service.createTrips(taps.iterator(), streamedTrips::add, service.pinFares(), new TripTotals());
+
+            assertThat(service.createTrips(taps.iterator())).isNotEmpty().containsExactlyElementsOf(expectedTrips);
+            assertThat(service.createTripsInParallel(taps, 4)).containsExactlyElementsOf(expectedTrips);
+            assertThat(service.createTrips(batch)).containsExactlyElementsOf(expectedTrips);
+            assertThat(service.createTripsInParallel(batch, 4)).containsExactlyElementsOf(expectedTrips);
+            assertThat(streamedTrips).containsExactlyElementsOf(expectedTrips);
+            assertEquals(5 * 715L, service.getDuplicateTapsSkipped());
+        } finally {
+            service.shutdown();
+        }
+    }
+
+    @Test
+    void testDuplicateTapsAreKeptWhenDisabled() {
+        tripsMatchingConfig.setDropDuplicateTaps(false);
+
+        final List<Trip> trips = tripsCreationService.createTrips(List.of(tapOn, tapOn));
+
+        assertThat(trips).hasSize(2).extracting(Trip::getStatus).containsOnly(TripStatus.INCOMPLETE);
+        assertEquals(0, tripsCreationService.getDuplicateTapsSkipped());
+    }
+
+    @Test
+    void testParallelMatchingProducesSameTripsAsSequential() {
+        final FareCalculator stopFareCalculator = stopLengthFareCalculator();
+        final TripsCreationService service = new TripsCreationService(stopFareCalculator, tripsMatchingConfig);
+        final List<Tap> taps = generateSortedTaps(5_000);
+
+        try {
+            final List<Trip> sequentialTrips = service.createTrips(taps.iterator());
+            final List<Trip> parallelTrips = service.createTripsInParallel(taps, 4);
+
+            assertThat(parallelTrips).isNotEmpty().containsExactlyElementsOf(sequentialTrips);
+        } finally {
+            service.shutdown();
+        }
+    }
+
+    @Test
+    void testReportTotalsMatchCreatedTripsOnEveryPath() {
+        final TripsMatchingConfig parallelConfig = new TripsMatchingConfig();
+        parallelConfig.setShards(4);
+        parallelConfig.setParallelThreshold(1_000);
+        final TripsCreationService service = new TripsCreationService(stopLengthFareCalculator(), parallelConfig);
+        final List<Tap> taps = generateSortedTaps(5_000);
+
+        try {
+            final TripTotals sequentialTotals = new TripTotals();
+            final List<Trip> trips = service.createTrips(taps.iterator(), service.pinFares(), sequentialTotals);
+            final TripTotals parallelTotals = new TripTotals();
+            service.createTrips(taps, service.pinFares(), parallelTotals);
+            final TripTotals streamedTotals = new TripTotals();
+            service.createTrips(taps.iterator(), trip -> { }, service.pinFares(), streamedTotals);
+            assertThat(service.getLatestReport().generatedAt()).isEqualTo(Instant.EPOCH);
+
+            service.publishReport(sequentialTotals);
+            final TripsReport sequentialReport = service.getLatestReport();
+
+            assertThat(sequentialReport.complete()).isTrue();
+            assertThat(parallelTotals.toReport(Instant.EPOCH)).usingRecursiveComparison().ignoringFields("generatedAt").isEqualTo(sequentialReport);
+            assertThat(streamedTotals.toReport(Instant.EPOCH)).usingRecursiveComparison().ignoringFields("generatedAt").isEqualTo(sequentialReport);
+            for (final TripStatus status : TripStatus.values()) {
+                final List<Trip> statusTrips = trips.stream().filter(trip -> trip.getStatus() == status).toList();
+                assertThat(sequentialReport.total().get(status).trips()).isEqualTo(statusTrips.size());
+                assertThat(sequentialReport.total().get(status).revenue())
+                        .isEqualByComparingTo(BigDecimal.valueOf(Math.round(statusTrips.stream().mapToDouble(Trip::getChargeAmount).sum() * 100), 2));
+                assertThat(sequentialReport.byBus().values().stream().mapToLong(totals -> totals.get(status).trips()).sum())
+                        .isEqualTo(statusTrips.size());
+            }
+        } finally {
+            service.shutdown();
+        }
+    }
 
+    @Test
+    void testStreamedTripsFollowSameOrderAsCollectedTrips() {
+        final TripsCreationService service = new TripsCreationService(stopLengthFareCalculator(), tripsMatchingConfig);
+        final List<Tap> taps = generateSortedTaps(5_000);
+        final List<Trip> streamedTrips = new ArrayList<>();
+
+        service.createTrips(taps.iterator(), streamedTrips::add, service.pinFares(), new TripTotals());
+
+        assertThat(streamedTrips).isNotEmpty().containsExactlyElementsOf(service.createTrips(taps.iterator()));
+    }
+
+    @Test
+    void testCheckpointedMatchingResumesToSameOutputAsUninterruptedRun(@TempDir final Path tempDir) throws Exception {
+        final TripsCreationService service = new TripsCreationService(stopLengthFareCalculator(), tripsMatchingConfig);
+        final String runSettings = service.checkpointSettings(service.pinFares());
+        final List<Tap> taps = generateSortedTaps(5_000);
+        final Path inputFile = Files.writeString(tempDir.resolve("taps.csv"), "taps");
+        final Path expectedFile = tempDir.resolve("expected.csv");
+        final Path outputFile = tempDir.resolve("trips.csv");
+        final Path checkpointFile = tempDir.resolve("trips.checkpoint");
+        try (final FastTripCsvWriter writer = new FastTripCsvWriter(expectedFile)) {
+            service.createTrips(taps.iterator()).forEach(writer::write);
+        }
+
+        final Iterator<Tap> failingTaps = taps.stream().limit(3_333).iterator();
+        try (final CheckpointedTripsWriter writer = new CheckpointedTripsWriter(inputFile, runSettings, outputFile, checkpointFile, trip -> {
+        })) {
+            assertThrows(NoSuchElementException.class, () -> service.createTrips(new Iterator<>() {
+                @Override
+                public boolean hasNext() {
+                    return true;
+                }
+
+                @Override
+                public Tap next() {
+                    return failingTaps.next();
+                }
+            }, writer, 100, service.pinFares(), new TripTotals()));
+        }
+
+        final List<Trip> resumedTrips = new ArrayList<>();
+        try (final CheckpointedTripsWriter writer = new CheckpointedTripsWriter(inputFile, runSettings, outputFile, checkpointFile, resumedTrips::add)) {
+            assertThat(writer.getResumeCheckpoint()).map(TripsCheckpoint::tapsConsumed).contains(3_300L);
+            final TripTotals resumedTotals = new TripTotals();
+            service.createTrips(taps.iterator(), writer, 100, service.pinFares(), resumedTotals);
+            writer.complete();
+            assertThat(resumedTotals.toReport(Instant.EPOCH).complete()).isFalse();
+        }
+
+        assertThat(resumedTrips).isNotEmpty();
+        assertThat(Files.readAllBytes(outputFile)).isEqualTo(Files.readAllBytes(expectedFile));
+        assertThat(checkpointFile).doesNotExist();
+        assertThat(tempDir.resolve("trips.csv.orphan-on")).doesNotExist();
+    }
+
+    @Test
+    void testCheckpointOfDifferentInputIsIgnored(@TempDir final Path tempDir) throws Exception {
+        final TripsCreationService service = new TripsCreationService(stopLengthFareCalculator(), tripsMatchingConfig);
+        final String runSettings = service.checkpointSettings(service.pinFares());
+        final Path inputFile = Files.writeString(tempDir.resolve("taps.csv"), "taps");
+        final Path outputFile = tempDir.resolve("trips.csv");
+        final Path checkpointFile = tempDir.resolve("trips.checkpoint");
+        try (final CheckpointedTripsWriter writer = new CheckpointedTripsWriter(inputFile, runSettings, outputFile, checkpointFile, trip -> {
+        })) {
+            service.createTrips(generateSortedTaps(500).iterator(), writer, 100, service.pinFares(), new TripTotals());
+        }
+        Files.writeString(inputFile, "other taps");
+
+        try (final CheckpointedTripsWriter writer = new CheckpointedTripsWriter(inputFile, runSettings, outputFile, checkpointFile, trip -> {
+        })) {
+            assertThat(writer.getResumeCheckpoint()).isEmpty();
+        }
+    }
+
+    @Test
+    void testCheckpointWithDifferentMatchingSettingsIsIgnored(@TempDir final Path tempDir) throws Exception {
+        final TripsCreationService service = new TripsCreationService(stopLengthFareCalculator(), tripsMatchingConfig);
+        final Path inputFile = Files.writeString(tempDir.resolve("taps.csv"), "taps");
+        final Path outputFile = tempDir.resolve("trips.csv");
+        final Path checkpointFile = tempDir.resolve("trips.checkpoint");
+        try (final CheckpointedTripsWriter writer = new CheckpointedTripsWriter(inputFile,
+                service.checkpointSettings(service.pinFares()), outputFile, checkpointFile, trip -> {
+        })) {
+            service.createTrips(generateSortedTaps(500).iterator(), writer, 100, service.pinFares(), new TripTotals());
+        }
+        tripsMatchingConfig.setDropDuplicateTaps(false);
+
+        try (final CheckpointedTripsWriter writer = new CheckpointedTripsWriter(inputFile,
+                service.checkpointSettings(service.pinFares()), outputFile, checkpointFile, trip -> {
+        })) {
+            assertThat(writer.getResumeCheckpoint()).isEmpty();
+        }
+    }
+
+    @Test
+    void testCheckpointIsOnlyResumedWithSameFares(@TempDir final Path tempDir) throws Exception {
+        final FareMatrixUtils fareMatrixUtils = new FareMatrixUtils(new TripsFareConfig());
+        final TripsCreationService service = new TripsCreationService(new DefaultFareCalculator(), tripsMatchingConfig);
+        final Path inputFile = Files.writeString(tempDir.resolve("taps.csv"), "taps");
+        final Path outputFile = tempDir.resolve("trips.csv");
+        final Path checkpointFile = tempDir.resolve("trips.checkpoint");
+        try (final CheckpointedTripsWriter writer = new CheckpointedTripsWriter(inputFile,
+                service.checkpointSettings(service.pinFares()), outputFile, checkpointFile, trip -> {
+        })) {
+            service.createTrips(generateSortedTaps(500).iterator(), writer, 100, service.pinFares(), new TripTotals());
+        }
+
+        // reloading the same fares publishes a new snapshot version, which must not invalidate the checkpoint
+        fareMatrixUtils.publish(FareMatrixUtils.getFareMatrix(), "reload");
+        try (final CheckpointedTripsWriter writer = new CheckpointedTripsWriter(inputFile,
+                service.checkpointSettings(service.pinFares()), outputFile, checkpointFile, trip -> {
+        })) {
+            assertThat(writer.getResumeCheckpoint()).isPresent();
+        }
+
+        fareMatrixUtils.publish(Map.of("Stop1", Map.of("Stop2", 9.99)), "changed");
+        try (final CheckpointedTripsWriter writer = new CheckpointedTripsWriter(inputFile,
+                service.checkpointSettings(service.pinFares()), outputFile, checkpointFile, trip -> {
+        })) {
+            assertThat(writer.getResumeCheckpoint()).isEmpty();
+        }
+    }
+
+    /**
+     * @return the index the mocked fare calculator resolves a stop ID to: "Stop1" is 0, "Stop2" is 1 and so on
+     */
+    private static int stop(final String stopId) {
+        return stopId != null ? Integer.parseInt(stopId.substring("Stop".length())) - 1 : -1;
+    }
+
+    private static FareCalculator stopLengthFareCalculator() {
+        return new FareCalculator() {
+            @Override
+            public double calculateFare(final String fromStop, final String toStop) {
+                return calculateFare(stopIndex(fromStop), stopIndex(toStop));
+            }
+
+            @Override
+            public double calculateMaxFare(final String stopId) {
+                return calculateMaxFare(stopIndex(stopId));
+            }
+
+            @Override
+            public int stopIndex(final String stopId) {
+                return stopId != null ? stopId.length() : -1;
+            }
+
+            @Override
+            public double calculateFare(final int fromStopIndex, final int toStopIndex) {
+                return fromStopIndex + toStopIndex / 10.0;
+            }
+
+            @Override
+            public double calculateMaxFare(final int stopIndex) {
+                return stopIndex * 2.0;
+            }
+        };
+    }
+
+    private static List<Tap> generateSortedTaps(final int count) {
+        final Random random = new Random(42);
+        final List<Tap> taps = new ArrayList<>(count);
+        LocalDateTime dateTime = LocalDateTime.parse("22-01-2023 06:00:00", formatter);
+        for (int i = 0; i < count; i++) {
+            dateTime = dateTime.plusSeconds(random.nextInt(120));
+            taps.add(new Tap(i, dateTime, random.nextBoolean() ? TapType.ON : TapType.OFF, "Stop" + random.nextInt(5),
+                    "Company1", "Bus" + random.nextInt(3), "41111111111111" + (10 + random.nextInt(50))));
+        }
+        return taps;
+    }
+}
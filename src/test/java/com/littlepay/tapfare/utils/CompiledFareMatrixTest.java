@@ -0,0 +1,79 @@
+package com.littlepay.tapfare.utils;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CompiledFareMatrixTest {
+
+    private CompiledFareMatrix compiledFareMatrix;
+
+    @BeforeEach
+    void setUp() {
+        compiledFareMatrix = CompiledFareMatrix.compile(Map.of(
+                "Stop1", Map.of("Stop2", 3.25, "Stop3", 7.30),
+                "Stop2", Map.of("Stop1", 3.25, "Stop3", 5.50),
+                "Stop3", Map.of("Stop1", 7.30, "Stop2", 5.50)
+        ));
+    }
+
+    @Test
+    void testStopDictionary() {
+        assertThat(compiledFareMatrix.stopCount()).isEqualTo(3);
+        assertThat(compiledFareMatrix.getStopIds()).containsExactly("Stop1", "Stop2", "Stop3");
+        assertThat(compiledFareMatrix.stopIdAt(compiledFareMatrix.indexOf("Stop2"))).isEqualTo("Stop2");
+        assertThat(compiledFareMatrix.indexOf("Stop4")).isEqualTo(CompiledFareMatrix.UNKNOWN_STOP);
+        assertThat(compiledFareMatrix.indexOf(null)).isEqualTo(CompiledFareMatrix.UNKNOWN_STOP);
+    }
+
+    @Test
+    void testFareLookup() {
+        final int stop1 = compiledFareMatrix.indexOf("Stop1");
+        final int stop2 = compiledFareMatrix.indexOf("Stop2");
+        final int stop3 = compiledFareMatrix.indexOf("Stop3");
+
+        assertThat(compiledFareMatrix.fare(stop1, stop2)).isEqualTo(3.25);
+        assertThat(compiledFareMatrix.fare(stop3, stop2)).isEqualTo(5.50);
+        assertThat(compiledFareMatrix.fare(stop1, stop1)).isEqualTo(0.0);
+        assertThat(compiledFareMatrix.fare(stop1, CompiledFareMatrix.UNKNOWN_STOP)).isEqualTo(0.0);
+        assertThat(compiledFareMatrix.fare(stop1, compiledFareMatrix.stopCount())).isEqualTo(0.0);
+    }
+
+    @Test
+    void testPrecomputedMaxFare() {
+        assertThat(compiledFareMatrix.maxFare(compiledFareMatrix.indexOf("Stop1"))).isEqualTo(7.30);
+        assertThat(compiledFareMatrix.maxFare(compiledFareMatrix.indexOf("Stop2"))).isEqualTo(5.50);
+        assertThat(compiledFareMatrix.maxFare(compiledFareMatrix.indexOf("Stop3"))).isEqualTo(7.30);
+        assertThat(compiledFareMatrix.maxFare(CompiledFareMatrix.UNKNOWN_STOP)).isEqualTo(0.0);
+        assertThat(compiledFareMatrix.maxFare(compiledFareMatrix.stopCount())).isEqualTo(0.0);
+    }
+
+    @Test
+    void testFingerprint() {
+        final CompiledFareMatrix sameFares = CompiledFareMatrix.compile(Map.of(
+                "Stop3", Map.of("Stop2", 5.50, "Stop1", 7.30),
+                "Stop2", Map.of("Stop3", 5.50, "Stop1", 3.25),
+                "Stop1", Map.of("Stop3", 7.30, "Stop2", 3.25)
+        ));
+        final CompiledFareMatrix otherFare = CompiledFareMatrix.compile(Map.of(
+                "Stop1", Map.of("Stop2", 3.25, "Stop3", 7.35),
+                "Stop2", Map.of("Stop1", 3.25, "Stop3", 5.50),
+                "Stop3", Map.of("Stop1", 7.35, "Stop2", 5.50)
+        ));
+
+        assertThat(compiledFareMatrix.fingerprint()).isEqualTo(sameFares.fingerprint());
+        assertThat(compiledFareMatrix.fingerprint()).isNotEqualTo(otherFare.fingerprint());
+        assertThat(compiledFareMatrix.fingerprint()).isNotEqualTo(CompiledFareMatrix.empty().fingerprint());
+    }
+
+    @Test
+    void testEmptyMatrix() {
+        final CompiledFareMatrix empty = CompiledFareMatrix.empty();
+
+        assertThat(empty.stopCount()).isZero();
+        assertThat(empty.maxFare(empty.indexOf("Stop1"))).isEqualTo(0.0);
+    }
+}
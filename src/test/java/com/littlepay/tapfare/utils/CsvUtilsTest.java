@@ -1,5 +1,6 @@
 package com.littlepay.tapfare.utils;
 
+import com.littlepay.tapfare.constant.CsvCompression;
 import com.littlepay.tapfare.constant.TapType;
 import com.littlepay.tapfare.constant.TripStatus;
 import com.littlepay.tapfare.exceptions.CsvProcessingException;
@@ -12,11 +13,21 @@ import org.junit.jupiter.api.io.TempDir;
 import org.mockito.InjectMocks;
 import org.mockito.junit.jupiter.MockitoExtension;
 
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.junit.jupiter.api.Assertions.assertThrows;
@@ -25,7 +36,7 @@ import static org.junit.jupiter.api.Assertions.assertThrows;
 class CsvUtilsTest {
 
     @InjectMocks
-    private CsvUtils csvUtils;
+    private CsvUtils csvUtils = new CsvUtils();
 
     @TempDir
     Path tempDir;
@@ -70,6 +81,229 @@ class CsvUtilsTest {
         assertThat(exception.getMessage()).contains("Error reading from CSV file: ");
     }
 
+    @Test
+    void testStreamTapsFromCsv_mergesSpilledChunksInTimeOrder() throws Exception {
+
+        final Path inputCsv = tempDir.resolve("unsorted_taps.csv");
+        Files.write(inputCsv, List.of(
+                "ID,DateTimeUTC,TapType,StopId,CompanyId,BusID,PAN", // Header
+                "1,22-01-2023 13:00:00,ON,Stop1,Company1,Bus37,5500005555555559",
+                "2,22-01-2023 09:20:00,ON,Stop3,Company1,Bus36,4111111111111111",
+                "3,24-01-2023 16:30:00,OFF,Stop2,Company1,Bus37,5500005555555559",
+                "4,22-01-2023 13:05:00,OFF,Stop2,Company1,Bus37,5500005555555559",
+                "5,23-01-2023 08:00:00,ON,Stop1,Company1,Bus37,4111111111111111",
+                "6,22-01-2023 13:00:00,ON,Stop2,Company1,Bus38,4111111111111112"
+        ));
+
+        final List<Tap> expected = csvUtils.readTapsFromCsv(inputCsv.toString());
+        final List<Tap> streamed = new ArrayList<>();
+        try (final SortedTapIterator iterator = csvUtils.streamTapsFromCsv(inputCsv.toString(), 2)) {
+            iterator.forEachRemaining(streamed::add);
+        }
+
+        assertThat(streamed).containsExactlyElementsOf(expected);
+        assertThat(streamed).extracting(Tap::getId).containsExactly(2L, 1L, 6L, 4L, 5L, 3L);
+    }
+
+    @Test
+    void testStreamTapsFromCsv_invalidDate() throws Exception {
+
+        final Path inputCsv = tempDir.resolve("invalid_streamed_taps.csv");
+        Files.write(inputCsv, List.of(
+                "ID,DateTimeUTC,TapType,StopId,CompanyId,BusID,PAN", // Header
+                "1,22-01-2023 13:00:00,ON,Stop1,Company1,Bus37,5500005555555559",
+                "2,22-01-2023 13:05:00,OFF,Stop2,Company1,Bus37,5500005555555559",
+                "3,INVALID_DATE,ON,Stop1,Company1,Bus37,5500005555555559"
+        ));
+
+        final CsvProcessingException exception = Assertions.assertThrows(CsvProcessingException.class,
+                () -> csvUtils.streamTapsFromCsv(inputCsv.toString(), 1));
+        assertThat(exception.getMessage()).contains("Error reading from CSV file: ");
+    }
+
+    @Test
+    void testStreamTapsFromCsv_rejectsNonPositiveChunkSize() {
+        final String inputCsv = tempDir.resolve("taps.csv").toString();
+
+        Assertions.assertThrows(IllegalArgumentException.class, () -> csvUtils.streamTapsFromCsv(inputCsv, 0));
+    }
+
+    @Test
+    void testReadTapsFromCsvParallel_keepsSequentialOrderOfEqualTimestamps() throws Exception {
+
+        final Path inputCsv = tempDir.resolve("large_taps.csv");
+        final StringBuilder csv = new StringBuilder("ID,DateTimeUTC,TapType,StopId,CompanyId,BusID,PAN\n");
+        for (int i = 1; i <= 60_000; i++) {
+            csv.append(i).append(",%02d-01-2023 13:%02d:00,%s,Stop1,Company1,Bus37,%016d\n"
+                    .formatted(22 + i % 3, (i * 7) % 5, i % 2 == 0 ? "OFF" : "ON", i % 100));
+        }
+        Files.writeString(inputCsv, csv);
+
+        final List<Tap> taps = csvUtils.readTapsFromCsvParallel(inputCsv.toString(), 3);
+
+        assertThat(taps).hasSize(60_000).containsExactlyElementsOf(csvUtils.readTapsFromCsvFast(inputCsv.toString()));
+    }
+
+    @Test
+    void testReadTapsFromCsvParallel_invalidDate() throws Exception {
+
+        final Path inputCsv = tempDir.resolve("invalid_large_taps.csv");
+        final StringBuilder csv = new StringBuilder("ID,DateTimeUTC,TapType,StopId,CompanyId,BusID,PAN\n");
+        for (int i = 1; i <= 60_000; i++) {
+            csv.append(i).append(i == 50_000 ? ",INVALID_DATE" : ",22-01-2023 13:00:00").append(",ON,Stop1,Company1,Bus37,5500005555555559\n");
+        }
+        Files.writeString(inputCsv, csv);
+
+        final CsvProcessingException exception = Assertions.assertThrows(CsvProcessingException.class,
+                () -> csvUtils.readTapsFromCsvParallel(inputCsv.toString(), 3));
+        assertThat(exception.getMessage()).contains("Error reading from CSV file: ");
+    }
+
+    @Test
+    void testReadTapsFromCsv_gzip() throws Exception {
+
+        final List<String> lines = List.of(
+                "ID,DateTimeUTC,TapType,StopId,CompanyId,BusID,PAN", // Header
+                "1,22-01-2023 13:00:00,ON,Stop1,Company1,Bus37,5500005555555559",
+                "2,22-01-2023 09:20:00,ON,Stop3,Company1,Bus36,4111111111111111",
+                "3,22-01-2023 13:05:00,OFF,Stop2,Company1,Bus37,5500005555555559"
+        );
+        final Path inputCsv = tempDir.resolve("taps.csv");
+        Files.write(inputCsv, lines);
+        final Path inputGzip = tempDir.resolve("taps.csv.gz");
+        try (final Writer writer = new OutputStreamWriter(new GZIPOutputStream(Files.newOutputStream(inputGzip)))) {
+            writer.write(String.join("\n", lines));
+        }
+        final List<Tap> expected = csvUtils.readTapsFromCsv(inputCsv.toString());
+
+        assertThat(csvUtils.readTapsFromCsv(inputGzip.toString())).containsExactlyElementsOf(expected);
+        assertThat(csvUtils.readTapsFromCsvFast(inputGzip.toString())).containsExactlyElementsOf(expected);
+        assertThat(csvUtils.readTapsFromCsvParallel(inputGzip.toString(), 4)).containsExactlyElementsOf(expected);
+        final List<Tap> batchTaps = new ArrayList<>();
+        csvUtils.readTapBatchFromCsv(inputGzip.toString()).forEach(batchTaps::add);
+        assertThat(batchTaps).containsExactlyElementsOf(expected);
+        final List<Tap> streamed = new ArrayList<>();
+        try (final SortedTapIterator iterator = csvUtils.streamTapsFromCsv(inputGzip.toString(), 2)) {
+            iterator.forEachRemaining(streamed::add);
+        }
+        assertThat(streamed).containsExactlyElementsOf(expected);
+    }
+
+    @Test
+    void testReadTapsFromCsv_corruptGzip() throws Exception {
+
+        final Path inputGzip = tempDir.resolve("corrupt_taps.csv.gz");
+        final ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        try (final GZIPOutputStream gzip = new GZIPOutputStream(compressed)) {
+            gzip.write(("ID,DateTimeUTC,TapType,StopId,CompanyId,BusID,PAN\n"
+                    + "1,22-01-2023 13:00:00,ON,Stop1,Company1,Bus37,5500005555555559\n".repeat(1000)).getBytes(StandardCharsets.US_ASCII));
+        }
+        Files.write(inputGzip, Arrays.copyOf(compressed.toByteArray(), compressed.size() / 2));
+
+        final CsvProcessingException exception = Assertions.assertThrows(CsvProcessingException.class,
+                () -> csvUtils.readTapsFromCsvFast(inputGzip.toString()));
+        assertThat(exception.getMessage()).contains("Error reading from CSV file: ");
+        assertThat(exception).hasRootCauseInstanceOf(EOFException.class);
+    }
+
+    @Test
+    void testReadTapsFromCsv_compressionOverridesExtension() throws Exception {
+
+        final Path inputCsv = tempDir.resolve("plain_taps.csv.gz");
+        Files.write(inputCsv, List.of(
+                "ID,DateTimeUTC,TapType,StopId,CompanyId,BusID,PAN", // Header
+                "1,22-01-2023 13:00:00,ON,Stop1,Company1,Bus37,5500005555555559"
+        ));
+
+        assertThat(new CsvUtils(CsvCompression.NONE).readTapsFromCsvFast(inputCsv.toString())).extracting(Tap::getId).containsExactly(1L);
+    }
+
+    @Test
+    void testReadTapsFromCsvFast_quotedFieldsReadLikeOpenCsv() throws Exception {
+
+        final Path inputCsv = tempDir.resolve("quoted_taps.csv");
+        Files.write(inputCsv, List.of(
+                "ID,DateTimeUTC,TapType,StopId,CompanyId,BusID,PAN", // Header
+                "1,22-01-2023 13:00:00,ON,\"Stop, 1\",Company1,Bus37,5500005555555559",
+                "\"2\",22-01-2023 09:20:00,ON,Stop3,\"Company \"\"One\"\"\",Bus36,4111111111111111"
+        ));
+        final List<Tap> expected = csvUtils.readTapsFromCsv(inputCsv.toString());
+
+        assertThat(expected).extracting(Tap::getStopId).containsExactly("Stop3", "Stop, 1");
+        assertThat(csvUtils.readTapsFromCsvFast(inputCsv.toString())).containsExactlyElementsOf(expected);
+        assertThat(csvUtils.readTapsFromCsvParallel(inputCsv.toString(), 4)).containsExactlyElementsOf(expected);
+        final List<Tap> batchTaps = new ArrayList<>();
+        csvUtils.readTapBatchFromCsv(inputCsv.toString()).forEach(batchTaps::add);
+        assertThat(batchTaps).containsExactlyElementsOf(expected);
+    }
+
+    @Test
+    void testReadTapsFromCsvParallel_quotedFieldInLaterRangeReadLikeOpenCsv() throws Exception {
+
+        final Path inputCsv = tempDir.resolve("large_quoted_taps.csv");
+        final StringBuilder csv = new StringBuilder("ID,DateTimeUTC,TapType,StopId,CompanyId,BusID,PAN\n");
+        for (int i = 1; i <= 60_000; i++) {
+            csv.append(i).append(",22-01-2023 13:%02d:00,ON,%s,Company1,Bus37,5500005555555559\n"
+                    .formatted(i % 60, i == 50_000 ? "\"Stop1\"" : "Stop1"));
+        }
+        Files.writeString(inputCsv, csv);
+
+        assertThat(csvUtils.readTapsFromCsvParallel(inputCsv.toString(), 3))
+                .hasSize(60_000)
+                .containsExactlyElementsOf(csvUtils.readTapsFromCsv(inputCsv.toString()));
+    }
+
+    @Test
+    void testReadTapsFromCsvFast_idOfMoreThan18DigitsReadLikeOpenCsv() throws Exception {
+
+        final Path inputCsv = tempDir.resolve("long_id_taps.csv");
+        Files.write(inputCsv, List.of(
+                "ID,DateTimeUTC,TapType,StopId,CompanyId,BusID,PAN", // Header
+                "1234567890123456789,22-01-2023 13:00:00,ON,Stop1,Company1,Bus37,5500005555555559"
+        ));
+
+        assertThat(csvUtils.readTapsFromCsvFast(inputCsv.toString())).extracting(Tap::getId).containsExactly(1234567890123456789L);
+    }
+
+    @Test
+    void testReadTapsFromCsvFast_blankLineFailsLikeOpenCsv() throws Exception {
+
+        final Path inputCsv = tempDir.resolve("blank_line_taps.csv");
+        Files.write(inputCsv, List.of(
+                "ID,DateTimeUTC,TapType,StopId,CompanyId,BusID,PAN", // Header
+                "1,22-01-2023 13:00:00,ON,Stop1,Company1,Bus37,5500005555555559",
+                "",
+                "2,22-01-2023 13:05:00,OFF,Stop2,Company1,Bus37,5500005555555559"
+        ));
+
+        assertThrows(CsvProcessingException.class, () -> csvUtils.readTapsFromCsv(inputCsv.toString()));
+        assertThrows(CsvProcessingException.class, () -> csvUtils.readTapsFromCsvFast(inputCsv.toString()));
+    }
+
+    @Test
+    void testWriteTripsToCsv_gzip() throws Exception {
+
+        final List<Trip> trips = List.of(
+                new Trip(LocalDateTime.parse("22-01-2023 13:00:00", formatter), LocalDateTime.parse("22-01-2023 13:05:00", formatter),
+                        300, "Stop1", "Stop2", 3.25, "Company1", "Bus37", "5500005555555559", TripStatus.COMPLETED),
+                new Trip(LocalDateTime.parse("22-01-2023 09:20:00", formatter), null, 0, "Stop3", null, 7.3, "Company1",
+                        "Bus36", "4111111111111111", TripStatus.INCOMPLETE)
+        );
+        final Path outputCsv = tempDir.resolve("trips.csv");
+        csvUtils.writeTripsToCsv(trips, outputCsv.toString());
+        final Path outputGzip = tempDir.resolve("trips.csv.gz");
+        final Path fastOutputGzip = tempDir.resolve("fast_trips.csv.gz");
+
+        csvUtils.writeTripsToCsv(trips, outputGzip.toString());
+        new CsvUtils(CsvCompression.GZIP).writeTripsToCsvFast(trips, fastOutputGzip.toString());
+
+        for (final Path gzip : List.of(outputGzip, fastOutputGzip)) {
+            try (final InputStream input = new GZIPInputStream(Files.newInputStream(gzip))) {
+                assertThat(input.readAllBytes()).isEqualTo(Files.readAllBytes(outputCsv));
+            }
+        }
+    }
+
     @Test
     void testWriteTripsToCsv_success() throws Exception {
 
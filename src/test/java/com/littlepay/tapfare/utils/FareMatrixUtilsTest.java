@@ -1,17 +1,24 @@
 package com.littlepay.tapfare.utils;
 
 import com.littlepay.tapfare.config.TripsFareConfig;
+import com.littlepay.tapfare.exceptions.InvalidFareException;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Instant;
 import java.util.HashMap;
 import java.util.Map;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.mockito.Mockito.when;
 
 @ExtendWith(MockitoExtension.class)
@@ -21,6 +28,8 @@ class FareMatrixUtilsTest {
     private TripsFareConfig tripsFareConfig;
     @InjectMocks
     private FareMatrixUtils fareMatrixUtils;
+    @TempDir
+    Path tempDir;
 
     @BeforeEach
     void setUp() {
@@ -68,5 +77,72 @@ class FareMatrixUtilsTest {
         assertThat(FareMatrixUtils.getFareMatrix().get("Stop2").get("Stop3"))
                 .isEqualTo(FareMatrixUtils.getFareMatrix().get("Stop3").get("Stop2"));
     }
-}
 
+    @Test
+    void testPublishReplacesSnapshotWithoutTouchingPreviousOne() {
+        final FareSnapshot previous = FareMatrixUtils.getSnapshot();
+
+        final FareSnapshot published = fareMatrixUtils.publish(Map.of("Stop1", Map.of("Stop4", 2.50)), "test");
+
+        assertThat(published.version()).isEqualTo(previous.version() + 1);
+        assertThat(FareMatrixUtils.getSnapshot()).isSameAs(published);
+        assertThat(FareMatrixUtils.getFareMatrix()).containsOnlyKeys("Stop1", "Stop4");
+        assertThat(FareMatrixUtils.getFareMatrix().get("Stop4")).containsEntry("Stop1", 2.50);
+        assertThat(previous.fareMatrix().get("Stop1")).containsEntry("Stop2", 3.25);
+        assertThat(previous.compiledFareMatrix().fare(previous.compiledFareMatrix().indexOf("Stop1"),
+                previous.compiledFareMatrix().indexOf("Stop2"))).isEqualTo(3.25);
+    }
+
+    @Test
+    void testPublishRejectsInvalidFaresAndKeepsCurrentSnapshot() {
+        final FareSnapshot current = FareMatrixUtils.getSnapshot();
+
+        assertThrows(InvalidFareException.class, () -> fareMatrixUtils.publish(Map.of("Stop1", Map.of("Stop2", -1.0)), "test"));
+        assertThrows(InvalidFareException.class, () -> fareMatrixUtils.publish(Map.of(" ", Map.of("Stop2", 1.0)), "test"));
+        assertThrows(InvalidFareException.class, () -> fareMatrixUtils.publish(Map.of("Stop1", Map.of("Stop2", Double.NaN)), "test"));
+
+        assertThat(FareMatrixUtils.getSnapshot()).isSameAs(current);
+    }
+
+    @Test
+    void testReloadFromFile() throws Exception {
+        final Path fareFile = tempDir.resolve("fares.csv");
+        Files.writeString(fareFile, "FromStopId,ToStopId,Fare\nStop1,Stop2,4.00\nStop2,Stop5,1.75\n");
+        when(tripsFareConfig.getFareFilePath()).thenReturn(fareFile.toString());
+
+        final FareSnapshot reloaded = fareMatrixUtils.reloadFromFile();
+
+        assertThat(reloaded.source()).isEqualTo(fareFile.toString());
+        assertThat(FareMatrixUtils.getFareMatrix()).containsOnlyKeys("Stop1", "Stop2", "Stop5");
+        assertThat(FareMatrixUtils.getFareMatrix().get("Stop2")).containsEntry("Stop1", 4.00).containsEntry("Stop5", 1.75);
+    }
+
+    @Test
+    void testReloadFromFileRejectsInvalidFare() throws Exception {
+        final Path fareFile = tempDir.resolve("fares.csv");
+        Files.writeString(fareFile, "FromStopId,ToStopId,Fare\nStop1,Stop2,four\n");
+        when(tripsFareConfig.getFareFilePath()).thenReturn(fareFile.toString());
+        final FareSnapshot current = FareMatrixUtils.getSnapshot();
+
+        assertThrows(InvalidFareException.class, () -> fareMatrixUtils.reloadFromFile());
+        assertThat(FareMatrixUtils.getSnapshot()).isSameAs(current);
+    }
+
+    @Test
+    void testReloadIfChangedOnlyReloadsModifiedFile() throws Exception {
+        final Path fareFile = tempDir.resolve("fares.csv");
+        Files.writeString(fareFile, "FromStopId,ToStopId,Fare\nStop1,Stop2,4.00\n");
+        when(tripsFareConfig.getFareFilePath()).thenReturn(fareFile.toString());
+
+        fareMatrixUtils.reloadIfChanged();
+        final FareSnapshot loaded = FareMatrixUtils.getSnapshot();
+        fareMatrixUtils.reloadIfChanged();
+        assertThat(FareMatrixUtils.getSnapshot()).isSameAs(loaded);
+
+        Files.writeString(fareFile, "FromStopId,ToStopId,Fare\nStop1,Stop2,4.50\n");
+        Files.setLastModifiedTime(fareFile, FileTime.from(Instant.now().plusSeconds(60)));
+        fareMatrixUtils.reloadIfChanged();
+        assertThat(FareMatrixUtils.getSnapshot().version()).isEqualTo(loaded.version() + 1);
+        assertThat(FareMatrixUtils.getFareMatrix().get("Stop2")).containsEntry("Stop1", 4.50);
+    }
+}
@@ -0,0 +1,165 @@
+package com.littlepay.tapfare.utils;
+
+import com.littlepay.tapfare.exceptions.CsvProcessingException;
+import com.littlepay.tapfare.model.Tap;
+import com.littlepay.tapfare.model.TapBatch;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class FastTapCsvParserTest {
+
+    private final CsvUtils csvUtils = new CsvUtils();
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void testParseProducesSameTapsAsOpenCsv() throws Exception {
+
+        final Path inputCsv = tempDir.resolve("taps.csv");
+        Files.write(inputCsv, List.of(
+                "ID,DateTimeUTC,TapType,StopId,CompanyId,BusID,PAN", // Header
+                "1,22-01-2023 13:00:00,ON,Stop1,Company1,Bus37,5500005555555559",
+                "2,22-01-2023 13:05:00,OFF,Stop2,Company1,Bus37,5500005555555559",
+                "3,22-01-2023 09:20:00,ON,Stop3,Company1,Bus36,4111111111111111",
+                "4,23-01-2023 08:00:00,ON,Stop1,Company1,Bus37,4111111111111111",
+                "5,23-01-2023 08:02:00,OFF,Stop1,Company1,Bus37,4111111111111111",
+                "6,24-01-2023 16:30:00,OFF,Stop2,Company1,Bus37,5500005555555559"
+        ));
+
+        assertThat(csvUtils.readTapsFromCsvFast(inputCsv.toString()))
+                .containsExactlyElementsOf(csvUtils.readTapsFromCsv(inputCsv.toString()));
+    }
+
+    @Test
+    void testParseBatchProducesSameTapsAsOpenCsv() throws Exception {
+
+        final Path inputCsv = tempDir.resolve("batch_taps.csv");
+        Files.write(inputCsv, List.of(
+                "ID,DateTimeUTC,TapType,StopId,CompanyId,BusID,PAN", // Header
+                "1,22-01-2023 13:00:00,ON,Stop1,Company1,Bus37,5500005555555559",
+                "2,22-01-2023 13:05:00,OFF,Stop2,Company1,Bus37,5500005555555559",
+                "3,22-01-2023 09:20:00,ON,Stop3,Company1,Bus36,0000411111111111",
+                "4,23-01-2023 08:00:00,ON,Stop1,Company2,Bus37,4111111111111111111",
+                "5,22-01-2023 09:20:00,OFF,Stop1,Company1,Bus37,PAN-5"
+        ));
+
+        final TapBatch batch = csvUtils.readTapBatchFromCsv(inputCsv.toString());
+
+        final List<Tap> batchTaps = new ArrayList<>();
+        batch.forEach(batchTaps::add);
+        assertThat(batchTaps).containsExactlyElementsOf(csvUtils.readTapsFromCsv(inputCsv.toString()));
+        assertThat(batch.getStopCode(1)).isEqualTo(batch.getStopCode(2));
+    }
+
+    @Test
+    void testParseHandlesCrLfAndMissingTrailingNewline() throws Exception {
+
+        final Path inputCsv = tempDir.resolve("crlf_taps.csv");
+        Files.writeString(inputCsv, "ID,DateTimeUTC,TapType,StopId,CompanyId,BusID,PAN\r\n"
+                + "1,22-01-2023 13:00:00,ON,Stop1,Company1,Bus37,5500005555555559\r\n"
+                + "2,31-12-2023 23:59:59,OFF,Stop2,Company1,Bus37,5500005555555559");
+
+        final List<Tap> taps = new FastTapCsvParser().parse(inputCsv);
+
+        assertThat(taps).containsExactlyElementsOf(csvUtils.readTapsFromCsv(inputCsv.toString()));
+        assertThat(taps.get(1).getPan()).isEqualTo("5500005555555559");
+        assertThat(taps.get(0).getPan()).isSameAs(taps.get(1).getPan());
+    }
+
+    @Test
+    void testParseStreamProducesSameTapsAsFile() throws Exception {
+
+        final Path inputCsv = tempDir.resolve("streamed_taps.csv");
+        final StringBuilder csv = new StringBuilder("ID,DateTimeUTC,TapType,StopId,CompanyId,BusID,PAN\n");
+        for (int i = 1; i <= 100_000; i++) {
+            csv.append(i).append(",22-01-2023 13:%02d:%02d,%s,Stop%d,Company1,Bus37,%016d\n"
+                    .formatted(i % 60, i % 59, i % 2 == 0 ? "OFF" : "ON", i % 3 + 1, i % 1000));
+        }
+        csv.setLength(csv.length() - 1);
+        Files.writeString(inputCsv, csv);
+
+        final List<Tap> fileTaps = new FastTapCsvParser().parse(inputCsv);
+        try (final InputStream input = Files.newInputStream(inputCsv)) {
+            assertThat(new FastTapCsvParser().parse(input)).hasSize(100_000).containsExactlyElementsOf(fileTaps);
+        }
+        final List<Tap> batchTaps = new ArrayList<>();
+        try (final InputStream input = Files.newInputStream(inputCsv)) {
+            new FastTapCsvParser().parseBatch(input).forEach(batchTaps::add);
+        }
+        assertThat(batchTaps).containsExactlyElementsOf(fileTaps);
+    }
+
+    @Test
+    void testSplitLinesAlignsRangesToLineStarts() throws Exception {
+
+        final Path inputCsv = tempDir.resolve("large_taps.csv");
+        final StringBuilder csv = new StringBuilder("ID,DateTimeUTC,TapType,StopId,CompanyId,BusID,PAN\n");
+        for (int i = 1; i <= 40_000; i++) {
+            csv.append(i).append(",22-01-2023 13:%02d:00,%s,Stop%d,Company1,Bus37,%016d\n"
+                    .formatted(i % 60, i % 2 == 0 ? "OFF" : "ON", i % 3 + 1, i % 1000));
+        }
+        Files.writeString(inputCsv, csv);
+
+        final List<FastTapCsvParser.ByteRange> ranges = FastTapCsvParser.splitLines(inputCsv, 4);
+
+        assertThat(ranges).hasSize(2);
+        assertThat(ranges.get(0).start()).isZero();
+        assertThat(ranges.get(1).start()).isEqualTo(ranges.get(0).end());
+        assertThat(ranges.get(1).end()).isEqualTo(Files.size(inputCsv));
+        assertThat(Files.readAllBytes(inputCsv)[(int) ranges.get(1).start() - 1]).isEqualTo((byte) '\n');
+        final FastTapCsvParser parser = new FastTapCsvParser();
+        final List<Tap> rangeTaps = new ArrayList<>(parser.parse(inputCsv, ranges.get(0)));
+        rangeTaps.addAll(parser.parse(inputCsv, ranges.get(1)));
+        assertThat(rangeTaps).containsExactlyElementsOf(parser.parse(inputCsv));
+    }
+
+    @Test
+    void testParseInvalidDate() throws Exception {
+
+        final Path inputCsv = tempDir.resolve("invalid_taps.csv");
+        Files.write(inputCsv, List.of(
+                "ID,DateTimeUTC,TapType,StopId,CompanyId,BusID,PAN", // Header
+                "1,32-01-2023 13:00:00,ON,Stop1,Company1,Bus37,5500005555555559"
+        ));
+
+        final CsvProcessingException exception = Assertions.assertThrows(CsvProcessingException.class,
+                () -> new FastTapCsvParser().parse(inputCsv));
+        assertThat(exception.getMessage()).isEqualTo("Error parsing date for tap ID: 1");
+    }
+
+    @Test
+    void testParseInvalidTapType() throws Exception {
+
+        final Path inputCsv = tempDir.resolve("invalid_type_taps.csv");
+        Files.write(inputCsv, List.of(
+                "ID,DateTimeUTC,TapType,StopId,CompanyId,BusID,PAN", // Header
+                "7,22-01-2023 13:00:00,IN,Stop1,Company1,Bus37,5500005555555559"
+        ));
+
+        final CsvProcessingException exception = Assertions.assertThrows(CsvProcessingException.class,
+                () -> new FastTapCsvParser().parse(inputCsv));
+        assertThat(exception.getMessage()).isEqualTo("Invalid data found in line for tap ID: 7");
+    }
+
+    @Test
+    void testParseRejectsQuotedFields() throws Exception {
+
+        final Path inputCsv = tempDir.resolve("quoted_taps.csv");
+        Files.write(inputCsv, List.of(
+                "ID,DateTimeUTC,TapType,StopId,CompanyId,BusID,PAN", // Header
+                "1,22-01-2023 13:00:00,ON,\"Stop1\",Company1,Bus37,5500005555555559"
+        ));
+
+        Assertions.assertThrows(CsvProcessingException.class, () -> new FastTapCsvParser().parse(inputCsv));
+    }
+}
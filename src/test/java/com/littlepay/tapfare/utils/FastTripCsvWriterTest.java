@@ -0,0 +1,102 @@
+package com.littlepay.tapfare.utils;
+
+import com.littlepay.tapfare.constant.TripStatus;
+import com.littlepay.tapfare.exceptions.CsvProcessingException;
+import com.littlepay.tapfare.model.Trip;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class FastTripCsvWriterTest {
+
+    private final CsvUtils csvUtils = new CsvUtils();
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void testWriteProducesSameBytesAsOpenCsv() throws Exception {
+
+        final LocalDateTime start = LocalDateTime.of(2023, 1, 22, 9, 5, 7);
+        final List<Trip> trips = new ArrayList<>(List.of(
+                new Trip(start, start.plusMinutes(5), 300, "Stop1", "Stop2", 3.25, "Company1", "Bus37", "5500005555555559", TripStatus.COMPLETED),
+                new Trip(start.plusDays(1), start.plusDays(1).plusMinutes(2), 0, "Stop1", "Stop1", 0.0, "Company1", "Bus37", "4111111111111111", TripStatus.CANCELLED),
+                new Trip(start, null, 0, "Stop3", null, 7.30, "Company1", "Bus36", "4111111111111111", TripStatus.INCOMPLETE),
+                new Trip(null, start.plusDays(2), 0, null, "Stop2", 5.5, "Company1", "Bus37", "5500005555555559", TripStatus.INCOMPLETE),
+                new Trip(start, start.plusHours(14), -1, "Stop \"A\", North", "Stöp2", 1234567.89, null, "Bus\n37", "", TripStatus.COMPLETED),
+                new Trip(start, start, 0, "Stop1", "Stop2", 0.1 + 0.2, "Company1", "Bus37", "1", TripStatus.COMPLETED),
+                new Trip(start, start, 0, "Stop1", "Stop2", 1.0E7, "Company1", "Bus37", "1", TripStatus.COMPLETED),
+                new Trip(start, start, 0, "Stop1", "Stop2", -0.0, "Company1", "Bus37", "1", TripStatus.COMPLETED)
+        ));
+        for (int cents = 0; cents < 10_000; cents += 7) {
+            trips.add(new Trip(start.plusSeconds(cents * 37L), null, cents, "Stop1", null, cents / 100.0, "Company1", "Bus37", "1", TripStatus.INCOMPLETE));
+        }
+
+        final Path expected = tempDir.resolve("expected.csv");
+        final Path actual = tempDir.resolve("actual.csv");
+        csvUtils.writeTripsToCsv(trips, expected.toString());
+        csvUtils.writeTripsToCsvFast(trips, actual.toString());
+
+        assertThat(Files.readAllBytes(actual)).isEqualTo(Files.readAllBytes(expected));
+    }
+
+    @Test
+    void testWriteSpansMultipleBufferFlushes() throws Exception {
+
+        final LocalDateTime start = LocalDateTime.of(2023, 1, 22, 0, 0);
+        final List<Trip> trips = new ArrayList<>();
+        for (int i = 0; i < 60_000; i++) {
+            trips.add(new Trip(start.plusMinutes(i), start.plusMinutes(i + 3), 180, "Stop" + i % 50, "Stop" + (i + 1) % 50,
+                    i % 1000 / 100.0, "Company1", "Bus" + i % 97, String.valueOf(4_000_000_000_000_000L + i), TripStatus.COMPLETED));
+        }
+
+        final Path expected = tempDir.resolve("expected.csv");
+        final Path actual = tempDir.resolve("actual.csv");
+        csvUtils.writeTripsToCsv(trips, expected.toString());
+        csvUtils.writeTripsToCsvFast(trips, actual.toString());
+
+        assertThat(Files.size(actual)).isGreaterThan(4L * 1024 * 1024);
+        assertThat(Files.readAllBytes(actual)).isEqualTo(Files.readAllBytes(expected));
+    }
+
+    @Test
+    void testResumeAtDiscardsBytesAfterOffset() throws Exception {
+
+        final LocalDateTime start = LocalDateTime.of(2023, 1, 22, 9, 5, 7);
+        final Trip first = new Trip(start, start.plusMinutes(5), 300, "Stop1", "Stop2", 3.25, "Company1", "Bus37", "5500005555555559", TripStatus.COMPLETED);
+        final Trip second = new Trip(start, null, 0, "Stop3", null, 7.30, "Company1", "Bus36", "4111111111111111", TripStatus.INCOMPLETE);
+        final Path expected = tempDir.resolve("expected.csv");
+        final Path actual = tempDir.resolve("actual.csv");
+        csvUtils.writeTripsToCsvFast(List.of(first, second), expected.toString());
+
+        final long offset;
+        try (final FastTripCsvWriter writer = new FastTripCsvWriter(actual)) {
+            writer.write(first);
+            writer.sync();
+            offset = writer.size();
+            writer.write(first);
+        }
+        try (final FastTripCsvWriter writer = FastTripCsvWriter.resumeAt(actual, offset)) {
+            writer.write(second);
+        }
+
+        assertThat(Files.readAllBytes(actual)).isEqualTo(Files.readAllBytes(expected));
+        Assertions.assertThrows(CsvProcessingException.class, () -> FastTripCsvWriter.resumeAt(actual, Files.size(actual) + 1));
+    }
+
+    @Test
+    void testWriteInvalidPath() {
+
+        final CsvProcessingException exception = Assertions.assertThrows(CsvProcessingException.class,
+                () -> csvUtils.writeTripsToCsvFast(List.of(), "/invalid_path/trips.csv"));
+        assertThat(exception.getMessage()).contains("Error writing to CSV file: ");
+    }
+}
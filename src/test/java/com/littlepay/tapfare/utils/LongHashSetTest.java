@@ -0,0 +1,42 @@
+package com.littlepay.tapfare.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class LongHashSetTest {
+
+    @Test
+    void testBehavesLikeHashSetUnderRandomAdds() {
+        final Random random = new Random(42);
+        final LongHashSet set = new LongHashSet();
+        final Set<Long> expected = new HashSet<>();
+        for (int i = 0; i < 200_000; i++) {
+            final long element = random.nextInt(50_000) - 25_000L;
+            assertThat(set.contains(element)).isEqualTo(expected.contains(element));
+            assertThat(set.add(element)).isEqualTo(expected.add(element));
+        }
+
+        assertThat(set.size()).isEqualTo(expected.size());
+        expected.forEach(element -> assertThat(set.contains(element)).isTrue());
+    }
+
+    @Test
+    void testHoldsExtremeElements() {
+        final LongHashSet set = new LongHashSet(1);
+
+        assertThat(set.add(Long.MIN_VALUE)).isTrue();
+        assertThat(set.add(Long.MAX_VALUE)).isTrue();
+        assertThat(set.add(0L)).isTrue();
+        assertThat(set.add(Long.MIN_VALUE)).isFalse();
+
+        assertThat(set.contains(Long.MIN_VALUE)).isTrue();
+        assertThat(set.contains(Long.MAX_VALUE)).isTrue();
+        assertThat(set.contains(1L)).isFalse();
+        assertThat(set.size()).isEqualTo(3);
+    }
+}
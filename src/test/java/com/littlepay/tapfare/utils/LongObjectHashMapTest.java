@@ -0,0 +1,72 @@
+package com.littlepay.tapfare.utils;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class LongObjectHashMapTest {
+
+    @Test
+    void testBehavesLikeHashMapUnderRandomOperations() {
+        final Random random = new Random(42);
+        final LongObjectHashMap<String> map = new LongObjectHashMap<>();
+        final Map<Long, String> expected = new HashMap<>();
+        for (int i = 0; i < 200_000; i++) {
+            // a small key space makes clusters, collisions and removals inside probe sequences frequent
+            final long key = random.nextBoolean() ? random.nextInt(5_000) : -random.nextInt(5_000) - 1;
+            switch (random.nextInt(3)) {
+                case 0 -> assertThat(map.put(key, "v" + i)).isEqualTo(expected.put(key, "v" + i));
+                case 1 -> assertThat(map.remove(key)).isEqualTo(expected.remove(key));
+                default -> assertThat(map.get(key)).isEqualTo(expected.get(key));
+            }
+        }
+
+        assertThat(map.size()).isEqualTo(expected.size());
+        expected.forEach((key, value) -> assertThat(map.get(key)).isEqualTo(value));
+        final List<String> values = new ArrayList<>();
+        map.forEachValue(values::add);
+        assertThat(values).containsExactlyInAnyOrderElementsOf(expected.values());
+    }
+
+    @Test
+    void testReplaceAllUpdatesValuesAndRemovesNullResults() {
+        final LongObjectHashMap<Long> map = new LongObjectHashMap<>(4);
+        for (long key = 0; key < 10_000; key++) {
+            map.put(PanCodec.pack(16, 4_111_111_111_110_000L + key), key);
+        }
+
+        map.replaceAll(value -> value % 3 == 0 ? null : value * 2);
+
+        assertThat(map.size()).isEqualTo(6_666);
+        for (long key = 0; key < 10_000; key++) {
+            assertThat(map.get(PanCodec.pack(16, 4_111_111_111_110_000L + key))).isEqualTo(key % 3 == 0 ? null : key * 2);
+        }
+    }
+
+    @Test
+    void testClearKeepsMapUsable() {
+        final LongObjectHashMap<String> map = new LongObjectHashMap<>();
+        map.put(1L, "one");
+        map.clear();
+
+        assertThat(map.isEmpty()).isTrue();
+        assertThat(map.get(1L)).isNull();
+        map.put(1L, "uno");
+        assertThat(map.get(1L)).isEqualTo("uno");
+    }
+
+    @Test
+    void testRejectsReservedKeyAndNullValues() {
+        final LongObjectHashMap<String> map = new LongObjectHashMap<>();
+
+        Assertions.assertThrows(IllegalArgumentException.class, () -> map.put(Long.MIN_VALUE, "value"));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> map.put(1L, null));
+    }
+}
@@ -0,0 +1,30 @@
+package com.littlepay.tapfare.utils;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class PanCodecTest {
+
+    @Test
+    void testPackRoundTripsDigitPans() {
+        for (final String pan : new String[]{"5500005555555559", "0000411111111111", "0", "99999999999999999"}) {
+            final long packed = PanCodec.pack(pan);
+
+            assertThat(PanCodec.isPacked(packed)).isTrue();
+            assertThat(PanCodec.unpack(packed)).isEqualTo(pan);
+        }
+    }
+
+    @Test
+    void testPackKeepsLeadingZerosDistinct() {
+        assertThat(PanCodec.pack("0411111111111111")).isNotEqualTo(PanCodec.pack("411111111111111"));
+    }
+
+    @Test
+    void testPackRejectsPansItCannotHold() {
+        assertThat(PanCodec.pack("")).isEqualTo(PanCodec.NOT_PACKABLE);
+        assertThat(PanCodec.pack("411111111111111111")).isEqualTo(PanCodec.NOT_PACKABLE);
+        assertThat(PanCodec.pack("4111-1111")).isEqualTo(PanCodec.NOT_PACKABLE);
+    }
+}
@@ -0,0 +1,89 @@
+package com.littlepay.tapfare.utils;
+
+import com.littlepay.tapfare.constant.TapType;
+import com.littlepay.tapfare.exceptions.CsvProcessingException;
+import com.littlepay.tapfare.model.Tap;
+import com.littlepay.tapfare.model.TapBatch;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TapSnapshotFormatTest {
+
+    private final CsvUtils csvUtils = new CsvUtils();
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void testSnapshotRoundTripsCsvTaps() throws Exception {
+
+        final Path inputCsv = tempDir.resolve("taps.csv");
+        Files.write(inputCsv, List.of(
+                "ID,DateTimeUTC,TapType,StopId,CompanyId,BusID,PAN", // Header
+                "1,22-01-2023 13:00:00,ON,Stop1,Company1,Bus37,5500005555555559",
+                "2,22-01-2023 13:05:00,OFF,Stop2,Company1,Bus37,5500005555555559",
+                "3,22-01-2023 09:20:00,ON,Stop3,Company1,Bus36,4111111111111111111",
+                "4,23-01-2023 08:00:00,ON,Stop1,Company2,Bus37,0000411111111111"
+        ));
+        final Path snapshot = tempDir.resolve("taps.snapshot");
+
+        csvUtils.convertCsvToSnapshot(inputCsv.toString(), snapshot.toString());
+        final TapBatch batch = csvUtils.readTapBatchFromSnapshot(snapshot.toString());
+
+        assertThat(batch).containsExactlyElementsOf(csvUtils.readTapsFromCsv(inputCsv.toString()));
+    }
+
+    @Test
+    void testSnapshotOfUnsortedBatchIsReadSorted() {
+
+        final List<Tap> taps = new ArrayList<>(List.of(
+                new Tap(1, LocalDateTime.of(2023, 1, 22, 13, 0), TapType.ON, "Stop1", "Company1", "Bus37", "5500005555555559"),
+                new Tap(2, LocalDateTime.of(2023, 1, 22, 9, 0), null, null, null, null, "not-a-pan"),
+                new Tap(3, LocalDateTime.of(2023, 1, 22, 9, 0), TapType.OFF, "Stop2", "Company1", "Bus37", null)
+        ));
+        final TapBatch batch = new TapBatch();
+        taps.forEach(batch::add);
+        final Path snapshot = tempDir.resolve("unsorted.snapshot");
+
+        TapSnapshotFormat.write(batch, snapshot);
+
+        taps.sort(Comparator.comparing(Tap::getLocalDateTime));
+        assertThat(TapSnapshotFormat.read(snapshot)).containsExactlyElementsOf(taps);
+    }
+
+    @Test
+    void testReadRejectsOtherFiles() throws Exception {
+
+        final Path notSnapshot = Files.writeString(tempDir.resolve("taps.csv"), "ID,DateTimeUTC,TapType,StopId,CompanyId,BusID,PAN\n"
+                + "1,22-01-2023 13:00:00,ON,Stop1,Company1,Bus37,5500005555555559\n");
+
+        final CsvProcessingException exception = Assertions.assertThrows(CsvProcessingException.class,
+                () -> TapSnapshotFormat.read(notSnapshot));
+        assertThat(exception.getMessage()).contains("Not a tap snapshot");
+    }
+
+    @Test
+    void testReadRejectsUnsupportedVersion() throws Exception {
+
+        final Path snapshot = tempDir.resolve("future.snapshot");
+        TapSnapshotFormat.write(new TapBatch(), snapshot);
+        final byte[] bytes = Files.readAllBytes(snapshot);
+        ByteBuffer.wrap(bytes).putShort(4, (short) (TapSnapshotFormat.VERSION + 1));
+        Files.write(snapshot, bytes);
+
+        final CsvProcessingException exception = Assertions.assertThrows(CsvProcessingException.class,
+                () -> TapSnapshotFormat.read(snapshot));
+        assertThat(exception.getMessage()).contains("Unsupported tap snapshot version");
+    }
+}
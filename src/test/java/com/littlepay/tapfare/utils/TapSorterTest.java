@@ -0,0 +1,75 @@
+package com.littlepay.tapfare.utils;
+
+import com.littlepay.tapfare.constant.TapSortStrategy;
+import com.littlepay.tapfare.constant.TapType;
+import com.littlepay.tapfare.model.Tap;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TapSorterTest {
+
+    private static final LocalDateTime START = LocalDateTime.of(2023, 1, 22, 5, 0);
+
+    @Test
+    void testRadixSortKeepsComparisonOrderIncludingTies() {
+        final List<Tap> radixSorted = shuffledTaps(50_000, 3_600 * 30, 0);
+        final List<Tap> comparisonSorted = new ArrayList<>(radixSorted);
+
+        TapSorter.sortByDateTime(radixSorted, TapSortStrategy.RADIX);
+        TapSorter.sortByDateTime(comparisonSorted, TapSortStrategy.COMPARISON);
+
+        assertThat(radixSorted).extracting(Tap::getId).containsExactlyElementsOf(
+                comparisonSorted.stream().map(Tap::getId).toList());
+    }
+
+    @Test
+    void testRadixSortHandlesDateTimesSpanningYears() {
+        final List<Tap> radixSorted = shuffledTaps(5_000, 3_600L * 24 * 365 * 40, 0);
+        final List<Tap> comparisonSorted = new ArrayList<>(radixSorted);
+
+        TapSorter.sortByDateTime(radixSorted, TapSortStrategy.RADIX);
+        TapSorter.sortByDateTime(comparisonSorted, TapSortStrategy.COMPARISON);
+
+        assertThat(radixSorted).containsExactlyElementsOf(comparisonSorted);
+    }
+
+    @Test
+    void testRadixSortFallsBackForFractionsOfSeconds() {
+        final List<Tap> radixSorted = shuffledTaps(TapSorter.RADIX_THRESHOLD * 2, 60, 500_000_000);
+        final List<Tap> comparisonSorted = new ArrayList<>(radixSorted);
+
+        TapSorter.sortByDateTime(radixSorted, TapSortStrategy.RADIX);
+        TapSorter.sortByDateTime(comparisonSorted, TapSortStrategy.COMPARISON);
+
+        assertThat(radixSorted).containsExactlyElementsOf(comparisonSorted);
+    }
+
+    @Test
+    void testRadixSortSkipsDigitsSharedByAllKeys() {
+        final long[] keys = {0x0300_0000_0001L, 0x0100_0000_0002L, 0x0300_0000_0000L, 0x0200_0000_0003L};
+
+        TapSorter.radixSort(keys, 8, 40);
+
+        assertThat(keys).containsExactly(0x0100_0000_0002L, 0x0200_0000_0003L, 0x0300_0000_0001L, 0x0300_0000_0000L);
+    }
+
+    /**
+     * @return taps at random seconds within the given span, many of them sharing their date time, the half-second
+     * taps getting the given nanoseconds
+     */
+    private static List<Tap> shuffledTaps(final int count, final long spanSeconds, final int nanos) {
+        final Random random = new Random(42);
+        final List<Tap> taps = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            final LocalDateTime dateTime = START.plusSeconds(random.nextLong(spanSeconds)).withNano(i % 2 == 0 ? nanos : 0);
+            taps.add(new Tap(i, dateTime, i % 2 == 0 ? TapType.ON : TapType.OFF, "Stop1", "Company1", "Bus1", "4111111111111111"));
+        }
+        return taps;
+    }
+}
@@ -0,0 +1,105 @@
+package com.littlepay.tapfare.utils;
+
+import com.littlepay.tapfare.constant.TripStatus;
+import com.littlepay.tapfare.model.Trip;
+import com.littlepay.tapfare.model.TripStoreStats;
+import com.littlepay.tapfare.model.TripsPage;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TripIndexTest {
+
+    private static final LocalDateTime START = LocalDateTime.of(2023, 1, 22, 6, 0);
+
+    @Test
+    void testFindMatchesScanOfAllTrips() {
+        final Random random = new Random(42);
+        final List<Trip> trips = new ArrayList<>();
+        final TripIndex.Builder builder = new TripIndex.Builder(Integer.MAX_VALUE);
+        for (int i = 0; i < 10_000; i++) {
+            final Trip trip = trip(START.plusMinutes(random.nextInt(3 * 24 * 60)), "Bus" + random.nextInt(20),
+                    "Company" + random.nextInt(3), "41111111111111" + (10 + random.nextInt(500)));
+            trips.add(trip);
+            builder.add(trip);
+        }
+        final TripIndex index = builder.build("job");
+
+        final LocalDate date = START.toLocalDate().plusDays(1);
+        final List<Trip> expected = trips.stream()
+                .filter(trip -> trip.getBusId().equals("Bus7") && trip.getCompanyId().equals("Company1"))
+                .filter(trip -> trip.getStarted().toLocalDate().equals(date))
+                .toList();
+        final List<Trip> found = new ArrayList<>();
+        for (int page = 0; page * 10 < expected.size(); page++) {
+            final TripsPage tripsPage = index.find(null, "Bus7", "Company1", date, page, 10);
+            assertThat(tripsPage.totalTrips()).isEqualTo(expected.size());
+            found.addAll(tripsPage.trips());
+        }
+
+        assertThat(expected).isNotEmpty();
+        assertThat(found).containsExactlyElementsOf(expected);
+        assertThat(index.find("41111111111111" + 42, null, null, null, 0, 1_000).trips())
+                .containsExactlyElementsOf(trips.stream().filter(trip -> trip.getPan().equals("41111111111111" + 42)).toList());
+        assertThat(index.find("unknown", null, null, null, 0, 10).totalTrips()).isZero();
+    }
+
+    @Test
+    void testFindWithAtMostOneCriterionPagesThroughItsTrips() {
+        final List<Trip> trips = new ArrayList<>();
+        final TripIndex.Builder builder = new TripIndex.Builder(Integer.MAX_VALUE);
+        for (int i = 0; i < 25; i++) {
+            final Trip trip = trip(START.plusMinutes(i), "Bus" + i % 2, "Company1", "4111111111111111");
+            trips.add(trip);
+            builder.add(trip);
+        }
+        final TripIndex index = builder.build("job");
+
+        final TripsPage lastPage = index.find(null, null, null, null, 2, 10);
+        assertThat(lastPage.totalTrips()).isEqualTo(25);
+        assertThat(lastPage.trips()).containsExactlyElementsOf(trips.subList(20, 25));
+
+        final TripsPage busPage = index.find(null, "Bus1", null, null, 1, 5);
+        assertThat(busPage.totalTrips()).isEqualTo(12);
+        assertThat(busPage.trips()).containsExactlyElementsOf(
+                trips.stream().filter(trip -> trip.getBusId().equals("Bus1")).skip(5).limit(5).toList());
+
+        final TripsPage pastLastPage = index.find(null, "Bus1", null, null, 3, 5);
+        assertThat(pastLastPage.totalTrips()).isEqualTo(12);
+        assertThat(pastLastPage.trips()).isEmpty();
+    }
+
+    @Test
+    void testOrphanTapOffTripsAreIndexedByFinishDate() {
+        final Trip orphanOff = new Trip(null, START, 0, null, "Stop2", 7.0, "Company1", "Bus37", "4111111111111111", TripStatus.INCOMPLETE);
+        final TripIndex.Builder builder = new TripIndex.Builder(10);
+        builder.add(orphanOff);
+
+        assertThat(builder.build("job").find(null, null, null, START.toLocalDate(), 0, 10).trips()).containsExactly(orphanOff);
+    }
+
+    @Test
+    void testTripsBeyondMaximumAreDroppedAndIndexMarkedIncomplete() {
+        final TripIndex.Builder builder = new TripIndex.Builder(2);
+        for (int i = 0; i < 3; i++) {
+            builder.add(trip(START.plusMinutes(i), "Bus37", "Company1", "4111111111111111"));
+        }
+
+        final TripStoreStats stats = builder.build("job").getStats();
+
+        assertThat(stats.trips()).isEqualTo(2);
+        assertThat(stats.complete()).isFalse();
+        assertThat(stats.pans()).isEqualTo(1);
+        assertThat(stats.estimatedBytes()).isPositive();
+    }
+
+    private static Trip trip(final LocalDateTime started, final String busId, final String companyId, final String pan) {
+        return new Trip(started, started.plusMinutes(5), 300, "Stop1", "Stop2", 3.25, companyId, busId, pan, TripStatus.COMPLETED);
+    }
+}